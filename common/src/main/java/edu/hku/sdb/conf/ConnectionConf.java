@@ -23,11 +23,60 @@ public class ConnectionConf extends Configuration {
   private String sdbAddress;
   private Integer sdbPort;
   private Integer maxConnection;
+  private String transport;
+  private Integer nioPort;
+  private Integer maxMemory;
+  private Integer maxQueryMemory;
+  private String spillDir;
+  private Integer maxQueuedQueries;
+  private Integer admissionTimeout;
+  private boolean resultCacheEnabled;
+  private Integer resultCacheSize;
+  private boolean remoteCacheEnabled;
+  private Integer remoteCacheSize;
+  private String remoteCacheDir;
 
   // Proxy related
   public static String SDB_PROXY_CONNECTION_MAX = "sdb.proxy.connection.max";
   public static String SDB_PROXY_CONNECTION_PORT = "sdb.proxy.connection.port";
   public static String SDB_PROXY_CONNECTION_ADDRESS = "sdb.proxy.connection.address";
+  // rmi, nio or both
+  public static String SDB_PROXY_TRANSPORT = "sdb.proxy.transport";
+  public static String SDB_PROXY_NIO_PORT = "sdb.proxy.nio.port";
+
+  public static final String TRANSPORT_RMI = "rmi";
+  public static final String TRANSPORT_NIO = "nio";
+  public static final String TRANSPORT_BOTH = "both";
+  public static final int DEFAULT_NIO_PORT = 2020;
+
+  // The memory kept for the results, in MB, and where the rest is spilled
+  public static String SDB_PROXY_MEMORY_MAX = "sdb.proxy.memory.max.mb";
+  public static String SDB_PROXY_MEMORY_QUERY_MAX = "sdb.proxy.memory.query.max.mb";
+  public static String SDB_PROXY_SPILL_DIR = "sdb.proxy.spill.dir";
+
+  public static final int DEFAULT_MEMORY_MAX = 512;
+  public static final int DEFAULT_MEMORY_QUERY_MAX = 64;
+
+  // The queries waiting for memory, and how long they may wait in seconds
+  public static String SDB_PROXY_ADMISSION_QUEUE_MAX = "sdb.proxy.admission.queue.max";
+  public static String SDB_PROXY_ADMISSION_TIMEOUT = "sdb.proxy.admission.timeout.sec";
+
+  public static final int DEFAULT_ADMISSION_QUEUE_MAX = 64;
+  public static final int DEFAULT_ADMISSION_TIMEOUT = 60;
+
+  // The cache of the decrypted results, off by default, and its size in MB
+  public static String SDB_PROXY_RESULT_CACHE_ENABLED = "sdb.proxy.result.cache.enabled";
+  public static String SDB_PROXY_RESULT_CACHE_MAX = "sdb.proxy.result.cache.max.mb";
+
+  public static final int DEFAULT_RESULT_CACHE_MAX = 64;
+
+  // The disk cache of the encrypted rows of the remote queries, off by
+  // default, its size in MB and its directory
+  public static String SDB_PROXY_REMOTE_CACHE_ENABLED = "sdb.proxy.remote.cache.enabled";
+  public static String SDB_PROXY_REMOTE_CACHE_MAX = "sdb.proxy.remote.cache.max.mb";
+  public static String SDB_PROXY_REMOTE_CACHE_DIR = "sdb.proxy.remote.cache.dir";
+
+  public static final int DEFAULT_REMOTE_CACHE_MAX = 1024;
 
   public static String CONF_FILE = "sdb-connection.xml";
 
@@ -35,6 +84,45 @@ public class ConnectionConf extends Configuration {
     sdbAddress = prop.get(SDB_PROXY_CONNECTION_ADDRESS);
     sdbPort = Integer.valueOf(prop.get(SDB_PROXY_CONNECTION_PORT));
     maxConnection = Integer.valueOf(prop.get(SDB_PROXY_CONNECTION_MAX));
+
+    transport = prop.get(SDB_PROXY_TRANSPORT);
+    if (transport == null || transport.trim().isEmpty())
+      transport = TRANSPORT_BOTH;
+    transport = transport.trim().toLowerCase();
+    String port = prop.get(SDB_PROXY_NIO_PORT);
+    nioPort = port == null ? DEFAULT_NIO_PORT : Integer.valueOf(port.trim());
+
+    String memory = prop.get(SDB_PROXY_MEMORY_MAX);
+    maxMemory = memory == null ? DEFAULT_MEMORY_MAX : Integer.valueOf(memory
+            .trim());
+    memory = prop.get(SDB_PROXY_MEMORY_QUERY_MAX);
+    maxQueryMemory = memory == null ? DEFAULT_MEMORY_QUERY_MAX : Integer
+            .valueOf(memory.trim());
+    spillDir = prop.get(SDB_PROXY_SPILL_DIR);
+    if (spillDir != null && spillDir.trim().isEmpty())
+      spillDir = null;
+
+    String admission = prop.get(SDB_PROXY_ADMISSION_QUEUE_MAX);
+    maxQueuedQueries = admission == null ? DEFAULT_ADMISSION_QUEUE_MAX : Integer
+            .valueOf(admission.trim());
+    admission = prop.get(SDB_PROXY_ADMISSION_TIMEOUT);
+    admissionTimeout = admission == null ? DEFAULT_ADMISSION_TIMEOUT : Integer
+            .valueOf(admission.trim());
+
+    resultCacheEnabled = Boolean.parseBoolean(prop.get
+            (SDB_PROXY_RESULT_CACHE_ENABLED));
+    String cacheSize = prop.get(SDB_PROXY_RESULT_CACHE_MAX);
+    resultCacheSize = cacheSize == null ? DEFAULT_RESULT_CACHE_MAX : Integer
+            .valueOf(cacheSize.trim());
+
+    remoteCacheEnabled = Boolean.parseBoolean(prop.get
+            (SDB_PROXY_REMOTE_CACHE_ENABLED));
+    cacheSize = prop.get(SDB_PROXY_REMOTE_CACHE_MAX);
+    remoteCacheSize = cacheSize == null ? DEFAULT_REMOTE_CACHE_MAX : Integer
+            .valueOf(cacheSize.trim());
+    remoteCacheDir = prop.get(SDB_PROXY_REMOTE_CACHE_DIR);
+    if (remoteCacheDir != null && remoteCacheDir.trim().isEmpty())
+      remoteCacheDir = null;
   }
 
   public String getSdbAddress() {
@@ -63,10 +151,132 @@ public class ConnectionConf extends Configuration {
     this.maxConnection = maxConnection;
   }
 
+  public String getTransport() {
+    return transport;
+  }
+
+  public void setTransport(String transport) {
+    this.transport = transport;
+  }
+
+  public boolean isRmiEnabled() {
+    return !TRANSPORT_NIO.equals(transport);
+  }
+
+  public boolean isNioEnabled() {
+    return !TRANSPORT_RMI.equals(transport);
+  }
+
+  public Integer getNioPort() {
+    return nioPort;
+  }
+
+  public void setNioPort(Integer nioPort) {
+    this.nioPort = nioPort;
+  }
+
+  public Integer getMaxMemory() {
+    return maxMemory;
+  }
+
+  public void setMaxMemory(Integer maxMemory) {
+    this.maxMemory = maxMemory;
+  }
+
+  public Integer getMaxQueryMemory() {
+    return maxQueryMemory;
+  }
+
+  public void setMaxQueryMemory(Integer maxQueryMemory) {
+    this.maxQueryMemory = maxQueryMemory;
+  }
+
+  /**
+   * @return the directory of the spilled results, null for the temporary
+   * directory of the system
+   */
+  public String getSpillDir() {
+    return spillDir;
+  }
+
+  public void setSpillDir(String spillDir) {
+    this.spillDir = spillDir;
+  }
+
+  public Integer getMaxQueuedQueries() {
+    return maxQueuedQueries;
+  }
+
+  public void setMaxQueuedQueries(Integer maxQueuedQueries) {
+    this.maxQueuedQueries = maxQueuedQueries;
+  }
+
+  /**
+   * @return the seconds a query may wait for memory
+   */
+  public Integer getAdmissionTimeout() {
+    return admissionTimeout;
+  }
+
+  public void setAdmissionTimeout(Integer admissionTimeout) {
+    this.admissionTimeout = admissionTimeout;
+  }
+
+  public boolean isResultCacheEnabled() {
+    return resultCacheEnabled;
+  }
+
+  public void setResultCacheEnabled(boolean resultCacheEnabled) {
+    this.resultCacheEnabled = resultCacheEnabled;
+  }
+
+  public Integer getResultCacheSize() {
+    return resultCacheSize;
+  }
+
+  public void setResultCacheSize(Integer resultCacheSize) {
+    this.resultCacheSize = resultCacheSize;
+  }
+
+  public boolean isRemoteCacheEnabled() {
+    return remoteCacheEnabled;
+  }
+
+  public void setRemoteCacheEnabled(boolean remoteCacheEnabled) {
+    this.remoteCacheEnabled = remoteCacheEnabled;
+  }
+
+  public Integer getRemoteCacheSize() {
+    return remoteCacheSize;
+  }
+
+  public void setRemoteCacheSize(Integer remoteCacheSize) {
+    this.remoteCacheSize = remoteCacheSize;
+  }
+
+  /**
+   * @return the directory of the cached remote rows, null for a directory in
+   * the temporary directory of the system
+   */
+  public String getRemoteCacheDir() {
+    return remoteCacheDir;
+  }
+
+  public void setRemoteCacheDir(String remoteCacheDir) {
+    this.remoteCacheDir = remoteCacheDir;
+  }
+
   public void printConfig() {
     String config = "Sdb address: " + sdbAddress + "\n" + "Sdb port: "
             + sdbPort + "\n" + "Maximum number of connection: "
-            + maxConnection + "\n";
+            + maxConnection + "\n" + "Transport: " + transport + "\n"
+            + "Sdb nio port: " + nioPort + "\n" + "Maximum memory (MB): "
+            + maxMemory + "\n" + "Maximum memory of a query (MB): "
+            + maxQueryMemory + "\n" + "Maximum queued queries: "
+            + maxQueuedQueries + "\n" + "Result cache: "
+            + (resultCacheEnabled ? resultCacheSize + " MB" : "off") + "\n"
+            + "Remote query cache: "
+            + (remoteCacheEnabled ? remoteCacheSize + " MB" : "off") + "\n";
     System.out.println(config);
   }
 
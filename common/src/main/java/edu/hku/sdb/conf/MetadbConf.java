@@ -7,4 +7,73 @@ public class MetadbConf extends  JDBCServerConf {
 
   public static String CONF_FILE = "sdb-metastore.xml";
 
+  public static String DEFAULT_JDBC_URL = "jdbc:derby:metastore_db;create=true";
+
+  // The connection pool of DataNucleus, "none" to disable pooling.
+  public static String DEFAULT_POOL_TYPE = "dbcp-builtin";
+  public static String NO_POOL = "none";
+  public static int DEFAULT_POOL_MIN_SIZE = 1;
+  public static int DEFAULT_POOL_MAX_SIZE = 10;
+
+  private String poolType = DEFAULT_POOL_TYPE;
+  private int poolMinSize = DEFAULT_POOL_MIN_SIZE;
+  private int poolMaxSize = DEFAULT_POOL_MAX_SIZE;
+
+  /**
+   * @param jdbcUrl
+   * @return the usual driver of the database of a JDBC url, or null if it is
+   * not known.
+   */
+  public static String inferDriverName(String jdbcUrl) {
+    if (jdbcUrl == null)
+      return null;
+    else if (jdbcUrl.startsWith("jdbc:mysql:"))
+      return "com.mysql.jdbc.Driver";
+    else if (jdbcUrl.startsWith("jdbc:postgresql:"))
+      return "org.postgresql.Driver";
+    else if (jdbcUrl.startsWith("jdbc:h2:"))
+      return "org.h2.Driver";
+    // The network server of derby.
+    else if (jdbcUrl.startsWith("jdbc:derby://"))
+      return "org.apache.derby.jdbc.ClientDriver";
+    else if (jdbcUrl.startsWith("jdbc:derby:"))
+      return "org.apache.derby.jdbc.EmbeddedDriver";
+    else
+      return null;
+  }
+
+  public String getPoolType() {
+    return poolType;
+  }
+
+  public void setPoolType(String poolType) {
+    this.poolType = poolType;
+  }
+
+  public boolean isPooled() {
+    return !NO_POOL.equalsIgnoreCase(poolType);
+  }
+
+  public int getPoolMinSize() {
+    return poolMinSize;
+  }
+
+  public void setPoolMinSize(int poolMinSize) {
+    this.poolMinSize = poolMinSize;
+  }
+
+  public int getPoolMaxSize() {
+    return poolMaxSize;
+  }
+
+  public void setPoolMaxSize(int poolMaxSize) {
+    this.poolMaxSize = poolMaxSize;
+  }
+
+  @Override
+  public void printConfig() {
+    super.printConfig();
+    System.out.println("poolType: " + poolType + "\n" + "poolMinSize: " +
+            poolMinSize + "\n" + "poolMaxSize: " + poolMaxSize + "\n");
+  }
 }
@@ -14,19 +14,43 @@ public class MetadbConfFactory {
   public static String SDB_METASTORE_DATABASE_NAME = "sdb.metastore.database.name";
   public static String SDB_METASTORE_JDBC_DRIVERNAME = "sdb.metastore.jdbc.drivername";
   public static String SDB_METASTORE_JDBC_URL = "sdb.metastore.jdbc.url";
+  public static String SDB_METASTORE_POOL_TYPE = "sdb.metastore.connection.pool.type";
+  public static String SDB_METASTORE_POOL_MIN = "sdb.metastore.connection.pool.min";
+  public static String SDB_METASTORE_POOL_MAX = "sdb.metastore.connection.pool.max";
 
 
   public static MetadbConf getMetadbConf(Map<String, String> prop) {
 
     MetadbConf metadbConf = new MetadbConf();
     metadbConf.setDatabaseName(prop.get(SDB_METASTORE_DATABASE_NAME));
-    metadbConf.setJdbcDriverName(prop.get(SDB_METASTORE_JDBC_DRIVERNAME));
-    metadbConf.setJdbcUrl(prop.get(SDB_METASTORE_JDBC_URL));
+    String jdbcUrl = prop.get(SDB_METASTORE_JDBC_URL);
+    if (jdbcUrl == null || jdbcUrl.isEmpty())
+      jdbcUrl = MetadbConf.DEFAULT_JDBC_URL;
+    metadbConf.setJdbcUrl(jdbcUrl);
+
+    String driverName = prop.get(SDB_METASTORE_JDBC_DRIVERNAME);
+    if (driverName == null || driverName.isEmpty())
+      driverName = MetadbConf.inferDriverName(jdbcUrl);
+    metadbConf.setJdbcDriverName(driverName);
     metadbConf.setPassword(prop.get(SDB_METASTORE_PASSWORD));
     metadbConf.setUsername(prop.get(SDB_METASTORE_USERNAME));
     metadbConf.setType(ServerType.HIVE);
 
+    if (prop.get(SDB_METASTORE_POOL_TYPE) != null)
+      metadbConf.setPoolType(prop.get(SDB_METASTORE_POOL_TYPE));
+    metadbConf.setPoolMinSize(getInt(prop, SDB_METASTORE_POOL_MIN, MetadbConf
+            .DEFAULT_POOL_MIN_SIZE));
+    metadbConf.setPoolMaxSize(getInt(prop, SDB_METASTORE_POOL_MAX, MetadbConf
+            .DEFAULT_POOL_MAX_SIZE));
+
     return metadbConf;
   }
 
+  private static int getInt(Map<String, String> prop, String key, int
+          defaultValue) {
+    String value = prop.get(key);
+    return value == null || value.trim().isEmpty() ? defaultValue : Integer
+            .parseInt(value.trim());
+  }
+
 }
@@ -0,0 +1,70 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.conf;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetadbConfFactoryTest {
+
+  @Test
+  public void testPoolKeys() {
+    Map<String, String> prop = new HashMap<>();
+    prop.put(MetadbConfFactory.SDB_METASTORE_JDBC_URL,
+            "jdbc:mysql://localhost/metastore");
+    prop.put("sdb.metastore.connection.pool.type", "HikariCP");
+    prop.put("sdb.metastore.connection.pool.min", " 2 ");
+    prop.put("sdb.metastore.connection.pool.max", "20");
+
+    MetadbConf metadbConf = MetadbConfFactory.getMetadbConf(prop);
+
+    assertEquals("jdbc:mysql://localhost/metastore", metadbConf.getJdbcUrl());
+    assertEquals("com.mysql.jdbc.Driver", metadbConf.getJdbcDriverName());
+    assertEquals("HikariCP", metadbConf.getPoolType());
+    assertTrue(metadbConf.isPooled());
+    assertEquals(2, metadbConf.getPoolMinSize());
+    assertEquals(20, metadbConf.getPoolMaxSize());
+  }
+
+  @Test
+  public void testPoolDefaults() {
+    MetadbConf metadbConf = MetadbConfFactory.getMetadbConf(new
+            HashMap<String, String>());
+
+    assertEquals(MetadbConf.DEFAULT_JDBC_URL, metadbConf.getJdbcUrl());
+    assertEquals("org.apache.derby.jdbc.EmbeddedDriver", metadbConf
+            .getJdbcDriverName());
+    assertEquals(MetadbConf.DEFAULT_POOL_TYPE, metadbConf.getPoolType());
+    assertEquals(MetadbConf.DEFAULT_POOL_MIN_SIZE, metadbConf.getPoolMinSize());
+    assertEquals(MetadbConf.DEFAULT_POOL_MAX_SIZE, metadbConf.getPoolMaxSize());
+  }
+
+  @Test
+  public void testNoPool() {
+    Map<String, String> prop = new HashMap<>();
+    prop.put(MetadbConfFactory.SDB_METASTORE_POOL_TYPE, "none");
+
+    assertFalse(MetadbConfFactory.getMetadbConf(prop).isPooled());
+  }
+}
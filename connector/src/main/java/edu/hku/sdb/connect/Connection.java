@@ -24,6 +24,8 @@ public interface Connection extends Remote {
 
   public Statement createStatement() throws RemoteException;
 
+  public PreparedStatement prepareStatement(String query) throws RemoteException;
+
   public void close() throws RemoteException;
 
 }
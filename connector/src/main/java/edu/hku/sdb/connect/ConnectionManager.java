@@ -17,30 +17,103 @@
 
 package edu.hku.sdb.connect;
 
+import edu.hku.sdb.transport.NioConnectionService;
+
 import java.net.MalformedURLException;
 import java.rmi.Naming;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Route the clients to the proxies. Several proxies can share one metastore,
+ * and so the keys, then the url lists them separated by commas, e.g.
+ * "//host1:2019/Connection,//host2:2019/Connection". A connection is got from
+ * the least loaded proxy that can be reached.
+ *
+ * An url like "sdb://host:2020" reaches a proxy by the framed protocol
+ * instead of RMI.
+ */
 public class ConnectionManager {
 
+  public static final String URL_SEPARATOR = ",";
+
   public static Connection getConnection(String databaseUrl, String userName,
                                          String password) {
-    ConnectionService connectionService = null;
-    try {
-      connectionService = (ConnectionService) Naming.lookup(databaseUrl);
-    } catch (NotBoundException | MalformedURLException | RemoteException e) {
-      e.printStackTrace();
-    }
-    try {
-      return connectionService.getConnection();
-    } catch (RemoteException e) {
-      e.printStackTrace();
+    List<ConnectionService> services = new ArrayList<>();
+    for (String url : getProxyUrls(databaseUrl)) {
+      if (NioConnectionService.accepts(url)) {
+        services.add(new NioConnectionService(url));
+        continue;
+      }
+
+      try {
+        services.add((ConnectionService) Naming.lookup(url));
+      } catch (NotBoundException | MalformedURLException | RemoteException e) {
+        e.printStackTrace();
+      }
     }
-    return null;
+    return getConnection(services);
   }
 
   public Connection getConnection(String databaseUrl) {
+    return getConnection(databaseUrl, "", "");
+  }
+
+  /**
+   * @param databaseUrl
+   * @return the urls of the proxies
+   */
+  static List<String> getProxyUrls(String databaseUrl) {
+    List<String> urls = new ArrayList<>();
+    for (String url : databaseUrl.split(URL_SEPARATOR)) {
+      if (!url.trim().isEmpty())
+        urls.add(url.trim());
+    }
+    return urls;
+  }
+
+  /**
+   * Try the proxies from the least loaded one. Those not responding are
+   * skipped.
+   *
+   * @param services
+   * @return null if no proxy gives a connection
+   */
+  static Connection getConnection(List<ConnectionService> services) {
+    final Map<ConnectionService, Integer> loads = new IdentityHashMap<>();
+    for (ConnectionService service : services) {
+      try {
+        loads.put(service, service.getLoad());
+      } catch (RemoteException e) {
+        e.printStackTrace();
+      }
+    }
+
+    List<ConnectionService> candidates = new ArrayList<>(loads.keySet());
+    // The ties are broken randomly, so the clients spread over equal proxies.
+    Collections.shuffle(candidates);
+    Collections.sort(candidates, new Comparator<ConnectionService>() {
+      @Override
+      public int compare(ConnectionService s1, ConnectionService s2) {
+        return Integer.compare(loads.get(s1), loads.get(s2));
+      }
+    });
+
+    for (ConnectionService service : candidates) {
+      try {
+        Connection connection = service.getConnection();
+        if (connection != null)
+          return connection;
+      } catch (RemoteException e) {
+        e.printStackTrace();
+      }
+    }
     return null;
   }
 }
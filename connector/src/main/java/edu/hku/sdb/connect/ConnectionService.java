@@ -34,4 +34,12 @@ public interface ConnectionService extends Remote {
    * resources.
    */
   public void closeConnection() throws RemoteException;
+
+  /**
+   * The load of the proxy, used by the clients to balance the proxies
+   * sharing a metastore.
+   *
+   * @return the number of open connections
+   */
+  public int getLoad() throws RemoteException;
 }
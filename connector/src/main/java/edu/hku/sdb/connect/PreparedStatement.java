@@ -0,0 +1,39 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.connect;
+
+import java.rmi.RemoteException;
+
+/**
+ * A query with ? placeholders, which is prepared once and executed with
+ * different parameters. The parameter index starts from 1.
+ */
+public interface PreparedStatement extends Statement {
+
+  public void setInt(int parameterIndex, int x) throws RemoteException;
+
+  public void setLong(int parameterIndex, long x) throws RemoteException;
+
+  public void setDouble(int parameterIndex, double x) throws RemoteException;
+
+  public void setString(int parameterIndex, String x) throws RemoteException;
+
+  public void clearParameters() throws RemoteException;
+
+  public ResultSet executeQuery() throws RemoteException;
+}
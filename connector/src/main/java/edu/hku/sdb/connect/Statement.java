@@ -27,4 +27,9 @@ public interface Statement extends Remote {
   public void close() throws RemoteException;
 
   public Profiler getProfiler() throws RemoteException;
+
+  /**
+   * Cancel the query being executed by this statement, if any.
+   */
+  public void cancel() throws RemoteException;
 }
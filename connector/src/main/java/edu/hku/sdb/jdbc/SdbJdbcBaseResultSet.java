@@ -0,0 +1,831 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.jdbc;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Map;
+
+/**
+ * The part of a JDBC result set that SDB does not support. The results are
+ * forward only and read only, and the values are numbers or strings.
+ */
+public abstract class SdbJdbcBaseResultSet implements ResultSet {
+
+  static SQLFeatureNotSupportedException unsupported(String method) {
+    return new SQLFeatureNotSupportedException("Method " + method + " is not" +
+            " supported");
+  }
+
+  static SQLFeatureNotSupportedException forwardOnly() {
+    return new SQLFeatureNotSupportedException("The result set is forward " +
+            "only");
+  }
+
+  static SQLFeatureNotSupportedException readOnly() {
+    return new SQLFeatureNotSupportedException("The result set is read only");
+  }
+
+  @Override
+  public boolean absolute(int row) throws SQLException {
+    throw forwardOnly();
+  }
+
+  @Override
+  public boolean first() throws SQLException {
+    throw forwardOnly();
+  }
+
+  @Override
+  public boolean isAfterLast() throws SQLException {
+    throw forwardOnly();
+  }
+
+  @Override
+  public boolean isBeforeFirst() throws SQLException {
+    throw forwardOnly();
+  }
+
+  @Override
+  public boolean isFirst() throws SQLException {
+    throw forwardOnly();
+  }
+
+  @Override
+  public boolean isLast() throws SQLException {
+    throw forwardOnly();
+  }
+
+  @Override
+  public boolean last() throws SQLException {
+    throw forwardOnly();
+  }
+
+  @Override
+  public boolean previous() throws SQLException {
+    throw forwardOnly();
+  }
+
+  @Override
+  public boolean relative(int rows) throws SQLException {
+    throw forwardOnly();
+  }
+
+  @Override
+  public void afterLast() throws SQLException {
+    throw forwardOnly();
+  }
+
+  @Override
+  public void beforeFirst() throws SQLException {
+    throw forwardOnly();
+  }
+
+  @Override
+  public boolean rowDeleted() throws SQLException {
+    return false;
+  }
+
+  @Override
+  public boolean rowInserted() throws SQLException {
+    return false;
+  }
+
+  @Override
+  public boolean rowUpdated() throws SQLException {
+    return false;
+  }
+
+  @Override
+  public Array getArray(String columnLabel) throws SQLException {
+    throw unsupported("getArray");
+  }
+
+  @Override
+  public Array getArray(int columnIndex) throws SQLException {
+    throw unsupported("getArray");
+  }
+
+  @Override
+  public Blob getBlob(String columnLabel) throws SQLException {
+    throw unsupported("getBlob");
+  }
+
+  @Override
+  public Blob getBlob(int columnIndex) throws SQLException {
+    throw unsupported("getBlob");
+  }
+
+  @Override
+  public Clob getClob(String columnLabel) throws SQLException {
+    throw unsupported("getClob");
+  }
+
+  @Override
+  public Clob getClob(int columnIndex) throws SQLException {
+    throw unsupported("getClob");
+  }
+
+  @Override
+  public Date getDate(String columnLabel) throws SQLException {
+    throw unsupported("getDate");
+  }
+
+  @Override
+  public Date getDate(String columnLabel, Calendar cal) throws SQLException {
+    throw unsupported("getDate");
+  }
+
+  @Override
+  public Date getDate(int columnIndex) throws SQLException {
+    throw unsupported("getDate");
+  }
+
+  @Override
+  public Date getDate(int columnIndex, Calendar cal) throws SQLException {
+    throw unsupported("getDate");
+  }
+
+  @Override
+  public InputStream getAsciiStream(String columnLabel) throws SQLException {
+    throw unsupported("getAsciiStream");
+  }
+
+  @Override
+  public InputStream getAsciiStream(int columnIndex) throws SQLException {
+    throw unsupported("getAsciiStream");
+  }
+
+  @Override
+  public InputStream getBinaryStream(String columnLabel) throws SQLException {
+    throw unsupported("getBinaryStream");
+  }
+
+  @Override
+  public InputStream getBinaryStream(int columnIndex) throws SQLException {
+    throw unsupported("getBinaryStream");
+  }
+
+  @Override
+  public InputStream getUnicodeStream(String columnLabel) throws SQLException {
+    throw unsupported("getUnicodeStream");
+  }
+
+  @Override
+  public InputStream getUnicodeStream(int columnIndex) throws SQLException {
+    throw unsupported("getUnicodeStream");
+  }
+
+  @Override
+  public NClob getNClob(String columnLabel) throws SQLException {
+    throw unsupported("getNClob");
+  }
+
+  @Override
+  public NClob getNClob(int columnIndex) throws SQLException {
+    throw unsupported("getNClob");
+  }
+
+  @Override
+  public Object getObject(String columnLabel, Map<String, Class<?>> map)
+          throws SQLException {
+    throw unsupported("getObject");
+  }
+
+  @Override
+  public Object getObject(int columnIndex, Map<String, Class<?>> map)
+          throws SQLException {
+    throw unsupported("getObject");
+  }
+
+  @Override
+  public Reader getCharacterStream(String columnLabel) throws SQLException {
+    throw unsupported("getCharacterStream");
+  }
+
+  @Override
+  public Reader getCharacterStream(int columnIndex) throws SQLException {
+    throw unsupported("getCharacterStream");
+  }
+
+  @Override
+  public Reader getNCharacterStream(String columnLabel) throws SQLException {
+    throw unsupported("getNCharacterStream");
+  }
+
+  @Override
+  public Reader getNCharacterStream(int columnIndex) throws SQLException {
+    throw unsupported("getNCharacterStream");
+  }
+
+  @Override
+  public Ref getRef(String columnLabel) throws SQLException {
+    throw unsupported("getRef");
+  }
+
+  @Override
+  public Ref getRef(int columnIndex) throws SQLException {
+    throw unsupported("getRef");
+  }
+
+  @Override
+  public RowId getRowId(String columnLabel) throws SQLException {
+    throw unsupported("getRowId");
+  }
+
+  @Override
+  public RowId getRowId(int columnIndex) throws SQLException {
+    throw unsupported("getRowId");
+  }
+
+  @Override
+  public SQLXML getSQLXML(String columnLabel) throws SQLException {
+    throw unsupported("getSQLXML");
+  }
+
+  @Override
+  public SQLXML getSQLXML(int columnIndex) throws SQLException {
+    throw unsupported("getSQLXML");
+  }
+
+  @Override
+  public String getCursorName() throws SQLException {
+    throw unsupported("getCursorName");
+  }
+
+  @Override
+  public Time getTime(String columnLabel) throws SQLException {
+    throw unsupported("getTime");
+  }
+
+  @Override
+  public Time getTime(String columnLabel, Calendar cal) throws SQLException {
+    throw unsupported("getTime");
+  }
+
+  @Override
+  public Time getTime(int columnIndex) throws SQLException {
+    throw unsupported("getTime");
+  }
+
+  @Override
+  public Time getTime(int columnIndex, Calendar cal) throws SQLException {
+    throw unsupported("getTime");
+  }
+
+  @Override
+  public Timestamp getTimestamp(String columnLabel) throws SQLException {
+    throw unsupported("getTimestamp");
+  }
+
+  @Override
+  public Timestamp getTimestamp(String columnLabel, Calendar cal)
+          throws SQLException {
+    throw unsupported("getTimestamp");
+  }
+
+  @Override
+  public Timestamp getTimestamp(int columnIndex) throws SQLException {
+    throw unsupported("getTimestamp");
+  }
+
+  @Override
+  public Timestamp getTimestamp(int columnIndex, Calendar cal)
+          throws SQLException {
+    throw unsupported("getTimestamp");
+  }
+
+  @Override
+  public URL getURL(String columnLabel) throws SQLException {
+    throw unsupported("getURL");
+  }
+
+  @Override
+  public URL getURL(int columnIndex) throws SQLException {
+    throw unsupported("getURL");
+  }
+
+  @Override
+  public byte[] getBytes(String columnLabel) throws SQLException {
+    throw unsupported("getBytes");
+  }
+
+  @Override
+  public byte[] getBytes(int columnIndex) throws SQLException {
+    throw unsupported("getBytes");
+  }
+
+  @Override
+  public void cancelRowUpdates() throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void deleteRow() throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void insertRow() throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void moveToCurrentRow() throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void moveToInsertRow() throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void refreshRow() throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateArray(String columnLabel, Array x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateArray(int columnIndex, Array x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateAsciiStream(String columnLabel, InputStream x)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateAsciiStream(String columnLabel, InputStream x, int length)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateAsciiStream(String columnLabel, InputStream x, long length)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateAsciiStream(int columnIndex, InputStream x)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateAsciiStream(int columnIndex, InputStream x, int length)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateAsciiStream(int columnIndex, InputStream x, long length)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBigDecimal(String columnLabel, BigDecimal x)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBigDecimal(int columnIndex, BigDecimal x)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBinaryStream(String columnLabel, InputStream x)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBinaryStream(String columnLabel, InputStream x, int length)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBinaryStream(String columnLabel, InputStream x, long length)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBinaryStream(int columnIndex, InputStream x)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBinaryStream(int columnIndex, InputStream x, int length)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBinaryStream(int columnIndex, InputStream x, long length)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBlob(String columnLabel, Blob x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBlob(String columnLabel, InputStream inputStream)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBlob(String columnLabel, InputStream inputStream,
+          long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBlob(int columnIndex, Blob x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBlob(int columnIndex, InputStream inputStream)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBlob(int columnIndex, InputStream inputStream, long length)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBoolean(String columnLabel, boolean x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBoolean(int columnIndex, boolean x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateByte(String columnLabel, byte x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateByte(int columnIndex, byte x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBytes(String columnLabel, byte[] x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateBytes(int columnIndex, byte[] x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateCharacterStream(String columnLabel, Reader reader)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateCharacterStream(String columnLabel, Reader reader,
+          int length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateCharacterStream(String columnLabel, Reader reader,
+          long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateCharacterStream(int columnIndex, Reader reader)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateCharacterStream(int columnIndex, Reader reader, int length)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateCharacterStream(int columnIndex, Reader reader, long length)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateClob(String columnLabel, Clob x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateClob(String columnLabel, Reader reader)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateClob(String columnLabel, Reader reader, long length)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateClob(int columnIndex, Clob x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateClob(int columnIndex, Reader reader) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateClob(int columnIndex, Reader reader, long length)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateDate(String columnLabel, Date x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateDate(int columnIndex, Date x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateDouble(String columnLabel, double x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateDouble(int columnIndex, double x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateFloat(String columnLabel, float x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateFloat(int columnIndex, float x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateInt(String columnLabel, int x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateInt(int columnIndex, int x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateLong(String columnLabel, long x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateLong(int columnIndex, long x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateNCharacterStream(String columnLabel, Reader reader)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateNCharacterStream(String columnLabel, Reader reader,
+          long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateNCharacterStream(int columnIndex, Reader reader)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateNCharacterStream(int columnIndex, Reader reader,
+          long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateNClob(String columnLabel, NClob x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateNClob(String columnLabel, Reader reader)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateNClob(String columnLabel, Reader reader, long length)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateNClob(int columnIndex, NClob x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateNClob(int columnIndex, Reader reader) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateNClob(int columnIndex, Reader reader, long length)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateNString(String columnLabel, String x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateNString(int columnIndex, String x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateNull(String columnLabel) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateNull(int columnIndex) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateObject(String columnLabel, Object x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateObject(String columnLabel, Object x, int scaleOrLength)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateObject(int columnIndex, Object x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateObject(int columnIndex, Object x, int scaleOrLength)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateRef(String columnLabel, Ref x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateRef(int columnIndex, Ref x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateRow() throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateRowId(String columnLabel, RowId x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateRowId(int columnIndex, RowId x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateSQLXML(String columnLabel, SQLXML x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateSQLXML(int columnIndex, SQLXML x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateShort(String columnLabel, short x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateShort(int columnIndex, short x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateString(String columnLabel, String x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateString(int columnIndex, String x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateTime(String columnLabel, Time x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateTime(int columnIndex, Time x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateTimestamp(String columnLabel, Timestamp x)
+          throws SQLException {
+    throw readOnly();
+  }
+
+  @Override
+  public void updateTimestamp(int columnIndex, Timestamp x)
+          throws SQLException {
+    throw readOnly();
+  }
+}
@@ -0,0 +1,406 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.jdbc;
+
+import edu.hku.sdb.connect.Connection;
+
+import java.rmi.RemoteException;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+/**
+ * A JDBC connection over a connection to a proxy. The queries are executed
+ * one by one, so it is always in auto commit mode and read only.
+ */
+public class SdbJdbcConnection implements java.sql.Connection {
+
+  private final Connection connection;
+  private final String url;
+  private boolean closed = false;
+
+  public SdbJdbcConnection(Connection connection, String url) {
+    this.connection = connection;
+    this.url = url;
+  }
+
+  String getUrl() {
+    return url;
+  }
+
+  static SQLException toSQLException(RemoteException e) {
+    return new SQLException(e.getMessage(), e);
+  }
+
+  private void checkOpen() throws SQLException {
+    if (closed)
+      throw new SQLException("Connection is closed");
+  }
+
+  @Override
+  public Statement createStatement() throws SQLException {
+    checkOpen();
+    try {
+      return new SdbJdbcStatement(this, connection.createStatement());
+    } catch (RemoteException e) {
+      throw toSQLException(e);
+    }
+  }
+
+  @Override
+  public Statement createStatement(int resultSetType, int resultSetConcurrency)
+          throws SQLException {
+    checkResultSetType(resultSetType, resultSetConcurrency);
+    return createStatement();
+  }
+
+  @Override
+  public Statement createStatement(int resultSetType, int resultSetConcurrency,
+                                   int resultSetHoldability) throws
+          SQLException {
+    checkResultSetType(resultSetType, resultSetConcurrency);
+    return createStatement();
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql) throws SQLException {
+    checkOpen();
+    try {
+      return new SdbJdbcPreparedStatement(this, connection.prepareStatement
+              (sql));
+    } catch (RemoteException e) {
+      throw toSQLException(e);
+    }
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql, int resultSetType, int
+          resultSetConcurrency) throws SQLException {
+    checkResultSetType(resultSetType, resultSetConcurrency);
+    return prepareStatement(sql);
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql, int resultSetType, int
+          resultSetConcurrency, int resultSetHoldability) throws SQLException {
+    checkResultSetType(resultSetType, resultSetConcurrency);
+    return prepareStatement(sql);
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys)
+          throws SQLException {
+    throw new SQLFeatureNotSupportedException("Generated keys are not " +
+            "supported");
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql, int[] columnIndexes)
+          throws SQLException {
+    throw new SQLFeatureNotSupportedException("Generated keys are not " +
+            "supported");
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql, String[] columnNames)
+          throws SQLException {
+    throw new SQLFeatureNotSupportedException("Generated keys are not " +
+            "supported");
+  }
+
+  /**
+   * Only forward only and read only result sets are supported.
+   */
+  private void checkResultSetType(int resultSetType, int resultSetConcurrency)
+          throws SQLException {
+    if (resultSetType != ResultSet.TYPE_FORWARD_ONLY || resultSetConcurrency
+            != ResultSet.CONCUR_READ_ONLY)
+      throw new SQLFeatureNotSupportedException("Only forward only and read " +
+              "only result sets are supported");
+  }
+
+  @Override
+  public CallableStatement prepareCall(String sql) throws SQLException {
+    throw new SQLFeatureNotSupportedException("Stored procedures are not " +
+            "supported");
+  }
+
+  @Override
+  public CallableStatement prepareCall(String sql, int resultSetType, int
+          resultSetConcurrency) throws SQLException {
+    throw new SQLFeatureNotSupportedException("Stored procedures are not " +
+            "supported");
+  }
+
+  @Override
+  public CallableStatement prepareCall(String sql, int resultSetType, int
+          resultSetConcurrency, int resultSetHoldability) throws SQLException {
+    throw new SQLFeatureNotSupportedException("Stored procedures are not " +
+            "supported");
+  }
+
+  @Override
+  public String nativeSQL(String sql) {
+    return sql;
+  }
+
+  @Override
+  public void setAutoCommit(boolean autoCommit) throws SQLException {
+    if (!autoCommit)
+      throw new SQLFeatureNotSupportedException("Transactions are not " +
+              "supported");
+  }
+
+  @Override
+  public boolean getAutoCommit() {
+    return true;
+  }
+
+  @Override
+  public void commit() {
+    // Always in auto commit mode.
+  }
+
+  @Override
+  public void rollback() throws SQLException {
+    throw new SQLFeatureNotSupportedException("Transactions are not supported");
+  }
+
+  @Override
+  public void close() throws SQLException {
+    if (closed)
+      return;
+    closed = true;
+    try {
+      connection.close();
+    } catch (RemoteException e) {
+      throw toSQLException(e);
+    }
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed;
+  }
+
+  @Override
+  public DatabaseMetaData getMetaData() throws SQLException {
+    throw new SQLFeatureNotSupportedException("Database meta data is not " +
+            "supported");
+  }
+
+  @Override
+  public void setReadOnly(boolean readOnly) {
+    // Always read only.
+  }
+
+  @Override
+  public boolean isReadOnly() {
+    return true;
+  }
+
+  @Override
+  public void setCatalog(String catalog) {
+    // The database is chosen by the proxy.
+  }
+
+  @Override
+  public String getCatalog() {
+    return null;
+  }
+
+  @Override
+  public void setTransactionIsolation(int level) throws SQLException {
+    if (level != TRANSACTION_NONE)
+      throw new SQLFeatureNotSupportedException("Transactions are not " +
+              "supported");
+  }
+
+  @Override
+  public int getTransactionIsolation() {
+    return TRANSACTION_NONE;
+  }
+
+  @Override
+  public SQLWarning getWarnings() {
+    return null;
+  }
+
+  @Override
+  public void clearWarnings() {
+  }
+
+  @Override
+  public Map<String, Class<?>> getTypeMap() {
+    return Collections.emptyMap();
+  }
+
+  @Override
+  public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+    throw new SQLFeatureNotSupportedException("Type maps are not supported");
+  }
+
+  @Override
+  public void setHoldability(int holdability) throws SQLException {
+    if (holdability != ResultSet.CLOSE_CURSORS_AT_COMMIT)
+      throw new SQLFeatureNotSupportedException("Only closing cursors at " +
+              "commit is supported");
+  }
+
+  @Override
+  public int getHoldability() {
+    return ResultSet.CLOSE_CURSORS_AT_COMMIT;
+  }
+
+  @Override
+  public Savepoint setSavepoint() throws SQLException {
+    throw new SQLFeatureNotSupportedException("Transactions are not supported");
+  }
+
+  @Override
+  public Savepoint setSavepoint(String name) throws SQLException {
+    throw new SQLFeatureNotSupportedException("Transactions are not supported");
+  }
+
+  @Override
+  public void rollback(Savepoint savepoint) throws SQLException {
+    throw new SQLFeatureNotSupportedException("Transactions are not supported");
+  }
+
+  @Override
+  public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+    throw new SQLFeatureNotSupportedException("Transactions are not supported");
+  }
+
+  @Override
+  public Clob createClob() throws SQLException {
+    throw new SQLFeatureNotSupportedException("Clob is not supported");
+  }
+
+  @Override
+  public Blob createBlob() throws SQLException {
+    throw new SQLFeatureNotSupportedException("Blob is not supported");
+  }
+
+  @Override
+  public NClob createNClob() throws SQLException {
+    throw new SQLFeatureNotSupportedException("NClob is not supported");
+  }
+
+  @Override
+  public SQLXML createSQLXML() throws SQLException {
+    throw new SQLFeatureNotSupportedException("SQLXML is not supported");
+  }
+
+  @Override
+  public boolean isValid(int timeout) {
+    return !closed;
+  }
+
+  @Override
+  public void setClientInfo(String name, String value) throws
+          SQLClientInfoException {
+    throw new SQLClientInfoException();
+  }
+
+  @Override
+  public void setClientInfo(Properties properties) throws
+          SQLClientInfoException {
+    throw new SQLClientInfoException();
+  }
+
+  @Override
+  public String getClientInfo(String name) {
+    return null;
+  }
+
+  @Override
+  public Properties getClientInfo() {
+    return new Properties();
+  }
+
+  @Override
+  public Array createArrayOf(String typeName, Object[] elements) throws
+          SQLException {
+    throw new SQLFeatureNotSupportedException("Array is not supported");
+  }
+
+  @Override
+  public Struct createStruct(String typeName, Object[] attributes) throws
+          SQLException {
+    throw new SQLFeatureNotSupportedException("Struct is not supported");
+  }
+
+  @Override
+  public void setSchema(String schema) {
+    // The database is chosen by the proxy.
+  }
+
+  @Override
+  public String getSchema() {
+    return null;
+  }
+
+  @Override
+  public void abort(Executor executor) throws SQLException {
+    close();
+  }
+
+  @Override
+  public void setNetworkTimeout(Executor executor, int milliseconds) throws
+          SQLException {
+    throw new SQLFeatureNotSupportedException("Network timeout is not " +
+            "supported");
+  }
+
+  @Override
+  public int getNetworkTimeout() {
+    return 0;
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this))
+      return iface.cast(this);
+    if (iface.isInstance(connection))
+      return iface.cast(connection);
+    throw new SQLException("Not a wrapper of " + iface.getName());
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) {
+    return iface.isInstance(this) || iface.isInstance(connection);
+  }
+}
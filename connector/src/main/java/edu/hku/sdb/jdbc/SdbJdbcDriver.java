@@ -0,0 +1,116 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.jdbc;
+
+import edu.hku.sdb.connect.Connection;
+import edu.hku.sdb.connect.ConnectionManager;
+
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * The JDBC driver of SDB. The url is "jdbc:" followed by the url of the
+ * proxies given to {@link ConnectionManager}, e.g.
+ * "jdbc:sdb://host1:2020,sdb://host2:2020" for the framed protocol, or
+ * "jdbc:sdb:rmi://host:2019/ConnectionService" for RMI.
+ *
+ * Only queries are supported, and the rows are streamed from the proxy a
+ * fetch size at a time over the framed protocol.
+ */
+public class SdbJdbcDriver implements Driver {
+
+  public static final String URL_PREFIX = "jdbc:sdb:";
+
+  static final int MAJOR_VERSION = 0;
+  static final int MINOR_VERSION = 1;
+
+  static {
+    try {
+      DriverManager.registerDriver(new SdbJdbcDriver());
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * @param url
+   * @return the url of the proxies, null if the url is not of SDB
+   */
+  static String getProxyUrl(String url) {
+    if (url == null || !url.startsWith(URL_PREFIX))
+      return null;
+
+    String proxyUrl = url.substring(URL_PREFIX.length());
+    // jdbc:sdb://host:port is the framed protocol.
+    if (proxyUrl.startsWith("//"))
+      return url.substring("jdbc:".length());
+    return proxyUrl;
+  }
+
+  @Override
+  public java.sql.Connection connect(String url, Properties info) throws
+          SQLException {
+    String proxyUrl = getProxyUrl(url);
+    if (proxyUrl == null)
+      return null;
+
+    String user = info == null ? "" : info.getProperty("user", "");
+    String password = info == null ? "" : info.getProperty("password", "");
+
+    Connection connection = ConnectionManager.getConnection(proxyUrl, user,
+            password);
+    if (connection == null)
+      throw new SQLException("Can not connect to any proxy of " + url);
+    return new SdbJdbcConnection(connection, url);
+  }
+
+  @Override
+  public boolean acceptsURL(String url) {
+    return getProxyUrl(url) != null;
+  }
+
+  @Override
+  public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+    return new DriverPropertyInfo[0];
+  }
+
+  @Override
+  public int getMajorVersion() {
+    return MAJOR_VERSION;
+  }
+
+  @Override
+  public int getMinorVersion() {
+    return MINOR_VERSION;
+  }
+
+  @Override
+  public boolean jdbcCompliant() {
+    return false;
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException("java.util.logging is not used");
+  }
+}
@@ -0,0 +1,445 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.jdbc;
+
+import edu.hku.sdb.connect.PreparedStatement;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URL;
+import java.rmi.RemoteException;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * A JDBC prepared statement over a prepared statement of the proxy. The
+ * parameters are integers, doubles or strings, and can not be null.
+ */
+public class SdbJdbcPreparedStatement extends SdbJdbcStatement implements
+        java.sql.PreparedStatement {
+
+  private final PreparedStatement statement;
+
+  public SdbJdbcPreparedStatement(SdbJdbcConnection connection,
+                                  PreparedStatement statement) {
+    super(connection, statement);
+    this.statement = statement;
+  }
+
+  private static SQLFeatureNotSupportedException unsupported(String what) {
+    return new SQLFeatureNotSupportedException(what + " are not supported");
+  }
+
+  @Override
+  public ResultSet executeQuery() throws SQLException {
+    beforeExecute();
+    try {
+      return setResultSet(statement.executeQuery());
+    } catch (RemoteException e) {
+      throw SdbJdbcConnection.toSQLException(e);
+    }
+  }
+
+  @Override
+  public int executeUpdate() throws SQLException {
+    executeQuery().close();
+    return 0;
+  }
+
+  @Override
+  public boolean execute() throws SQLException {
+    executeQuery();
+    return true;
+  }
+
+  @Override
+  public ResultSet executeQuery(String sql) throws SQLException {
+    throw new SQLException("The query of a prepared statement can not be " +
+            "changed");
+  }
+
+  @Override
+  public int executeUpdate(String sql) throws SQLException {
+    throw new SQLException("The query of a prepared statement can not be " +
+            "changed");
+  }
+
+  @Override
+  public boolean execute(String sql) throws SQLException {
+    throw new SQLException("The query of a prepared statement can not be " +
+            "changed");
+  }
+
+  @Override
+  public void setInt(int parameterIndex, int x) throws SQLException {
+    checkOpen();
+    try {
+      statement.setInt(parameterIndex, x);
+    } catch (RemoteException e) {
+      throw SdbJdbcConnection.toSQLException(e);
+    }
+  }
+
+  @Override
+  public void setLong(int parameterIndex, long x) throws SQLException {
+    checkOpen();
+    try {
+      statement.setLong(parameterIndex, x);
+    } catch (RemoteException e) {
+      throw SdbJdbcConnection.toSQLException(e);
+    }
+  }
+
+  @Override
+  public void setDouble(int parameterIndex, double x) throws SQLException {
+    checkOpen();
+    try {
+      statement.setDouble(parameterIndex, x);
+    } catch (RemoteException e) {
+      throw SdbJdbcConnection.toSQLException(e);
+    }
+  }
+
+  @Override
+  public void setString(int parameterIndex, String x) throws SQLException {
+    checkOpen();
+    if (x == null)
+      throw unsupported("Null parameters");
+    try {
+      statement.setString(parameterIndex, x);
+    } catch (RemoteException e) {
+      throw SdbJdbcConnection.toSQLException(e);
+    }
+  }
+
+  @Override
+  public void setNString(int parameterIndex, String value) throws
+          SQLException {
+    setString(parameterIndex, value);
+  }
+
+  @Override
+  public void setShort(int parameterIndex, short x) throws SQLException {
+    setInt(parameterIndex, x);
+  }
+
+  @Override
+  public void setByte(int parameterIndex, byte x) throws SQLException {
+    setInt(parameterIndex, x);
+  }
+
+  @Override
+  public void setFloat(int parameterIndex, float x) throws SQLException {
+    setDouble(parameterIndex, x);
+  }
+
+  @Override
+  public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+    throw unsupported("Boolean parameters");
+  }
+
+  /**
+   * A decimal of no fraction is bound as an integer, otherwise as a double.
+   */
+  @Override
+  public void setBigDecimal(int parameterIndex, BigDecimal x) throws
+          SQLException {
+    if (x == null)
+      throw unsupported("Null parameters");
+
+    try {
+      setLong(parameterIndex, x.longValueExact());
+    } catch (ArithmeticException e) {
+      setDouble(parameterIndex, x.doubleValue());
+    }
+  }
+
+  @Override
+  public void setObject(int parameterIndex, Object x) throws SQLException {
+    if (x == null)
+      throw unsupported("Null parameters");
+
+    if (x instanceof String)
+      setString(parameterIndex, (String) x);
+    else if (x instanceof Integer || x instanceof Short || x instanceof Byte)
+      setInt(parameterIndex, ((Number) x).intValue());
+    else if (x instanceof Long)
+      setLong(parameterIndex, (Long) x);
+    else if (x instanceof Double || x instanceof Float)
+      setDouble(parameterIndex, ((Number) x).doubleValue());
+    else if (x instanceof BigDecimal)
+      setBigDecimal(parameterIndex, (BigDecimal) x);
+    else if (x instanceof BigInteger)
+      setBigDecimal(parameterIndex, new BigDecimal((BigInteger) x));
+    else
+      throw unsupported(x.getClass().getSimpleName() + " parameters");
+  }
+
+  @Override
+  public void setObject(int parameterIndex, Object x, int targetSqlType)
+          throws SQLException {
+    setObject(parameterIndex, x);
+  }
+
+  @Override
+  public void setObject(int parameterIndex, Object x, int targetSqlType, int
+          scaleOrLength) throws SQLException {
+    setObject(parameterIndex, x);
+  }
+
+  @Override
+  public void clearParameters() throws SQLException {
+    checkOpen();
+    try {
+      statement.clearParameters();
+    } catch (RemoteException e) {
+      throw SdbJdbcConnection.toSQLException(e);
+    }
+  }
+
+  /**
+   * @return null, the columns are known once the query is executed
+   */
+  @Override
+  public ResultSetMetaData getMetaData() {
+    return null;
+  }
+
+  @Override
+  public ParameterMetaData getParameterMetaData() throws SQLException {
+    throw unsupported("Parameter meta data");
+  }
+
+  @Override
+  public void addBatch() throws SQLException {
+    throw unsupported("Batches");
+  }
+
+  @Override
+  public void setNull(int parameterIndex, int sqlType) throws SQLException {
+    throw unsupported("Null parameters");
+  }
+
+  @Override
+  public void setNull(int parameterIndex, int sqlType, String typeName)
+          throws SQLException {
+    throw unsupported("Null parameters");
+  }
+
+  @Override
+  public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+    throw unsupported("Binary parameters");
+  }
+
+  @Override
+  public void setDate(int parameterIndex, Date x) throws SQLException {
+    throw unsupported("Date parameters");
+  }
+
+  @Override
+  public void setDate(int parameterIndex, Date x, Calendar cal)
+          throws SQLException {
+    throw unsupported("Date parameters");
+  }
+
+  @Override
+  public void setTime(int parameterIndex, Time x) throws SQLException {
+    throw unsupported("Time parameters");
+  }
+
+  @Override
+  public void setTime(int parameterIndex, Time x, Calendar cal)
+          throws SQLException {
+    throw unsupported("Time parameters");
+  }
+
+  @Override
+  public void setTimestamp(int parameterIndex, Timestamp x)
+          throws SQLException {
+    throw unsupported("Timestamp parameters");
+  }
+
+  @Override
+  public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal)
+          throws SQLException {
+    throw unsupported("Timestamp parameters");
+  }
+
+  @Override
+  public void setAsciiStream(int parameterIndex, InputStream x)
+          throws SQLException {
+    throw unsupported("Stream parameters");
+  }
+
+  @Override
+  public void setAsciiStream(int parameterIndex, InputStream x, int length)
+          throws SQLException {
+    throw unsupported("Stream parameters");
+  }
+
+  @Override
+  public void setAsciiStream(int parameterIndex, InputStream x, long length)
+          throws SQLException {
+    throw unsupported("Stream parameters");
+  }
+
+  @Override
+  public void setUnicodeStream(int parameterIndex, InputStream x, int length)
+          throws SQLException {
+    throw unsupported("Stream parameters");
+  }
+
+  @Override
+  public void setBinaryStream(int parameterIndex, InputStream x)
+          throws SQLException {
+    throw unsupported("Stream parameters");
+  }
+
+  @Override
+  public void setBinaryStream(int parameterIndex, InputStream x, int length)
+          throws SQLException {
+    throw unsupported("Stream parameters");
+  }
+
+  @Override
+  public void setBinaryStream(int parameterIndex, InputStream x, long length)
+          throws SQLException {
+    throw unsupported("Stream parameters");
+  }
+
+  @Override
+  public void setCharacterStream(int parameterIndex, Reader reader)
+          throws SQLException {
+    throw unsupported("Stream parameters");
+  }
+
+  @Override
+  public void setCharacterStream(int parameterIndex, Reader reader, int length)
+          throws SQLException {
+    throw unsupported("Stream parameters");
+  }
+
+  @Override
+  public void setCharacterStream(int parameterIndex, Reader reader, long length)
+          throws SQLException {
+    throw unsupported("Stream parameters");
+  }
+
+  @Override
+  public void setNCharacterStream(int parameterIndex, Reader value)
+          throws SQLException {
+    throw unsupported("Stream parameters");
+  }
+
+  @Override
+  public void setNCharacterStream(int parameterIndex, Reader value, long length)
+          throws SQLException {
+    throw unsupported("Stream parameters");
+  }
+
+  @Override
+  public void setRef(int parameterIndex, Ref x) throws SQLException {
+    throw unsupported("Ref parameters");
+  }
+
+  @Override
+  public void setBlob(int parameterIndex, Blob x) throws SQLException {
+    throw unsupported("Blob parameters");
+  }
+
+  @Override
+  public void setBlob(int parameterIndex, InputStream inputStream)
+          throws SQLException {
+    throw unsupported("Blob parameters");
+  }
+
+  @Override
+  public void setBlob(int parameterIndex, InputStream inputStream, long length)
+          throws SQLException {
+    throw unsupported("Blob parameters");
+  }
+
+  @Override
+  public void setClob(int parameterIndex, Clob x) throws SQLException {
+    throw unsupported("Clob parameters");
+  }
+
+  @Override
+  public void setClob(int parameterIndex, Reader reader) throws SQLException {
+    throw unsupported("Clob parameters");
+  }
+
+  @Override
+  public void setClob(int parameterIndex, Reader reader, long length)
+          throws SQLException {
+    throw unsupported("Clob parameters");
+  }
+
+  @Override
+  public void setNClob(int parameterIndex, NClob value) throws SQLException {
+    throw unsupported("NClob parameters");
+  }
+
+  @Override
+  public void setNClob(int parameterIndex, Reader reader) throws SQLException {
+    throw unsupported("NClob parameters");
+  }
+
+  @Override
+  public void setNClob(int parameterIndex, Reader reader, long length)
+          throws SQLException {
+    throw unsupported("NClob parameters");
+  }
+
+  @Override
+  public void setArray(int parameterIndex, Array x) throws SQLException {
+    throw unsupported("Array parameters");
+  }
+
+  @Override
+  public void setURL(int parameterIndex, URL x) throws SQLException {
+    throw unsupported("URL parameters");
+  }
+
+  @Override
+  public void setRowId(int parameterIndex, RowId x) throws SQLException {
+    throw unsupported("RowId parameters");
+  }
+
+  @Override
+  public void setSQLXML(int parameterIndex, SQLXML xmlObject)
+          throws SQLException {
+    throw unsupported("SQLXML parameters");
+  }
+}
@@ -0,0 +1,452 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.jdbc;
+
+import edu.hku.sdb.connect.ResultSet;
+import edu.hku.sdb.transport.NioResultSet;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.rmi.RemoteException;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+
+/**
+ * A JDBC result set over the result of a query. The rows are streamed: over
+ * the framed protocol only a page of the fetch size is kept, and the numbers
+ * are read from it without boxing. Over RMI each row is got from the proxy.
+ *
+ * The column index starts from 1, while it starts from 0 in the connector.
+ */
+public class SdbJdbcResultSet extends SdbJdbcBaseResultSet {
+
+  private final SdbJdbcStatement statement;
+  private final ResultSet resultSet;
+  // Set if the result is got over the framed protocol.
+  private final NioResultSet nioResultSet;
+  private final int maxRows;
+
+  private SdbJdbcResultSetMetaData metaData;
+  private int row = 0;
+  private boolean wasNull = false;
+  private boolean closed = false;
+
+  public SdbJdbcResultSet(SdbJdbcStatement statement, ResultSet resultSet, int
+          maxRows) {
+    this.statement = statement;
+    this.resultSet = resultSet;
+    this.nioResultSet = resultSet instanceof NioResultSet ? (NioResultSet)
+            resultSet : null;
+    this.maxRows = maxRows;
+  }
+
+  private void checkOpen() throws SQLException {
+    if (closed)
+      throw new SQLException("Result set is closed");
+  }
+
+  private void checkRow() throws SQLException {
+    checkOpen();
+    if (row == 0)
+      throw new SQLException("No current row, call next() first");
+  }
+
+  @Override
+  public boolean next() throws SQLException {
+    checkOpen();
+    if (maxRows > 0 && row >= maxRows)
+      return false;
+
+    try {
+      if (!resultSet.next())
+        return false;
+    } catch (RemoteException e) {
+      throw SdbJdbcConnection.toSQLException(e);
+    }
+    row++;
+    return true;
+  }
+
+  @Override
+  public void close() throws SQLException {
+    if (closed)
+      return;
+    closed = true;
+    try {
+      resultSet.close();
+    } catch (RemoteException e) {
+      throw SdbJdbcConnection.toSQLException(e);
+    }
+    statement.resultSetClosed(this);
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed;
+  }
+
+  @Override
+  public boolean wasNull() {
+    return wasNull;
+  }
+
+  @Override
+  public String getString(int columnIndex) throws SQLException {
+    checkRow();
+    try {
+      String value = resultSet.getString(columnIndex - 1);
+      wasNull = value == null;
+      return value;
+    } catch (RemoteException e) {
+      throw SdbJdbcConnection.toSQLException(e);
+    }
+  }
+
+  @Override
+  public long getLong(int columnIndex) throws SQLException {
+    checkRow();
+    if (nioResultSet != null) {
+      wasNull = nioResultSet.isNull(columnIndex - 1);
+      try {
+        return nioResultSet.getLongValue(columnIndex - 1);
+      } catch (NumberFormatException e) {
+        throw new SQLException("Column " + columnIndex + " is not an integer",
+                e);
+      } catch (ArithmeticException e) {
+        throw new SQLException("Column " + columnIndex + " value out of range",
+                e);
+      }
+    }
+
+    String value = getString(columnIndex);
+    if (value == null)
+      return 0;
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      throw new SQLException("Column " + columnIndex + " is not an integer", e);
+    }
+  }
+
+  @Override
+  public double getDouble(int columnIndex) throws SQLException {
+    checkRow();
+    if (nioResultSet != null) {
+      wasNull = nioResultSet.isNull(columnIndex - 1);
+      try {
+        return nioResultSet.getDoubleValue(columnIndex - 1);
+      } catch (NumberFormatException e) {
+        throw new SQLException("Column " + columnIndex + " is not a number", e);
+      }
+    }
+
+    String value = getString(columnIndex);
+    if (value == null)
+      return 0;
+    try {
+      return Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      throw new SQLException("Column " + columnIndex + " is not a number", e);
+    }
+  }
+
+  @Override
+  public int getInt(int columnIndex) throws SQLException {
+    return (int) getLong(columnIndex, Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public short getShort(int columnIndex) throws SQLException {
+    return (short) getLong(columnIndex, Short.MIN_VALUE, Short.MAX_VALUE);
+  }
+
+  @Override
+  public byte getByte(int columnIndex) throws SQLException {
+    return (byte) getLong(columnIndex, Byte.MIN_VALUE, Byte.MAX_VALUE);
+  }
+
+  /**
+   * @param columnIndex
+   * @param min
+   * @param max
+   * @return the integer at the column, which must be between min and max
+   * @throws SQLException
+   */
+  private long getLong(int columnIndex, long min, long max) throws
+          SQLException {
+    long value = getLong(columnIndex);
+    if (value < min || value > max)
+      throw new SQLException("Column " + columnIndex + " value out of range: " +
+              value);
+    return value;
+  }
+
+  @Override
+  public float getFloat(int columnIndex) throws SQLException {
+    return (float) getDouble(columnIndex);
+  }
+
+  @Override
+  public boolean getBoolean(int columnIndex) throws SQLException {
+    String value = getString(columnIndex);
+    if (value == null)
+      return false;
+    value = value.trim();
+    if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false"))
+      return Boolean.parseBoolean(value);
+    return getDouble(columnIndex) != 0;
+  }
+
+  @Override
+  public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+    String value = getString(columnIndex);
+    if (value == null)
+      return null;
+    try {
+      return new BigDecimal(value.trim());
+    } catch (NumberFormatException e) {
+      throw new SQLException("Column " + columnIndex + " is not a number", e);
+    }
+  }
+
+  @Override
+  @Deprecated
+  public BigDecimal getBigDecimal(int columnIndex, int scale) throws
+          SQLException {
+    BigDecimal value = getBigDecimal(columnIndex);
+    return value == null ? null : value.setScale(scale, RoundingMode.HALF_UP);
+  }
+
+  @Override
+  public String getNString(int columnIndex) throws SQLException {
+    return getString(columnIndex);
+  }
+
+  @Override
+  public Object getObject(int columnIndex) throws SQLException {
+    if (nioResultSet == null)
+      return getString(columnIndex);
+
+    checkRow();
+    Object value = nioResultSet.getObject(columnIndex - 1);
+    wasNull = value == null;
+    return value;
+  }
+
+  @Override
+  public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+    Object value;
+    if (type == String.class)
+      value = getString(columnIndex);
+    else if (type == Long.class)
+      value = getLong(columnIndex);
+    else if (type == Integer.class)
+      value = getInt(columnIndex);
+    else if (type == Short.class)
+      value = getShort(columnIndex);
+    else if (type == Byte.class)
+      value = getByte(columnIndex);
+    else if (type == Double.class)
+      value = getDouble(columnIndex);
+    else if (type == Float.class)
+      value = getFloat(columnIndex);
+    else if (type == Boolean.class)
+      value = getBoolean(columnIndex);
+    else if (type == BigDecimal.class)
+      value = getBigDecimal(columnIndex);
+    else if (type == Object.class)
+      value = getObject(columnIndex);
+    else
+      throw new SQLException("Can not convert to " + type.getName());
+
+    return wasNull ? null : type.cast(value);
+  }
+
+  @Override
+  public String getString(String columnLabel) throws SQLException {
+    return getString(findColumn(columnLabel));
+  }
+
+  @Override
+  public String getNString(String columnLabel) throws SQLException {
+    return getString(findColumn(columnLabel));
+  }
+
+  @Override
+  public boolean getBoolean(String columnLabel) throws SQLException {
+    return getBoolean(findColumn(columnLabel));
+  }
+
+  @Override
+  public byte getByte(String columnLabel) throws SQLException {
+    return getByte(findColumn(columnLabel));
+  }
+
+  @Override
+  public short getShort(String columnLabel) throws SQLException {
+    return getShort(findColumn(columnLabel));
+  }
+
+  @Override
+  public int getInt(String columnLabel) throws SQLException {
+    return getInt(findColumn(columnLabel));
+  }
+
+  @Override
+  public long getLong(String columnLabel) throws SQLException {
+    return getLong(findColumn(columnLabel));
+  }
+
+  @Override
+  public float getFloat(String columnLabel) throws SQLException {
+    return getFloat(findColumn(columnLabel));
+  }
+
+  @Override
+  public double getDouble(String columnLabel) throws SQLException {
+    return getDouble(findColumn(columnLabel));
+  }
+
+  @Override
+  public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+    return getBigDecimal(findColumn(columnLabel));
+  }
+
+  @Override
+  @Deprecated
+  public BigDecimal getBigDecimal(String columnLabel, int scale) throws
+          SQLException {
+    return getBigDecimal(findColumn(columnLabel), scale);
+  }
+
+  @Override
+  public Object getObject(String columnLabel) throws SQLException {
+    return getObject(findColumn(columnLabel));
+  }
+
+  @Override
+  public <T> T getObject(String columnLabel, Class<T> type) throws
+          SQLException {
+    return getObject(findColumn(columnLabel), type);
+  }
+
+  @Override
+  public int findColumn(String columnLabel) throws SQLException {
+    SdbJdbcResultSetMetaData metaData = (SdbJdbcResultSetMetaData)
+            getMetaData();
+    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+      if (metaData.getColumnLabel(i).equalsIgnoreCase(columnLabel))
+        return i;
+    }
+    throw new SQLException("No column " + columnLabel);
+  }
+
+  @Override
+  public ResultSetMetaData getMetaData() throws SQLException {
+    checkOpen();
+    if (metaData == null) {
+      try {
+        metaData = new SdbJdbcResultSetMetaData(resultSet
+                .getResultSetMetaData());
+      } catch (RemoteException e) {
+        throw SdbJdbcConnection.toSQLException(e);
+      }
+    }
+    return metaData;
+  }
+
+  @Override
+  public Statement getStatement() {
+    return statement;
+  }
+
+  @Override
+  public int getRow() {
+    return row;
+  }
+
+  @Override
+  public int getType() {
+    return TYPE_FORWARD_ONLY;
+  }
+
+  @Override
+  public int getConcurrency() {
+    return CONCUR_READ_ONLY;
+  }
+
+  @Override
+  public int getHoldability() {
+    return CLOSE_CURSORS_AT_COMMIT;
+  }
+
+  @Override
+  public int getFetchDirection() {
+    return FETCH_FORWARD;
+  }
+
+  @Override
+  public void setFetchDirection(int direction) throws SQLException {
+    if (direction != FETCH_FORWARD)
+      throw forwardOnly();
+  }
+
+  /**
+   * Over the framed protocol, the next pages are fetched with the given
+   * number of rows. It is a hint only over RMI.
+   *
+   * @param rows
+   */
+  @Override
+  public void setFetchSize(int rows) throws SQLException {
+    if (rows < 0)
+      throw new SQLException("Fetch size must not be negative");
+    if (nioResultSet != null)
+      nioResultSet.setFetchSize(rows);
+  }
+
+  @Override
+  public int getFetchSize() {
+    return nioResultSet == null ? 0 : nioResultSet.getFetchSize();
+  }
+
+  @Override
+  public SQLWarning getWarnings() {
+    return null;
+  }
+
+  @Override
+  public void clearWarnings() {
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this))
+      return iface.cast(this);
+    if (iface.isInstance(resultSet))
+      return iface.cast(resultSet);
+    throw new SQLException("Not a wrapper of " + iface.getName());
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) {
+    return iface.isInstance(this) || iface.isInstance(resultSet);
+  }
+}
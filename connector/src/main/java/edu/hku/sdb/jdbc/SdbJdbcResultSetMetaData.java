@@ -0,0 +1,214 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.jdbc;
+
+import edu.hku.sdb.connect.ResultSetMetaData;
+import edu.hku.sdb.transport.NioResultSet;
+
+import java.rmi.RemoteException;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * The JDBC meta data of a result. The names are read once. Over the framed
+ * protocol the types are guessed from the first page, otherwise all columns
+ * are strings.
+ */
+public class SdbJdbcResultSetMetaData implements java.sql.ResultSetMetaData {
+
+  private final String[] names;
+  private final int[] types;
+
+  public SdbJdbcResultSetMetaData(ResultSetMetaData metaData) throws
+          RemoteException {
+    int columnCount = metaData == null ? 0 : metaData.getColumnCount();
+    names = new String[columnCount];
+    types = new int[columnCount];
+
+    for (int i = 0; i < columnCount; i++) {
+      names[i] = metaData.getColumnName(i);
+      if (metaData instanceof NioResultSet.MetaData)
+        types[i] = ((NioResultSet.MetaData) metaData).getColumnType(i);
+      else
+        types[i] = Types.VARCHAR;
+    }
+  }
+
+  private void checkColumn(int column) throws SQLException {
+    if (column < 1 || column > names.length)
+      throw new SQLException("Column index " + column + " is out of range");
+  }
+
+  @Override
+  public int getColumnCount() {
+    return names.length;
+  }
+
+  @Override
+  public String getColumnName(int column) throws SQLException {
+    checkColumn(column);
+    return names[column - 1];
+  }
+
+  @Override
+  public String getColumnLabel(int column) throws SQLException {
+    return getColumnName(column);
+  }
+
+  @Override
+  public int getColumnType(int column) throws SQLException {
+    checkColumn(column);
+    return types[column - 1];
+  }
+
+  @Override
+  public String getColumnTypeName(int column) throws SQLException {
+    switch (getColumnType(column)) {
+      case Types.BIGINT:
+        return "BIGINT";
+      case Types.DOUBLE:
+        return "DOUBLE";
+      default:
+        return "STRING";
+    }
+  }
+
+  @Override
+  public String getColumnClassName(int column) throws SQLException {
+    switch (getColumnType(column)) {
+      case Types.BIGINT:
+        return Long.class.getName();
+      case Types.DOUBLE:
+        return Double.class.getName();
+      default:
+        return String.class.getName();
+    }
+  }
+
+  @Override
+  public int getColumnDisplaySize(int column) throws SQLException {
+    switch (getColumnType(column)) {
+      case Types.BIGINT:
+        return 20;
+      case Types.DOUBLE:
+        return 24;
+      default:
+        return Integer.MAX_VALUE;
+    }
+  }
+
+  @Override
+  public int getPrecision(int column) throws SQLException {
+    switch (getColumnType(column)) {
+      case Types.BIGINT:
+        return 19;
+      case Types.DOUBLE:
+        return 15;
+      default:
+        return 0;
+    }
+  }
+
+  @Override
+  public int getScale(int column) throws SQLException {
+    checkColumn(column);
+    return 0;
+  }
+
+  @Override
+  public boolean isSigned(int column) throws SQLException {
+    return getColumnType(column) != Types.VARCHAR;
+  }
+
+  @Override
+  public boolean isAutoIncrement(int column) throws SQLException {
+    checkColumn(column);
+    return false;
+  }
+
+  @Override
+  public boolean isCaseSensitive(int column) throws SQLException {
+    return getColumnType(column) == Types.VARCHAR;
+  }
+
+  @Override
+  public boolean isSearchable(int column) throws SQLException {
+    checkColumn(column);
+    return true;
+  }
+
+  @Override
+  public boolean isCurrency(int column) throws SQLException {
+    checkColumn(column);
+    return false;
+  }
+
+  @Override
+  public int isNullable(int column) throws SQLException {
+    checkColumn(column);
+    return columnNullableUnknown;
+  }
+
+  @Override
+  public boolean isReadOnly(int column) throws SQLException {
+    checkColumn(column);
+    return true;
+  }
+
+  @Override
+  public boolean isWritable(int column) throws SQLException {
+    checkColumn(column);
+    return false;
+  }
+
+  @Override
+  public boolean isDefinitelyWritable(int column) throws SQLException {
+    checkColumn(column);
+    return false;
+  }
+
+  @Override
+  public String getSchemaName(int column) throws SQLException {
+    checkColumn(column);
+    return "";
+  }
+
+  @Override
+  public String getTableName(int column) throws SQLException {
+    checkColumn(column);
+    return "";
+  }
+
+  @Override
+  public String getCatalogName(int column) throws SQLException {
+    checkColumn(column);
+    return "";
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this))
+      return iface.cast(this);
+    throw new SQLException("Not a wrapper of " + iface.getName());
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) {
+    return iface.isInstance(this);
+  }
+}
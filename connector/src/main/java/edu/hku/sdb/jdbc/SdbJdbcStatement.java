@@ -0,0 +1,368 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.jdbc;
+
+import edu.hku.sdb.connect.Statement;
+import edu.hku.sdb.transport.NioStatement;
+
+import java.rmi.RemoteException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLWarning;
+
+/**
+ * A JDBC statement over a statement of the proxy. It has at most one open
+ * result set, which is closed when the next query is executed.
+ */
+public class SdbJdbcStatement implements java.sql.Statement {
+
+  protected final SdbJdbcConnection connection;
+  private final Statement statement;
+
+  private SdbJdbcResultSet resultSet;
+  private int fetchSize = 0;
+  private int maxRows = 0;
+  private int queryTimeout = 0;
+  private boolean closeOnCompletion = false;
+  private boolean closed = false;
+
+  public SdbJdbcStatement(SdbJdbcConnection connection, Statement statement) {
+    this.connection = connection;
+    this.statement = statement;
+  }
+
+  protected void checkOpen() throws SQLException {
+    if (closed)
+      throw new SQLException("Statement is closed");
+  }
+
+  /**
+   * Close the last result set and pass the fetch size to the proxy statement.
+   *
+   * @throws SQLException
+   */
+  protected void beforeExecute() throws SQLException {
+    checkOpen();
+    if (resultSet != null)
+      resultSet.close();
+
+    if (statement instanceof NioStatement)
+      ((NioStatement) statement).setFetchSize(fetchSize);
+  }
+
+  protected ResultSet setResultSet(edu.hku.sdb.connect.ResultSet result) {
+    resultSet = new SdbJdbcResultSet(this, result, maxRows);
+    return resultSet;
+  }
+
+  void resultSetClosed(SdbJdbcResultSet closedResultSet) throws SQLException {
+    if (resultSet != closedResultSet)
+      return;
+    resultSet = null;
+    if (closeOnCompletion)
+      close();
+  }
+
+  @Override
+  public ResultSet executeQuery(String sql) throws SQLException {
+    beforeExecute();
+    try {
+      return setResultSet(statement.executeQuery(sql));
+    } catch (RemoteException e) {
+      throw SdbJdbcConnection.toSQLException(e);
+    }
+  }
+
+  /**
+   * Statements like create table are executed as queries of no result.
+   *
+   * @param sql
+   * @return 0
+   * @throws SQLException
+   */
+  @Override
+  public int executeUpdate(String sql) throws SQLException {
+    executeQuery(sql).close();
+    return 0;
+  }
+
+  @Override
+  public boolean execute(String sql) throws SQLException {
+    executeQuery(sql);
+    return true;
+  }
+
+  @Override
+  public ResultSet getResultSet() {
+    return resultSet;
+  }
+
+  @Override
+  public int getUpdateCount() {
+    return -1;
+  }
+
+  @Override
+  public boolean getMoreResults() throws SQLException {
+    if (resultSet != null)
+      resultSet.close();
+    return false;
+  }
+
+  @Override
+  public boolean getMoreResults(int current) throws SQLException {
+    return getMoreResults();
+  }
+
+  @Override
+  public void close() throws SQLException {
+    if (closed)
+      return;
+
+    if (resultSet != null) {
+      SdbJdbcResultSet last = resultSet;
+      resultSet = null;
+      last.close();
+    }
+    closed = true;
+    try {
+      statement.close();
+    } catch (RemoteException e) {
+      throw SdbJdbcConnection.toSQLException(e);
+    }
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed;
+  }
+
+  @Override
+  public void cancel() throws SQLException {
+    checkOpen();
+    try {
+      statement.cancel();
+    } catch (RemoteException e) {
+      throw SdbJdbcConnection.toSQLException(e);
+    }
+  }
+
+  /**
+   * Over the framed protocol, the rows are fetched from the proxy this many
+   * at a time. 0 is the default of the proxy.
+   *
+   * @param rows
+   * @throws SQLException
+   */
+  @Override
+  public void setFetchSize(int rows) throws SQLException {
+    if (rows < 0)
+      throw new SQLException("Fetch size must not be negative");
+    fetchSize = rows;
+  }
+
+  @Override
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  @Override
+  public void setMaxRows(int max) throws SQLException {
+    if (max < 0)
+      throw new SQLException("Max rows must not be negative");
+    maxRows = max;
+  }
+
+  @Override
+  public int getMaxRows() {
+    return maxRows;
+  }
+
+  /**
+   * The timeout is kept but not enforced, use {@link #cancel()} instead.
+   */
+  @Override
+  public void setQueryTimeout(int seconds) throws SQLException {
+    if (seconds < 0)
+      throw new SQLException("Query timeout must not be negative");
+    queryTimeout = seconds;
+  }
+
+  @Override
+  public int getQueryTimeout() {
+    return queryTimeout;
+  }
+
+  @Override
+  public void setFetchDirection(int direction) throws SQLException {
+    if (direction != ResultSet.FETCH_FORWARD)
+      throw SdbJdbcBaseResultSet.forwardOnly();
+  }
+
+  @Override
+  public int getFetchDirection() {
+    return ResultSet.FETCH_FORWARD;
+  }
+
+  @Override
+  public int getResultSetConcurrency() {
+    return ResultSet.CONCUR_READ_ONLY;
+  }
+
+  @Override
+  public int getResultSetType() {
+    return ResultSet.TYPE_FORWARD_ONLY;
+  }
+
+  @Override
+  public int getResultSetHoldability() {
+    return ResultSet.CLOSE_CURSORS_AT_COMMIT;
+  }
+
+  @Override
+  public Connection getConnection() {
+    return connection;
+  }
+
+  @Override
+  public void closeOnCompletion() {
+    closeOnCompletion = true;
+  }
+
+  @Override
+  public boolean isCloseOnCompletion() {
+    return closeOnCompletion;
+  }
+
+  @Override
+  public void setMaxFieldSize(int max) {
+    // The values are not truncated.
+  }
+
+  @Override
+  public int getMaxFieldSize() {
+    return 0;
+  }
+
+  @Override
+  public void setEscapeProcessing(boolean enable) {
+    // The query is sent as it is.
+  }
+
+  @Override
+  public void setCursorName(String name) throws SQLException {
+    throw new SQLFeatureNotSupportedException("Named cursors are not " +
+            "supported");
+  }
+
+  @Override
+  public void setPoolable(boolean poolable) {
+  }
+
+  @Override
+  public boolean isPoolable() {
+    return false;
+  }
+
+  @Override
+  public SQLWarning getWarnings() {
+    return null;
+  }
+
+  @Override
+  public void clearWarnings() {
+  }
+
+  @Override
+  public void addBatch(String sql) throws SQLException {
+    throw new SQLFeatureNotSupportedException("Batches are not supported");
+  }
+
+  @Override
+  public void clearBatch() throws SQLException {
+    throw new SQLFeatureNotSupportedException("Batches are not supported");
+  }
+
+  @Override
+  public int[] executeBatch() throws SQLException {
+    throw new SQLFeatureNotSupportedException("Batches are not supported");
+  }
+
+  @Override
+  public ResultSet getGeneratedKeys() throws SQLException {
+    throw new SQLFeatureNotSupportedException("Generated keys are not " +
+            "supported");
+  }
+
+  @Override
+  public int executeUpdate(String sql, int autoGeneratedKeys) throws
+          SQLException {
+    throw new SQLFeatureNotSupportedException("Generated keys are not " +
+            "supported");
+  }
+
+  @Override
+  public int executeUpdate(String sql, int[] columnIndexes) throws
+          SQLException {
+    throw new SQLFeatureNotSupportedException("Generated keys are not " +
+            "supported");
+  }
+
+  @Override
+  public int executeUpdate(String sql, String[] columnNames) throws
+          SQLException {
+    throw new SQLFeatureNotSupportedException("Generated keys are not " +
+            "supported");
+  }
+
+  @Override
+  public boolean execute(String sql, int autoGeneratedKeys) throws
+          SQLException {
+    throw new SQLFeatureNotSupportedException("Generated keys are not " +
+            "supported");
+  }
+
+  @Override
+  public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+    throw new SQLFeatureNotSupportedException("Generated keys are not " +
+            "supported");
+  }
+
+  @Override
+  public boolean execute(String sql, String[] columnNames) throws
+          SQLException {
+    throw new SQLFeatureNotSupportedException("Generated keys are not " +
+            "supported");
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this))
+      return iface.cast(this);
+    if (iface.isInstance(statement))
+      return iface.cast(statement);
+    throw new SQLException("Not a wrapper of " + iface.getName());
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) {
+    return iface.isInstance(this) || iface.isInstance(statement);
+  }
+}
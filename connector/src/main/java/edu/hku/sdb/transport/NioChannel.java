@@ -0,0 +1,133 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+
+/**
+ * The client side of a connection to the proxy. The calls of a connection
+ * are serialized, except cancel which is written while a call is waiting.
+ */
+public class NioChannel implements Closeable {
+
+  private final SocketChannel channel;
+  private final Object callLock = new Object();
+  private final Object writeLock = new Object();
+  private final ByteBuffer header = ByteBuffer.allocate(4);
+
+  public NioChannel(String host, int port) throws RemoteException {
+    try {
+      channel = SocketChannel.open(new InetSocketAddress(host, port));
+      channel.socket().setTcpNoDelay(true);
+    } catch (IOException e) {
+      throw new RemoteException("Can not connect to " + host + ":" + port, e);
+    }
+  }
+
+  /**
+   * Send a request and wait for its response.
+   *
+   * @param op
+   * @param payload
+   * @return the result in the response
+   * @throws RemoteException if the request fails
+   */
+  public DataInputStream call(byte op, byte[] payload) throws RemoteException {
+    synchronized (callLock) {
+      try {
+        write(op, payload);
+        return read();
+      } catch (RemoteException e) {
+        throw e;
+      } catch (IOException e) {
+        throw new RemoteException("Request " + op + " failed", e);
+      }
+    }
+  }
+
+  /**
+   * Send a request without waiting for a response.
+   *
+   * @param op
+   * @param payload
+   * @throws RemoteException
+   */
+  public void send(byte op, byte[] payload) throws RemoteException {
+    try {
+      write(op, payload);
+    } catch (IOException e) {
+      throw new RemoteException("Request " + op + " failed", e);
+    }
+  }
+
+  private void write(byte op, byte[] payload) throws IOException {
+    ByteBuffer frame = Protocol.frame(op, payload);
+    synchronized (writeLock) {
+      while (frame.hasRemaining()) {
+        channel.write(frame);
+      }
+    }
+  }
+
+  private DataInputStream read() throws IOException {
+    header.clear();
+    readFully(header);
+    header.flip();
+    int length = header.getInt();
+    Protocol.checkLength(length);
+
+    ByteBuffer frame = ByteBuffer.allocate(length);
+    readFully(frame);
+    frame.flip();
+
+    byte status = frame.get();
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame
+            .array(), 1, length - 1));
+    if (status == Protocol.ERROR)
+      throw new RemoteException(Protocol.readString(in));
+    return in;
+  }
+
+  private void readFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0)
+        throw new EOFException("Connection is closed by the proxy");
+    }
+  }
+
+  public boolean isOpen() {
+    return channel.isOpen();
+  }
+
+  @Override
+  public void close() {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+}
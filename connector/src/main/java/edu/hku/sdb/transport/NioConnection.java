@@ -0,0 +1,88 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.transport;
+
+import edu.hku.sdb.connect.Connection;
+import edu.hku.sdb.connect.PreparedStatement;
+import edu.hku.sdb.connect.Statement;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+
+/**
+ * A session with the proxy over the framed protocol.
+ */
+public class NioConnection implements Connection {
+
+  private final NioChannel channel;
+  private final long sessionId;
+
+  public NioConnection(NioChannel channel, long sessionId) {
+    this.channel = channel;
+    this.sessionId = sessionId;
+  }
+
+  @Override
+  public Statement createStatement() throws RemoteException {
+    try {
+      Protocol.Payload payload = new Protocol.Payload();
+      payload.writeLong(sessionId);
+      long statementId = channel.call(Protocol.CREATE_STATEMENT, payload
+              .toByteArray()).readLong();
+      return new NioStatement(channel, statementId);
+    } catch (IOException e) {
+      throw NioStatement.toRemoteException(e);
+    }
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String query) throws
+          RemoteException {
+    try {
+      Protocol.Payload payload = new Protocol.Payload();
+      payload.writeLong(sessionId);
+      Protocol.writeString(payload, query);
+      long statementId = channel.call(Protocol.PREPARE, payload.toByteArray())
+              .readLong();
+      return new NioPreparedStatement(channel, statementId);
+    } catch (IOException e) {
+      throw NioStatement.toRemoteException(e);
+    }
+  }
+
+  /**
+   * Close the session, and the statements and result sets with it.
+   *
+   * @throws RemoteException
+   */
+  @Override
+  public void close() throws RemoteException {
+    if (!channel.isOpen())
+      return;
+
+    try {
+      Protocol.Payload payload = new Protocol.Payload();
+      payload.writeLong(sessionId);
+      channel.call(Protocol.CLOSE, payload.toByteArray());
+    } catch (IOException e) {
+      throw NioStatement.toRemoteException(e);
+    } finally {
+      channel.close();
+    }
+  }
+}
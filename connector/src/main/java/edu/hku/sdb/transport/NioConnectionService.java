@@ -0,0 +1,104 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.transport;
+
+import edu.hku.sdb.connect.Connection;
+import edu.hku.sdb.connect.ConnectionService;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+
+/**
+ * A proxy reached by the framed protocol, given by an url like
+ * sdb://host:port.
+ */
+public class NioConnectionService implements ConnectionService {
+
+  private final String host;
+  private final int port;
+
+  public NioConnectionService(String url) {
+    String address = url.substring(Protocol.URL_PREFIX.length());
+    int slash = address.indexOf('/');
+    if (slash >= 0)
+      address = address.substring(0, slash);
+
+    int colon = address.lastIndexOf(':');
+    if (colon >= 0) {
+      host = address.substring(0, colon);
+      port = Integer.parseInt(address.substring(colon + 1));
+    } else {
+      host = address;
+      port = Protocol.DEFAULT_PORT;
+    }
+  }
+
+  public static boolean accepts(String url) {
+    return url.startsWith(Protocol.URL_PREFIX);
+  }
+
+  public String getHost() {
+    return host;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  /**
+   * Each connection has its own channel to the proxy.
+   *
+   * @return null if the proxy has no more connection.
+   * @throws RemoteException
+   */
+  @Override
+  public Connection getConnection() throws RemoteException {
+    NioChannel channel = new NioChannel(host, port);
+    try {
+      long sessionId = channel.call(Protocol.OPEN_SESSION, new byte[0])
+              .readLong();
+      if (sessionId < 0) {
+        channel.close();
+        return null;
+      }
+      return new NioConnection(channel, sessionId);
+    } catch (IOException e) {
+      channel.close();
+      throw e instanceof RemoteException ? (RemoteException) e : new
+              RemoteException("Can not open a session", e);
+    }
+  }
+
+  @Override
+  public void closeConnection() throws RemoteException {
+    // The connections are closed by Connection#close().
+  }
+
+  @Override
+  public int getLoad() throws RemoteException {
+    NioChannel channel = new NioChannel(host, port);
+    try {
+      return channel.call(Protocol.LOAD, new byte[0]).readInt();
+    } catch (IOException e) {
+      throw e instanceof RemoteException ? (RemoteException) e : new
+              RemoteException("Can not get the load", e);
+    } finally {
+      channel.close();
+    }
+  }
+}
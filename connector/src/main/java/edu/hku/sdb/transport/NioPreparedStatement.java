@@ -0,0 +1,100 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.transport;
+
+import edu.hku.sdb.connect.PreparedStatement;
+import edu.hku.sdb.connect.ResultSet;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A prepared statement over the framed protocol. The parameters are kept by
+ * the client and sent with each execution.
+ */
+public class NioPreparedStatement extends NioStatement implements
+        PreparedStatement {
+
+  private final List<Object> values = new ArrayList<>();
+
+  public NioPreparedStatement(NioChannel channel, long statementId) {
+    super(channel, statementId);
+  }
+
+  @Override
+  public void setInt(int parameterIndex, int x) throws RemoteException {
+    setValue(parameterIndex, x);
+  }
+
+  @Override
+  public void setLong(int parameterIndex, long x) throws RemoteException {
+    setValue(parameterIndex, x);
+  }
+
+  @Override
+  public void setDouble(int parameterIndex, double x) throws RemoteException {
+    setValue(parameterIndex, x);
+  }
+
+  @Override
+  public void setString(int parameterIndex, String x) throws RemoteException {
+    setValue(parameterIndex, x);
+  }
+
+  @Override
+  public void clearParameters() throws RemoteException {
+    values.clear();
+  }
+
+  private void setValue(int parameterIndex, Object value) throws
+          RemoteException {
+    if (parameterIndex < 1)
+      throw new RemoteException("Parameter index " + parameterIndex + " is out" +
+              " of range!");
+
+    while (values.size() < parameterIndex) {
+      values.add(null);
+    }
+    values.set(parameterIndex - 1, value);
+  }
+
+  /**
+   * The proxy checks the number of parameters and the unbound ones.
+   *
+   * @return
+   * @throws RemoteException
+   */
+  @Override
+  public ResultSet executeQuery() throws RemoteException {
+    try {
+      Protocol.Payload payload = new Protocol.Payload();
+      payload.writeLong(statementId);
+      payload.writeInt(getFetchSize());
+      payload.writeInt(values.size());
+      for (Object value : values) {
+        Protocol.writeValue(payload, value);
+      }
+      return setResultSet(channel.call(Protocol.EXECUTE_PREPARED, payload
+              .toByteArray()));
+    } catch (IOException e) {
+      throw toRemoteException(e);
+    }
+  }
+}
@@ -0,0 +1,323 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.transport;
+
+import edu.hku.sdb.connect.Profiler;
+import edu.hku.sdb.connect.ResultSet;
+import edu.hku.sdb.connect.ResultSetMetaData;
+
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * The result of a query over the framed protocol. The rows are fetched from
+ * the proxy a {@link Page} at a time, and only the current page is kept, so
+ * a large result is streamed. A result is written as
+ *
+ * <pre>
+ *   long cursor id | string remote query | int column count, -1 if none |
+ *   string column name... | long profile times x 7 | page
+ * </pre>
+ *
+ * The proxy releases the cursor once the last page is sent.
+ */
+public class NioResultSet implements ResultSet {
+
+  private final NioChannel channel;
+  private final long cursorId;
+  private final String remoteSQLQuery;
+  private final MetaData metaData;
+  private final TimeProfile profile;
+
+  private int fetchSize;
+  private Page page;
+  private int index = -1;
+  private boolean closed;
+
+  private NioResultSet(NioChannel channel, long cursorId, String
+          remoteSQLQuery, MetaData metaData, TimeProfile profile, int
+          fetchSize) {
+    this.channel = channel;
+    this.cursorId = cursorId;
+    this.remoteSQLQuery = remoteSQLQuery;
+    this.metaData = metaData;
+    this.profile = profile;
+    this.fetchSize = fetchSize;
+  }
+
+  public static NioResultSet read(NioChannel channel, DataInput in, int
+          fetchSize) throws IOException {
+    long cursorId = in.readLong();
+    String remoteSQLQuery = Protocol.readString(in);
+
+    MetaData metaData = null;
+    int columnCount = in.readInt();
+    if (columnCount >= 0) {
+      String[] names = new String[columnCount];
+      for (int i = 0; i < columnCount; i++) {
+        names[i] = Protocol.readString(in);
+      }
+      metaData = new MetaData(names);
+    }
+
+    long[] times = new long[TimeProfile.COUNT];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = in.readLong();
+    }
+
+    NioResultSet resultSet = new NioResultSet(channel, cursorId, remoteSQLQuery,
+            metaData, new TimeProfile(times), fetchSize);
+    resultSet.page = Page.read(in);
+    if (metaData != null)
+      metaData.setTypes(resultSet.page);
+    return resultSet;
+  }
+
+  /**
+   * Write the header of a result, which is followed by its first page.
+   *
+   * @param out
+   * @param cursorId
+   * @param remoteSQLQuery
+   * @param columnNames null if the result has no meta data
+   * @param times the times in the order of {@link Profiler}
+   * @throws IOException
+   */
+  public static void writeHeader(DataOutputStream out, long cursorId, String
+          remoteSQLQuery, String[] columnNames, long[] times) throws
+          IOException {
+    out.writeLong(cursorId);
+    Protocol.writeString(out, remoteSQLQuery);
+    if (columnNames == null) {
+      out.writeInt(-1);
+    } else {
+      out.writeInt(columnNames.length);
+      for (String name : columnNames) {
+        Protocol.writeString(out, name);
+      }
+    }
+    for (int i = 0; i < TimeProfile.COUNT; i++) {
+      out.writeLong(times[i]);
+    }
+  }
+
+  /**
+   * @param fetchSize the number of rows of the next fetches, the default if
+   *                  not positive
+   */
+  public void setFetchSize(int fetchSize) {
+    this.fetchSize = fetchSize;
+  }
+
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  @Override
+  public boolean next() throws RemoteException {
+    if (closed)
+      return false;
+
+    while (index == page.getRowCount() - 1) {
+      if (page.isLast())
+        return false;
+      fetch();
+    }
+    index++;
+    return true;
+  }
+
+  private void fetch() throws RemoteException {
+    try {
+      Protocol.Payload payload = new Protocol.Payload();
+      payload.writeLong(cursorId);
+      payload.writeInt(fetchSize);
+      page = Page.read(channel.call(Protocol.FETCH, payload.toByteArray()));
+      index = -1;
+    } catch (IOException e) {
+      throw NioStatement.toRemoteException(e);
+    }
+  }
+
+  @Override
+  public void close() throws RemoteException {
+    if (closed)
+      return;
+    closed = true;
+    if (page.isLast() || !channel.isOpen())
+      return;
+
+    try {
+      Protocol.Payload payload = new Protocol.Payload();
+      payload.writeLong(cursorId);
+      channel.call(Protocol.CLOSE, payload.toByteArray());
+    } catch (IOException e) {
+      throw NioStatement.toRemoteException(e);
+    }
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  public boolean isNull(int columnIndex) {
+    return page.isNull(index, columnIndex);
+  }
+
+  /**
+   * @param columnIndex
+   * @return the integer at the column without boxing, 0 if it is null
+   */
+  public long getLongValue(int columnIndex) {
+    return page.getLong(index, columnIndex);
+  }
+
+  /**
+   * @param columnIndex
+   * @return the number at the column without boxing, 0 if it is null
+   */
+  public double getDoubleValue(int columnIndex) {
+    return page.getDouble(index, columnIndex);
+  }
+
+  public Object getObject(int columnIndex) {
+    return page.getObject(index, columnIndex);
+  }
+
+  @Override
+  public String getString(int columnIndex) throws RemoteException {
+    return page.getString(index, columnIndex);
+  }
+
+  @Override
+  public Integer getInteger(int columnIndex) throws RemoteException {
+    return isNull(columnIndex) ? null : (int) getLongValue(columnIndex);
+  }
+
+  @Override
+  public Long getLong(int columnIndex) throws RemoteException {
+    return isNull(columnIndex) ? null : getLongValue(columnIndex);
+  }
+
+  @Override
+  public ResultSetMetaData getResultSetMetaData() throws RemoteException {
+    return metaData;
+  }
+
+  @Override
+  public String getRemoteSQLQuery() throws RemoteException {
+    return remoteSQLQuery;
+  }
+
+  Profiler getProfiler() {
+    return profile;
+  }
+
+  public static class MetaData implements ResultSetMetaData {
+
+    private final String[] names;
+    private final int[] types;
+
+    MetaData(String[] names) {
+      this.names = names;
+      this.types = new int[names.length];
+      Arrays.fill(types, Types.VARCHAR);
+    }
+
+    /**
+     * The types are guessed from the first page.
+     *
+     * @param page
+     */
+    void setTypes(Page page) {
+      if (page.getRowCount() == 0)
+        return;
+      for (int i = 0; i < types.length && i < page.getColumnCount(); i++) {
+        types[i] = page.getSqlType(i);
+      }
+    }
+
+    @Override
+    public int getColumnCount() {
+      return names.length;
+    }
+
+    @Override
+    public String getColumnName(int columnIndex) {
+      return names[columnIndex];
+    }
+
+    /**
+     * @param columnIndex
+     * @return the {@link Types} of a column
+     */
+    public int getColumnType(int columnIndex) {
+      return types[columnIndex];
+    }
+  }
+
+  static class TimeProfile implements Profiler {
+
+    static final int COUNT = 7;
+
+    private final long[] times;
+
+    TimeProfile(long[] times) {
+      this.times = times;
+    }
+
+    @Override
+    public long getTotalTime() {
+      return times[0];
+    }
+
+    @Override
+    public long getClientTotalTime() {
+      return times[1];
+    }
+
+    @Override
+    public long getClientParseTime() {
+      return times[2];
+    }
+
+    @Override
+    public long getClientAnalyseTime() {
+      return times[3];
+    }
+
+    @Override
+    public long getClientRewriteTime() {
+      return times[4];
+    }
+
+    @Override
+    public long getClientExecutionTime() {
+      return times[5];
+    }
+
+    @Override
+    public long getServerTotalTime() {
+      return times[6];
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.transport;
+
+import edu.hku.sdb.connect.Profiler;
+import edu.hku.sdb.connect.ResultSet;
+import edu.hku.sdb.connect.Statement;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.rmi.RemoteException;
+
+/**
+ * A statement executed by the proxy over the framed protocol.
+ */
+public class NioStatement implements Statement {
+
+  protected final NioChannel channel;
+  protected final long statementId;
+
+  private NioResultSet resultSet;
+  private int fetchSize = Protocol.PAGE_SIZE;
+
+  public NioStatement(NioChannel channel, long statementId) {
+    this.channel = channel;
+    this.statementId = statementId;
+  }
+
+  @Override
+  public ResultSet executeQuery(String query) throws RemoteException {
+    try {
+      Protocol.Payload payload = new Protocol.Payload();
+      payload.writeLong(statementId);
+      payload.writeInt(fetchSize);
+      Protocol.writeString(payload, query);
+      return setResultSet(channel.call(Protocol.EXECUTE, payload.toByteArray()));
+    } catch (IOException e) {
+      throw toRemoteException(e);
+    }
+  }
+
+  protected ResultSet setResultSet(DataInputStream in) throws IOException {
+    resultSet = NioResultSet.read(channel, in, fetchSize);
+    return resultSet;
+  }
+
+  /**
+   * @param fetchSize the number of rows fetched from the proxy at a time, the
+   *                  default if not positive
+   */
+  public void setFetchSize(int fetchSize) {
+    this.fetchSize = fetchSize;
+  }
+
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  @Override
+  public void close() throws RemoteException {
+    if (!channel.isOpen())
+      return;
+
+    try {
+      Protocol.Payload payload = new Protocol.Payload();
+      payload.writeLong(statementId);
+      channel.call(Protocol.CLOSE, payload.toByteArray());
+    } catch (IOException e) {
+      throw toRemoteException(e);
+    }
+  }
+
+  @Override
+  public Profiler getProfiler() throws RemoteException {
+    return resultSet == null ? null : resultSet.getProfiler();
+  }
+
+  /**
+   * Cancel the query being executed. It is sent without waiting for the
+   * running request, which then fails.
+   *
+   * @throws RemoteException
+   */
+  @Override
+  public void cancel() throws RemoteException {
+    try {
+      Protocol.Payload payload = new Protocol.Payload();
+      payload.writeLong(statementId);
+      channel.send(Protocol.CANCEL, payload.toByteArray());
+    } catch (IOException e) {
+      throw toRemoteException(e);
+    }
+  }
+
+  static RemoteException toRemoteException(IOException e) {
+    if (e instanceof RemoteException)
+      return (RemoteException) e;
+    return new RemoteException(e.getMessage(), e);
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.transport;
+
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.sql.Types;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A page of rows, sent by column. A column whose values are all integers
+ * fitting in a long, or all doubles, is sent and kept as primitives, so the
+ * typed getters read it without boxing. Other columns are sent value by
+ * value.
+ *
+ * <pre>
+ *   boolean last | int row count | int column count | column...
+ * </pre>
+ *
+ * and a column is its kind, the null bits and the values which are not null.
+ */
+public class Page {
+
+  private static final byte LONG = 1;
+  private static final byte DOUBLE = 2;
+  private static final byte OBJECT = 3;
+
+  private final boolean last;
+  private final int rowCount;
+  private final byte[] kinds;
+  private final BitSet[] nulls;
+  private final long[][] longs;
+  private final double[][] doubles;
+  private final Object[][] objects;
+
+  private Page(boolean last, int rowCount, int columnCount) {
+    this.last = last;
+    this.rowCount = rowCount;
+    kinds = new byte[columnCount];
+    nulls = new BitSet[columnCount];
+    longs = new long[columnCount][];
+    doubles = new double[columnCount][];
+    objects = new Object[columnCount][];
+  }
+
+  public static void write(DataOutputStream out, List<Object[]> rows, boolean
+          last) throws IOException {
+    int columnCount = rows.isEmpty() ? 0 : rows.get(0).length;
+    out.writeBoolean(last);
+    out.writeInt(rows.size());
+    out.writeInt(columnCount);
+
+    for (int column = 0; column < columnCount; column++) {
+      byte kind = getKind(rows, column);
+      out.writeByte(kind);
+
+      BitSet nullBits = new BitSet(rows.size());
+      for (int row = 0; row < rows.size(); row++) {
+        if (rows.get(row)[column] == null)
+          nullBits.set(row);
+      }
+      byte[] bytes = nullBits.toByteArray();
+      out.writeInt(bytes.length);
+      out.write(bytes);
+
+      for (Object[] row : rows) {
+        Object value = row[column];
+        if (value == null)
+          continue;
+
+        if (kind == LONG)
+          out.writeLong(((Number) value).longValue());
+        else if (kind == DOUBLE)
+          out.writeDouble((Double) value);
+        else
+          Protocol.writeValue(out, value);
+      }
+    }
+  }
+
+  private static byte getKind(List<Object[]> rows, int column) {
+    byte kind = 0;
+    for (Object[] row : rows) {
+      Object value = row[column];
+      byte valueKind;
+      if (value == null)
+        continue;
+      else if (value instanceof Integer || value instanceof Long)
+        valueKind = LONG;
+      else if (value instanceof BigInteger && ((BigInteger) value).bitLength()
+              < 64)
+        valueKind = LONG;
+      else if (value instanceof Double)
+        valueKind = DOUBLE;
+      else
+        return OBJECT;
+
+      if (kind != 0 && kind != valueKind)
+        return OBJECT;
+      kind = valueKind;
+    }
+    return kind == 0 ? OBJECT : kind;
+  }
+
+  public static Page read(DataInput in) throws IOException {
+    boolean last = in.readBoolean();
+    int rowCount = in.readInt();
+    Page page = new Page(last, rowCount, in.readInt());
+
+    for (int column = 0; column < page.kinds.length; column++) {
+      byte kind = in.readByte();
+      page.kinds[column] = kind;
+
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      BitSet nullBits = BitSet.valueOf(bytes);
+      page.nulls[column] = nullBits;
+
+      if (kind == LONG)
+        page.longs[column] = new long[rowCount];
+      else if (kind == DOUBLE)
+        page.doubles[column] = new double[rowCount];
+      else
+        page.objects[column] = new Object[rowCount];
+
+      for (int row = 0; row < rowCount; row++) {
+        if (nullBits.get(row))
+          continue;
+
+        if (kind == LONG)
+          page.longs[column][row] = in.readLong();
+        else if (kind == DOUBLE)
+          page.doubles[column][row] = in.readDouble();
+        else
+          page.objects[column][row] = Protocol.readValue(in);
+      }
+    }
+    return page;
+  }
+
+  public boolean isLast() {
+    return last;
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  public int getColumnCount() {
+    return kinds.length;
+  }
+
+  public boolean isNull(int row, int column) {
+    return nulls[column].get(row);
+  }
+
+  /**
+   * @param row
+   * @param column
+   * @return 0 if the value is null
+   */
+  public long getLong(int row, int column) {
+    switch (kinds[column]) {
+      case LONG:
+        return longs[column][row];
+      case DOUBLE:
+        return (long) doubles[column][row];
+      default:
+        Object value = objects[column][row];
+        if (value == null)
+          return 0;
+        // A decrypted value may not fit, ArithmeticException then.
+        if (value instanceof BigInteger)
+          return ((BigInteger) value).longValueExact();
+        if (value instanceof Number)
+          return ((Number) value).longValue();
+        return Long.parseLong(value.toString().trim());
+    }
+  }
+
+  /**
+   * @param row
+   * @param column
+   * @return 0 if the value is null
+   */
+  public double getDouble(int row, int column) {
+    switch (kinds[column]) {
+      case LONG:
+        return longs[column][row];
+      case DOUBLE:
+        return doubles[column][row];
+      default:
+        Object value = objects[column][row];
+        if (value == null)
+          return 0;
+        if (value instanceof Number)
+          return ((Number) value).doubleValue();
+        return Double.parseDouble(value.toString().trim());
+    }
+  }
+
+  /**
+   * @param row
+   * @param column
+   * @return null if the value is null
+   */
+  public String getString(int row, int column) {
+    if (isNull(row, column))
+      return null;
+
+    switch (kinds[column]) {
+      case LONG:
+        return Long.toString(longs[column][row]);
+      case DOUBLE:
+        return Double.toString(doubles[column][row]);
+      default:
+        return objects[column][row].toString();
+    }
+  }
+
+  /**
+   * @param row
+   * @param column
+   * @return the value boxed, Long for the integers
+   */
+  public Object getObject(int row, int column) {
+    if (isNull(row, column))
+      return null;
+
+    switch (kinds[column]) {
+      case LONG:
+        return longs[column][row];
+      case DOUBLE:
+        return doubles[column][row];
+      default:
+        return objects[column][row];
+    }
+  }
+
+  /**
+   * @param column
+   * @return the {@link Types} of a column in this page
+   */
+  public int getSqlType(int column) {
+    switch (kinds[column]) {
+      case LONG:
+        return Types.BIGINT;
+      case DOUBLE:
+        return Types.DOUBLE;
+      default:
+        return Types.VARCHAR;
+    }
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The framed binary protocol between the clients and the proxy, an
+ * alternative to RMI. A frame is the length of the rest of the frame, the
+ * operation and its payload:
+ *
+ * <pre>
+ *   int length | byte op | payload
+ * </pre>
+ *
+ * A client sends one request at a time and waits for its response, which is
+ * either {@link #OK} followed by the result or {@link #ERROR} followed by the
+ * message. {@link #CANCEL} is the only request sent while another is running,
+ * and it has no response.
+ */
+public final class Protocol {
+
+  public static final String URL_PREFIX = "sdb://";
+  public static final int DEFAULT_PORT = 2020;
+
+  public static final int MAX_FRAME_LENGTH = 256 * 1024 * 1024;
+  // The default and the largest number of rows returned by a fetch.
+  public static final int PAGE_SIZE = 1024;
+  public static final int MAX_PAGE_SIZE = 64 * 1024;
+
+  // Requests.
+  // () -> long session id, -1 if the proxy is full
+  public static final byte OPEN_SESSION = 1;
+  // (long session id) -> long statement id
+  public static final byte CREATE_STATEMENT = 2;
+  // (long session id, string query) -> long statement id
+  public static final byte PREPARE = 3;
+  // (long statement id, int fetch size, string query) -> result
+  public static final byte EXECUTE = 4;
+  // (long statement id, int fetch size, int count, value...) -> result
+  public static final byte EXECUTE_PREPARED = 5;
+  // (long cursor id, int max rows) -> page
+  public static final byte FETCH = 6;
+  // (long id) -> ()
+  public static final byte CLOSE = 7;
+  // (long statement id), no response
+  public static final byte CANCEL = 8;
+  // () -> int load
+  public static final byte LOAD = 9;
+
+  // Responses.
+  public static final byte OK = 64;
+  public static final byte ERROR = 65;
+
+  // The types of values.
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte INT = 2;
+  private static final byte LONG = 3;
+  private static final byte BIG_INTEGER = 4;
+  private static final byte DOUBLE = 5;
+
+  private Protocol() {
+  }
+
+  /**
+   * The payload of a frame being written.
+   */
+  public static class Payload extends DataOutputStream {
+
+    public Payload() {
+      super(new ByteArrayOutputStream());
+    }
+
+    public byte[] toByteArray() {
+      return ((ByteArrayOutputStream) out).toByteArray();
+    }
+  }
+
+  /**
+   * @param op
+   * @param payload
+   * @return the frame ready to be written
+   */
+  public static ByteBuffer frame(byte op, byte[] payload) {
+    ByteBuffer buffer = ByteBuffer.allocate(4 + 1 + payload.length);
+    buffer.putInt(1 + payload.length);
+    buffer.put(op);
+    buffer.put(payload);
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * @param fetchSize
+   * @return the number of rows of a page asked for a fetch size
+   */
+  public static int getPageSize(int fetchSize) {
+    if (fetchSize <= 0)
+      return PAGE_SIZE;
+    return Math.min(fetchSize, MAX_PAGE_SIZE);
+  }
+
+  public static void checkLength(int length) throws IOException {
+    if (length < 1 || length > MAX_FRAME_LENGTH)
+      throw new IOException("Invalid frame length " + length);
+  }
+
+  public static void writeString(DataOutputStream out, String value) throws
+          IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  public static String readString(DataInput in) throws IOException {
+    int length = in.readInt();
+    if (length < 0)
+      return null;
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Write a value of a row or a parameter. The values of other types are
+   * written as strings.
+   *
+   * @param out
+   * @param value
+   * @throws IOException
+   */
+  public static void writeValue(DataOutputStream out, Object value) throws
+          IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof Integer) {
+      out.writeByte(INT);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof BigInteger) {
+      out.writeByte(BIG_INTEGER);
+      writeString(out, value.toString());
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else {
+      out.writeByte(STRING);
+      writeString(out, value.toString());
+    }
+  }
+
+  public static Object readValue(DataInput in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+      case NULL:
+        return null;
+      case INT:
+        return in.readInt();
+      case LONG:
+        return in.readLong();
+      case BIG_INTEGER:
+        return new BigInteger(readString(in));
+      case DOUBLE:
+        return in.readDouble();
+      case STRING:
+        return readString(in);
+      default:
+        throw new IOException("Unknown value type " + type);
+    }
+  }
+}
@@ -26,8 +26,13 @@ import java.net.MalformedURLException;
 import java.rmi.Naming;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class ConnectionManagerTest {
@@ -69,4 +74,68 @@ public class ConnectionManagerTest {
 //    }
 //  }
 
+  private static class DummyService implements ConnectionService {
+    private final int load;
+    private final Connection connection;
+
+    DummyService(int load, Connection connection) {
+      this.load = load;
+      this.connection = connection;
+    }
+
+    public Connection getConnection() throws RemoteException {
+      return connection;
+    }
+
+    public void closeConnection() throws RemoteException {
+    }
+
+    public int getLoad() throws RemoteException {
+      if (load < 0)
+        throw new RemoteException("Proxy is down");
+      return load;
+    }
+  }
+
+  private static class DummyConnection implements Connection {
+    public Statement createStatement() throws RemoteException {
+      return null;
+    }
+
+    public PreparedStatement prepareStatement(String query) throws RemoteException {
+      return null;
+    }
+
+    public void close() throws RemoteException {
+    }
+  }
+
+  @Test
+  public void testGetProxyUrls() {
+    assertEquals(Arrays.asList("//host1:2019/Connection",
+            "//host2:2019/Connection"), ConnectionManager.getProxyUrls
+            ("//host1:2019/Connection, //host2:2019/Connection,"));
+  }
+
+  @Test
+  public void testLeastLoaded() {
+    Connection idle = new DummyConnection();
+    List<ConnectionService> services = Arrays.<ConnectionService>asList(new
+            DummyService(3, new DummyConnection()), new DummyService(-1, new
+            DummyConnection()), new DummyService(1, idle));
+
+    assertSame(idle, ConnectionManager.getConnection(services));
+  }
+
+  @Test
+  public void testFullProxy() {
+    Connection other = new DummyConnection();
+    List<ConnectionService> services = Arrays.<ConnectionService>asList(new
+            DummyService(0, null), new DummyService(5, other));
+
+    assertSame(other, ConnectionManager.getConnection(services));
+    assertNull(ConnectionManager.getConnection(Arrays.<ConnectionService>asList
+            (new DummyService(-1, other))));
+  }
+
 }
\ No newline at end of file
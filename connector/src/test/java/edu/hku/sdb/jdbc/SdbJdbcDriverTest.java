@@ -0,0 +1,45 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.jdbc;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SdbJdbcDriverTest {
+
+  @Test
+  public void testProxyUrl() {
+    assertEquals("sdb://host1:2020,sdb://host2:2020", SdbJdbcDriver
+            .getProxyUrl("jdbc:sdb://host1:2020,sdb://host2:2020"));
+    assertEquals("rmi://host:2019/ConnectionService", SdbJdbcDriver
+            .getProxyUrl("jdbc:sdb:rmi://host:2019/ConnectionService"));
+    assertNull(SdbJdbcDriver.getProxyUrl("jdbc:mysql://host:3306/db"));
+  }
+
+  @Test
+  public void testAcceptsURL() {
+    SdbJdbcDriver driver = new SdbJdbcDriver();
+    assertTrue(driver.acceptsURL("jdbc:sdb://localhost:2020"));
+    assertFalse(driver.acceptsURL("sdb://localhost:2020"));
+    assertFalse(driver.acceptsURL(null));
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.jdbc;
+
+import edu.hku.sdb.connect.ResultSet;
+import edu.hku.sdb.connect.ResultSetMetaData;
+import org.junit.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SdbJdbcResultSetTest {
+
+  /**
+   * A result set of one row.
+   */
+  private static class RowResultSet implements ResultSet {
+
+    private final String[] row;
+    private boolean fetched = false;
+
+    RowResultSet(String... row) {
+      this.row = row;
+    }
+
+    @Override
+    public boolean next() {
+      if (fetched)
+        return false;
+      fetched = true;
+      return true;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String getString(int columnIndex) {
+      return row[columnIndex];
+    }
+
+    @Override
+    public Integer getInteger(int columnIndex) {
+      return Integer.valueOf(row[columnIndex]);
+    }
+
+    @Override
+    public ResultSetMetaData getResultSetMetaData() {
+      return null;
+    }
+
+    @Override
+    public String getRemoteSQLQuery() {
+      return null;
+    }
+
+    @Override
+    public Long getLong(int columnIndex) {
+      return Long.valueOf(row[columnIndex]);
+    }
+  }
+
+  private static void assertOutOfRange(SdbJdbcResultSet resultSet, int
+          columnIndex, String type) {
+    try {
+      switch (type) {
+        case "int":
+          resultSet.getInt(columnIndex);
+          break;
+        case "short":
+          resultSet.getShort(columnIndex);
+          break;
+        default:
+          resultSet.getByte(columnIndex);
+      }
+      fail("Expected value out of range for column " + columnIndex);
+    } catch (SQLException e) {
+      assertTrue(e.getMessage().contains("value out of range"));
+    }
+  }
+
+  @Test
+  public void testNarrowingGetters() throws SQLException {
+    SdbJdbcResultSet resultSet = new SdbJdbcResultSet(null, new RowResultSet
+            ("2147483647", "-2147483649", "32768", "-129", "127"), 0);
+    assertTrue(resultSet.next());
+
+    assertEquals(Integer.MAX_VALUE, resultSet.getInt(1));
+    assertOutOfRange(resultSet, 2, "int");
+    assertOutOfRange(resultSet, 3, "short");
+    assertOutOfRange(resultSet, 4, "byte");
+    assertEquals(Byte.MAX_VALUE, resultSet.getByte(5));
+    assertEquals(127, resultSet.getShort(5));
+    assertEquals(-129, resultSet.getShort(4));
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.transport;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProtocolTest {
+
+  @Test
+  public void testValue() throws IOException {
+    Object[] values = {null, "secure", 42, 42L, new BigInteger
+            ("123456789012345678901234567890"), 1.5, "\u5b89\u5168"};
+
+    Protocol.Payload out = new Protocol.Payload();
+    for (Object value : values) {
+      Protocol.writeValue(out, value);
+    }
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(out
+            .toByteArray()));
+    for (Object value : values) {
+      assertEquals(value, Protocol.readValue(in));
+    }
+  }
+
+  @Test
+  public void testPage() throws IOException {
+    List<Object[]> rows = Arrays.asList(
+            new Object[]{BigInteger.valueOf(1), 1.5, "a", 1},
+            new Object[]{null, 2.5, 7, new BigInteger
+                    ("123456789012345678901234567890")},
+            new Object[]{3L, null, null, 2});
+
+    Protocol.Payload out = new Protocol.Payload();
+    Page.write(out, rows, true);
+    Page page = Page.read(new DataInputStream(new ByteArrayInputStream(out
+            .toByteArray())));
+
+    assertTrue(page.isLast());
+    assertEquals(3, page.getRowCount());
+    assertEquals(Types.BIGINT, page.getSqlType(0));
+    assertEquals(Types.DOUBLE, page.getSqlType(1));
+    assertEquals(Types.VARCHAR, page.getSqlType(2));
+    assertEquals(Types.VARCHAR, page.getSqlType(3));
+
+    assertEquals(1, page.getLong(0, 0));
+    assertTrue(page.isNull(1, 0));
+    assertEquals(3, page.getLong(2, 0));
+    assertEquals(2.5, page.getDouble(1, 1), 0);
+    assertTrue(page.isNull(2, 1));
+    assertEquals("a", page.getString(0, 2));
+    assertEquals(7, page.getLong(1, 2));
+    assertNull(page.getString(2, 2));
+    assertEquals("123456789012345678901234567890", page.getString(1, 3));
+  }
+
+  @Test(expected = ArithmeticException.class)
+  public void testPageLongOutOfRange() throws IOException {
+    List<Object[]> rows = Arrays.<Object[]>asList(new Object[]{"a", new
+            BigInteger("123456789012345678901234567890")});
+
+    Protocol.Payload out = new Protocol.Payload();
+    Page.write(out, rows, true);
+    Page page = Page.read(new DataInputStream(new ByteArrayInputStream(out
+            .toByteArray())));
+
+    page.getLong(0, 1);
+  }
+
+  @Test
+  public void testFrame() throws IOException {
+    Protocol.Payload out = new Protocol.Payload();
+    out.writeLong(7);
+    ByteBuffer frame = Protocol.frame(Protocol.FETCH, out.toByteArray());
+
+    assertEquals(4 + 1 + 8, frame.remaining());
+    assertEquals(1 + 8, frame.getInt());
+    assertEquals(Protocol.FETCH, frame.get());
+    assertEquals(7, frame.getLong());
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.catalog;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An in-memory cache of the catalog in front of the persistent store, so
+ * that looking up a database, table or column does not go to the metastore
+ * database. It is loaded when the {@link MetaStore} is created and written
+ * through by the updates of the {@link MetaStore}.
+ *
+ * The entries are keyed by the same key strings as the persistent objects,
+ * i.e. "db", "db::tbl" and "db::tbl::col", all in lower case.
+ */
+public class CatalogCache {
+
+  private final ConcurrentMap<String, DBMeta> dbs = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, TableMeta> tbls = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, ColumnMeta> cols = new ConcurrentHashMap<>();
+
+  public static String getKey(String dbName) {
+    return dbName.toLowerCase();
+  }
+
+  public static String getKey(String dbName, String tblName) {
+    return getKey(dbName) + "::" + tblName.toLowerCase();
+  }
+
+  public static String getKey(String dbName, String tblName, String colName) {
+    return getKey(dbName, tblName) + "::" + colName.toLowerCase();
+  }
+
+  public DBMeta getDB(String dbName) {
+    return dbs.get(getKey(dbName));
+  }
+
+  public TableMeta getTbl(String dbName, String tblName) {
+    return tbls.get(getKey(dbName, tblName));
+  }
+
+  public ColumnMeta getCol(String dbName, String tblName, String colName) {
+    return cols.get(getKey(dbName, tblName, colName));
+  }
+
+  /**
+   * Cache a database together with its tables and columns.
+   *
+   * @param db
+   */
+  public void putDB(DBMeta db) {
+    DBMeta old = dbs.put(getKey(db.getName()), db);
+    if (old != null && old != db) {
+      // The tables and columns dropped since are not in the new copy. A
+      // lookup missing meanwhile falls back to the metastore.
+      for (TableMeta tbl : old.getTbls()) {
+        removeTbl(old.getName(), tbl.getTblName());
+      }
+    }
+    for (TableMeta tbl : db.getTbls()) {
+      putTbl(tbl);
+    }
+  }
+
+  /**
+   * Cache a table together with its columns.
+   *
+   * @param tbl
+   */
+  public void putTbl(TableMeta tbl) {
+    tbls.put(getKey(tbl.getDbName(), tbl.getTblName()), tbl);
+    for (ColumnMeta col : tbl.getCols()) {
+      putCol(col);
+    }
+  }
+
+  public void putCol(ColumnMeta col) {
+    cols.put(getKey(col.getDbName(), col.getTblName(), col.getColName()), col);
+  }
+
+  /**
+   * Remove a table and its columns.
+   *
+   * @param dbName
+   * @param tblName
+   */
+  public void removeTbl(String dbName, String tblName) {
+    String tblKey = getKey(dbName, tblName);
+    tbls.remove(tblKey);
+
+    String colPrefix = tblKey + "::";
+    Iterator<String> colKeys = cols.keySet().iterator();
+    while (colKeys.hasNext()) {
+      if (colKeys.next().startsWith(colPrefix))
+        colKeys.remove();
+    }
+  }
+
+  public void clear() {
+    dbs.clear();
+    tbls.clear();
+    cols.clear();
+  }
+
+  /**
+   * @return the number of cached tables
+   */
+  public int size() {
+    return tbls.size();
+  }
+}
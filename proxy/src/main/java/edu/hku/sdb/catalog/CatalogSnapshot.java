@@ -0,0 +1,154 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.catalog;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, hash indexed view of the catalog of a database. The semantic
+ * analyzer and the rewriters look up tables, columns and column keys many
+ * times per query, which would otherwise be linear scans over the persistent
+ * lists and repeated parsing of the key strings.
+ *
+ * A snapshot is built from a {@link DBMeta} by {@link DBMeta#getSnapshot()},
+ * and is dropped whenever the catalog of the database is changed.
+ */
+public class CatalogSnapshot {
+
+  private final String dbName;
+  private final Map<String, TableMeta> tbls;
+  private final Map<String, Map<String, ColumnMeta>> cols;
+  // The parsed SDB keys, keyed by table name and column name.
+  private final Map<String, Map<String, SdbColumnKey>> colKeys;
+
+  private final BigInteger n;
+  private final BigInteger prime1;
+  private final BigInteger prime2;
+  private final BigInteger g;
+
+  public CatalogSnapshot(DBMeta dbMeta) {
+    dbName = dbMeta.getName();
+    n = parse(dbMeta.getN());
+    prime1 = parse(dbMeta.getPrime1());
+    prime2 = parse(dbMeta.getPrime2());
+    g = parse(dbMeta.getG());
+
+    List<TableMeta> tblMetas = dbMeta.getTbls();
+    Map<String, TableMeta> tblMap = new HashMap<>(tblMetas.size() * 2);
+    Map<String, Map<String, ColumnMeta>> colMap = new HashMap<>(tblMetas.size() * 2);
+    Map<String, Map<String, SdbColumnKey>> keyMap = new HashMap<>(tblMetas.size() * 2);
+
+    for (TableMeta tblMeta : tblMetas) {
+      String tblName = tblMeta.getTblName().toLowerCase();
+      Map<String, ColumnMeta> tblCols = new HashMap<>(tblMeta.getCols().size() * 2);
+      Map<String, SdbColumnKey> tblKeys = new HashMap<>();
+
+      for (ColumnMeta colMeta : tblMeta.getCols()) {
+        String colName = colMeta.getColName().toLowerCase();
+        tblCols.put(colName, colMeta);
+
+        BigInteger m = parse(colMeta.getM());
+        BigInteger x = parse(colMeta.getX());
+        if (m != null && x != null)
+          tblKeys.put(colName, new SdbColumnKey(m, x));
+      }
+
+      tblMap.put(tblName, tblMeta);
+      colMap.put(tblName, Collections.unmodifiableMap(tblCols));
+      keyMap.put(tblName, Collections.unmodifiableMap(tblKeys));
+    }
+
+    tbls = Collections.unmodifiableMap(tblMap);
+    cols = Collections.unmodifiableMap(colMap);
+    colKeys = Collections.unmodifiableMap(keyMap);
+  }
+
+  /**
+   * @param value
+   * @return null if the value is absent or not a number, e.g. the key of a
+   * search column.
+   */
+  private static BigInteger parse(String value) {
+    if (value == null)
+      return null;
+
+    try {
+      return new BigInteger(value);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  public String getDbName() {
+    return dbName;
+  }
+
+  /**
+   * @param tblName case insensitive
+   * @return null if there is no such table
+   */
+  public TableMeta getTbl(String tblName) {
+    return tbls.get(tblName.toLowerCase());
+  }
+
+  /**
+   * @param tblName case insensitive
+   * @param colName case insensitive
+   * @return null if there is no such column
+   */
+  public ColumnMeta getCol(String tblName, String colName) {
+    Map<String, ColumnMeta> tblCols = cols.get(tblName.toLowerCase());
+    return tblCols == null ? null : tblCols.get(colName.toLowerCase());
+  }
+
+  /**
+   * The key is shared by all callers, which is safe since it is immutable.
+   *
+   * @param tblName case insensitive
+   * @param colName case insensitive
+   * @return null if there is no such column or it has no numeric key
+   */
+  public SdbColumnKey getColumnKey(String tblName, String colName) {
+    Map<String, SdbColumnKey> tblKeys = colKeys.get(tblName.toLowerCase());
+    return tblKeys == null ? null : tblKeys.get(colName.toLowerCase());
+  }
+
+  public int size() {
+    return tbls.size();
+  }
+
+  public BigInteger getN() {
+    return n;
+  }
+
+  public BigInteger getPrime1() {
+    return prime1;
+  }
+
+  public BigInteger getPrime2() {
+    return prime2;
+  }
+
+  public BigInteger getG() {
+    return g;
+  }
+}
@@ -61,6 +61,29 @@ public class ColumnMeta {
   @Column(length = 2048)
   private String x;
 
+  // Only used by searchable columns
+  @Persistent
+  private boolean isKeywordIndexed = false;
+
+  // Encrypted by the deterministic scheme, which has no column key
+  @Persistent
+  private boolean isDeterministic = false;
+
+  // Only used by integer and decimal columns
+  @Persistent
+  private boolean isOrderPreserving = false;
+
+  // Statistics, -1 or null if unknown. The min and max values are only kept
+  // for numeric columns.
+  @Persistent
+  private long distinctCount = -1;
+  @Persistent
+  private long nullCount = -1;
+  @Persistent
+  private String minValue;
+  @Persistent
+  private String maxValue;
+
   @Persistent
   private TableMeta tableMeta;
 
@@ -226,6 +249,80 @@ public class ColumnMeta {
     this.isSensitive = isSensitive;
   }
 
+  /**
+   * @return whether a keyword index table is maintained for this column
+   */
+  public boolean isKeywordIndexed() {
+    return isKeywordIndexed;
+  }
+
+  /**
+   * @param isKeywordIndexed the isKeywordIndexed to set
+   */
+  public void setKeywordIndexed(boolean isKeywordIndexed) {
+    this.isKeywordIndexed = isKeywordIndexed;
+  }
+
+  /**
+   * @return the isDeterministic
+   */
+  public boolean isDeterministic() {
+    return isDeterministic;
+  }
+
+  /**
+   * @param isDeterministic the isDeterministic to set
+   */
+  public void setDeterministic(boolean isDeterministic) {
+    this.isDeterministic = isDeterministic;
+  }
+
+  /**
+   * @return whether an order-preserving column is maintained for this column
+   */
+  public boolean isOrderPreserving() {
+    return isOrderPreserving;
+  }
+
+  /**
+   * @param isOrderPreserving the isOrderPreserving to set
+   */
+  public void setOrderPreserving(boolean isOrderPreserving) {
+    this.isOrderPreserving = isOrderPreserving;
+  }
+
+  public long getDistinctCount() {
+    return distinctCount;
+  }
+
+  public void setDistinctCount(long distinctCount) {
+    this.distinctCount = distinctCount;
+  }
+
+  public long getNullCount() {
+    return nullCount;
+  }
+
+  public void setNullCount(long nullCount) {
+    this.nullCount = nullCount;
+  }
+
+  public String getMinValue() {
+    return minValue;
+  }
+
+  public void setMinValue(String minValue) {
+    this.minValue = minValue;
+  }
+
+  public String getMaxValue() {
+    return maxValue;
+  }
+
+  public void setMaxValue(String maxValue) {
+    this.maxValue = maxValue;
+  }
+
 //  /**
 //   * @return the colkey
 //   */
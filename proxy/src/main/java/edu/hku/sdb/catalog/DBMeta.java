@@ -60,6 +60,14 @@ public class DBMeta {
   @Column(length = 2048)
   private String K = null;
 
+  // Increased on each change of the tables or of their data, so that the
+  // proxies sharing the metastore can tell their caches are stale.
+  private long version = 0;
+
+  // The indexed view of the tables, built on demand.
+  @NotPersistent
+  private transient volatile CatalogSnapshot snapshot = null;
+
   public String getK() {
     return K;
   }
@@ -68,6 +76,14 @@ public class DBMeta {
     K = k;
   }
 
+  public long getVersion() {
+    return version;
+  }
+
+  public void setVersion(long version) {
+    this.version = version;
+  }
+
   public static class DBPK extends Key {
 
     private static final long serialVersionUID = 1L;
@@ -120,12 +136,29 @@ public class DBMeta {
   }
 
   public TableMeta getTbl(String tblName) {
-    for(TableMeta tableMeta : tbls) {
-      if(tableMeta.getTblName().equals(tblName))
-        return tableMeta;
+    return getSnapshot().getTbl(tblName);
+  }
+
+  /**
+   * @return the indexed view of the catalog of this database. It is rebuilt
+   * after the tables are changed.
+   */
+  public CatalogSnapshot getSnapshot() {
+    CatalogSnapshot current = snapshot;
+    // The table list may also be changed by the persistence layer.
+    if (current == null || current.size() != tbls.size()) {
+      current = new CatalogSnapshot(this);
+      snapshot = current;
     }
+    return current;
+  }
 
-    return null;
+  /**
+   * Drop the snapshot, e.g. after a table or column of this database is added,
+   * dropped or updated.
+   */
+  public void invalidateSnapshot() {
+    snapshot = null;
   }
 
   /**
@@ -133,6 +166,7 @@ public class DBMeta {
    */
   public void setTbls(List<TableMeta> tbls) {
     this.tbls = tbls;
+    invalidateSnapshot();
   }
 
   /**
@@ -211,6 +245,7 @@ public class DBMeta {
 
   public void add(TableMeta tbl) {
     getTbls().add(tbl);
+    invalidateSnapshot();
   }
 
 
@@ -19,11 +19,19 @@ package edu.hku.sdb.catalog;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import javax.jdo.FetchPlan;
+import javax.jdo.JDOException;
 import javax.jdo.JDOObjectNotFoundException;
 import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
 import javax.jdo.Query;
 import javax.jdo.Transaction;
 
@@ -35,17 +43,97 @@ public class MetaStore {
   private static final Logger LOG = LoggerFactory.getLogger(MetaStore.class);
 
   public static final String name = "metastore_db";
-  private PersistenceManager pm;
+  // The single manager given by the caller. Otherwise each operation gets
+  // its own manager from the factory, since a manager is not thread safe.
+  private PersistenceManager sharedPM;
+  private PersistenceManagerFactory pmf;
   private String defaultDB = "default";
 
+  // Lookups are served from memory, updates are written through.
+  private final CatalogCache cache = new CatalogCache();
+
+  // The version of each database the caches of this proxy are up to date
+  // with. The metastore may be shared by several proxies.
+  private final ConcurrentMap<String, Long> seenVersions = new
+          ConcurrentHashMap<>();
+
   public MetaStore(PersistenceManager pm) {
-    this.pm = pm;
+    this.sharedPM = pm;
+    loadCache();
   }
 
   public MetaStore(String defaultDB, PersistenceManager pm) {
     // Make sure database name is not null
     this.defaultDB = checkNotNull(defaultDB, "Database name is null");
-    this.pm = pm;
+    this.sharedPM = pm;
+    loadCache();
+  }
+
+  /**
+   * The objects returned by a metastore created from a factory are detached,
+   * so they can be shared by the threads through the catalog cache. The
+   * factory should detach all objects on commit.
+   *
+   * @param pmf
+   */
+  public MetaStore(PersistenceManagerFactory pmf) {
+    this.pmf = checkNotNull(pmf, "Persistence manager factory is null");
+    loadCache();
+  }
+
+  /**
+   * Every call must be paired with {@link #releasePM(PersistenceManager)}.
+   *
+   * @return the persistence manager of one operation
+   */
+  private PersistenceManager getPM() {
+    if (sharedPM != null)
+      return sharedPM;
+
+    PersistenceManager pm = pmf.getPersistenceManager();
+    // Detach the whole object graph, i.e. a database with its tables and
+    // columns.
+    pm.getFetchPlan().setGroup(FetchPlan.ALL);
+    pm.getFetchPlan().setMaxFetchDepth(-1);
+    return pm;
+  }
+
+  /**
+   * Close a manager of the factory. The objects it returned are detached, so
+   * they stay usable.
+   *
+   * @param pm
+   */
+  private void releasePM(PersistenceManager pm) {
+    if (pm != sharedPM && !pm.isClosed())
+      pm.close();
+  }
+
+  private boolean isDetaching() {
+    return sharedPM == null;
+  }
+
+  /**
+   * Load the whole catalog into the cache. A failure is not fatal, the
+   * entries are then cached when they are first looked up.
+   */
+  private void loadCache() {
+    try {
+      for (DBMeta db : getAllDBs()) {
+        cache.putDB(db);
+      }
+      // The tables of a database are cached with it, so that a table looked
+      // up alone is the one the database holds. Only a table outside the
+      // tables of its database is cached on its own.
+      for (TableMeta tbl : getAllTbls()) {
+        if (cache.getTbl(tbl.getDbName(), tbl.getTblName()) == null)
+          cache.putTbl(tbl);
+      }
+      LOG.info("Loaded " + cache.size() + " tables into the catalog cache");
+    } catch (JDOException e) {
+      LOG.warn("Can not load the catalog cache", e);
+      cache.clear();
+    }
   }
 
   /**
@@ -54,15 +142,39 @@ public class MetaStore {
    * @param db
    */
   public void addDB(DBMeta db) {
+    PersistenceManager pm = getPM();
     Transaction tx = pm.currentTransaction();
     try {
       tx.begin();
       pm.makePersistent(db);
       tx.commit();
+      cache.putDB(db);
     } finally {
       if (tx.isActive()) {
         tx.rollback();
       }
+      releasePM(pm);
+    }
+  }
+
+  /**
+   * Add a database unless it exists. The metastore may be shared by several
+   * proxies, and all of them must use the keys of the one created first.
+   *
+   * @param db
+   * @return the database in the metastore
+   */
+  public synchronized DBMeta addDBIfAbsent(DBMeta db) {
+    DBMeta stored = getDB(db.getName());
+    if (stored != null)
+      return stored;
+
+    try {
+      addDB(db);
+      return db;
+    } catch (JDOException e) {
+      LOG.info("Database " + db.getName() + " is created by another proxy");
+      return getDB(db.getName());
     }
   }
 
@@ -72,59 +184,159 @@ public class MetaStore {
    * @param tbl
    */
   public void addTbl(TableMeta tbl) {
+    PersistenceManager pm = getPM();
     Transaction tx = pm.currentTransaction();
     try {
       tx.begin();
       pm.makePersistent(tbl);
       tx.commit();
+      cache.putTbl(tbl);
+      invalidateSnapshot(tbl.getDbName());
     } finally {
       if (tx.isActive()) {
         tx.rollback();
       }
+      releasePM(pm);
     }
   }
 
+  /**
+   * Add a new table with its columns to its database. The cached database is
+   * replaced by a fresh copy instead of being changed, since other threads
+   * may be reading its tables.
+   *
+   * @param tbl
+   */
+  public void createTbl(TableMeta tbl) {
+    PersistenceManager pm = getPM();
+    Transaction tx = pm.currentTransaction();
+    try {
+      tx.begin();
+      DBMeta dbMeta = pm.getObjectById(DBMeta.class, CatalogCache.getKey(tbl
+              .getDbName()));
+      tbl.setDbMeta(dbMeta);
+      dbMeta.add(tbl);
+      long version = increaseVersion(dbMeta);
+      tx.commit();
+      updateSeenVersion(tbl.getDbName(), version);
+    } finally {
+      if (tx.isActive()) {
+        tx.rollback();
+      }
+      releasePM(pm);
+    }
+    refreshDB(tbl.getDbName());
+  }
 
-  public void delTbl(String dbName, String tblName) {
-    TableMeta tblMeta = getTbl(dbName, tblName);
 
-    if(tblMeta == null)
+  public void delTbl(String dbName, String tblName) {
+    if (getTbl(dbName, tblName) == null)
       return;
 
-    List<ColumnMeta> columnMetas = tblMeta.getCols();
-
+    PersistenceManager pm = getPM();
     Transaction tx = pm.currentTransaction();
     try {
       tx.begin();
-      for(ColumnMeta columnMeta : columnMetas) {
+      // The cached object may be detached, delete the one of this manager.
+      TableMeta tblMeta = pm.getObjectById(TableMeta.class, CatalogCache
+              .getKey(dbName, tblName));
+      for(ColumnMeta columnMeta : tblMeta.getCols()) {
         pm.deletePersistent(columnMeta);
       }
 
+      DBMeta dbMeta = pm.getObjectById(DBMeta.class, CatalogCache.getKey
+              (dbName));
+      dbMeta.getTbls().remove(tblMeta);
+      long version = increaseVersion(dbMeta);
       pm.deletePersistent(tblMeta);
       tx.commit();
+      updateSeenVersion(dbName, version);
+      cache.removeTbl(dbName, tblName);
     } finally {
       if (tx.isActive()) {
         tx.rollback();
       }
+      releasePM(pm);
     }
+    refreshDB(dbName);
 
   }
 
+
+  /**
+   * Save the known statistics of a table and its columns. Like a new table,
+   * they replace the cached database by a fresh copy and change its version,
+   * so the optimizer of every proxy sees them.
+   *
+   * @param dbName
+   * @param tblName
+   * @param stats
+   */
+  public void updateStats(String dbName, String tblName, TableStatistics stats) {
+    if (getTbl(dbName, tblName) == null)
+      return;
+
+    PersistenceManager pm = getPM();
+    Transaction tx = pm.currentTransaction();
+    try {
+      tx.begin();
+      // The cached object may be detached, update the one of this manager.
+      TableMeta tblMeta = pm.getObjectById(TableMeta.class, CatalogCache
+              .getKey(dbName, tblName));
+      if (stats.getRowCount() >= 0)
+        tblMeta.setRowCount(stats.getRowCount());
+      if (stats.getAvgRowSize() >= 0)
+        tblMeta.setAvgRowSize(stats.getAvgRowSize());
+
+      for (ColumnMeta colMeta : tblMeta.getCols()) {
+        TableStatistics.ColumnStatistics colStats = stats.getColStats().get
+                (colMeta.getColName().toLowerCase());
+        if (colStats == null)
+          continue;
+
+        if (colStats.getDistinctCount() >= 0)
+          colMeta.setDistinctCount(colStats.getDistinctCount());
+        if (colStats.getNullCount() >= 0)
+          colMeta.setNullCount(colStats.getNullCount());
+        if (colStats.getMinValue() != null)
+          colMeta.setMinValue(colStats.getMinValue());
+        if (colStats.getMaxValue() != null)
+          colMeta.setMaxValue(colStats.getMaxValue());
+      }
+
+      DBMeta dbMeta = pm.getObjectById(DBMeta.class, CatalogCache.getKey
+              (dbName));
+      long version = increaseVersion(dbMeta);
+      tx.commit();
+      updateSeenVersion(dbName, version);
+    } finally {
+      if (tx.isActive()) {
+        tx.rollback();
+      }
+      releasePM(pm);
+    }
+    refreshDB(dbName);
+  }
+
   /**
    * Add column meta.
    *
    * @param col
    */
   public void addCol(ColumnMeta col) {
+    PersistenceManager pm = getPM();
     Transaction tx = pm.currentTransaction();
     try {
       tx.begin();
       pm.makePersistent(col);
       tx.commit();
+      cache.putCol(col);
+      invalidateSnapshot(col.getDbName());
     } finally {
       if (tx.isActive()) {
         tx.rollback();
       }
+      releasePM(pm);
     }
   }
 
@@ -134,19 +346,144 @@ public class MetaStore {
    * @param cols
    */
   public void addCols(Collection<ColumnMeta> cols) {
+    PersistenceManager pm = getPM();
     Transaction tx = pm.currentTransaction();
     try {
       tx.begin();
       pm.makePersistentAll(cols);
       tx.commit();
+      Set<String> dbNames = new HashSet<>();
+      for (ColumnMeta col : cols) {
+        cache.putCol(col);
+        if (dbNames.add(col.getDbName()))
+          invalidateSnapshot(col.getDbName());
+      }
     } finally {
       if (tx.isActive()) {
         tx.rollback();
       }
+      releasePM(pm);
     }
   }
 
 
+  /**
+   * Record a change of the data of a database, e.g. a load into one of its
+   * tables, for the other proxies sharing the metastore.
+   *
+   * @param dbName
+   */
+  public void increaseVersion(String dbName) {
+    PersistenceManager pm = getPM();
+    Transaction tx = pm.currentTransaction();
+    try {
+      tx.begin();
+      DBMeta dbMeta = pm.getObjectById(DBMeta.class, CatalogCache.getKey
+              (dbName));
+      long version = increaseVersion(dbMeta);
+      tx.commit();
+      updateSeenVersion(dbName, version);
+    } finally {
+      if (tx.isActive()) {
+        tx.rollback();
+      }
+      releasePM(pm);
+    }
+  }
+
+  /**
+   * Increase the version of a database of the current transaction.
+   *
+   * @param dbMeta
+   * @return the version before
+   */
+  private long increaseVersion(DBMeta dbMeta) {
+    long version = dbMeta.getVersion();
+    dbMeta.setVersion(version + 1);
+    return version;
+  }
+
+  /**
+   * A change made by this proxy does not make its caches stale. They are
+   * still stale if another proxy changed the database in the meantime.
+   *
+   * @param dbName
+   * @param before the version before the change
+   */
+  private void updateSeenVersion(String dbName, long before) {
+    seenVersions.replace(CatalogCache.getKey(dbName), before, before + 1);
+  }
+
+  /**
+   * Read the version of a database from the metastore, bypassing the cache.
+   *
+   * @param dbName
+   * @return the version, or -1 if the database does not exist
+   */
+  public long getVersion(String dbName) {
+    PersistenceManager pm = getPM();
+    try {
+      Query q = pm.newQuery(DBMeta.class, "dbName == name");
+      q.declareParameters("String name");
+      q.setResult("version");
+      q.setUnique(true);
+      Object version = q.execute(CatalogCache.getKey(dbName));
+      return version == null ? -1 : ((Number) version).longValue();
+    } finally {
+      releasePM(pm);
+    }
+  }
+
+  /**
+   * Check the version of a database in the metastore, which is changed by
+   * any proxy sharing it. The cached database is reloaded if it is stale.
+   *
+   * @param dbName
+   * @return true if the database was changed since the last check, so the
+   * plans and results cached for it must be dropped
+   */
+  public boolean syncDB(String dbName) {
+    String key = CatalogCache.getKey(dbName);
+    long version = getVersion(dbName);
+    Long seen = seenVersions.get(key);
+    if (seen != null && seen == version)
+      return false;
+
+    LOG.info("Database " + dbName + " is changed to version " + version);
+    refreshDB(dbName);
+    seenVersions.put(key, version);
+    return true;
+  }
+
+  /**
+   * Replace the cached database by the stored one. A detached database is not
+   * updated by the persistence layer, and the cached instance is never
+   * changed in place.
+   *
+   * @param dbName
+   */
+  private void refreshDB(String dbName) {
+    DBMeta dbMeta = getByKey(CatalogCache.getKey(dbName), DBMeta.class);
+    if (dbMeta != null) {
+      dbMeta.invalidateSnapshot();
+      cache.putDB(dbMeta);
+    }
+  }
+
+  /**
+   * Drop the indexed view of the catalog of a database after it is changed.
+   *
+   * @param dbName
+   */
+  private void invalidateSnapshot(String dbName) {
+    if (dbName == null)
+      return;
+
+    DBMeta dbMeta = getDB(dbName);
+    if (dbMeta != null)
+      dbMeta.invalidateSnapshot();
+  }
+
   /**
    * Get db meta.
    *
@@ -154,7 +491,13 @@ public class MetaStore {
    * @return
    */
   public DBMeta getDB(String dbName) {
-    DBMeta dbMeta = getByKey(dbName.toLowerCase(), DBMeta.class);
+    DBMeta dbMeta = cache.getDB(dbName);
+
+    if (dbMeta == null) {
+      dbMeta = getByKey(dbName.toLowerCase(), DBMeta.class);
+      if (dbMeta != null)
+        cache.putDB(dbMeta);
+    }
 
     return  dbMeta;
   }
@@ -167,8 +510,15 @@ public class MetaStore {
    * @return
    */
   public TableMeta getTbl(String dbName, String tblName) {
-    return getByKey(dbName.toLowerCase() + "::"
-                    + tblName.toLowerCase(), TableMeta.class);
+    TableMeta tblMeta = cache.getTbl(dbName, tblName);
+
+    if (tblMeta == null) {
+      tblMeta = getByKey(CatalogCache.getKey(dbName, tblName), TableMeta.class);
+      if (tblMeta != null)
+        cache.putTbl(tblMeta);
+    }
+
+    return tblMeta;
   }
 
 
@@ -181,8 +531,16 @@ public class MetaStore {
    * @return
    */
   public ColumnMeta getCol(String dbName, String tblName, String colName) {
-    return getByKey(dbName.toLowerCase() + "::" + tblName.toLowerCase() + "::" + colName.toLowerCase(),
-            ColumnMeta.class);
+    ColumnMeta colMeta = cache.getCol(dbName, tblName, colName);
+
+    if (colMeta == null) {
+      colMeta = getByKey(CatalogCache.getKey(dbName, tblName, colName),
+              ColumnMeta.class);
+      if (colMeta != null)
+        cache.putCol(colMeta);
+    }
+
+    return colMeta;
   }
 
   /**
@@ -193,8 +551,7 @@ public class MetaStore {
    * @return
    */
   public ColumnMeta getCol(String tblName, String colName) {
-    return getByKey(defaultDB.toLowerCase() + "::" + tblName.toLowerCase() + "::" + colName.toLowerCase(),
-            ColumnMeta.class);
+    return getCol(defaultDB, tblName, colName);
   }
 
   /**
@@ -207,14 +564,17 @@ public class MetaStore {
   @SuppressWarnings("unchecked")
   public <T> T getByKey(String keyString, Class<T> clazz) {
     T result;
+    PersistenceManager pm = getPM();
 //    Key k = KeyFactory.createKey(clazz.getSimpleName(), keyString);
     try {
       result = (T) pm.getObjectById(clazz, keyString);
+      return isDetaching() ? pm.detachCopy(result) : result;
     } catch (JDOObjectNotFoundException nfe) {
       LOG.warn("No " + clazz.getCanonicalName() + " found with key: " + keyString);
       return null;
+    } finally {
+      releasePM(pm);
     }
-    return result;
   }
 
   /**
@@ -224,9 +584,15 @@ public class MetaStore {
    */
   @SuppressWarnings("unchecked")
   public List<DBMeta> getAllDBs() {
-    Query q = pm.newQuery(DBMeta.class);
+    PersistenceManager pm = getPM();
+    try {
+      Query q = pm.newQuery(DBMeta.class);
 
-    return (List<DBMeta>) q.execute();
+      List<DBMeta> result = (List<DBMeta>) q.execute();
+      return isDetaching() ? new ArrayList<>(pm.detachCopyAll(result)) : result;
+    } finally {
+      releasePM(pm);
+    }
   }
 
   /**
@@ -236,9 +602,15 @@ public class MetaStore {
    */
   @SuppressWarnings("unchecked")
   public List<TableMeta> getAllTbls() {
-    Query q = pm.newQuery(TableMeta.class);
+    PersistenceManager pm = getPM();
+    try {
+      Query q = pm.newQuery(TableMeta.class);
 
-    return (List<TableMeta>) q.execute();
+      List<TableMeta> result = (List<TableMeta>) q.execute();
+      return isDetaching() ? new ArrayList<>(pm.detachCopyAll(result)) : result;
+    } finally {
+      releasePM(pm);
+    }
   }
 
   /**
@@ -248,9 +620,15 @@ public class MetaStore {
    */
   @SuppressWarnings("unchecked")
   public List<ColumnMeta> getAllCols() {
-    Query q = pm.newQuery(ColumnMeta.class);
+    PersistenceManager pm = getPM();
+    try {
+      Query q = pm.newQuery(ColumnMeta.class);
 
-    return (List<ColumnMeta>) q.execute();
+      List<ColumnMeta> result = (List<ColumnMeta>) q.execute();
+      return isDetaching() ? new ArrayList<>(pm.detachCopyAll(result)) : result;
+    } finally {
+      releasePM(pm);
+    }
   }
 
 }
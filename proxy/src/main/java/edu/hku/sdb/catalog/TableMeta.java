@@ -42,6 +42,13 @@ public class TableMeta {
   @Persistent
   private DBMeta dbMeta;
 
+  // Statistics, -1 if unknown.
+  @Persistent
+  private long rowCount = -1;
+  // The average size of a plaintext row in bytes.
+  @Persistent
+  private long avgRowSize = -1;
+
   public static class TablePK extends Key {
 
     private static final long serialVersionUID = 1L;
@@ -168,4 +175,20 @@ public class TableMeta {
   public void setCols(List<ColumnMeta> cols) {
     this.cols = cols;
   }
+
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  public void setRowCount(long rowCount) {
+    this.rowCount = rowCount;
+  }
+
+  public long getAvgRowSize() {
+    return avgRowSize;
+  }
+
+  public void setAvgRowSize(long avgRowSize) {
+    this.avgRowSize = avgRowSize;
+  }
 }
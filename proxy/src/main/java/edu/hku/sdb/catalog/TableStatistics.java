@@ -0,0 +1,103 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.hku.sdb.catalog;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The statistics of a table to be saved in the catalog. A value of -1 or null
+ * is unknown, and the saved value is kept for it.
+ */
+public class TableStatistics {
+
+  private long rowCount = -1;
+  private long avgRowSize = -1;
+  private final Map<String, ColumnStatistics> colStats = new LinkedHashMap<>();
+
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  public void setRowCount(long rowCount) {
+    this.rowCount = rowCount;
+  }
+
+  public long getAvgRowSize() {
+    return avgRowSize;
+  }
+
+  public void setAvgRowSize(long avgRowSize) {
+    this.avgRowSize = avgRowSize;
+  }
+
+  public Map<String, ColumnStatistics> getColStats() {
+    return colStats;
+  }
+
+  /**
+   * @param colName
+   * @return the statistics of a column, created if absent
+   */
+  public ColumnStatistics getColStats(String colName) {
+    ColumnStatistics stats = colStats.get(colName.toLowerCase());
+    if (stats == null) {
+      stats = new ColumnStatistics();
+      colStats.put(colName.toLowerCase(), stats);
+    }
+    return stats;
+  }
+
+  public static class ColumnStatistics {
+    private long distinctCount = -1;
+    private long nullCount = -1;
+    private String minValue;
+    private String maxValue;
+
+    public long getDistinctCount() {
+      return distinctCount;
+    }
+
+    public void setDistinctCount(long distinctCount) {
+      this.distinctCount = distinctCount;
+    }
+
+    public long getNullCount() {
+      return nullCount;
+    }
+
+    public void setNullCount(long nullCount) {
+      this.nullCount = nullCount;
+    }
+
+    public String getMinValue() {
+      return minValue;
+    }
+
+    public void setMinValue(String minValue) {
+      this.minValue = minValue;
+    }
+
+    public String getMaxValue() {
+      return maxValue;
+    }
+
+    public void setMaxValue(String maxValue) {
+      this.maxValue = maxValue;
+    }
+  }
+}
@@ -14,7 +14,7 @@ public class JDBCServerConnection extends  ServerConnection{
   private static final Logger LOG = LoggerFactory.getLogger(JDBCServerConnection.class);
 
   private java.sql.Connection connection;
-  private java.sql.Statement statement;
+  private volatile java.sql.Statement statement;
 
   public JDBCServerConnection(JDBCServerConf jdbcServerConf) {
 
@@ -88,6 +88,19 @@ public class JDBCServerConnection extends  ServerConnection{
     return -1;
   }
 
+  @Override
+  public void cancel() {
+    java.sql.Statement running = statement;
+    if (running == null)
+      return;
+
+    try {
+      running.cancel();
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+  }
+
   @Override
   public void close() {
     try {
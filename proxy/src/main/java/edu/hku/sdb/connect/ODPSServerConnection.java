@@ -21,6 +21,8 @@ public class ODPSServerConnection extends ServerConnection {
   private static final Logger LOG = LoggerFactory.getLogger(ODPSServerConnection.class);
 
   private Odps odps;
+  // The instance of the running command, null if none.
+  private volatile Instance running;
 
   public ODPSServerConnection(ODPSServerConf odpsServerConf) {
     LOG.info("Connecting ODPS with ID: " + odpsServerConf.getAccessID());
@@ -45,7 +47,7 @@ public class ODPSServerConnection extends ServerConnection {
     query = query + ";";
     try {
       Instance instance = SQLTask.run(odps, query);
-      instance.waitForSuccess();
+      waitForSuccess(instance);
 
       LOG.info("Query execution finished!");
 
@@ -74,7 +76,7 @@ public class ODPSServerConnection extends ServerConnection {
     query = query + ";";
     try {
       Instance instance = SQLTask.run(odps, query);
-      instance.waitForSuccess();
+      waitForSuccess(instance);
 
       Map<String, String> results = instance.getTaskResults();
       Map<String, Instance.TaskStatus> taskStatus = instance.getTaskStatus();
@@ -93,6 +95,28 @@ public class ODPSServerConnection extends ServerConnection {
     return -1;
   }
 
+  private void waitForSuccess(Instance instance) throws OdpsException {
+    running = instance;
+    try {
+      instance.waitForSuccess();
+    } finally {
+      running = null;
+    }
+  }
+
+  @Override
+  public void cancel() {
+    Instance instance = running;
+    if (instance == null)
+      return;
+
+    try {
+      instance.stop();
+    } catch (OdpsException e) {
+      e.printStackTrace();
+    }
+  }
+
   @Override
   public void close() {
 
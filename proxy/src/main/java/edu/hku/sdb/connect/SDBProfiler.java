@@ -30,6 +30,16 @@ public class SDBProfiler {
   private long executeTime;
   private long serverTotalTime;
   private long totalTime;
+  // SDB UDF calls and key updates per row, before and after minimizing the
+  // key updates.
+  private int udfCallsBefore;
+  private int udfCallsAfter;
+  private int keyUpdatesBefore;
+  private int keyUpdatesAfter;
+  // Whether the decrypted rows came from the result cache, null if it is not
+  // used, and the hit rate of the cache.
+  private Boolean resultCacheHit;
+  private double resultCacheHitRate;
 
   public long getExecuteTime() {
     return executeTime;
@@ -95,6 +105,54 @@ public class SDBProfiler {
     this.serverTotalTime = serverTotalTime;
   }
 
+  public int getUdfCallsBefore() {
+    return udfCallsBefore;
+  }
+
+  public void setUdfCallsBefore(int udfCallsBefore) {
+    this.udfCallsBefore = udfCallsBefore;
+  }
+
+  public int getUdfCallsAfter() {
+    return udfCallsAfter;
+  }
+
+  public void setUdfCallsAfter(int udfCallsAfter) {
+    this.udfCallsAfter = udfCallsAfter;
+  }
+
+  public int getKeyUpdatesBefore() {
+    return keyUpdatesBefore;
+  }
+
+  public void setKeyUpdatesBefore(int keyUpdatesBefore) {
+    this.keyUpdatesBefore = keyUpdatesBefore;
+  }
+
+  public int getKeyUpdatesAfter() {
+    return keyUpdatesAfter;
+  }
+
+  public void setKeyUpdatesAfter(int keyUpdatesAfter) {
+    this.keyUpdatesAfter = keyUpdatesAfter;
+  }
+
+  public Boolean getResultCacheHit() {
+    return resultCacheHit;
+  }
+
+  public void setResultCacheHit(Boolean resultCacheHit) {
+    this.resultCacheHit = resultCacheHit;
+  }
+
+  public double getResultCacheHitRate() {
+    return resultCacheHitRate;
+  }
+
+  public void setResultCacheHitRate(double resultCacheHitRate) {
+    this.resultCacheHitRate = resultCacheHitRate;
+  }
+
   @Override
   public String toString() {
     return "totalTime: " + totalTime + "ms\n" +
@@ -103,7 +161,12 @@ public class SDBProfiler {
             "clientParseTime: " + clientParseTime + "ms\n" +
             "clientAnalyseTime: " + clientAnalyseTime + "ms\n" +
             "clientRewriteTime: " + clientRewriteTime + "ms\n" +
-            "clientExecuteTime: " + clientExecuteTime + "ms\n";
+            "clientExecuteTime: " + clientExecuteTime + "ms\n" +
+            "udfCalls: " + udfCallsBefore + " -> " + udfCallsAfter + "\n" +
+            "keyUpdates: " + keyUpdatesBefore + " -> " + keyUpdatesAfter + "\n" +
+            (resultCacheHit == null ? "" : "resultCache: " + (resultCacheHit ?
+                    "hit" : "miss") + ", hit rate " + String.format("%.2f",
+                    resultCacheHitRate) + "\n");
   }
 
 }
@@ -26,32 +26,43 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
 import java.math.BigInteger;
-import java.net.MalformedURLException;
-import java.rmi.Naming;
-import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.rmi.server.Unreferenced;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class SdbConnection extends UnicastRemoteObject implements Connection,
-        Serializable {
+        Serializable, Unreferenced {
 
   private static final Logger LOG = LoggerFactory.getLogger(SdbConnection.class);
 
   private static final long serialVersionUID = 227L;
-  private static final String SERVICE_NAME = "Statement";
-  private static String serviceUrl;
 
   private SdbConf sdbConf;
-  private Statement statement;
   private MetaStore metaStore;
   private String serverDB;
   private ServerConnection serverConnection;
+  // Notified when the connection is closed, may be null.
+  private transient ConnectionListener listener;
+  private transient boolean closed = false;
+
+  /**
+   * Notified when a connection is closed.
+   */
+  public interface ConnectionListener {
+    void connectionClosed(SdbConnection connection);
+  }
 
   public SdbConnection(SdbConf sdbConf, MetaStore metaStore) throws RemoteException {
+    this(sdbConf, metaStore, null);
+  }
+
+  public SdbConnection(SdbConf sdbConf, MetaStore metaStore, ConnectionListener
+          listener) throws RemoteException {
     super();
     setSdbConf(sdbConf);
+    this.listener = listener;
 
     this.metaStore = metaStore;
 
@@ -85,7 +96,8 @@ public class SdbConnection extends UnicastRemoteObject implements Connection,
       dbMeta.setPrime2(prime2.toString());
       dbMeta.setG(g.toString());
       dbMeta.setK(K.toString());
-      metaStore.addDB(dbMeta);
+      // Another proxy may have created it meanwhile, its keys are kept.
+      metaStore.addDBIfAbsent(dbMeta);
     }
 
     LOG.info("Connecting to server DB");
@@ -100,28 +112,60 @@ public class SdbConnection extends UnicastRemoteObject implements Connection,
     this.sdbConf = sdbConf;
   }
 
+  /**
+   * Each statement is exported on its own instead of being bound at a fixed
+   * name, so the clients and the proxies share no state but the metastore.
+   *
+   * @return
+   * @throws RemoteException
+   */
   public Statement createStatement() throws RemoteException {
+    LOG.info("Creating sdb statement");
+    return new SdbStatement(metaStore, serverConnection, serverDB, sdbConf
+            .getServerConf());
+  }
+
+  /**
+   * Each prepared statement is exported on its own, since it keeps the plan
+   * and the parameters of its query.
+   *
+   * @param query
+   * @return
+   * @throws RemoteException
+   */
+  public PreparedStatement prepareStatement(String query) throws
+          RemoteException {
+    LOG.info("Creating sdb prepared statement");
+    return new SdbPreparedStatement(metaStore, serverConnection, serverDB,
+            sdbConf.getServerConf(), query);
+  }
+
+  public synchronized void close() throws RemoteException {
+    if (closed)
+      return;
+    closed = true;
+
     try {
-      if (statement == null) {
-        //init connection
-        ConnectionConf connectionConf = sdbConf.getConnectionConf();
-
-        //create sdbStatement
-        LOG.info("Creating sdb statement");
-        SdbStatement sdbStatement = new SdbStatement(metaStore, serverConnection, serverDB, sdbConf.getServerConf());
-        serviceUrl = connectionConf.getSdbAddress() + ":"
-                + connectionConf.getSdbPort() + "/" + SERVICE_NAME;
-        Naming.rebind(serviceUrl, sdbStatement);
-      }
-      statement = (Statement) Naming.lookup(serviceUrl);
-    } catch (RemoteException | NotBoundException | MalformedURLException e) {
-      e.printStackTrace();
+      serverConnection.close();
+      UnicastRemoteObject.unexportObject(this, true);
+    } finally {
+      if (listener != null)
+        listener.connectionClosed(this);
     }
-    return statement;
   }
 
-  public void close() throws RemoteException {
-    //TODO to be implemented
+  /**
+   * Called by RMI once no client holds the connection any more, e.g. a
+   * client which crashed, so its server connection and its slot in the pool
+   * are released.
+   */
+  @Override
+  public void unreferenced() {
+    try {
+      close();
+    } catch (RemoteException e) {
+      e.printStackTrace();
+    }
   }
 
 
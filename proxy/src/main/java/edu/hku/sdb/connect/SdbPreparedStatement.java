@@ -0,0 +1,368 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.connect;
+
+import edu.hku.sdb.catalog.MetaStore;
+import edu.hku.sdb.conf.ServerConf;
+import edu.hku.sdb.crypto.DetEncryptor;
+import edu.hku.sdb.crypto.SEException;
+import edu.hku.sdb.crypto.SearchColumnEncryptor;
+import edu.hku.sdb.optimize.PlanCache;
+import edu.hku.sdb.optimize.PlanTemplate;
+import edu.hku.sdb.parse.Expr;
+import edu.hku.sdb.parse.LikePredicate;
+import edu.hku.sdb.parse.ParameterLiteral;
+import edu.hku.sdb.parse.ParseNode;
+import edu.hku.sdb.parse.SelectStmt;
+import edu.hku.sdb.parse.StringLiteral;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * A select statement with ? placeholders. It is parsed, analysed, rewritten
+ * and optimized once, and each execution only substitutes the bound values
+ * into the rewritten remote query. The values compared with deterministic
+ * columns are encrypted when they are bound, a keyword looked up in a keyword
+ * index is replaced by its trapdoor, and a value compared with a column of the
+ * SDB scheme is scaled like the column, as it is a plain operand of the key
+ * updates.
+ *
+ * A value that can not be bound exactly, e.g. 5.5 compared with an integer
+ * column of the SDB scheme, is executed as a plain query with the values
+ * inlined, which still hits the plan cache if the values repeat.
+ */
+public class SdbPreparedStatement extends SdbStatement implements
+        PreparedStatement {
+
+  private static final Logger LOG = LoggerFactory.getLogger
+          (SdbPreparedStatement.class);
+
+  private static final long serialVersionUID = 428L;
+
+  private final String query;
+  // The query split by the placeholders.
+  private final List<String> segments;
+  private final Object[] values;
+
+  private boolean prepared = false;
+  private long catalogVersion;
+  private PlanTemplate template;
+  private ParameterLiteral[] parameters;
+  private DetEncryptor detEncryptor;
+
+  public SdbPreparedStatement(MetaStore metaDB, ServerConnection
+          serverConnection, String serverDBName, ServerConf serverConf, String
+          query) throws RemoteException {
+    super(metaDB, serverConnection, serverDBName, serverConf);
+    this.query = query;
+    this.segments = split(query);
+    this.values = new Object[segments.size() - 1];
+  }
+
+  @Override
+  public void setInt(int parameterIndex, int x) throws RemoteException {
+    setValue(parameterIndex, x);
+  }
+
+  @Override
+  public void setLong(int parameterIndex, long x) throws RemoteException {
+    setValue(parameterIndex, x);
+  }
+
+  @Override
+  public void setDouble(int parameterIndex, double x) throws RemoteException {
+    setValue(parameterIndex, x);
+  }
+
+  @Override
+  public void setString(int parameterIndex, String x) throws RemoteException {
+    setValue(parameterIndex, x);
+  }
+
+  @Override
+  public void clearParameters() throws RemoteException {
+    Arrays.fill(values, null);
+  }
+
+  private void setValue(int parameterIndex, Object value) throws
+          RemoteException {
+    if (parameterIndex < 1 || parameterIndex > values.length)
+      throw new RemoteException("Parameter index " + parameterIndex + " is out" +
+              " of range!");
+    if (value == null)
+      throw new RemoteException("Can not bind null to parameter " +
+              parameterIndex + "!");
+
+    values[parameterIndex - 1] = value;
+  }
+
+  @Override
+  public ResultSet executeQuery() throws RemoteException {
+    LOG.info("Executing prepared query: " + query);
+
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == null)
+        throw new RemoteException("Parameter " + (i + 1) + " is not bound!");
+    }
+
+    syncCatalog();
+
+    // Prepare again if a table is created or dropped since.
+    if (!prepared || catalogVersion != PlanCache.getInstance().getCatalogVersion
+            (serverDBName))
+      prepare();
+
+    String remoteQuery = template == null ? null : bindTemplate();
+    if (remoteQuery == null)
+      return executeQuery(bindText());
+
+    sdbProfiler = new SDBProfiler();
+    long startTimeStamp = System.currentTimeMillis();
+
+    sdbResultSet = getSdbResultSet(template.instantiate(getServerConnection(),
+            remoteQuery));
+    setExecutionTime(startTimeStamp);
+    LOG.info(sdbProfiler.toString());
+
+    return sdbResultSet;
+  }
+
+  /**
+   * Parse, analyse, rewrite and optimize the query with a marker for each
+   * placeholder. The template is left null if the markers can not be bound
+   * after rewriting.
+   *
+   * @throws RemoteException
+   */
+  private void prepare() throws RemoteException {
+    LOG.info("Preparing query: " + query);
+
+    catalogVersion = PlanCache.getInstance().getCatalogVersion(serverDBName);
+    template = null;
+    prepared = true;
+
+    sdbProfiler = new SDBProfiler();
+    ParseNode analyzedNode = getParseNode(bindMarkers());
+    if (!(analyzedNode instanceof SelectStmt))
+      return;
+
+    SelectStmt selStmt = (SelectStmt) analyzedNode;
+    List<ParameterLiteral> params = new ArrayList<>();
+    if (selStmt.getWhereClause() != null)
+      selStmt.setWhereClause(replaceMarkers(selStmt.getWhereClause(), params));
+
+    // Some of the placeholders are not in the where clause.
+    if (params.size() != values.length)
+      return;
+
+    PlanTemplate planTemplate;
+    try {
+      rewriteNode(analyzedNode);
+      planTemplate = PlanTemplate.of(getPlanNode(analyzedNode));
+    } catch (RemoteException e) {
+      LOG.info("Parameters can not be bound after rewriting, the values will be" +
+              " inlined: " + e.getMessage());
+      return;
+    }
+
+    if (planTemplate == null)
+      return;
+
+    parameters = new ParameterLiteral[values.length];
+    for (ParameterLiteral param : params) {
+      if (!planTemplate.getRemoteQuery().contains(param.toSql()))
+        return;
+      parameters[param.getIndex()] = param;
+    }
+
+    template = planTemplate;
+    detEncryptor = new DetEncryptor(template.getPrime1(), template.getPrime2());
+  }
+
+  private Expr replaceMarkers(Expr expr, List<ParameterLiteral> params) {
+    if (expr == null)
+      return null;
+
+    if (expr instanceof StringLiteral) {
+      int index = ParameterLiteral.getIndex(((StringLiteral) expr).getValue());
+      if (index >= 0 && index < values.length) {
+        ParameterLiteral param = new ParameterLiteral(index);
+        params.add(param);
+        return param;
+      }
+      return expr;
+    }
+
+    for (int i = 0; i < expr.getChildren().size(); i++) {
+      expr.setChild(i, replaceMarkers(expr.getChild(i), params));
+    }
+    return expr;
+  }
+
+  private String bindMarkers() {
+    StringBuilder sb = new StringBuilder(segments.get(0));
+    for (int i = 1; i < segments.size(); i++) {
+      sb.append("'").append(ParameterLiteral.getMarker(i - 1)).append("'");
+      sb.append(segments.get(i));
+    }
+    return sb.toString();
+  }
+
+  private String bindText() {
+    StringBuilder sb = new StringBuilder(segments.get(0));
+    for (int i = 1; i < segments.size(); i++) {
+      Object value = values[i - 1];
+      if (value instanceof String)
+        sb.append("'").append(escape((String) value, '\'')).append("'");
+      else
+        sb.append(toString(value));
+      sb.append(segments.get(i));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @return the remote query with the bound values, or null if a value can not
+   * be bound to the template.
+   * @throws RemoteException
+   */
+  private String bindTemplate() throws RemoteException {
+    String[] literals = new String[values.length];
+    for (ParameterLiteral param : parameters) {
+      literals[param.getIndex()] = toLiteral(param, values[param.getIndex()]);
+      if (literals[param.getIndex()] == null)
+        return null;
+    }
+    return bind(template.getRemoteQuery(), literals);
+  }
+
+  /**
+   * @param param
+   * @param value
+   * @return the literal of a bound value in the remote query, or null if the
+   * value can not be bound.
+   * @throws RemoteException
+   */
+  private String toLiteral(ParameterLiteral param, Object value) throws
+          RemoteException {
+    String text = toString(value);
+
+    if (param.getDetType() != null) {
+      if (!DetEncryptor.isExact(text, param.getDetType()))
+        throw new RemoteException("Parameter " + (param.getIndex() + 1) + " " +
+                "is not a value of type " + param.getDetType() + "!");
+      return "\"" + detEncryptor.encrypt(text, param.getDetType()) + "\"";
+    }
+
+    if (param.getPlainType() != null) {
+      BigInteger plain = param.toPlainValue(text);
+      return plain == null ? null : plain.toString();
+    }
+
+    if (param.isKeyword() && !LikePredicate.isKeyword(text))
+      throw new RemoteException("Parameter " + (param.getIndex() + 1) + " can " +
+              "only contains letter and digit!");
+
+    if (param.getSearchColKey() != null) {
+      try {
+        return "\"" + new SearchColumnEncryptor(param.getSearchColKey())
+                .trapdoor(text) + "\"";
+      } catch (SEException e) {
+        throw new RemoteException("Invalid search column key for parameter " +
+                (param.getIndex() + 1) + "!", e);
+      }
+    }
+
+    if (value instanceof String)
+      return "\"" + escape((String) value, '"') + "\"";
+    return text;
+  }
+
+  /**
+   * Replace the markers of a query by the literals of their parameters. The
+   * query is scanned once, so a marker in a bound value is never replaced.
+   *
+   * @param query
+   * @param literals the literal of each parameter, null to keep its marker
+   * @return
+   */
+  static String bind(String query, String[] literals) {
+    Matcher matcher = ParameterLiteral.MARKER_PATTERN.matcher(query);
+    StringBuffer sb = new StringBuffer();
+    while (matcher.find()) {
+      int index = Integer.parseInt(matcher.group(1));
+      String literal = index < literals.length ? literals[index] : null;
+      matcher.appendReplacement(sb, Matcher.quoteReplacement(literal == null ?
+              matcher.group() : literal));
+    }
+    matcher.appendTail(sb);
+    return sb.toString();
+  }
+
+  private static String toString(Object value) {
+    if (value instanceof Double)
+      return BigDecimal.valueOf((Double) value).toPlainString();
+    return value.toString();
+  }
+
+  private static String escape(String value, char quote) {
+    return value.replace("\\", "\\\\").replace(String.valueOf(quote), "\\" +
+            quote);
+  }
+
+  /**
+   * Split a query by the ? placeholders outside the quoted strings.
+   *
+   * @param query
+   * @return n + 1 segments for n placeholders
+   */
+  static List<String> split(String query) {
+    List<String> segments = new ArrayList<>();
+    StringBuilder sb = new StringBuilder();
+    char quote = 0;
+
+    for (int i = 0; i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (quote != 0) {
+        sb.append(c);
+        if (c == '\\' && i + 1 < query.length())
+          sb.append(query.charAt(++i));
+        else if (c == quote)
+          quote = 0;
+      } else if (c == '?') {
+        segments.add(sb.toString());
+        sb.setLength(0);
+      } else {
+        if (c == '\'' || c == '"' || c == '`')
+          quote = c;
+        sb.append(c);
+      }
+    }
+
+    segments.add(sb.toString());
+    return segments;
+  }
+}
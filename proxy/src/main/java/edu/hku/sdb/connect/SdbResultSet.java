@@ -19,22 +19,27 @@ package edu.hku.sdb.connect;
 
 import edu.hku.sdb.exec.ExecutionState;
 import edu.hku.sdb.exec.Executor;
+import edu.hku.sdb.exec.MemoryManager;
+import edu.hku.sdb.exec.MemoryPool;
 import edu.hku.sdb.exec.PlanNode;
+import edu.hku.sdb.exec.ResultBuffer;
 
 import java.io.Serializable;
 import java.math.BigInteger;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
-import java.util.ArrayList;
+import java.rmi.server.Unreferenced;
 import java.util.List;
 
 public class SdbResultSet extends UnicastRemoteObject implements ResultSet,
-        Serializable, Profiler {
+        Serializable, Profiler, Unreferenced {
 
   private static final long serialVersionUID = 127L;
 
-  private List<Object[]> tuple;
-  private int index;
+  // The memory of the query, and the rows not read yet, null once closed.
+  private transient MemoryPool memoryPool;
+  private transient ResultBuffer buffer;
+  private Object[] current;
 
   private ExecutionState eState;
   private Executor executor;
@@ -50,8 +55,8 @@ public class SdbResultSet extends UnicastRemoteObject implements ResultSet,
 
   public SdbResultSet() throws RemoteException {
     super();
-    tuple = new ArrayList<>();
-    index = -1;
+    memoryPool = MemoryManager.getInstance().createPool();
+    buffer = new ResultBuffer(memoryPool);
     sdbProfiler = new SDBProfiler();
   }
 
@@ -72,8 +77,21 @@ public class SdbResultSet extends UnicastRemoteObject implements ResultSet,
     this.sdbResultSetMetaData = sdbResultSetMetaData;
   }
 
-  public List<Object[]> getTuple() {
-    return tuple;
+  /**
+   * Append a row of the result.
+   *
+   * @param row
+   */
+  public void addRow(Object[] row) {
+    buffer.add(row);
+  }
+
+  public ResultBuffer getBuffer() {
+    return buffer;
+  }
+
+  public MemoryPool getMemoryPool() {
+    return memoryPool;
   }
 
   public PlanNode getPlanNode() {
@@ -101,32 +119,56 @@ public class SdbResultSet extends UnicastRemoteObject implements ResultSet,
   }
 
   public void setTuple(List<Object[]> tuple) {
-    this.tuple = tuple;
+    for (Object[] row : tuple) {
+      addRow(row);
+    }
   }
 
   @Override
   public boolean next() throws RemoteException {
-    if (tuple.size() == 0) {
-      return false;
-    }
-    //TODO fetch 50 localDecrypt results per page
-    if (index == tuple.size() - 1) {
+    if (buffer == null)
       return false;
-    } else {
-      index++;
-    }
-    return true;
+
+    current = buffer.next();
+    return current != null;
+  }
+
+  /**
+   * @return the values of the current row
+   */
+  public Object[] getRow() {
+    return current;
+  }
+
+  public boolean isClosed() {
+    return buffer == null;
   }
 
   /**
-   * nullify tuple and other related resources
+   * Release the memory and the spilled rows of the result.
    *
    * @throws RemoteException
    */
   public void close() throws RemoteException {
-    tuple = null;
-    index = -1;
-    return;
+    if (buffer != null) {
+      buffer.close();
+      memoryPool.close();
+    }
+    buffer = null;
+    current = null;
+  }
+
+  /**
+   * Called by RMI once no client holds the result set any more, e.g. a
+   * client which did not close it.
+   */
+  @Override
+  public void unreferenced() {
+    try {
+      close();
+    } catch (RemoteException e) {
+      e.printStackTrace();
+    }
   }
 
   /**
@@ -137,7 +179,10 @@ public class SdbResultSet extends UnicastRemoteObject implements ResultSet,
    * @throws RemoteException
    */
   public String getString(int columnIndex) throws RemoteException {
-    Object columnData = tuple.get(index)[columnIndex];
+    Object columnData = current[columnIndex];
+    if (columnData == null) {
+      return null;
+    }
     if (columnData instanceof Integer) {
       return String.valueOf(columnData);
     }
@@ -152,7 +197,7 @@ public class SdbResultSet extends UnicastRemoteObject implements ResultSet,
    * @throws RemoteException
    */
   public Integer getInteger(int columnIndex) throws RemoteException {
-    Object columnData = tuple.get(index)[columnIndex];
+    Object columnData = current[columnIndex];
     if (columnData instanceof BigInteger) {
       Integer result = null;
       try {
@@ -179,7 +224,7 @@ public class SdbResultSet extends UnicastRemoteObject implements ResultSet,
    * @throws RemoteException
    */
   public Long getLong(int columnIndex) throws RemoteException {
-    Object columnData = tuple.get(index)[columnIndex];
+    Object columnData = current[columnIndex];
     if (columnData instanceof BigInteger) {
       Long result = null;
       try {
@@ -21,10 +21,13 @@ import edu.hku.sdb.catalog.*;
 import edu.hku.sdb.conf.ServerConf;
 import edu.hku.sdb.conf.ServerType;
 import edu.hku.sdb.exec.*;
+import edu.hku.sdb.optimize.CatalogStatistics;
+import edu.hku.sdb.optimize.CostBasedOptimizer;
 import edu.hku.sdb.optimize.Optimizer;
-import edu.hku.sdb.optimize.RuleBaseOptimizer;
+import edu.hku.sdb.optimize.PlanCache;
 import edu.hku.sdb.parse.*;
 import edu.hku.sdb.rewrite.*;
+import edu.hku.sdb.upload.StatisticsCollector;
 import edu.hku.sdb.upload.Uploader;
 import edu.hku.sdb.upload.UploaderFactory;
 import org.slf4j.Logger;
@@ -34,7 +37,10 @@ import java.io.Serializable;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class SdbStatement extends UnicastRemoteObject implements Statement,
         Serializable {
@@ -44,24 +50,28 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
   private static final long serialVersionUID = 427L;
 
   private SemanticAnalyzer semanticAnalyzer;
-  private ParseDriver parser;
   private AbstractRewriter rewriter;
   private Optimizer optimizer;
   private Executor executor;
-  private SdbResultSet sdbResultSet;
-  private SDBProfiler sdbProfiler;
+  protected SdbResultSet sdbResultSet;
+  protected SDBProfiler sdbProfiler;
 
   private MetaStore metaDB;
   private ServerConnection serverConnection;
-  private DBMeta dbMeta;
   private ServerConf serverConf;
-  private String serverDBName;
+  protected String serverDBName;
+
+  // The thread executing a query of this statement, and whether the query
+  // is cancelled. The thread is a pooled worker, it is only interrupted while
+  // holding the lock, so an interrupt never hits its next request.
+  private final Object executionLock = new Object();
+  private Thread executingThread;
+  private volatile boolean cancelled;
 
   public SdbStatement(MetaStore metaDB, ServerConnection serverConnection, String
           serverDBName, ServerConf serverConf) throws RemoteException {
     super();
     this.serverDBName = serverDBName;
-    this.dbMeta = metaDB.getDB(serverDBName);
     this.serverConf = serverConf;
     setMetaDB(metaDB);
     setServerConnection(serverConnection);
@@ -73,10 +83,27 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
 
     LOG.info("Executing query: " + query);
 
+    cancelled = false;
     sdbProfiler = new SDBProfiler();
     // get execution start time
     long startTimeStamp = System.currentTimeMillis();
 
+    syncCatalog();
+
+    // A repeated select skips parse, rewrite and optimize. The version is taken
+    // before parsing, so a plan built on a changed catalog is never looked up.
+    PlanCache planCache = PlanCache.getInstance();
+    String planKey = PlanCache.getKey(serverDBName, planCache.getCatalogVersion
+            (serverDBName), query);
+    PlanNode cachedPlan = planCache.get(planKey, serverConnection);
+    if (cachedPlan != null) {
+      LOG.info("Using cached plan for query: " + query);
+      sdbResultSet = getSdbResultSet(cachedPlan);
+      setExecutionTime(startTimeStamp);
+      LOG.info(sdbProfiler.toString());
+      return sdbResultSet;
+    }
+
     // Parse & analyse
     ParseNode analyzedNode = getParseNode(query);
 
@@ -84,6 +111,10 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
     if (analyzedNode instanceof LoadStmt) {
       // another programme encrypts & uploads the data
       sdbResultSet = getSdbResultSet(getLoadPlanNode((LoadStmt) analyzedNode));
+      String tblName = ((LoadStmt) analyzedNode).getTableName();
+      ResultCache.getInstance().invalidate(serverDBName, tblName);
+      RemoteQueryCache.getInstance().invalidate(serverDBName, tblName);
+      metaDB.increaseVersion(serverDBName);
 
     } else if (analyzedNode instanceof ShowTBLsStmt) {
       sdbResultSet = getSdbResultSet(getShowTblsPlanNode((ShowTBLsStmt)
@@ -93,6 +124,9 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
               analyzedNode));
     } else if (analyzedNode instanceof DropTblStmt) {
       sdbResultSet = getSdbResultSet(getDropTblPlanNode((DropTblStmt) analyzedNode));
+    } else if (analyzedNode instanceof AnalyzeStmt) {
+      sdbResultSet = getSdbResultSet(getAnalyzePlanNode((AnalyzeStmt)
+              analyzedNode));
     } else {
 
       long rewriteStartTimestamp = System.currentTimeMillis();
@@ -110,7 +144,7 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
       } else {
         // Optimize
         planNode = getPlanNode(analyzedNode);
-
+        planCache.put(planKey, planNode);
       }
 
       // Execute
@@ -125,7 +159,19 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
     return sdbResultSet;
   }
 
-  private void setExecutionTime(long startTimeStamp) {
+  /**
+   * Drop the plans and results cached for the database if another proxy
+   * sharing the metastore changed it.
+   */
+  protected void syncCatalog() {
+    if (metaDB.syncDB(serverDBName)) {
+      PlanCache.getInstance().invalidate(serverDBName);
+      ResultCache.getInstance().invalidate(serverDBName);
+      RemoteQueryCache.getInstance().invalidate(serverDBName);
+    }
+  }
+
+  protected void setExecutionTime(long startTimeStamp) {
     long endTimeStamp = System.currentTimeMillis();
     long totalTime = endTimeStamp - startTimeStamp;
     sdbProfiler.setTotalTime(totalTime);
@@ -141,9 +187,20 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
     }
   }
 
-  private PlanNode getPlanNode(ParseNode analyzedNode) throws RemoteException {
+  /**
+   * The cached database is replaced after each change of its tables, so it is
+   * looked up for every query.
+   *
+   * @return the database of this statement
+   */
+  private DBMeta getDBMeta() {
+    return metaDB.getDB(serverDBName);
+  }
+
+  protected PlanNode getPlanNode(ParseNode analyzedNode) throws RemoteException {
     LOG.info("Optimizing query");
-    optimizer = new RuleBaseOptimizer();
+    DBMeta dbMeta = getDBMeta();
+    optimizer = new CostBasedOptimizer(new CatalogStatistics(dbMeta));
     PlanNode planNode = null;
     try {
       planNode = optimizer.optimize(analyzedNode, serverConnection, dbMeta);
@@ -155,22 +212,117 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
     return planNode;
   }
 
-  private SdbResultSet getSdbResultSet(PlanNode planNode) throws RemoteException {
+  protected SdbResultSet getSdbResultSet(PlanNode planNode) throws RemoteException {
+    // Only one result of a statement is open at a time.
+    if (sdbResultSet != null)
+      sdbResultSet.close();
+
     LOG.info("Executing query");
     long executeStartTimestamp = System.currentTimeMillis();
     executor = new Executor();
     SdbResultSet resultSet = new SdbResultSet();
     ExecutionState eState = new ExecutionState();
-    executor.execute(planNode, eState, resultSet);
+    LocalDecrypt decryptNode = useCaches(planNode);
+    synchronized (executionLock) {
+      executingThread = Thread.currentThread();
+    }
+    // A query waits here while the memory of the proxy is taken by others.
+    AdmissionController admissionController = AdmissionController
+            .getInstance();
+    boolean admitted = false;
+    try {
+      admissionController.admit();
+      admitted = true;
+      executor.execute(planNode, eState, resultSet);
+    } catch (RuntimeException e) {
+      resultSet.close();
+      // A query cancelled on the server fails.
+      if (!cancelled) {
+        e.printStackTrace();
+        throw new RemoteException(e.getMessage());
+      }
+    } finally {
+      if (admitted)
+        admissionController.leave();
+      synchronized (executionLock) {
+        executingThread = null;
+        // Clear the interrupt of a cancel coming too late.
+        Thread.interrupted();
+      }
+    }
+    if (cancelled) {
+      cancelled = false;
+      resultSet.close();
+      throw new RemoteException("Query is cancelled");
+    }
+    if (decryptNode != null) {
+      sdbProfiler.setResultCacheHit(decryptNode.isCacheHit());
+      sdbProfiler.setResultCacheHitRate(ResultCache.getInstance().getHitRate());
+    }
     long executeEndTimestamp = System.currentTimeMillis();
     sdbProfiler.setExecuteTime(executeEndTimestamp - executeStartTimestamp);
     LOG.info("Finishing query");
     return resultSet;
   }
 
-  private void rewriteNode(ParseNode analyzedNode) throws RemoteException {
+  /**
+   * Let the remote query of a select read and fill the cache of the server
+   * rows, and its decryption the result cache, if they are enabled.
+   *
+   * @param planNode
+   * @return the decryption node, null if the result cache is not used
+   */
+  private LocalDecrypt useCaches(PlanNode planNode) {
+    ResultCache resultCache = ResultCache.getInstance();
+    RemoteQueryCache remoteQueryCache = RemoteQueryCache.getInstance();
+    if (!resultCache.isEnabled() && !remoteQueryCache.isEnabled())
+      return null;
+
+    PlanNode decryptNode = planNode instanceof LocalAggregate ? (
+            (LocalAggregate) planNode).getChild() : planNode;
+    if (!(decryptNode instanceof LocalDecrypt))
+      return null;
+
+    String remoteSQL = ((LocalDecrypt) decryptNode).getRemoteSQLQuery();
+    Set<String> tables = getReferencedTables(remoteSQL);
+
+    PlanNode remoteNode = ((LocalDecrypt) decryptNode).getChild();
+    if (remoteQueryCache.isEnabled() && remoteNode instanceof RemoteQuery)
+      ((RemoteQuery) remoteNode).setCache(remoteQueryCache, RemoteQueryCache
+              .getKey(serverDBName, remoteSQL), tables);
+
+    if (!resultCache.isEnabled())
+      return null;
+    ((LocalDecrypt) decryptNode).setResultCache(resultCache, ResultCache
+            .getKey(serverDBName, remoteSQL), tables);
+    return (LocalDecrypt) decryptNode;
+  }
+
+  /**
+   * @param remoteSQL
+   * @return the lower case names of the tables of the database appearing in
+   * a query
+   */
+  private Set<String> getReferencedTables(String remoteSQL) {
+    Set<String> words = new HashSet<>();
+    for (String word : remoteSQL.toLowerCase().split("[^a-z0-9_]+")) {
+      words.add(word);
+    }
+
+    // The catalog of the statement may miss the tables created since.
+    Set<String> tables = new HashSet<>();
+    for (TableMeta tblMeta : metaDB.getDB(serverDBName).getTbls()) {
+      String tblName = tblMeta.getTblName().toLowerCase();
+      if (words.contains(tblName))
+        tables.add(tblName);
+    }
+    return tables;
+  }
+
+  protected void rewriteNode(ParseNode analyzedNode) throws RemoteException {
 
     LOG.info("Rewriting query: " + analyzedNode.toSql());
+    DBMeta dbMeta = getDBMeta();
     if (serverConf.getType() == ServerType.HIVE)
       rewriter = new SdbSchemeRewriter(dbMeta, new HiveRewriter(dbMeta));
     else if (serverConf.getType() == ServerType.ODPS)
@@ -182,6 +334,14 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
     try {
       rewriter.rewrite(analyzedNode);
       LOG.info("The finial rewritten query: " + analyzedNode.toSql());
+
+      if (rewriter instanceof SdbSchemeRewriter) {
+        SdbSchemeRewriter sdbRewriter = (SdbSchemeRewriter) rewriter;
+        sdbProfiler.setUdfCallsBefore(sdbRewriter.getUdfCallsBefore());
+        sdbProfiler.setUdfCallsAfter(sdbRewriter.getUdfCallsAfter());
+        sdbProfiler.setKeyUpdatesBefore(sdbRewriter.getKeyUpdatesBefore());
+        sdbProfiler.setKeyUpdatesAfter(sdbRewriter.getKeyUpdatesAfter());
+      }
     } catch (UnSupportedException e) {
       e.printStackTrace();
       throw new RemoteException(e.getMessage());
@@ -190,17 +350,29 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
     }
   }
 
-  private ParseNode getParseNode(String query) throws RemoteException {
+  protected ParseNode getParseNode(String query) throws RemoteException {
     LOG.info("Parsing " + query);
 
     long parseStartTimestamp = System.currentTimeMillis();
 
-    parser = new ParseDriver();
-    semanticAnalyzer = new SemanticAnalyzer(metaDB.getDB(serverDBName));
+    ParseService parseService = ParseService.getInstance();
+    DBMeta dbMeta = getDBMeta();
     ASTNode parsedNode = null;
     ParseNode analyzedNode = null;
     try {
-      parsedNode = parser.parse(query);
+      // The trivial statements skip the Hive grammar.
+      StatementBase trivialStmt = parseService.parseTrivial(query);
+      if (trivialStmt != null) {
+        long parseEndTimestamp = System.currentTimeMillis();
+        sdbProfiler.setClientParseTime(parseEndTimestamp - parseStartTimestamp);
+        trivialStmt.analyze(dbMeta, (ParseNode) null);
+        sdbProfiler.setClientAnalyseTime(System.currentTimeMillis() -
+                parseEndTimestamp);
+        return trivialStmt;
+      }
+
+      semanticAnalyzer = new SemanticAnalyzer(dbMeta);
+      parsedNode = parseService.parse(query);
       long parseEndTimestamp = System.currentTimeMillis();
       sdbProfiler.setClientParseTime(parseEndTimestamp - parseStartTimestamp);
       analyzedNode = semanticAnalyzer.analyze(parsedNode);
@@ -220,6 +392,23 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
 
   }
 
+  /**
+   * Cancel the query being executed. The query running on the server is
+   * cancelled and the local execution is interrupted. The query fails when
+   * the execution returns.
+   */
+  @Override
+  public void cancel() {
+    LOG.info("Cancelling query");
+    cancelled = true;
+    synchronized (executionLock) {
+      if (executingThread != null) {
+        serverConnection.cancel();
+        executingThread.interrupt();
+      }
+    }
+  }
+
   @Override
   public Profiler getProfiler() throws RemoteException {
     return sdbResultSet;
@@ -273,6 +462,7 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
           case STRING:
             columnDesc = new ColumnDesc(columnName, alias, type, isSen,
                     searchColumnKey);
+            columnDesc.setKeywordIndexed(colDefinition.isKeywordIndexed());
             break;
           default:
             columnDesc = new ColumnDesc(columnName, alias, type, isSen, null);
@@ -280,11 +470,22 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
         }
       } else
         columnDesc = new ColumnDesc(columnName, alias, type, isSen, null);
+      columnDesc.setDeterministic(colDefinition.isDeterministic());
+      columnDesc.setOrderPreserving(colDefinition.isOrderPreserving());
       columnDescList.add(columnDesc);
     }
     localCreateRowDesc.setSignature(columnDescList);
 
     RemoteUpdate remoteUpdate = new RemoteUpdate(query, connection);
+
+    // Create the keyword index tables along with the table.
+    for (ColumnDefinition colDefinition : createStmt.getColumnDefinitions()) {
+      if (colDefinition.isKeywordIndexed()) {
+        remoteUpdate.addChild(new RemoteUpdate(getKeywordIndexCreateQuery
+                (createStmt, colDefinition), connection));
+      }
+    }
+
     LocalCreate localCreate = new LocalCreate(metaStore, serverDBName, createStmt
             .getTableName(),
             localCreateRowDesc);
@@ -292,6 +493,31 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
     return localCreate;
   }
 
+  /**
+   * Build the create statement of the keyword index table of a column, which
+   * maps the keyword trapdoors to the row ids.
+   *
+   * @param createStmt
+   * @param colDefinition
+   * @return
+   */
+  private String getKeywordIndexCreateQuery(CreateStmt createStmt,
+                                            ColumnDefinition colDefinition) {
+    List<ColumnDefinition> indexColDefinitions = new ArrayList<>();
+    indexColDefinitions.add(new ColumnDefinition(ColumnDefinition
+            .TRAPDOOR_COLUMN_NAME, Type.STRING));
+    indexColDefinitions.add(new ColumnDefinition(ColumnDefinition
+            .ROW_ID_COLUMN_NAME, Type.STRING));
+
+    CreateStmt indexStmt = new CreateStmt();
+    indexStmt.setTableName(ColumnDefinition.getKeywordIndexTblName(createStmt
+            .getTableName(), colDefinition.getName()));
+    indexStmt.setColumnDefinitions(indexColDefinitions);
+    indexStmt.setTableRowFormat(createStmt.getTableRowFormat());
+
+    return indexStmt.toSql();
+  }
+
   private PlanNode getLoadPlanNode(LoadStmt loadStmt) throws RemoteException {
     // another programme encrypts & uploads the data
     String tableName = loadStmt.getTableName();
@@ -313,6 +539,15 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
 
     RemoteUpdate remoteUpdate = new RemoteUpdate(loadQuery, serverConnection);
 
+    // Load the keyword index tables as well.
+    for (Map.Entry<String, String> indexFile : uploader.getIndexServerFilePaths()
+            .entrySet()) {
+      LoadStmt indexLoadStmt = new LoadStmt(indexFile.getValue(), indexFile
+              .getKey());
+      remoteUpdate.addChild(new RemoteUpdate(indexLoadStmt.toSql(),
+              serverConnection));
+    }
+
     return remoteUpdate;
   }
 
@@ -325,7 +560,7 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
     columnDescs.add(columnDesc);
     rowDesc.setSignature(columnDescs);
 
-    PlanNode localShowTBLs = new LocalShowTBLs(dbMeta, rowDesc);
+    PlanNode localShowTBLs = new LocalShowTBLs(getDBMeta(), rowDesc);
 
     return localShowTBLs;
   }
@@ -345,7 +580,7 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
 
     String tblName = describeStmt.getTblName();
 
-    TableMeta tblMeta = metaDB.getTbl(dbMeta.getName(), tblName);
+    TableMeta tblMeta = metaDB.getTbl(serverDBName, tblName);
 
     PlanNode localDescTBL = new LocalDescTBL(tblMeta, rowDesc);
 
@@ -355,15 +590,96 @@ public class SdbStatement extends UnicastRemoteObject implements Statement,
   private PlanNode getDropTblPlanNode(DropTblStmt dropTblStmt) throws
           RemoteException {
     String tblName = dropTblStmt.getTblName();
+    TableMeta tblMeta = metaDB.getTbl(serverDBName, tblName);
 
-    PlanNode localDropTBL = new LocalDropTBL(metaDB, dbMeta.getName(), tblName,
+    PlanNode localDropTBL = new LocalDropTBL(metaDB, getDBMeta().getName(), tblName,
             null);
 
     RemoteUpdate remoteUpdate = new RemoteUpdate(dropTblStmt.toSql(),
             serverConnection);
 
+    // Drop the keyword index tables as well.
+    if (tblMeta != null) {
+      for (ColumnMeta colMeta : tblMeta.getCols()) {
+        if (colMeta.isKeywordIndexed()) {
+          DropTblStmt indexDropStmt = new DropTblStmt(ColumnDefinition
+                  .getKeywordIndexTblName(tblName, colMeta.getColName()));
+          remoteUpdate.addChild(new RemoteUpdate(indexDropStmt.toSql(),
+                  serverConnection));
+        }
+      }
+    }
+
     localDropTBL.addChild(remoteUpdate);
 
     return localDropTBL;
   }
+
+  /**
+   * Compute the statistics of a table on the server. The row count and the
+   * distinct counts of the plain and deterministic columns are exact, the
+   * min and max values are only computed for the plain numeric columns. The
+   * estimates of the other encrypted columns collected during the upload are
+   * kept.
+   *
+   * @param analyzeStmt
+   * @return
+   * @throws RemoteException
+   */
+  private PlanNode getAnalyzePlanNode(AnalyzeStmt analyzeStmt) throws
+          RemoteException {
+    String tblName = analyzeStmt.getTblName().toLowerCase();
+    TableMeta tblMeta = metaDB.getTbl(serverDBName, tblName);
+
+    Set<String> orderColNames = new HashSet<>();
+    for (ColumnMeta colMeta : tblMeta.getCols()) {
+      if (colMeta.isOrderPreserving())
+        orderColNames.add(colMeta.getColName() + ColumnDefinition
+                .ORDER_COLUMN_SUFFIX);
+    }
+
+    List<String> distinctCols = new ArrayList<>();
+    List<String> rangeCols = new ArrayList<>();
+    for (ColumnMeta colMeta : tblMeta.getCols()) {
+      String colName = colMeta.getColName();
+      if (orderColNames.contains(colName) || colName.equals(ColumnDefinition
+              .ROW_ID_COLUMN_NAME) || colName.equals(ColumnDefinition
+              .R_COLUMN_NAME) || colName.equals(ColumnDefinition.S_COLUMN_NAME))
+        continue;
+
+      if (!colMeta.isSensitive()) {
+        distinctCols.add(colName);
+        if (StatisticsCollector.isNumeric(colMeta))
+          rangeCols.add(colName);
+      } else if (colMeta.isDeterministic()) {
+        // Equal plaintexts have equal ciphertexts.
+        distinctCols.add(colName);
+      }
+    }
+
+    StringBuilder query = new StringBuilder("SELECT COUNT(*)");
+    for (String colName : distinctCols) {
+      query.append(", COUNT(DISTINCT ").append(colName).append(")");
+    }
+    for (String colName : rangeCols) {
+      query.append(", MIN(").append(colName).append("), MAX(").append(colName)
+              .append(")");
+    }
+    query.append(" FROM ").append(tblName);
+
+    RowDesc rowDesc = new RowDesc();
+    List<ColumnDesc> columnDescs = new ArrayList<>();
+    int numCols = 1 + distinctCols.size() + 2 * rangeCols.size();
+    for (int i = 0; i < numCols; i++) {
+      columnDescs.add(new ColumnDesc("_c" + i, "", null, false, null));
+    }
+    rowDesc.setSignature(columnDescs);
+
+    PlanNode localAnalyze = new LocalAnalyze(metaDB, getDBMeta().getName(), tblName,
+            distinctCols, rangeCols);
+    localAnalyze.addChild(new RemoteQuery(query.toString(), serverConnection,
+            rowDesc));
+
+    return localAnalyze;
+  }
 }
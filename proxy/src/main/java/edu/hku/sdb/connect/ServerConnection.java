@@ -11,5 +11,11 @@ public abstract class ServerConnection {
 
   public abstract int executeUpdate(String query);
 
+  /**
+   * Cancel the command running on the server, if any. It is called from
+   * another thread than the one running the command.
+   */
+  public abstract void cancel();
+
   public abstract void close();
 }
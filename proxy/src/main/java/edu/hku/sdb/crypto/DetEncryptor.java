@@ -0,0 +1,212 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.crypto;
+
+import edu.hku.sdb.catalog.ScalarType;
+import org.apache.commons.codec.binary.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Deterministic encryption for the columns declared with ENC(DET). Equal
+ * plaintexts always have equal ciphertexts, so the server can evaluate
+ * equality, group by and equi-join on the ciphertexts directly.
+ *
+ * It is a synthetic IV construction: the IV is a MAC of the plaintext and the
+ * plaintext is encrypted with AES/CBC under this IV. The keys are derived from
+ * the secret primes of the database, so all deterministic columns of a
+ * database share them and can be joined with each other.
+ */
+public class DetEncryptor {
+
+  private static final String SCHEME = "AES/CBC/PKCS5Padding";
+  private static final String MAC_SCHEME = "HmacSHA256";
+  private static final int IV_LENGTH = 16;
+  private static final int KEY_LENGTH = 16;
+
+  private final SecretKeySpec encKey;
+  private final SecretKeySpec macKey;
+
+  // Ciphers are not thread safe, [0] for encryption, [1] for decryption and
+  // [2] for the synthetic IV.
+  private final ThreadLocal<Object[]> ciphers = new ThreadLocal<Object[]>() {
+    @Override
+    protected Object[] initialValue() {
+      try {
+        return new Object[]{Cipher.getInstance(SCHEME), Cipher.getInstance
+                (SCHEME), Mac.getInstance(MAC_SCHEME)};
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  };
+
+  public DetEncryptor(BigInteger prime1, BigInteger prime2) {
+    encKey = new SecretKeySpec(deriveKey(prime1, prime2, "sdb-det-enc"), "AES");
+    macKey = new SecretKeySpec(deriveKey(prime1, prime2, "sdb-det-mac"),
+            MAC_SCHEME);
+  }
+
+  private static byte[] deriveKey(BigInteger prime1, BigInteger prime2, String
+          label) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(prime1.toByteArray());
+      digest.update(prime2.toByteArray());
+      digest.update(label.getBytes(StandardCharsets.UTF_8));
+      return Arrays.copyOf(digest.digest(), KEY_LENGTH);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Encrypt a value of a column with the given type. Numbers are normalized
+   * first, so that e.g. "007" and "7" have the same ciphertext.
+   *
+   * @param plaintext
+   * @param type
+   * @return Base64 encoded ciphertext
+   */
+  public String encrypt(String plaintext, ScalarType type) {
+    return encrypt(normalize(plaintext, type));
+  }
+
+  /**
+   * Decrypt a value of a column with the given type.
+   *
+   * @param ciphertext
+   * @param type
+   * @return BigInteger for integers, Double for decimals, otherwise String.
+   */
+  public Object decrypt(String ciphertext, ScalarType type) {
+    if (ciphertext == null)
+      return null;
+
+    String plaintext = decrypt(ciphertext);
+    switch (type.getType()) {
+      case INT:
+      case TINYINT:
+      case SMALLINT:
+      case BIGINT:
+        return new BigInteger(plaintext);
+      case DECIMAL:
+        return new BigDecimal(new BigInteger(plaintext), type.getScale())
+                .doubleValue();
+      default:
+        return plaintext;
+    }
+  }
+
+  public String encrypt(String plaintext) {
+    Object[] threadCiphers = ciphers.get();
+    byte[] data = plaintext.getBytes(StandardCharsets.UTF_8);
+    try {
+      Mac mac = (Mac) threadCiphers[2];
+      mac.init(macKey);
+      byte[] iv = Arrays.copyOf(mac.doFinal(data), IV_LENGTH);
+
+      Cipher cipher = (Cipher) threadCiphers[0];
+      cipher.init(Cipher.ENCRYPT_MODE, encKey, new IvParameterSpec(iv));
+      byte[] encrypted = cipher.doFinal(data);
+
+      byte[] result = new byte[IV_LENGTH + encrypted.length];
+      System.arraycopy(iv, 0, result, 0, IV_LENGTH);
+      System.arraycopy(encrypted, 0, result, IV_LENGTH, encrypted.length);
+      return new String(Base64.encodeBase64(result));
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public String decrypt(String ciphertext) {
+    byte[] data = Base64.decodeBase64(ciphertext);
+    try {
+      Cipher cipher = (Cipher) ciphers.get()[1];
+      cipher.init(Cipher.DECRYPT_MODE, encKey, new IvParameterSpec(data, 0,
+              IV_LENGTH));
+      return new String(cipher.doFinal(data, IV_LENGTH, data.length - IV_LENGTH),
+              StandardCharsets.UTF_8);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * The canonical string of a value. Decimals are scaled to integers like the
+   * SDB scheme does.
+   *
+   * @param value
+   * @param type
+   * @return
+   */
+  private static String normalize(String value, ScalarType type) {
+    switch (type.getType()) {
+      case INT:
+      case TINYINT:
+      case SMALLINT:
+      case BIGINT:
+        return new BigDecimal(value.trim()).toBigIntegerExact().toString();
+      case DECIMAL:
+        return new BigDecimal(value.trim()).setScale(type.getScale(), RoundingMode
+                .HALF_UP).unscaledValue().toString();
+      default:
+        return value;
+    }
+  }
+
+  /**
+   * Whether a value fits a column of the given type without rounding. A value
+   * which does not fit equals no value of the column, but the ciphertext of
+   * the rounded value would match some.
+   *
+   * @param value
+   * @param type
+   * @return
+   */
+  public static boolean isExact(String value, ScalarType type) {
+    try {
+      switch (type.getType()) {
+        case INT:
+        case TINYINT:
+        case SMALLINT:
+        case BIGINT:
+          new BigDecimal(value.trim()).toBigIntegerExact();
+          return true;
+        case DECIMAL:
+          new BigDecimal(value.trim()).setScale(type.getScale(), RoundingMode
+                  .UNNECESSARY);
+          return true;
+        default:
+          return true;
+      }
+    } catch (NumberFormatException | ArithmeticException e) {
+      return false;
+    }
+  }
+}
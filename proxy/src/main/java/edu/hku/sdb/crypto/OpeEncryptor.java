@@ -0,0 +1,153 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.crypto;
+
+import edu.hku.sdb.catalog.ScalarType;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Order-preserving encoding for the auxiliary order column of an integer or
+ * decimal column declared with ENC(OPE). A value v is mapped to
+ * (v + 2^63) * a + PRF(v) mod a, where the slope a is a secret of the column.
+ * It is strictly increasing, and the result is written as fixed width hex, so
+ * the server can filter and sort the strings natively.
+ *
+ * Besides the order, it reveals the approximate distance between values. It is
+ * meant for columns where this leakage is acceptable.
+ */
+public class OpeEncryptor {
+
+  private static final String MAC_SCHEME = "HmacSHA256";
+
+  // The plaintext is shifted to be non-negative.
+  private static final BigInteger OFFSET = BigInteger.ONE.shiftLeft(63);
+  private static final BigInteger MAX_VALUE = OFFSET.shiftLeft(1);
+
+  // 64 bits of plaintext and 33 bits of slope fit in 25 hex digits.
+  public static final int WIDTH = 25;
+
+  private final BigInteger slope;
+  private final SecretKeySpec noiseKey;
+
+  private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+    @Override
+    protected Mac initialValue() {
+      try {
+        Mac mac = Mac.getInstance(MAC_SCHEME);
+        mac.init(noiseKey);
+        return mac;
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  };
+
+  /**
+   * The key of a column is derived from the secret primes of the database and
+   * the name of the column.
+   *
+   * @param prime1
+   * @param prime2
+   * @param tblName
+   * @param colName
+   */
+  public OpeEncryptor(BigInteger prime1, BigInteger prime2, String tblName,
+                      String colName) {
+    byte[] key;
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(prime1.toByteArray());
+      digest.update(prime2.toByteArray());
+      digest.update(("sdb-ope:" + tblName.toLowerCase() + "." + colName
+              .toLowerCase()).getBytes(StandardCharsets.UTF_8));
+      key = digest.digest();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+
+    noiseKey = new SecretKeySpec(Arrays.copyOf(key, 16), MAC_SCHEME);
+    // The slope is in [2^32, 2^33).
+    slope = BigInteger.ONE.shiftLeft(32).add(new BigInteger(1, Arrays
+            .copyOfRange(key, 16, 20)));
+  }
+
+  /**
+   * Encode a value of a column with the given type. Decimals are scaled to
+   * integers like the SDB scheme does.
+   *
+   * @param plaintext
+   * @param type
+   * @return
+   */
+  public String encrypt(String plaintext, ScalarType type) {
+    return encrypt(toOrderValue(new BigDecimal(plaintext.trim()), type));
+  }
+
+  /**
+   * Encode a scaled value.
+   *
+   * @param value a signed 64 bits integer
+   * @return
+   */
+  public String encrypt(BigInteger value) {
+    BigInteger shifted = value.add(OFFSET);
+    if (shifted.signum() < 0 || shifted.compareTo(MAX_VALUE) >= 0)
+      throw new IllegalArgumentException("Value " + value + " is out of the " +
+              "range of order-preserving encoding");
+
+    BigInteger noise = new BigInteger(1, macs.get().doFinal(value.toByteArray()))
+            .mod(slope);
+    String hex = shifted.multiply(slope).add(noise).toString(16);
+
+    StringBuilder sb = new StringBuilder(WIDTH);
+    for (int i = hex.length(); i < WIDTH; i++) {
+      sb.append('0');
+    }
+    return sb.append(hex).toString();
+  }
+
+  /**
+   * The scaled integer of a value, rounded half up if it has more digits
+   * than the scale of the column.
+   *
+   * @param value
+   * @param type
+   * @return
+   */
+  public static BigInteger toOrderValue(BigDecimal value, ScalarType type) {
+    return value.setScale(getScale(type), RoundingMode.HALF_UP).unscaledValue();
+  }
+
+  public static int getScale(ScalarType type) {
+    switch (type.getType()) {
+      case DECIMAL:
+        return type.getScale();
+      default:
+        return 0;
+    }
+  }
+}
@@ -19,7 +19,8 @@ package edu.hku.sdb.crypto;
 
 import java.math.BigInteger;
 import java.security.SecureRandom;
-import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import thep.paillier.EncryptedInteger;
 import thep.paillier.PrivateKey;
@@ -38,7 +39,8 @@ public class SDBEncrypt {
   public static int defaultRandLengthShort = EIGHTY;
   public static int defaultRandLength = ONE_THOUSAND_TWENTY_FOUR;
 
-  public static HashMap<String, BigInteger> modPowMap = new HashMap<String,
+  // Shared by concurrent upload workers.
+  public static Map<String, BigInteger> modPowMap = new ConcurrentHashMap<String,
           BigInteger>();
 
   /**
@@ -0,0 +1,161 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.crypto;
+
+import edu.hku.sdb.catalog.SearchColumnKey;
+import org.apache.commons.codec.binary.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Searchable encryption for a single column. Unlike {@link SearchEncrypt}, the
+ * column key is fixed at construction and the stream and pseudo random ciphers
+ * are initialized once per thread, so one instance can be shared by several
+ * upload workers.
+ */
+public class SearchColumnEncryptor {
+
+  // We only count letters and numbers as keyword.
+  private static final String KEYWORD_DELIMITER = "[^a-zA-Z0-9]+";
+
+  // keyword with at least 3 chars
+  private static final int MIN_KEYWORD_LENGTH = 3;
+
+  // The keyword index key is derived from the stream key with this label, so
+  // that a trapdoor never equals a block of the key stream.
+  private static final byte[] INDEX_KEY_LABEL = "sdb-keyword-index".getBytes();
+
+  private final SEKey priKey;
+  private final SecretKey pubKey;
+
+  private final ThreadLocal<Cipher[]> ciphers = new ThreadLocal<Cipher[]>() {
+    @Override
+    protected Cipher[] initialValue() {
+      try {
+        return initCiphers();
+      } catch (SEException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  };
+
+  public SearchColumnEncryptor(SearchColumnKey colKey) throws SEException {
+    this(colKey.getPriKey(), colKey.getPubKey());
+  }
+
+  public SearchColumnEncryptor(SEKey priKey, SecretKey pubKey) throws
+          SEException {
+    this.priKey = priKey;
+    this.pubKey = pubKey;
+
+    // Fail early if the keys are invalid, and keep the ciphers for the
+    // constructing thread.
+    ciphers.set(initCiphers());
+  }
+
+  private Cipher[] initCiphers() throws SEException {
+    try {
+      Cipher sCipher = Cipher.getInstance(SearchEncrypt.SCHEME);
+      sCipher.init(Cipher.ENCRYPT_MODE, priKey.skey);
+      Cipher prCipher = Cipher.getInstance(SearchEncrypt.SCHEME);
+      prCipher.init(Cipher.ENCRYPT_MODE, pubKey);
+
+      byte[] indexKey = Arrays.copyOf(sCipher.doFinal(INDEX_KEY_LABEL), priKey
+              .skey.getEncoded().length);
+      Cipher indexCipher = Cipher.getInstance(SearchEncrypt.SCHEME);
+      indexCipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(indexKey, "AES"));
+      return new Cipher[]{sCipher, prCipher, indexCipher};
+    } catch (GeneralSecurityException e) {
+      throw new SEException("Fail to initialize searchable encryption cipher: "
+              + e.getMessage());
+    }
+  }
+
+  /**
+   * Split a text into the keywords which are searchable.
+   *
+   * @param text
+   * @return
+   */
+  public static String[] splitKeywords(String text) {
+    String[] parts = text.split(KEYWORD_DELIMITER);
+    List<String> keywords = new ArrayList<>(parts.length);
+    for (String part : parts) {
+      if (part.length() >= MIN_KEYWORD_LENGTH)
+        keywords.add(part);
+    }
+    return keywords.toArray(new String[keywords.size()]);
+  }
+
+  /**
+   * Encrypt all keywords of a value in one call, the i-th keyword is encrypted
+   * with position i.
+   *
+   * @param keywords
+   * @return
+   */
+  public byte[][] encryptKeywords(String[] keywords) {
+    Cipher[] threadCiphers = ciphers.get();
+    byte[][] results = new byte[keywords.length][];
+    for (int pos = 0; pos < keywords.length; pos++) {
+      results[pos] = SearchEncrypt.doEncrypt(threadCiphers[0],
+              threadCiphers[1], priKey.iv, pos, keywords[pos].getBytes());
+    }
+    return results;
+  }
+
+  public byte[] encrypt(int pos, String data) {
+    Cipher[] threadCiphers = ciphers.get();
+    return SearchEncrypt.doEncrypt(threadCiphers[0], threadCiphers[1],
+            priKey.iv, pos, data.getBytes());
+  }
+
+  public String decrypt(int pos, byte[] data) {
+    Cipher[] threadCiphers = ciphers.get();
+    // data xor key xor key = data, so decrypt = encrypt
+    return new String(SearchEncrypt.doEncrypt(threadCiphers[0],
+            threadCiphers[1], priKey.iv, pos, data));
+  }
+
+  public boolean search(byte[] encrypted, String keyword) {
+    return SearchEncrypt.doSearch(ciphers.get()[1], encrypted, keyword);
+  }
+
+  /**
+   * The deterministic trapdoor of a keyword, which is stored in the keyword
+   * index table. Only the owner of the private key can generate it.
+   *
+   * @param keyword
+   * @return Base64 encoded trapdoor
+   */
+  public String trapdoor(String keyword) {
+    try {
+      byte[] trapdoor = ciphers.get()[2].doFinal(keyword.getBytes());
+      return new String(Base64.encodeBase64(trapdoor));
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
@@ -35,11 +35,17 @@ public class SearchEncrypt {
 
   private SearchEncrypt() {}
 
-  private static final String SCHEME = "AES/ECB/PKCS5Padding";
+  static final String SCHEME = "AES/ECB/PKCS5Padding";
 
   private static SearchEncrypt seinstance = null;
 
-  public SecretKey prkey; // pseudo random function key. note: known to server
+  /**
+   * pseudo random function key. note: known to server
+   *
+   * This is shared by all callers of the singleton, use a
+   * {@link SearchColumnEncryptor} to encrypt a column instead.
+   */
+  public SecretKey prkey;
 
   public static SearchEncrypt getInstance() {
     if (seinstance == null) {
@@ -89,26 +95,53 @@ public class SearchEncrypt {
 
 
   private byte[] doEncrypt(SEKey key, int pos, byte[] data) {
+    try {
+      // pseudorandom cipher
+      Cipher prCipher = Cipher.getInstance(SCHEME);
+      Cipher sCipher = Cipher.getInstance(SCHEME);
+      prCipher.init(Cipher.ENCRYPT_MODE, prkey);
+      sCipher.init(Cipher.ENCRYPT_MODE, key.skey);
+
+      return doEncrypt(sCipher, prCipher, key.iv, pos, data);
+    } catch (NoSuchAlgorithmException e) {
+      // TODO Auto-generated catch block
+      e.printStackTrace();
+    } catch (NoSuchPaddingException e) {
+      // TODO Auto-generated catch block
+      e.printStackTrace();
+    } catch (InvalidKeyException e) {
+      // TODO Auto-generated catch block
+      e.printStackTrace();
+    }
+
+    return null;
+  }
+
+  /**
+   * Encrypt data at position pos with already initialized ciphers.
+   *
+   * @param sCipher  stream cipher, initialized with the private key
+   * @param prCipher pseudo random cipher, initialized with the public key
+   * @param iv
+   * @param pos
+   * @param data
+   * @return
+   */
+  static byte[] doEncrypt(Cipher sCipher, Cipher prCipher, byte[] iv, int pos,
+                          byte[] data) {
     // prepare a unique combination of key and position of the word
     String temp = "" + pos;
-    byte[] iv2 = new byte[key.iv.length];
+    byte[] iv2 = new byte[iv.length];
     byte[] tempbyte = temp.getBytes();
-    for (int i = 0;i < key.iv.length;i++) {
-      iv2[i] = key.iv[i];
+    for (int i = 0;i < iv.length;i++) {
+      iv2[i] = iv[i];
     }
     for (int i = 0;i < tempbyte.length && i < iv2.length;i++) {
-      iv2[i] = (byte) (tempbyte[i]^key.iv[i]);
+      iv2[i] = (byte) (tempbyte[i]^iv[i]);
     }
 
     // iv2 is now the parameter to generate stream cipher key
     try {
-      // pseudorandom cipher
-      Cipher prCipher = Cipher.getInstance(SCHEME);
-      Cipher sCipher = Cipher.getInstance(SCHEME);
-      prCipher.init(Cipher.ENCRYPT_MODE, prkey);
-      sCipher.init(Cipher.ENCRYPT_MODE, key.skey);
-
-
       byte[] streambytes = sCipher.doFinal(iv2);
       // streambytes is the long Si in the searchable encryption
 
@@ -131,15 +164,6 @@ public class SearchEncrypt {
       result[data.length-1] = (byte) (fksi[0]^data[data.length-1]);
 
       return result;
-    } catch (NoSuchAlgorithmException e) {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
-    } catch (NoSuchPaddingException e) {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
-    } catch (InvalidKeyException e) {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
     } catch (IllegalBlockSizeException e) {
       // TODO Auto-generated catch block
       e.printStackTrace();
@@ -161,6 +185,27 @@ public class SearchEncrypt {
   }
 
   public boolean search(byte[] encrypted, String keyword) {
+    try {
+      // pseudorandom cipher
+      Cipher prCipher = Cipher.getInstance(SCHEME);
+      prCipher.init(Cipher.ENCRYPT_MODE, prkey);
+
+      return doSearch(prCipher, encrypted, keyword);
+    } catch (NoSuchAlgorithmException e) {
+      // TODO Auto-generated catch block
+      e.printStackTrace();
+    } catch (NoSuchPaddingException e) {
+      // TODO Auto-generated catch block
+      e.printStackTrace();
+    } catch (InvalidKeyException e) {
+      // TODO Auto-generated catch block
+      e.printStackTrace();
+    }
+
+    return false;
+  }
+
+  static boolean doSearch(Cipher prCipher, byte[] encrypted, String keyword) {
     byte[] keywordbyte = keyword.getBytes();
     if (keywordbyte.length != encrypted.length) {
       return false;
@@ -174,10 +219,6 @@ public class SearchEncrypt {
     // if it is a match, first part of diff generates second part of diff using pseudo random function
 
     try {
-      // pseudorandom cipher
-      Cipher prCipher = Cipher.getInstance(SCHEME);
-      prCipher.init(Cipher.ENCRYPT_MODE, prkey);
-
       // si is chopped with the desired length
 
       byte[] fksi = prCipher.doFinal(diff1);
@@ -185,15 +226,6 @@ public class SearchEncrypt {
       // we use the same AES cipher for simplicity
 
       return fksi[0] == diff2;
-    } catch (NoSuchAlgorithmException e) {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
-    } catch (NoSuchPaddingException e) {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
-    } catch (InvalidKeyException e) {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
     } catch (IllegalBlockSizeException e) {
       // TODO Auto-generated catch block
       e.printStackTrace();
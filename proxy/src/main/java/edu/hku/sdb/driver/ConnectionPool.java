@@ -18,7 +18,6 @@
 package edu.hku.sdb.driver;
 
 import edu.hku.sdb.catalog.MetaStore;
-import edu.hku.sdb.conf.ConnectionConf;
 import edu.hku.sdb.conf.MetadbConf;
 import edu.hku.sdb.conf.SdbConf;
 import edu.hku.sdb.connect.Connection;
@@ -28,18 +27,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jdo.JDOHelper;
-import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 import java.io.Serializable;
-import java.net.MalformedURLException;
-import java.rmi.Naming;
-import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.Properties;
 
+import static com.google.common.base.Strings.nullToEmpty;
+
 public class ConnectionPool extends UnicastRemoteObject implements
-        ConnectionService, Serializable {
+        ConnectionService, SdbConnection.ConnectionListener, Serializable {
 
   private static final Logger LOG = LoggerFactory.getLogger(ConnectionPool.class);
 
@@ -47,12 +44,9 @@ public class ConnectionPool extends UnicastRemoteObject implements
    * Default serialversion ID
    */
   private static final long serialVersionUID = 1L;
-  private static final String SERVICE_NAME = "Connection";
-  private static String serviceUrl;
   private Integer maxConnectionNumber;
   private Integer availableConnectionNumber;
   private SdbConf sdbConf;
-  private SdbConnection sdbConnection;
   private MetaStore metaStore;
 
   /**
@@ -65,23 +59,12 @@ public class ConnectionPool extends UnicastRemoteObject implements
   public ConnectionPool(SdbConf sdbConf) throws RemoteException {
     super(0);
     setSDBConf(sdbConf);
+    setMaxConnectionNumber(sdbConf.getConnectionConf().getMaxConnection());
     setAvailableConnectionNumber(sdbConf.getConnectionConf()
             .getMaxConnection());
 
     LOG.info("Connecting to metastore DB");
-    metaStore = new MetaStore(getPersistManager(sdbConf.getMetadbConf()));
-  }
-
-  private void createConnection() {
-    try {
-      ConnectionConf connectionConf = sdbConf.getConnectionConf();
-      sdbConnection = new SdbConnection(sdbConf, metaStore);
-      serviceUrl = connectionConf.getSdbAddress() + ":"
-              + connectionConf.getSdbPort() + "/" + SERVICE_NAME;
-      Naming.rebind(serviceUrl, sdbConnection);
-    } catch (RemoteException | MalformedURLException e) {
-      e.printStackTrace();
-    }
+    metaStore = new MetaStore(getPersistManagerFactory(sdbConf.getMetadbConf()));
   }
 
   /*
@@ -90,21 +73,20 @@ public class ConnectionPool extends UnicastRemoteObject implements
    * @see ConnectionService#getConnection()
    */
   public Connection getConnection() {
-    Connection connection = null;
-    //TODO enable multiple connection
     synchronized (this) {
-      if (availableConnectionNumber > 0) {
-        if (sdbConnection == null) {
-          createConnection();
-        }
-        try {
-          connection = (Connection) Naming.lookup(serviceUrl);
-        } catch (NotBoundException | MalformedURLException | RemoteException e) {
-          e.printStackTrace();
-        }
-        availableConnectionNumber--;
-        return connection;
-      } else return null;
+      if (availableConnectionNumber <= 0)
+        return null;
+      availableConnectionNumber--;
+    }
+
+    // Each connection is exported on its own and keeps its own connection to
+    // the server, so the proxy holds no state shared by the clients.
+    try {
+      return new SdbConnection(sdbConf, metaStore, this);
+    } catch (RemoteException e) {
+      e.printStackTrace();
+      connectionClosed(null);
+      return null;
     }
   }
 
@@ -114,7 +96,22 @@ public class ConnectionPool extends UnicastRemoteObject implements
    * @see ConnectionService#closeConnection()
    */
   public void closeConnection() {
-    // TODO Auto-generated method stub
+    // The connections are closed by the clients through Connection#close().
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see ConnectionService#getLoad()
+   */
+  public synchronized int getLoad() {
+    return maxConnectionNumber - availableConnectionNumber;
+  }
+
+  @Override
+  public synchronized void connectionClosed(SdbConnection connection) {
+    if (availableConnectionNumber < maxConnectionNumber)
+      availableConnectionNumber++;
   }
 
   public Integer getMaxConnectionNumber() {
@@ -141,30 +138,67 @@ public class ConnectionPool extends UnicastRemoteObject implements
     this.sdbConf = sdbConf;
   }
 
-  private PersistenceManager getPersistManager(MetadbConf metadbConf) {
-    //TODO: get params from dbConf
+  /**
+   * Build the single persistence manager factory of the proxy. The metastore
+   * opens a persistence manager per thread from it, and the connections to
+   * the metastore database are pooled.
+   *
+   * @param metadbConf
+   * @return
+   */
+  private PersistenceManagerFactory getPersistManagerFactory(MetadbConf metadbConf) {
+    return JDOHelper.getPersistenceManagerFactory(getPersistProperties
+            (metadbConf));
+  }
+
+  /**
+   * @param metadbConf
+   * @return the properties of the persistence manager factory of the metastore
+   */
+  static Properties getPersistProperties(MetadbConf metadbConf) {
+    String url = metadbConf.getJdbcUrl();
+    if (url == null || url.isEmpty())
+      url = MetadbConf.DEFAULT_JDBC_URL;
     String driver = metadbConf.getJdbcDriverName();
+    if (driver == null)
+      driver = MetadbConf.inferDriverName(url);
 
-    LOG.info("Connecting to Metastore with driver: " + driver);
+    LOG.info("Connecting to Metastore " + url + " with driver: " + driver);
 
     Properties properties = new Properties();
-    properties.setProperty("javax.jdo.option.ConnectionURL",
-            "jdbc:derby:metastore_db;create=true");
+    properties.setProperty("javax.jdo.option.ConnectionURL", url);
 
-    properties.setProperty("javax.jdo.option.ConnectionDriverName",
-            driver);
+    if (driver != null)
+      properties.setProperty("javax.jdo.option.ConnectionDriverName", driver);
 
-    properties.setProperty("javax.jdo.option.ConnectionUserName", "");
-    properties.setProperty("javax.jdo.option.ConnectionPassword", "");
+    properties.setProperty("javax.jdo.option.ConnectionUserName",
+            nullToEmpty(metadbConf.getUsername()));
+    properties.setProperty("javax.jdo.option.ConnectionPassword",
+            nullToEmpty(metadbConf.getPassword()));
     properties.setProperty("datanucleus.schema.autoCreateSchema", "true");
     properties.setProperty("datanucleus.schema.autoCreateTables", "true");
     properties.setProperty("datanucleus.schema.validateTables", "false");
     properties.setProperty("datanucleus.schema.validateConstraints", "false");
 
-    PersistenceManagerFactory pmf = JDOHelper.getPersistenceManagerFactory(properties);
-    PersistenceManager pm = pmf.getPersistenceManager();
+    // The cached catalog objects are shared by the threads, so they are
+    // detached from the persistence manager of the thread loading them.
+    properties.setProperty("javax.jdo.option.DetachAllOnCommit", "true");
+
+    // The metastore may be an external database shared by several proxies,
+    // so the connections are pooled.
+    if (metadbConf.isPooled()) {
+      properties.setProperty("datanucleus.connectionPoolingType", metadbConf
+              .getPoolType());
+      // DBCP reads minIdle and maxActive, the other pools read the pool sizes.
+      String minSize = String.valueOf(metadbConf.getPoolMinSize());
+      String maxSize = String.valueOf(metadbConf.getPoolMaxSize());
+      properties.setProperty("datanucleus.connectionPool.minIdle", minSize);
+      properties.setProperty("datanucleus.connectionPool.maxActive", maxSize);
+      properties.setProperty("datanucleus.connectionPool.minPoolSize", minSize);
+      properties.setProperty("datanucleus.connectionPool.maxPoolSize", maxSize);
+    }
 
-    return  pm;
+    return properties;
   }
 
 }
@@ -18,6 +18,11 @@
 package edu.hku.sdb.driver;
 
 import edu.hku.sdb.conf.*;
+import edu.hku.sdb.exec.AdmissionController;
+import edu.hku.sdb.exec.MemoryManager;
+import edu.hku.sdb.exec.RemoteQueryCache;
+import edu.hku.sdb.exec.ResultCache;
+import edu.hku.sdb.transport.NioServer;
 import edu.hku.sdb.util.XMLPropParser;
 import org.apache.commons.cli.*;
 import org.apache.log4j.PropertyConfigurator;
@@ -25,10 +30,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
-import java.net.MalformedURLException;
 import java.rmi.Naming;
-import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.util.Map;
 import java.util.Properties;
@@ -146,18 +150,41 @@ public class SdbDriver {
 
 
 
+  /**
+   * Serve the clients by RMI, by the framed protocol or both, as configured.
+   *
+   * @param sdbConf
+   */
   private static void startConnectionPool(SdbConf sdbConf) {
     try {
       ConnectionPool connectionPool = new ConnectionPool(sdbConf);
       ConnectionConf connectionConf = sdbConf.getConnectionConf();
-      LocateRegistry.createRegistry(connectionConf.getSdbPort());
-      String sdbConnectionUrl = connectionConf.getSdbAddress() + ":"
-              + connectionConf.getSdbPort() + "/" + SERVICE_NAME;
-
+      MemoryManager.getInstance().configure(connectionConf.getMaxMemory() *
+              MemoryManager.MB, connectionConf.getMaxQueryMemory() *
+              MemoryManager.MB, connectionConf.getSpillDir() == null ? null :
+              new File(connectionConf.getSpillDir()));
+      AdmissionController.getInstance().configure(connectionConf
+              .getMaxQueuedQueries(), connectionConf.getAdmissionTimeout() *
+              1000L);
+      ResultCache.getInstance().configure(connectionConf.isResultCacheEnabled(),
+              connectionConf.getResultCacheSize() * MemoryManager.MB);
+      RemoteQueryCache.getInstance().configure(connectionConf
+              .isRemoteCacheEnabled(), connectionConf.getRemoteCacheSize() *
+              MemoryManager.MB, connectionConf.getRemoteCacheDir() == null ?
+              null : new File(connectionConf.getRemoteCacheDir()));
       LOG.info("Starting SDB Proxy");
-      Naming.rebind(sdbConnectionUrl, connectionPool);
 
-    } catch (RemoteException | MalformedURLException e) {
+      if (connectionConf.isRmiEnabled()) {
+        LocateRegistry.createRegistry(connectionConf.getSdbPort());
+        String sdbConnectionUrl = connectionConf.getSdbAddress() + ":"
+                + connectionConf.getSdbPort() + "/" + SERVICE_NAME;
+        Naming.rebind(sdbConnectionUrl, connectionPool);
+      }
+
+      if (connectionConf.isNioEnabled())
+        new NioServer(connectionPool, connectionConf.getNioPort()).start();
+
+    } catch (IOException e) {
       e.printStackTrace();
     }
   }
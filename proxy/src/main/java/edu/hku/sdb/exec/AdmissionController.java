@@ -0,0 +1,136 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.exec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Admits the queries into execution. Each executing query may take the
+ * memory limit of a query, so at most limit / query limit of the
+ * {@link MemoryManager} queries execute at a time. The others wait in arrival
+ * order, and are rejected when the queue is full or they wait too long.
+ */
+public class AdmissionController {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AdmissionController
+          .class);
+
+  public static final int DEFAULT_MAX_QUEUED = 64;
+  public static final long DEFAULT_TIMEOUT = 60 * 1000L;
+
+  private static AdmissionController instance = null;
+
+  private final MemoryManager memoryManager;
+  private final Deque<Thread> queue = new ArrayDeque<>();
+  private int maxQueued;
+  private long timeout;
+  private int running = 0;
+
+  public static synchronized AdmissionController getInstance() {
+    if (instance == null) {
+      instance = new AdmissionController(MemoryManager.getInstance(),
+              DEFAULT_MAX_QUEUED, DEFAULT_TIMEOUT);
+    }
+    return instance;
+  }
+
+  /**
+   * @param memoryManager
+   * @param maxQueued     the number of queries which may wait
+   * @param timeout       the milliseconds a query may wait
+   */
+  public AdmissionController(MemoryManager memoryManager, int maxQueued, long
+          timeout) {
+    this.memoryManager = memoryManager;
+    configure(maxQueued, timeout);
+  }
+
+  public synchronized void configure(int maxQueued, long timeout) {
+    this.maxQueued = maxQueued;
+    this.timeout = timeout;
+    notifyAll();
+  }
+
+  /**
+   * @return the number of queries which may execute at a time
+   */
+  public int getConcurrency() {
+    return (int) Math.max(1, memoryManager.getLimit() / memoryManager
+            .getQueryLimit());
+  }
+
+  /**
+   * Wait until the query may execute. Every admitted query has to
+   * {@link #leave()} once it is executed.
+   *
+   * @throws RejectedExecutionException if the queue is full, the query waits
+   *                                    too long or the thread is interrupted
+   */
+  public synchronized void admit() {
+    if (queue.isEmpty() && running < getConcurrency()) {
+      running++;
+      return;
+    }
+    if (queue.size() >= maxQueued)
+      throw new RejectedExecutionException("Too many queries are waiting for" +
+              " memory");
+
+    Thread thread = Thread.currentThread();
+    queue.addLast(thread);
+    long start = System.currentTimeMillis();
+    try {
+      while (queue.peekFirst() != thread || running >= getConcurrency()) {
+        long left = start + timeout - System.currentTimeMillis();
+        if (left <= 0)
+          throw new RejectedExecutionException("Query waited more than " +
+                  timeout / 1000 + " seconds for memory");
+        wait(left);
+      }
+      running++;
+      LOG.debug("Query admitted after waiting " + (System.currentTimeMillis()
+              - start) + " ms");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RejectedExecutionException("Query is cancelled");
+    } finally {
+      queue.remove(thread);
+      notifyAll();
+    }
+  }
+
+  /**
+   * Let the next query execute.
+   */
+  public synchronized void leave() {
+    running = Math.max(0, running - 1);
+    notifyAll();
+  }
+
+  public synchronized int getRunning() {
+    return running;
+  }
+
+  public synchronized int getQueued() {
+    return queue.size();
+  }
+}
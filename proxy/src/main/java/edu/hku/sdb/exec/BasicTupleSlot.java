@@ -32,4 +32,10 @@ public abstract class BasicTupleSlot {
    * @return
    */
   public abstract List<Object> nextTuple();
+
+  /**
+   * Release the rows left.
+   */
+  public void close() {
+  }
 }
@@ -37,6 +37,12 @@ public class ColumnDesc {
   protected SdbColumnKey sdbColKey;
   // Column key for Search encrytion scheme
   protected SearchColumnKey searchColKey;
+  // Whether a keyword index table is maintained for this column
+  protected boolean keywordIndexed = false;
+  // Whether the column is encrypted by the deterministic scheme
+  protected boolean deterministic = false;
+  // Whether an order-preserving column is maintained for this column
+  protected boolean orderPreserving = false;
 
   public ColumnDesc(String colName, String alias, Type type, boolean
           isSensitive, ColumnKey colKey) {
@@ -99,6 +105,30 @@ public class ColumnDesc {
     this.searchColKey = searchColKey;
   }
 
+  public boolean isKeywordIndexed() {
+    return keywordIndexed;
+  }
+
+  public void setKeywordIndexed(boolean keywordIndexed) {
+    this.keywordIndexed = keywordIndexed;
+  }
+
+  public boolean isDeterministic() {
+    return deterministic;
+  }
+
+  public void setDeterministic(boolean deterministic) {
+    this.deterministic = deterministic;
+  }
+
+  public boolean isOrderPreserving() {
+    return orderPreserving;
+  }
+
+  public void setOrderPreserving(boolean orderPreserving) {
+    this.orderPreserving = orderPreserving;
+  }
+
   public ColumnDesc(String name, String alias, Type type) {
     this.name = name;
     this.alias = alias;
@@ -0,0 +1,178 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.exec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A compact columnar file of rows. The file starts with a magic number and
+ * the number of columns, and the rows follow in blocks of up to
+ * {@link #BLOCK_ROWS}. A block is its number of rows followed by each of its
+ * columns: the byte length of the column and its values, written by
+ * {@link RowCodec#writeValue}. An empty block ends the file.
+ */
+public final class ColumnarFile {
+
+  private static final int MAGIC = 0x53444243;
+  public static final int BLOCK_ROWS = 4096;
+
+  private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+  private ColumnarFile() {
+  }
+
+  public static class Writer implements Closeable {
+
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream[] columns;
+    private final DataOutputStream[] columnOuts;
+    private int blockRows = 0;
+
+    public Writer(File file, int columnCount) throws IOException {
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream
+              (file), IO_BUFFER_SIZE));
+      out.writeInt(MAGIC);
+      out.writeInt(columnCount);
+
+      columns = new ByteArrayOutputStream[columnCount];
+      columnOuts = new DataOutputStream[columnCount];
+      for (int i = 0; i < columnCount; i++) {
+        columns[i] = new ByteArrayOutputStream();
+        columnOuts[i] = new DataOutputStream(columns[i]);
+      }
+    }
+
+    public void write(List<Object> row) throws IOException {
+      if (row.size() != columns.length)
+        throw new IOException("Expected " + columns.length + " values, got " +
+                row.size());
+
+      for (int i = 0; i < columns.length; i++) {
+        RowCodec.writeValue(columnOuts[i], row.get(i));
+      }
+      if (++blockRows == BLOCK_ROWS)
+        writeBlock();
+    }
+
+    private void writeBlock() throws IOException {
+      out.writeInt(blockRows);
+      for (ByteArrayOutputStream column : columns) {
+        out.writeInt(column.size());
+        column.writeTo(out);
+        column.reset();
+      }
+      blockRows = 0;
+    }
+
+    /**
+     * Write the rows left and end the file.
+     */
+    @Override
+    public void close() throws IOException {
+      try {
+        if (blockRows > 0)
+          writeBlock();
+        out.writeInt(0);
+      } finally {
+        out.close();
+      }
+    }
+  }
+
+  public static class Reader implements Closeable {
+
+    private final DataInputStream in;
+    private final Object[][] columns;
+    private int blockRows = 0;
+    private int index = 0;
+    private boolean end = false;
+
+    public Reader(File file) throws IOException {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream
+              (file), IO_BUFFER_SIZE));
+      try {
+        if (in.readInt() != MAGIC)
+          throw new IOException("Not a columnar file: " + file);
+        columns = new Object[in.readInt()][];
+      } catch (IOException e) {
+        in.close();
+        throw e;
+      }
+    }
+
+    public int getColumnCount() {
+      return columns.length;
+    }
+
+    /**
+     * @return the next row, null if there is no more
+     * @throws IOException
+     */
+    public Object[] next() throws IOException {
+      if (index == blockRows && !readBlock())
+        return null;
+
+      Object[] row = new Object[columns.length];
+      for (int i = 0; i < columns.length; i++) {
+        row[i] = columns[i][index];
+      }
+      index++;
+      return row;
+    }
+
+    private boolean readBlock() throws IOException {
+      if (end)
+        return false;
+
+      blockRows = in.readInt();
+      index = 0;
+      if (blockRows == 0) {
+        end = true;
+        return false;
+      }
+
+      for (int i = 0; i < columns.length; i++) {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        DataInputStream column = new DataInputStream(new ByteArrayInputStream
+                (bytes));
+        columns[i] = new Object[blockRows];
+        for (int row = 0; row < blockRows; row++) {
+          columns[i][row] = RowCodec.readValue(column);
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
@@ -17,6 +17,21 @@
 
 package edu.hku.sdb.exec;
 
+/**
+ * The state of the execution of a query.
+ */
 public class ExecutionState {
 
+  private MemoryPool memoryPool = MemoryPool.UNLIMITED;
+
+  /**
+   * @return the memory of the query
+   */
+  public MemoryPool getMemoryPool() {
+    return memoryPool;
+  }
+
+  public void setMemoryPool(MemoryPool memoryPool) {
+    this.memoryPool = memoryPool;
+  }
 }
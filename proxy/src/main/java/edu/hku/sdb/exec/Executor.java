@@ -33,17 +33,26 @@ public class Executor {
 
     // These plannode return no answer
     if (plan instanceof LocalCreate || plan instanceof LocalDropTBL || plan
-            instanceof RemoteUpdate) {
+            instanceof RemoteUpdate || plan instanceof LocalAnalyze) {
       plan.nextTuple();
       return;
     }
 
-    List<Object[]> resultList = resultSet.getTuple();
-    List<Object> tuple = plan.nextTuple();
+    // The nodes reserve the memory of their rows in the pool of the query.
+    // The rows beyond it are spilled to disk by the buffer.
+    MemoryPool memoryPool = resultSet.getMemoryPool();
+    eState.setMemoryPool(memoryPool);
+    MemoryPool.bind(memoryPool);
+    try {
+      List<Object> tuple = plan.nextTuple();
 
-    while (tuple != null) {
-      resultList.add(tuple.toArray());
-      tuple = plan.nextTuple();
+      while (tuple != null) {
+        resultSet.addRow(tuple.toArray());
+        tuple = plan.nextTuple();
+      }
+    } finally {
+      plan.close();
+      MemoryPool.bind(null);
     }
 
     try {
@@ -63,9 +72,12 @@ public class Executor {
 
       }
       //set server execution time
-      if (plan instanceof LocalDecrypt) {
-        resultSet.setServerTotalTime(((LocalDecrypt) plan).getServerExecutionTime());
-        resultSet.setRemoteSQLQuery(((LocalDecrypt) plan).getRemoteSQLQuery());
+      PlanNode decryptNode = plan instanceof LocalAggregate ? ((LocalAggregate)
+              plan).getChild() : plan;
+      if (decryptNode instanceof LocalDecrypt) {
+        resultSet.setServerTotalTime(((LocalDecrypt) decryptNode)
+                .getServerExecutionTime());
+        resultSet.setRemoteSQLQuery(((LocalDecrypt) decryptNode).getRemoteSQLQuery());
       } else {
         resultSet.setServerTotalTime(0);
         resultSet.setRemoteSQLQuery("");
@@ -75,13 +87,13 @@ public class Executor {
       e.printStackTrace();
     }
 
-    //TODO find a better way to handle batch fetch
-    resultSet.setTuple(resultList);
     resultSet.seteState(eState);
     resultSet.setPlanNode(plan);
     resultSet.setExecutor(this);
 
-    LOG.debug(resultList.size() + " records computed, saved in resultSet");
+    LOG.debug(resultSet.getBuffer().size() + " records computed, saved in " +
+            "resultSet" + (resultSet.getBuffer().isSpilled() ? " and spilled" :
+            ""));
   }
 
 }
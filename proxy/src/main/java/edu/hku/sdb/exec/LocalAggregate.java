@@ -0,0 +1,210 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.hku.sdb.exec;
+
+import edu.hku.sdb.plan.LocalAggregateDesc;
+import edu.hku.sdb.plan.LocalAggregateDesc.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash aggregation of the decrypted rows, used when the optimizer estimates
+ * that aggregating on the server does not reduce the rows enough to pay off
+ * the aggregation UDFs.
+ */
+public class LocalAggregate extends LocalPlanNode<LocalAggregateDesc> {
+
+  private static final Logger LOG = LoggerFactory
+          .getLogger(LocalAggregate.class);
+
+  private PlanNode child;
+  private boolean initialized = false;
+  private Iterator<Accumulator> groups;
+
+  // The memory of the groups, reserved in the pool of the query.
+  private MemoryPool memoryPool;
+  private long reserved = 0;
+
+  public LocalAggregate(RowDesc rowDesc, List<Function> functions) {
+    nodeDesc = new LocalAggregateDesc();
+    nodeDesc.setRowDesc(rowDesc);
+    nodeDesc.setFunctions(functions);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.hku.sdb.exec.PlanNode#init()
+   */
+  @Override
+  public void init() {
+    List<Function> functions = nodeDesc.getFunctions();
+    Map<List<Object>, Accumulator> accumulators = new LinkedHashMap<>();
+    boolean grouped = functions.contains(Function.GROUP);
+    memoryPool = MemoryPool.current();
+
+    List<Object> childTuple = child.nextTuple();
+    long rowCount = 0;
+    while (childTuple != null) {
+      List<Object> key = new ArrayList<>();
+      for (int i = 0; i < functions.size(); i++) {
+        if (functions.get(i) == Function.GROUP)
+          key.add(childTuple.get(i));
+      }
+
+      Accumulator accumulator = accumulators.get(key);
+      if (accumulator == null) {
+        reserve(key, functions.size());
+        accumulator = new Accumulator(functions.size());
+        accumulators.put(key, accumulator);
+      }
+      accumulator.add(functions, childTuple);
+
+      childTuple = child.nextTuple();
+      rowCount++;
+    }
+
+    // An aggregation without group by returns a row even if there is no input.
+    if (!grouped && accumulators.isEmpty())
+      accumulators.put(new ArrayList<>(), new Accumulator(functions.size()));
+
+    LOG.debug("Aggregated " + rowCount + " rows into " + accumulators.size() + " " +
+            "groups");
+    groups = accumulators.values().iterator();
+    initialized = true;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.hku.sdb.exec.PlanNode#nextTuple()
+   */
+  @Override
+  public List<Object> nextTuple() {
+    if (!initialized) {
+      init();
+    }
+
+    if (!groups.hasNext()) {
+      release();
+      return null;
+    }
+
+    return groups.next().toTuple(nodeDesc.getFunctions());
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.hku.sdb.exec.PlanNode#close()
+   */
+  @Override
+  public void close() {
+    release();
+    child.close();
+  }
+
+  /**
+   * The groups are kept in memory, so the query fails once they exceed its
+   * memory.
+   *
+   * @param key
+   * @param size the number of aggregated values
+   */
+  private void reserve(List<Object> key, int size) {
+    long bytes = RowCodec.estimateSize(key.toArray()) + 64 + 24L * size;
+    if (!memoryPool.tryReserve(bytes))
+      throw new IllegalStateException("Aggregation exceeds the memory of the" +
+              " query, " + memoryPool.getLimit() / MemoryManager.MB + " MB");
+    reserved += bytes;
+  }
+
+  private void release() {
+    if (memoryPool != null)
+      memoryPool.release(reserved);
+    reserved = 0;
+  }
+
+  public PlanNode getChild() {
+    return child;
+  }
+
+  public void setChild(PlanNode child) {
+    this.child = child;
+  }
+
+  private static class Accumulator {
+    private final Object[] values;
+    // Whether all summed values are integers.
+    private final boolean[] integral;
+
+    Accumulator(int size) {
+      values = new Object[size];
+      integral = new boolean[size];
+      for (int i = 0; i < size; i++) {
+        integral[i] = true;
+      }
+    }
+
+    void add(List<Function> functions, List<Object> tuple) {
+      for (int i = 0; i < functions.size(); i++) {
+        Object value = tuple.get(i);
+        switch (functions.get(i)) {
+          case GROUP:
+            values[i] = value;
+            break;
+          case COUNT:
+            long count = values[i] == null ? 0 : (Long) values[i];
+            values[i] = value == null ? count : count + 1;
+            break;
+          case SUM:
+            if (value == null)
+              break;
+            if (!(value instanceof BigInteger || value instanceof Long || value
+                    instanceof Integer))
+              integral[i] = false;
+            BigDecimal sum = values[i] == null ? BigDecimal.ZERO : (BigDecimal)
+                    values[i];
+            values[i] = sum.add(new BigDecimal(value.toString()));
+            break;
+        }
+      }
+    }
+
+    List<Object> toTuple(List<Function> functions) {
+      List<Object> tuple = new ArrayList<>(values.length);
+      for (int i = 0; i < values.length; i++) {
+        Object value = values[i];
+        if (functions.get(i) == Function.COUNT && value == null)
+          value = 0L;
+        else if (functions.get(i) == Function.SUM && value != null)
+          value = integral[i] ? ((BigDecimal) value).toBigInteger() : (
+                  (BigDecimal) value).doubleValue();
+        tuple.add(value);
+      }
+      return tuple;
+    }
+  }
+}
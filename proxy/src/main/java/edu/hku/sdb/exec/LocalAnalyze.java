@@ -0,0 +1,108 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.exec;
+
+import edu.hku.sdb.catalog.MetaStore;
+import edu.hku.sdb.catalog.TableStatistics;
+import edu.hku.sdb.optimize.PlanCache;
+import edu.hku.sdb.plan.LocalAnalyzeDesc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Save the statistics computed by the server in the catalog. The child query
+ * returns the row count, then the distinct count of every column in
+ * distinctCols, then the min and max values of every column in rangeCols.
+ */
+public class LocalAnalyze extends LocalPlanNode<LocalAnalyzeDesc> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LocalAnalyze.class);
+
+  private final MetaStore metaStore;
+  private final String dbName;
+  private final String tblName;
+  private final List<String> distinctCols;
+  private final List<String> rangeCols;
+  private PlanNode child;
+
+  public LocalAnalyze(MetaStore metaStore, String dbName, String tblName,
+                      List<String> distinctCols, List<String> rangeCols) {
+    this.metaStore = metaStore;
+    this.dbName = dbName;
+    this.tblName = tblName;
+    this.distinctCols = distinctCols;
+    this.rangeCols = rangeCols;
+
+    nodeDesc = new LocalAnalyzeDesc();
+  }
+
+  @Override
+  public void init() {
+  }
+
+  @Override
+  public List<Object> nextTuple() {
+    List<Object> tuple = child.nextTuple();
+    if (tuple == null) {
+      LOG.error("No statistics returned for table " + tblName);
+      return null;
+    }
+
+    TableStatistics stats = new TableStatistics();
+    int index = 0;
+    stats.setRowCount(toLong(tuple.get(index++)));
+
+    for (String colName : distinctCols) {
+      stats.getColStats(colName).setDistinctCount(toLong(tuple.get(index++)));
+    }
+
+    for (String colName : rangeCols) {
+      TableStatistics.ColumnStatistics colStats = stats.getColStats(colName);
+      colStats.setMinValue(toDecimal(tuple.get(index++)));
+      colStats.setMaxValue(toDecimal(tuple.get(index++)));
+    }
+
+    metaStore.updateStats(dbName, tblName, stats);
+    PlanCache.getInstance().invalidate(dbName);
+    LOG.info("Table " + tblName + " has " + stats.getRowCount() + " rows");
+
+    return null;
+  }
+
+  private static long toLong(Object value) {
+    return value == null ? -1 : Long.parseLong(value.toString().trim());
+  }
+
+  private static String toDecimal(Object value) {
+    return value == null ? null : new BigDecimal(value.toString().trim())
+            .toPlainString();
+  }
+
+  @Override
+  public void addChild(PlanNode child) {
+    this.child = child;
+  }
+
+  @Override
+  public void close() {
+    child.close();
+  }
+}
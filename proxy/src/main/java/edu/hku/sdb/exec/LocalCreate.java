@@ -18,6 +18,7 @@
 package edu.hku.sdb.exec;
 
 import edu.hku.sdb.catalog.*;
+import edu.hku.sdb.optimize.PlanCache;
 import edu.hku.sdb.plan.LocalCreateDesc;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,7 +59,12 @@ public class LocalCreate extends LocalPlanNode<LocalCreateDesc> {
       String colName = columnDesc.getName();
 
       Type type = columnDesc.getType();
-      if (columnDesc.isSensitive) {
+      if (columnDesc.isSensitive && columnDesc.isDeterministic()) {
+        // The keys of deterministic columns are derived from the database.
+        columnMeta = new ColumnMeta(dbName, tableName, colName, type.toString(), true, null, null);
+        columnMeta.setDeterministic(true);
+      }
+      else if (columnDesc.isSensitive) {
         //sensitive column's plaintext is int type, by default
         // It is a scalar type
         if(type instanceof  ScalarType) {
@@ -77,6 +83,7 @@ public class LocalCreate extends LocalPlanNode<LocalCreateDesc> {
             case STRING:
               SearchColumnKey searchColKey = columnDesc.getSearchColKey();
               columnMeta = new ColumnMeta(dbName, tableName, colName, type.toString(), true, searchColKey.priKey2String(), searchColKey.pubKey2String());
+              columnMeta.setKeywordIndexed(columnDesc.isKeywordIndexed());
               break;
             default:
               LOG.error(type.toString() + " is not supported for SDB encryption scheme!");
@@ -92,15 +99,20 @@ public class LocalCreate extends LocalPlanNode<LocalCreateDesc> {
       else {
         columnMeta = new ColumnMeta(dbName, tableName, colName, type.toString(), false, null, null);
       }
+      columnMeta.setOrderPreserving(columnDesc.isOrderPreserving());
       columnMeta.setTableMeta(tableMeta);
       columnMetaList.add(columnMeta);
     }
 
     tableMeta.setCols(columnMetaList);
-    dbMeta.add(tableMeta);
 
     //Update metaStore
-    metaStore.addDB(dbMeta);
+    metaStore.createTbl(tableMeta);
+    PlanCache.getInstance().invalidate(dbMeta.getName());
+    ResultCache.getInstance().invalidate(dbMeta.getName(), nodeDesc
+            .getTableName());
+    RemoteQueryCache.getInstance().invalidate(dbMeta.getName(), nodeDesc
+            .getTableName());
   }
 
   @Override
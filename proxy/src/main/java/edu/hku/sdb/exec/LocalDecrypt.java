@@ -19,6 +19,7 @@ package edu.hku.sdb.exec;
 
 import edu.hku.sdb.catalog.*;
 import edu.hku.sdb.connect.SDBResultSetMetaData;
+import edu.hku.sdb.crypto.DetEncryptor;
 import edu.hku.sdb.crypto.SDBEncrypt;
 import edu.hku.sdb.parse.ColumnDefinition;
 import edu.hku.sdb.plan.LocalDecryptDesc;
@@ -26,9 +27,15 @@ import edu.hku.sdb.plan.RemoteSQLDesc;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.math.BigInteger;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 public class LocalDecrypt extends LocalPlanNode<LocalDecryptDesc> {
 
@@ -46,6 +53,17 @@ public class LocalDecrypt extends LocalPlanNode<LocalDecryptDesc> {
   private BigInteger n;
   private BigInteger g;
   private BigInteger totient;
+  private DetEncryptor detEncryptor;
+
+  // The decrypted rows are served from the result cache if they are cached,
+  // otherwise they are recorded to be cached.
+  private ResultCache resultCache;
+  private String cacheKey;
+  private Set<String> cacheTables;
+  private ResultCache.Rows cachedRows;
+  private ByteArrayOutputStream recorded;
+  private DataOutputStream recorder;
+  private long cacheVersion;
 
   public LocalDecrypt(RowDesc rowDesc) {
     nodeDesc = new LocalDecryptDesc();
@@ -66,8 +84,19 @@ public class LocalDecrypt extends LocalPlanNode<LocalDecryptDesc> {
     n = nodeDesc.getN();
     g = nodeDesc.getG();
     totient = SDBEncrypt.evaluateTotient(prime1, prime2);
+    detEncryptor = new DetEncryptor(prime1, prime2);
     // Get the row signature of the RemoteSQL query
     childColDescList = child.nodeDesc.getRowDesc().getSignature();
+
+    if (resultCache != null) {
+      // The version is taken before the remote query is executed.
+      cacheVersion = resultCache.getVersion();
+      cachedRows = resultCache.get(cacheKey);
+      if (cachedRows == null) {
+        recorded = new ByteArrayOutputStream();
+        recorder = new DataOutputStream(recorded);
+      }
+    }
     initialized = true;
   }
 
@@ -82,10 +111,15 @@ public class LocalDecrypt extends LocalPlanNode<LocalDecryptDesc> {
       init();
     }
 
+    if (cachedRows != null) {
+      Object[] row = cachedRows.next();
+      return row == null ? null : new ArrayList<>(Arrays.asList(row));
+    }
+
     List<Object> tuple = tupleSlot.nextTuple();
 
     if(tuple != null) {
-      return tuple;
+      return record(tuple);
     } else {
       List<Object> childTuple = child.nextTuple();
       int rowCount = 0;
@@ -107,6 +141,13 @@ public class LocalDecrypt extends LocalPlanNode<LocalDecryptDesc> {
                     sdbColumnKey.getX(), n);
           }
 
+          // Deterministic ciphertexts do not depend on the rowID
+          else if (columnDesc.isSensitive() && columnDesc.isDeterministic()) {
+            if (columnDesc.getType() instanceof ScalarType)
+              childTuple.set(index, detEncryptor.decrypt((String) childTuple.get
+                      (index), (ScalarType) columnDesc.getType()));
+          }
+
           // Decrypt with columnKey if sensitive and rowID is not null
           else if (columnDesc.isSensitive() && rowId != null) {
             Type type = columnDesc.getType();
@@ -161,7 +202,65 @@ public class LocalDecrypt extends LocalPlanNode<LocalDecryptDesc> {
       }
     }
 
-    return tupleSlot.nextTuple();
+    return record(tupleSlot.nextTuple());
+  }
+
+  /**
+   * Serve the rows from the result cache if possible.
+   *
+   * @param resultCache
+   * @param key    the key of the remote query
+   * @param tables the tables read by the remote query
+   */
+  public void setResultCache(ResultCache resultCache, String key, Set<String>
+          tables) {
+    this.resultCache = resultCache;
+    this.cacheKey = key;
+    this.cacheTables = tables;
+  }
+
+  /**
+   * @return whether the rows are served by the result cache, null if it is
+   * not used
+   */
+  public Boolean isCacheHit() {
+    if (resultCache == null || !initialized)
+      return null;
+    return cachedRows != null;
+  }
+
+  /**
+   * Record a decrypted row, and cache the rows after the last one. The rows
+   * larger than the cache are not recorded.
+   *
+   * @param tuple
+   * @return the tuple
+   */
+  private List<Object> record(List<Object> tuple) {
+    if (recorder == null)
+      return tuple;
+
+    try {
+      if (tuple == null) {
+        recorder.flush();
+        resultCache.put(cacheKey, cacheTables, recorded.toByteArray(),
+                cacheVersion);
+        recorder = null;
+        recorded = null;
+        return null;
+      }
+
+      RowCodec.write(recorder, tuple.toArray());
+      if (recorded.size() > resultCache.getCapacity()) {
+        recorder = null;
+        recorded = null;
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+      recorder = null;
+      recorded = null;
+    }
+    return tuple;
   }
 
   /*
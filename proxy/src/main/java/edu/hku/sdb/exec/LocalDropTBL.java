@@ -18,6 +18,7 @@
 package edu.hku.sdb.exec;
 
 import edu.hku.sdb.catalog.MetaStore;
+import edu.hku.sdb.optimize.PlanCache;
 import edu.hku.sdb.plan.LocalDropTBLDesc;
 
 import java.util.List;
@@ -43,6 +44,7 @@ public class LocalDropTBL extends LocalPlanNode<LocalDropTBLDesc> {
   public void init() {
 
     metaStore.delTbl(dbName, tblName);
+    PlanCache.getInstance().invalidate(dbName);
     initialized = true;
   }
 
@@ -52,6 +54,9 @@ public class LocalDropTBL extends LocalPlanNode<LocalDropTBLDesc> {
       init();
 
     child.nextTuple();
+    // After the table is dropped on the server.
+    ResultCache.getInstance().invalidate(dbName, tblName);
+    RemoteQueryCache.getInstance().invalidate(dbName, tblName);
 
     return null;
   }
@@ -0,0 +1,120 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.exec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+
+/**
+ * The memory budget of the proxy for the rows it keeps. Each query reserves
+ * the memory of its rows here through its {@link MemoryPool}, within its own
+ * limit, and has to spill them to disk when the reservation is refused.
+ */
+public class MemoryManager {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MemoryManager
+          .class);
+
+  public static final long MB = 1024L * 1024L;
+  public static final long DEFAULT_LIMIT = 512 * MB;
+  public static final long DEFAULT_QUERY_LIMIT = 64 * MB;
+
+  private static MemoryManager instance = null;
+
+  private long limit;
+  private long queryLimit;
+  private File spillDir;
+  private long reserved = 0;
+
+  public static synchronized MemoryManager getInstance() {
+    if (instance == null) {
+      instance = new MemoryManager(DEFAULT_LIMIT, DEFAULT_QUERY_LIMIT, null);
+    }
+    return instance;
+  }
+
+  /**
+   * @param limit      the bytes of the whole proxy
+   * @param queryLimit the bytes of a query
+   * @param spillDir   the directory of the spilled rows, a directory in the
+   *                   temporary directory of the system if null
+   */
+  public MemoryManager(long limit, long queryLimit, File spillDir) {
+    configure(limit, queryLimit, spillDir);
+  }
+
+  public synchronized void configure(long limit, long queryLimit, File
+          spillDir) {
+    this.limit = limit;
+    this.queryLimit = Math.min(queryLimit, limit);
+    this.spillDir = spillDir != null ? spillDir : new File(System.getProperty
+            ("java.io.tmpdir"), "sdb-spill");
+    LOG.info("Memory limit of the proxy: " + limit / MB + " MB, of a query: " +
+            this.queryLimit / MB + " MB");
+
+    // The rows spilled before a crash of the proxy.
+    File[] files = this.spillDir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.getName().startsWith(ResultBuffer.SPILL_PREFIX) && file
+                .getName().endsWith(ResultBuffer.SPILL_SUFFIX) && !file.delete())
+          LOG.warn("Can not delete " + file);
+      }
+    }
+  }
+
+  /**
+   * @return a new pool for a query
+   */
+  public MemoryPool createPool() {
+    return new MemoryPool(this, getQueryLimit());
+  }
+
+  /**
+   * @param bytes
+   * @return false if the proxy does not have that much memory left
+   */
+  public synchronized boolean tryReserve(long bytes) {
+    if (reserved + bytes > limit)
+      return false;
+    reserved += bytes;
+    return true;
+  }
+
+  public synchronized void release(long bytes) {
+    reserved = Math.max(0, reserved - bytes);
+  }
+
+  public synchronized long getReserved() {
+    return reserved;
+  }
+
+  public synchronized long getLimit() {
+    return limit;
+  }
+
+  public synchronized long getQueryLimit() {
+    return queryLimit;
+  }
+
+  public synchronized File getSpillDir() {
+    return spillDir;
+  }
+}
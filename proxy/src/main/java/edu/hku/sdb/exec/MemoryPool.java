@@ -0,0 +1,122 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.exec;
+
+import java.io.File;
+
+/**
+ * The memory of a query. The plan nodes and the result of a query reserve the
+ * memory of the rows they keep here, within the limit of a query and the
+ * memory left in the proxy. A node which is refused spills its rows or fails
+ * the query.
+ *
+ * The {@link Executor} binds the pool of a query to the thread executing it,
+ * where the plan nodes find it by {@link #current()}.
+ */
+public class MemoryPool {
+
+  // Used by the nodes executed outside of a query, nothing is accounted.
+  public static final MemoryPool UNLIMITED = new MemoryPool(null, Long
+          .MAX_VALUE);
+
+  private static final ThreadLocal<MemoryPool> current = new ThreadLocal<>();
+
+  private final MemoryManager memoryManager;
+  private final long limit;
+  private long reserved = 0;
+  private long peak = 0;
+
+  /**
+   * @param memoryManager
+   * @param limit         the bytes of the query
+   */
+  public MemoryPool(MemoryManager memoryManager, long limit) {
+    this.memoryManager = memoryManager;
+    this.limit = limit;
+  }
+
+  /**
+   * @return the pool of the query executed by this thread
+   */
+  public static MemoryPool current() {
+    MemoryPool pool = current.get();
+    return pool == null ? UNLIMITED : pool;
+  }
+
+  /**
+   * @param pool the pool of the query executed by this thread, null once the
+   *             execution is done
+   */
+  public static void bind(MemoryPool pool) {
+    if (pool == null)
+      current.remove();
+    else
+      current.set(pool);
+  }
+
+  /**
+   * @param bytes
+   * @return false if the query or the proxy does not have that much memory
+   * left
+   */
+  public synchronized boolean tryReserve(long bytes) {
+    if (memoryManager == null)
+      return true;
+    if (reserved + bytes > limit || !memoryManager.tryReserve(bytes))
+      return false;
+
+    reserved += bytes;
+    peak = Math.max(peak, reserved);
+    return true;
+  }
+
+  public synchronized void release(long bytes) {
+    if (memoryManager == null)
+      return;
+
+    bytes = Math.min(bytes, reserved);
+    reserved -= bytes;
+    memoryManager.release(bytes);
+  }
+
+  public synchronized long getReserved() {
+    return reserved;
+  }
+
+  /**
+   * @return the most bytes reserved at a time
+   */
+  public synchronized long getPeak() {
+    return peak;
+  }
+
+  public long getLimit() {
+    return limit;
+  }
+
+  public File getSpillDir() {
+    return memoryManager == null ? null : memoryManager.getSpillDir();
+  }
+
+  /**
+   * Release all the memory left, e.g. by a failed query.
+   */
+  public synchronized void close() {
+    release(reserved);
+  }
+}
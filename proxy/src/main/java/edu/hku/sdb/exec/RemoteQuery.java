@@ -22,8 +22,13 @@ import edu.hku.sdb.connect.ServerResultSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 public class RemoteQuery extends RemoteSQL {
 
@@ -32,6 +37,16 @@ public class RemoteQuery extends RemoteSQL {
   private BasicTupleSlot tupleSlot;
   boolean initialized = false;
 
+  // The rows are read from the cache if they are cached, otherwise they are
+  // written to a file to be cached.
+  private RemoteQueryCache cache;
+  private String cacheKey;
+  private Set<String> cacheTables;
+  private long cacheVersion;
+  private ColumnarFile.Reader cachedRows;
+  private ColumnarFile.Writer cacheWriter;
+  private File cacheFile;
+
   public RemoteQuery(String query, ServerConnection connection, RowDesc rowDesc) {
     super(query, connection);
     nodeDesc.setConnection(connection);
@@ -49,19 +64,55 @@ public class RemoteQuery extends RemoteSQL {
       init();
     }
 
+    if (cachedRows != null) {
+      try {
+        Object[] row = cachedRows.next();
+        return row == null ? null : new ArrayList<>(Arrays.asList(row));
+      } catch (IOException e) {
+        throw new UncheckedIOException("Can not read the cached rows", e);
+      }
+    }
+
     return tupleSlot.nextTuple();
   }
 
   /**
-   * Buffer all the remote query result at the first place.
+   * Read the rows from the cache if possible, and otherwise cache the rows
+   * fetched from the server.
+   *
+   * @param cache
+   * @param key    the key of the remote query
+   * @param tables the tables read by the remote query
+   */
+  public void setCache(RemoteQueryCache cache, String key, Set<String> tables) {
+    this.cache = cache;
+    this.cacheKey = key;
+    this.cacheTables = tables;
+  }
+
+  /**
+   * Buffer all the remote query result at the first place. The rows beyond
+   * the memory of the query are spilled to disk.
    */
   @Override
   public void init() {
     if(initialized)
       return;
 
+    if (cache != null) {
+      // The version is taken before the remote query is executed.
+      cacheVersion = cache.getVersion();
+      cachedRows = cache.open(cacheKey);
+      if (cachedRows != null) {
+        LOG.debug("Reading the cached rows of remote query " + nodeDesc
+                .getQuery());
+        initialized = true;
+        return;
+      }
+    }
+
     long startTimeStamp = System.currentTimeMillis();
-    tupleSlot = new TupleSlot();
+    tupleSlot = new SpillableTupleSlot(MemoryPool.current());
 
     String query = nodeDesc.getQuery();
     LOG.debug("Initialize RemoteSQLDesc with sql " + query);
@@ -72,6 +123,9 @@ public class RemoteQuery extends RemoteSQL {
     long endTimeStamp = System.currentTimeMillis();
     setServerExecutionTime(endTimeStamp - startTimeStamp);
 
+    if (cache != null)
+      startCaching(columnDescList.size());
+
     //buffer all results in resultList
     while (resultSet.next()) {
       List<Object> row = new ArrayList<Object>();
@@ -81,13 +135,88 @@ public class RemoteQuery extends RemoteSQL {
       }
       if (row.size() > 0) {
         tupleSlot.addRow(row);
+        cacheRow(row);
       }
     }
 
-
+    finishCaching();
     initialized = true;
   }
 
+  private void startCaching(int columnCount) {
+    try {
+      cacheFile = cache.createFile();
+      cacheWriter = new ColumnarFile.Writer(cacheFile, columnCount);
+    } catch (IOException e) {
+      LOG.warn("Can not cache the rows of a remote query: " + e.getMessage());
+      abortCaching();
+    }
+  }
+
+  private void cacheRow(List<Object> row) {
+    if (cacheWriter == null)
+      return;
+
+    try {
+      cacheWriter.write(row);
+    } catch (IOException e) {
+      LOG.warn("Can not cache the rows of a remote query: " + e.getMessage());
+      abortCaching();
+    }
+  }
+
+  private void finishCaching() {
+    if (cacheWriter == null)
+      return;
+
+    try {
+      cacheWriter.close();
+      cache.put(cacheKey, cacheTables, cacheFile, cacheVersion);
+    } catch (IOException e) {
+      LOG.warn("Can not cache the rows of a remote query: " + e.getMessage());
+      if (!cacheFile.delete())
+        LOG.warn("Can not delete " + cacheFile);
+    }
+    cacheWriter = null;
+    cacheFile = null;
+  }
+
+  private void abortCaching() {
+    if (cacheWriter != null) {
+      try {
+        cacheWriter.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    if (cacheFile != null && !cacheFile.delete())
+      LOG.warn("Can not delete " + cacheFile);
+    cacheWriter = null;
+    cacheFile = null;
+  }
+
+  /**
+   * @return whether the rows are read from the cache
+   */
+  public boolean isCacheHit() {
+    return cachedRows != null;
+  }
+
+  @Override
+  public void close() {
+    if (tupleSlot != null)
+      tupleSlot.close();
+    // The rows of a failed query are not cached.
+    abortCaching();
+    if (cachedRows != null) {
+      try {
+        cachedRows.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
   @Override
   public boolean equals(Object object) {
     if (!(object instanceof RemoteQuery)) {
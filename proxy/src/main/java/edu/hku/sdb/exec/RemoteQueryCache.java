@@ -0,0 +1,286 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.exec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A LRU cache of the rows returned by the server for the remote queries,
+ * keyed by the database and the remote SQL. The rows are kept as they come
+ * from the server, i.e. the sensitive columns stay encrypted, in
+ * {@link ColumnarFile}s on the local disk. A repeated remote query skips the
+ * server, whatever the local plan above it decrypts or projects.
+ *
+ * An entry is dropped when a table it reads is loaded, created or dropped.
+ * Every invalidation bumps the version of the cache, and rows fetched before
+ * it are not put.
+ */
+public class RemoteQueryCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RemoteQueryCache
+          .class);
+
+  public static final long DEFAULT_CAPACITY = 1024 * MemoryManager.MB;
+  private static final String FILE_SUFFIX = ".col";
+
+  private static RemoteQueryCache instance = null;
+
+  private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f,
+          true);
+  private boolean enabled;
+  private long capacity;
+  private File dir;
+  private long size = 0;
+  private long version = 0;
+  private long hits = 0;
+  private long misses = 0;
+
+  public static synchronized RemoteQueryCache getInstance() {
+    if (instance == null) {
+      instance = new RemoteQueryCache(false, DEFAULT_CAPACITY, null);
+    }
+    return instance;
+  }
+
+  /**
+   * @param enabled
+   * @param capacity the bytes of the cached files
+   * @param dir      the directory of the files, a directory in the temporary
+   *                 directory of the system if null
+   */
+  public RemoteQueryCache(boolean enabled, long capacity, File dir) {
+    configure(enabled, capacity, dir);
+  }
+
+  /**
+   * Configure the cache. The cached entries are dropped, and so are the files
+   * left in the directory by an earlier proxy, as nothing is known of them.
+   *
+   * @param enabled
+   * @param capacity
+   * @param dir
+   */
+  public synchronized void configure(boolean enabled, long capacity, File dir) {
+    clear();
+    this.enabled = enabled;
+    this.capacity = capacity;
+    this.dir = dir != null ? dir : new File(System.getProperty("java.io" +
+            ".tmpdir"), "sdb-remote-cache");
+
+    File[] files = this.dir.listFiles();
+    if (enabled && files != null) {
+      for (File file : files) {
+        if (file.getName().endsWith(FILE_SUFFIX))
+          delete(file);
+      }
+    }
+  }
+
+  public synchronized boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @param dbName
+   * @param remoteSQL
+   * @return the cache key of a remote query
+   */
+  public static String getKey(String dbName, String remoteSQL) {
+    return dbName.toLowerCase() + ":" + remoteSQL;
+  }
+
+  /**
+   * @return the version to put the rows fetched from now on
+   */
+  public synchronized long getVersion() {
+    return version;
+  }
+
+  /**
+   * @param key
+   * @return a reader of the cached rows, null if there are none
+   */
+  public synchronized ColumnarFile.Reader open(String key) {
+    Entry entry = enabled ? entries.get(key) : null;
+    if (entry != null) {
+      try {
+        ColumnarFile.Reader reader = new ColumnarFile.Reader(entry.file);
+        hits++;
+        return reader;
+      } catch (IOException e) {
+        LOG.warn("Dropping unreadable cached rows " + entry.file + ": " + e
+                .getMessage());
+        remove(key);
+      }
+    }
+    misses++;
+    return null;
+  }
+
+  /**
+   * @return a new file to write the rows of a remote query into
+   * @throws IOException
+   */
+  public File createFile() throws IOException {
+    File cacheDir;
+    synchronized (this) {
+      cacheDir = dir;
+    }
+    if (!cacheDir.isDirectory() && !cacheDir.mkdirs())
+      throw new IOException("Can not create " + cacheDir);
+    return File.createTempFile("sdb-remote-", FILE_SUFFIX, cacheDir);
+  }
+
+  /**
+   * Cache the rows of a remote query, unless a table was changed since they
+   * were fetched. The file is deleted if it is not cached.
+   *
+   * @param key
+   * @param tables  the lower case names of the tables read by the query
+   * @param file    the rows written by {@link ColumnarFile.Writer}
+   * @param version the version taken before the rows were fetched
+   */
+  public synchronized void put(String key, Set<String> tables, File file, long
+          version) {
+    long bytes = file.length();
+    if (!enabled || version != this.version || bytes > capacity) {
+      delete(file);
+      return;
+    }
+
+    remove(key);
+    entries.put(key, new Entry(tables, file, bytes));
+    size += bytes;
+
+    Iterator<Entry> eldest = entries.values().iterator();
+    while (size > capacity && eldest.hasNext()) {
+      Entry entry = eldest.next();
+      eldest.remove();
+      size -= entry.bytes;
+      delete(entry.file);
+    }
+  }
+
+  /**
+   * Drop all the rows of a database.
+   *
+   * @param dbName
+   */
+  public synchronized void invalidate(String dbName) {
+    version++;
+
+    String prefix = dbName.toLowerCase() + ":";
+    Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, Entry> entry = iterator.next();
+      if (entry.getKey().startsWith(prefix)) {
+        iterator.remove();
+        size -= entry.getValue().bytes;
+        delete(entry.getValue().file);
+      }
+    }
+    LOG.debug("Invalidated cached remote rows of database " + dbName);
+  }
+
+  /**
+   * Drop the rows reading a table.
+   *
+   * @param dbName
+   * @param tblName
+   */
+  public synchronized void invalidate(String dbName, String tblName) {
+    version++;
+
+    String prefix = dbName.toLowerCase() + ":";
+    String table = tblName.toLowerCase();
+    Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, Entry> entry = iterator.next();
+      if (entry.getKey().startsWith(prefix) && entry.getValue().tables
+              .contains(table)) {
+        iterator.remove();
+        size -= entry.getValue().bytes;
+        delete(entry.getValue().file);
+      }
+    }
+    LOG.debug("Invalidated cached remote rows of table " + dbName + "." +
+            tblName);
+  }
+
+  private void remove(String key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      size -= entry.bytes;
+      delete(entry.file);
+    }
+  }
+
+  private void clear() {
+    for (Entry entry : entries.values()) {
+      delete(entry.file);
+    }
+    entries.clear();
+    size = 0;
+    version++;
+  }
+
+  private static void delete(File file) {
+    // A file still being read can not be deleted on some platforms. It is
+    // deleted when the proxy starts again.
+    if (!file.delete())
+      LOG.warn("Can not delete " + file);
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return the bytes of the cached files
+   */
+  public synchronized long getBytes() {
+    return size;
+  }
+
+  /**
+   * @return the ratio of the remote queries served by the cache
+   */
+  public synchronized double getHitRate() {
+    return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+  }
+
+  private static class Entry {
+    final Set<String> tables;
+    final File file;
+    final long bytes;
+
+    Entry(Set<String> tables, File file, long bytes) {
+      this.tables = tables;
+      this.file = file;
+      this.bytes = bytes;
+    }
+  }
+}
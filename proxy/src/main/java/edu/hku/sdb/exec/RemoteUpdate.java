@@ -21,12 +21,17 @@ import edu.hku.sdb.connect.ServerConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class RemoteUpdate extends RemoteSQL {
 
   boolean initialized = false;
 
+  // Updates which should be executed after this one, e.g. the ones on the
+  // keyword index tables of the updated table.
+  private List<PlanNode> children = new ArrayList<>();
+
   private static final Logger LOG = LoggerFactory
           .getLogger(RemoteUpdate.class);
 
@@ -50,6 +55,10 @@ public class RemoteUpdate extends RemoteSQL {
     setServerExecutionTime(endTimeStamp - startTimeStamp);
 
     initialized = true;
+
+    for (PlanNode child : children) {
+      child.nextTuple();
+    }
   }
 
   @Override
@@ -57,4 +66,9 @@ public class RemoteUpdate extends RemoteSQL {
     init();
     return null;
   }
+
+  @Override
+  public void addChild(PlanNode child) {
+    children.add(child);
+  }
 }
@@ -0,0 +1,186 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.exec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rows of a result, kept until the client has read them. The rows are
+ * kept in memory as long as the {@link MemoryPool} of the query allows,
+ * and the rest are spilled to a temporary file by {@link RowCodec}. The rows
+ * are read back in order and only once, and the memory of a row is released
+ * once it is read.
+ */
+public class ResultBuffer implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ResultBuffer
+          .class);
+
+  private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+  static final String SPILL_PREFIX = "sdb-result-";
+  static final String SPILL_SUFFIX = ".spill";
+
+  private final MemoryPool memoryPool;
+
+  private final List<Object[]> rows = new ArrayList<>();
+  private long reserved = 0;
+  private int readIndex = 0;
+  private int rowCount = 0;
+
+  private File spillFile;
+  private DataOutputStream spillOut;
+  private DataInputStream spillIn;
+  private int spilledRows = 0;
+  private int spillReadRows = 0;
+
+  private boolean closed = false;
+
+  public ResultBuffer(MemoryPool memoryPool) {
+    this.memoryPool = memoryPool;
+  }
+
+  /**
+   * Append a row. Once a row is spilled, all the following rows are spilled
+   * too, so the order is kept.
+   *
+   * @param row
+   */
+  public void add(Object[] row) {
+    if (closed)
+      throw new IllegalStateException("Result buffer is closed");
+    rowCount++;
+
+    if (spillOut == null) {
+      long bytes = RowCodec.estimateSize(row);
+      if (memoryPool.tryReserve(bytes)) {
+        reserved += bytes;
+        rows.add(row);
+        return;
+      }
+    }
+
+    try {
+      if (spillOut == null)
+        startSpill();
+      RowCodec.write(spillOut, row);
+      spilledRows++;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can not spill the result", e);
+    }
+  }
+
+  private void startSpill() throws IOException {
+    // The files left by a crash are deleted when the proxy starts.
+    File spillDir = memoryPool.getSpillDir();
+    if (spillDir != null && !spillDir.isDirectory() && !spillDir.mkdirs())
+      throw new IOException("Can not create " + spillDir);
+    spillFile = File.createTempFile(SPILL_PREFIX, SPILL_SUFFIX, spillDir);
+    spillOut = new DataOutputStream(new BufferedOutputStream(new
+            FileOutputStream(spillFile), IO_BUFFER_SIZE));
+    LOG.info("Spilling the result after " + rows.size() + " rows to " +
+            spillFile);
+  }
+
+  /**
+   * @return the next row, null if there is no more
+   */
+  public Object[] next() {
+    if (closed)
+      return null;
+
+    if (readIndex < rows.size()) {
+      Object[] row = rows.get(readIndex);
+      rows.set(readIndex++, null);
+      long bytes = RowCodec.estimateSize(row);
+      reserved -= bytes;
+      memoryPool.release(bytes);
+      return row;
+    }
+
+    if (spillReadRows == spilledRows)
+      return null;
+
+    try {
+      if (spillIn == null) {
+        spillOut.close();
+        spillIn = new DataInputStream(new BufferedInputStream(new
+                FileInputStream(spillFile), IO_BUFFER_SIZE));
+      }
+      spillReadRows++;
+      return RowCodec.read(spillIn);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can not read the spilled result", e);
+    }
+  }
+
+  /**
+   * @return the number of rows added
+   */
+  public int size() {
+    return rowCount;
+  }
+
+  public boolean isSpilled() {
+    return spillFile != null;
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Release the memory and delete the spilled rows.
+   */
+  @Override
+  public void close() {
+    if (closed)
+      return;
+    closed = true;
+
+    rows.clear();
+    memoryPool.release(reserved);
+    reserved = 0;
+
+    if (spillFile == null)
+      return;
+    try {
+      if (spillIn != null)
+        spillIn.close();
+      spillOut.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    if (!spillFile.delete())
+      LOG.warn("Can not delete " + spillFile);
+  }
+}
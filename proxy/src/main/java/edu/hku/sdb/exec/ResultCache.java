@@ -0,0 +1,241 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.exec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A LRU cache of the decrypted rows of the remote queries, keyed by the
+ * database and the rewritten remote SQL. A repeated select skips the server
+ * and the decryption. The rows are kept in the form of {@link RowCodec}, and
+ * the cache is bounded by the bytes of the rows.
+ *
+ * An entry is dropped when a table it reads is loaded, created or dropped.
+ * Every invalidation bumps the version of the cache, and rows computed before
+ * it are not put.
+ */
+public class ResultCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ResultCache.class);
+
+  public static final long DEFAULT_CAPACITY = 64 * MemoryManager.MB;
+
+  private static ResultCache instance = null;
+
+  private final Map<String, Entry> results = new LinkedHashMap<>(16, 0.75f,
+          true);
+  private boolean enabled;
+  private long capacity;
+  private long size = 0;
+  private long version = 0;
+  private long hits = 0;
+  private long misses = 0;
+
+  public static synchronized ResultCache getInstance() {
+    if (instance == null) {
+      instance = new ResultCache(false, DEFAULT_CAPACITY);
+    }
+    return instance;
+  }
+
+  /**
+   * @param enabled
+   * @param capacity the bytes of the cached rows
+   */
+  public ResultCache(boolean enabled, long capacity) {
+    configure(enabled, capacity);
+  }
+
+  public synchronized void configure(boolean enabled, long capacity) {
+    this.enabled = enabled;
+    this.capacity = capacity;
+    evict();
+  }
+
+  public synchronized boolean isEnabled() {
+    return enabled;
+  }
+
+  public synchronized long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @param dbName
+   * @param remoteSQL
+   * @return the cache key of a remote query
+   */
+  public static String getKey(String dbName, String remoteSQL) {
+    return dbName.toLowerCase() + ":" + remoteSQL;
+  }
+
+  /**
+   * @return the version to put the rows computed from now on
+   */
+  public synchronized long getVersion() {
+    return version;
+  }
+
+  /**
+   * @param key
+   * @return the cached rows, null if there are none
+   */
+  public synchronized Rows get(String key) {
+    Entry entry = enabled ? results.get(key) : null;
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return new Rows(entry.rows);
+  }
+
+  /**
+   * Cache the rows of a remote query, unless a table was changed since the
+   * rows were computed.
+   *
+   * @param key
+   * @param tables  the lower case names of the tables read by the query
+   * @param rows    the rows written by {@link RowCodec}
+   * @param version the version taken before the rows were computed
+   */
+  public synchronized void put(String key, Set<String> tables, byte[] rows,
+                               long version) {
+    if (!enabled || version != this.version || rows.length > capacity)
+      return;
+
+    Entry old = results.put(key, new Entry(tables, rows));
+    if (old != null)
+      size -= old.rows.length;
+    size += rows.length;
+    evict();
+  }
+
+  private void evict() {
+    Iterator<Entry> entries = results.values().iterator();
+    while (size > capacity && entries.hasNext()) {
+      size -= entries.next().rows.length;
+      entries.remove();
+    }
+  }
+
+  /**
+   * Drop all the results of a database.
+   *
+   * @param dbName
+   */
+  public synchronized void invalidate(String dbName) {
+    version++;
+
+    String prefix = dbName.toLowerCase() + ":";
+    Iterator<Map.Entry<String, Entry>> entries = results.entrySet().iterator();
+    while (entries.hasNext()) {
+      Map.Entry<String, Entry> entry = entries.next();
+      if (entry.getKey().startsWith(prefix)) {
+        size -= entry.getValue().rows.length;
+        entries.remove();
+      }
+    }
+    LOG.debug("Invalidated cached results of database " + dbName);
+  }
+
+  /**
+   * Drop the results reading a table.
+   *
+   * @param dbName
+   * @param tblName
+   */
+  public synchronized void invalidate(String dbName, String tblName) {
+    version++;
+
+    String prefix = dbName.toLowerCase() + ":";
+    String table = tblName.toLowerCase();
+    Iterator<Map.Entry<String, Entry>> entries = results.entrySet().iterator();
+    while (entries.hasNext()) {
+      Map.Entry<String, Entry> entry = entries.next();
+      if (entry.getKey().startsWith(prefix) && entry.getValue().tables
+              .contains(table)) {
+        size -= entry.getValue().rows.length;
+        entries.remove();
+      }
+    }
+    LOG.debug("Invalidated cached results of table " + dbName + "." + tblName);
+  }
+
+  public synchronized int size() {
+    return results.size();
+  }
+
+  /**
+   * @return the bytes of the cached rows
+   */
+  public synchronized long getBytes() {
+    return size;
+  }
+
+  /**
+   * @return the ratio of the lookups served by the cache
+   */
+  public synchronized double getHitRate() {
+    return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+  }
+
+  private static class Entry {
+    final Set<String> tables;
+    final byte[] rows;
+
+    Entry(Set<String> tables, byte[] rows) {
+      this.tables = tables;
+      this.rows = rows;
+    }
+  }
+
+  /**
+   * The cached rows of a query, decoded one at a time.
+   */
+  public static class Rows {
+    private final DataInputStream in;
+
+    Rows(byte[] rows) {
+      in = new DataInputStream(new ByteArrayInputStream(rows));
+    }
+
+    /**
+     * @return the next row, null if there is no more
+     */
+    public Object[] next() {
+      try {
+        if (in.available() == 0)
+          return null;
+        return RowCodec.read(in);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.exec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A compact binary form of the rows kept out of the heap. A row is its
+ * number of values followed by the values, each a type tag and its bytes:
+ * big integers are written as their two's complement bytes, decimals as their
+ * unscaled value and scale, and strings in UTF-8. Values of other types, e.g.
+ * the dates of a remote query, are written as strings.
+ */
+public final class RowCodec {
+
+  private static final byte NULL = 0;
+  private static final byte INT = 1;
+  private static final byte LONG = 2;
+  private static final byte BIG_INTEGER = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte STRING = 5;
+  private static final byte BIG_DECIMAL = 6;
+  private static final byte BOOLEAN = 7;
+
+  private RowCodec() {
+  }
+
+  public static void write(DataOutput out, Object[] row) throws IOException {
+    out.writeInt(row.length);
+    for (Object value : row) {
+      writeValue(out, value);
+    }
+  }
+
+  public static Object[] read(DataInput in) throws IOException {
+    Object[] row = new Object[in.readInt()];
+    for (int i = 0; i < row.length; i++) {
+      row[i] = readValue(in);
+    }
+    return row;
+  }
+
+  public static void writeValue(DataOutput out, Object value) throws
+          IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof Integer) {
+      out.writeByte(INT);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof BigInteger) {
+      out.writeByte(BIG_INTEGER);
+      writeBytes(out, ((BigInteger) value).toByteArray());
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof BigDecimal) {
+      out.writeByte(BIG_DECIMAL);
+      writeBytes(out, ((BigDecimal) value).unscaledValue().toByteArray());
+      out.writeInt(((BigDecimal) value).scale());
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else {
+      out.writeByte(STRING);
+      writeBytes(out, value.toString().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  public static Object readValue(DataInput in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+      case NULL:
+        return null;
+      case INT:
+        return in.readInt();
+      case LONG:
+        return in.readLong();
+      case BIG_INTEGER:
+        return new BigInteger(readBytes(in));
+      case DOUBLE:
+        return in.readDouble();
+      case STRING:
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+      case BIG_DECIMAL:
+        BigInteger unscaled = new BigInteger(readBytes(in));
+        return new BigDecimal(unscaled, in.readInt());
+      case BOOLEAN:
+        return in.readBoolean();
+      default:
+        throw new IOException("Unknown value type " + type);
+    }
+  }
+
+  private static void writeBytes(DataOutput out, byte[] bytes) throws
+          IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInput in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  /**
+   * A rough estimate of the heap taken by a row, used for the memory budget.
+   *
+   * @param row
+   * @return the number of bytes
+   */
+  public static long estimateSize(Object[] row) {
+    long size = 16 + 8L * row.length;
+    for (Object value : row) {
+      size += estimateSize(value);
+    }
+    return size;
+  }
+
+  private static long estimateSize(Object value) {
+    if (value == null)
+      return 0;
+    if (value instanceof Integer)
+      return 16;
+    if (value instanceof Long || value instanceof Double)
+      return 24;
+    if (value instanceof BigInteger)
+      return 56 + ((BigInteger) value).bitLength() / 8;
+    if (value instanceof BigDecimal)
+      return 88 + ((BigDecimal) value).unscaledValue().bitLength() / 8;
+    if (value instanceof String)
+      return 56 + 2L * ((String) value).length();
+    return 64;
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.exec;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A tuple slot reserving the memory of its rows in the {@link MemoryPool} of
+ * the query, and spilling the rows to disk when it is refused. The rows are
+ * read once, in order.
+ */
+public class SpillableTupleSlot extends BasicTupleSlot {
+
+  private final ResultBuffer buffer;
+
+  public SpillableTupleSlot(MemoryPool memoryPool) {
+    buffer = new ResultBuffer(memoryPool);
+  }
+
+  @Override
+  public void addRow(List<Object> row) {
+    buffer.add(row.toArray());
+  }
+
+  @Override
+  public void setRows(List<List<Object>> rows) {
+    for (List<Object> row : rows) {
+      addRow(row);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.hku.sdb.exec.BasicTupleSlot#nextTuple()
+   */
+  @Override
+  public List<Object> nextTuple() {
+    Object[] row = buffer.next();
+    if (row == null) {
+      buffer.close();
+      return null;
+    }
+    return Arrays.asList(row);
+  }
+
+  @Override
+  public void close() {
+    buffer.close();
+  }
+}
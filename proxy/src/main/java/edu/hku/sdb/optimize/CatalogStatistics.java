@@ -0,0 +1,63 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.optimize;
+
+import edu.hku.sdb.catalog.ColumnMeta;
+import edu.hku.sdb.catalog.DBMeta;
+import edu.hku.sdb.catalog.TableMeta;
+
+/**
+ * The statistics kept in the catalog, collected during the upload and
+ * refreshed by ANALYZE TABLE.
+ */
+public class CatalogStatistics implements Statistics {
+
+  private final DBMeta dbMeta;
+
+  public CatalogStatistics(DBMeta dbMeta) {
+    this.dbMeta = dbMeta;
+  }
+
+  @Override
+  public long getRowCount(String tblName) {
+    TableMeta tblMeta = getTbl(tblName);
+    return tblMeta == null ? UNKNOWN : tblMeta.getRowCount();
+  }
+
+  @Override
+  public long getDistinctCount(String tblName, String colName) {
+    TableMeta tblMeta = getTbl(tblName);
+    if (tblMeta == null)
+      return UNKNOWN;
+
+    ColumnMeta colMeta = tblMeta.getCol(colName.toLowerCase());
+    return colMeta == null ? UNKNOWN : colMeta.getDistinctCount();
+  }
+
+  @Override
+  public long getAvgRowSize(String tblName) {
+    TableMeta tblMeta = getTbl(tblName);
+    return tblMeta == null ? UNKNOWN : tblMeta.getAvgRowSize();
+  }
+
+  private TableMeta getTbl(String tblName) {
+    if (dbMeta == null || tblName == null)
+      return null;
+    return dbMeta.getTbl(tblName.toLowerCase());
+  }
+}
@@ -0,0 +1,362 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.hku.sdb.optimize;
+
+import edu.hku.sdb.catalog.DBMeta;
+import edu.hku.sdb.catalog.TableMeta;
+import edu.hku.sdb.catalog.Type;
+import edu.hku.sdb.connect.ServerConnection;
+import edu.hku.sdb.exec.ColumnDesc;
+import edu.hku.sdb.exec.LocalAggregate;
+import edu.hku.sdb.exec.LocalDecrypt;
+import edu.hku.sdb.exec.PlanNode;
+import edu.hku.sdb.exec.RemoteQuery;
+import edu.hku.sdb.exec.RowDesc;
+import edu.hku.sdb.parse.*;
+import edu.hku.sdb.parse.SdbArithmeticExpr.SdbOperator;
+import edu.hku.sdb.plan.LocalAggregateDesc.Function;
+import edu.hku.sdb.rewrite.UnSupportedException;
+import edu.hku.sdb.utility.ParserConstant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An optimizer choosing between alternative plans by their estimated costs.
+ *
+ * The plan of the {@link RuleBaseOptimizer} evaluates the whole query on the
+ * server. For an aggregation over a single table, the alternative fetches the
+ * key updated rows and aggregates them locally after decryption. It skips the
+ * aggregation UDFs and the shuffle on the server, but transfers and decrypts
+ * every row. The costs are estimated from the table statistics, and the
+ * server plan is kept if they are unknown.
+ */
+public class CostBasedOptimizer extends Optimizer {
+
+  private static final Logger LOG = LoggerFactory
+          .getLogger(CostBasedOptimizer.class);
+
+  // The costs are relative to transferring a byte from the server.
+  static final double UDF_COST = 20;
+  static final double SHUFFLE_COST = 1;
+  static final double TRANSFER_COST = 1;
+  static final double DECRYPT_COST = 100;
+  static final double LOCAL_AGGREGATE_COST = 5;
+
+  // The average size of a ciphertext and a plaintext value in a row.
+  static final int CIPHERTEXT_SIZE = 80;
+  static final int PLAIN_VALUE_SIZE = 8;
+
+  // The selectivities used when there are no statistics of the column.
+  static final double EQ_SELECTIVITY = 0.1;
+  static final double DEFAULT_SELECTIVITY = 0.33;
+  static final double DEFAULT_GROUP_RATIO = 0.1;
+
+  // The rowID, R and S kept by sdb_first in an aggregation.
+  private static final int AUXILIARY_COLUMNS = 3;
+
+  private final RuleBaseOptimizer ruleBaseOptimizer = new RuleBaseOptimizer();
+  private final Statistics statistics;
+
+  public CostBasedOptimizer() {
+    this(null);
+  }
+
+  /**
+   * @param statistics null if there are no statistics
+   */
+  public CostBasedOptimizer(Statistics statistics) {
+    this.statistics = statistics;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.hku.sdb.optimize.Optimizer#optimize(edu.hku.sdb.parse.ParseNode)
+   */
+  public PlanNode optimize(ParseNode parseTree, ServerConnection connection, DBMeta
+          dbMeta) throws UnSupportedException {
+    return optimizeInternal(parseTree, connection, dbMeta);
+  }
+
+  @Override
+  protected PlanNode optimizeSelStmt(SelectStmt selStmt, ServerConnection connection,
+                                     DBMeta dbMeta) throws UnSupportedException {
+    PlanNode remotePlan = ruleBaseOptimizer.optimizeSelStmt(selStmt, connection,
+            dbMeta);
+
+    Aggregation aggregation = getAggregation(selStmt);
+    if (aggregation == null || statistics == null || !(remotePlan instanceof
+            LocalDecrypt))
+      return remotePlan;
+
+    String tblName = selStmt.getTableRefs().get(0).getTblName();
+    long rowCount = statistics.getRowCount(tblName);
+    if (rowCount == Statistics.UNKNOWN)
+      return remotePlan;
+
+    double rows = rowCount * estimateSelectivity(selStmt.getWhereClause(),
+            tblName);
+    double groups = estimateGroups(aggregation, tblName, rows);
+    int plainSize = estimatePlainValueSize(tblName, dbMeta);
+
+    int plainValues = 0;
+    for (int i = 0; i < aggregation.functions.size(); i++) {
+      if (!aggregation.rowExprs.get(i).involveEncrytedCol())
+        plainValues++;
+    }
+    int encryptedValues = aggregation.functions.size() - plainValues;
+
+    // The rows fetched by the local aggregation carry the rowID only.
+    double rowSize = (encryptedValues + 1) * CIPHERTEXT_SIZE + plainValues *
+            plainSize;
+    double groupSize = rowSize + (AUXILIARY_COLUMNS - 1) * CIPHERTEXT_SIZE;
+    int decryptValues = aggregation.sdbSums + 1;
+
+    double remoteCost = rows * ((aggregation.sdbSums + AUXILIARY_COLUMNS) *
+            UDF_COST + rowSize * SHUFFLE_COST) + groups * (groupSize *
+            TRANSFER_COST + decryptValues * DECRYPT_COST);
+    double localCost = rows * (rowSize * TRANSFER_COST + decryptValues *
+            DECRYPT_COST + LOCAL_AGGREGATE_COST);
+
+    LOG.debug("Estimated " + rows + " rows and " + groups + " groups, remote " +
+            "aggregation cost " + remoteCost + ", local aggregation cost " +
+            localCost);
+
+    if (localCost >= remoteCost)
+      return remotePlan;
+
+    LOG.info("Aggregating locally");
+    return buildLocalAggregatePlan(selStmt, aggregation, (LocalDecrypt)
+            remotePlan, connection, dbMeta);
+  }
+
+  /**
+   * @param selStmt
+   * @return the aggregation of a select statement if it can be evaluated
+   * locally, otherwise null.
+   */
+  private Aggregation getAggregation(SelectStmt selStmt) {
+    if (selStmt.getTableRefs().size() != 1 || !(selStmt.getTableRefs().get(0)
+            instanceof BaseTableRef))
+      return null;
+
+    if (selStmt.getHavingExpr() != null || selStmt.getLimitElement() != null ||
+            (selStmt.getOrderByElements() != null && !selStmt.getOrderByElements()
+                    .isEmpty()))
+      return null;
+
+    SelectionList selList = selStmt.getSelectList();
+    SelectionItem rowID = selList.getRowID();
+    if (!selList.getOrderItems().isEmpty() || rowID == null || !(rowID.getExpr()
+            instanceof SdbArithmeticExpr) || ((SdbArithmeticExpr) rowID.getExpr())
+            .getOp() != SdbOperator.SDB_FIRST)
+      return null;
+
+    // Only group by the columns which can be decrypted without the rowID.
+    List<String> groupKeys = new ArrayList<>();
+    Aggregation aggregation = new Aggregation();
+    if (selStmt.getGroupingExprs() != null) {
+      for (Expr expr : selStmt.getGroupingExprs()) {
+        if (!(expr instanceof FieldLiteral) || (expr.involveEncrytedCol() && expr
+                .getEncrytionScheme() != EncryptionScheme.DET))
+          return null;
+        groupKeys.add(expr.toSql());
+        aggregation.groupCols.add((FieldLiteral) expr);
+      }
+    }
+
+    for (SelectionItem item : selList.getItemList()) {
+      Expr expr = item.getExpr();
+
+      if (expr instanceof FieldLiteral && groupKeys.contains(expr.toSql())) {
+        aggregation.add(Function.GROUP, expr);
+        continue;
+      }
+
+      if (!(expr instanceof FunctionCallExpr))
+        return null;
+
+      String funName = ((FunctionCallExpr) expr).getFunctionName().getName();
+      FunctionParams params = ((FunctionCallExpr) expr).getFunctionParams();
+      if (params.isDistinct())
+        return null;
+
+      if (funName.equals(SdbOperator.SDB_SUM.toString())) {
+        // The parameter is key updated to a key without the rowID part.
+        aggregation.add(Function.SUM, params.getExprs().get(0));
+        aggregation.sdbSums++;
+      } else if (funName.equalsIgnoreCase(ParserConstant.FUNCTION_SUM) && !expr
+              .involveEncrytedCol()) {
+        aggregation.add(Function.SUM, params.getExprs().get(0));
+      } else if (funName.equalsIgnoreCase(ParserConstant.FUNCTION_COUNT)) {
+        aggregation.add(Function.COUNT, params.isStar() ? new IntLiteral(1) :
+                params.getExprs().get(0));
+      } else
+        return null;
+    }
+
+    if (!aggregation.functions.contains(Function.SUM) && !aggregation.functions
+            .contains(Function.COUNT))
+      return null;
+
+    aggregation.rowID = rowID.getExpr().getChild(0);
+    return aggregation;
+  }
+
+  private PlanNode buildLocalAggregatePlan(SelectStmt selStmt, Aggregation
+          aggregation, LocalDecrypt remotePlan, ServerConnection connection,
+                                           DBMeta dbMeta) {
+    List<ColumnDesc> outputColDescs = remotePlan.getNodeDesc().getRowDesc()
+            .getSignature();
+
+    List<SelectionItem> rowItems = new ArrayList<>();
+    List<ColumnDesc> remoteColDescList = new ArrayList<>();
+    List<ColumnDesc> localColDescList = new ArrayList<>();
+
+    for (int i = 0; i < aggregation.rowExprs.size(); i++) {
+      Expr expr = aggregation.rowExprs.get(i);
+      ColumnDesc outputColDesc = outputColDescs.get(i);
+      rowItems.add(new SelectionItem(expr, ""));
+
+      // The counted values are not decrypted.
+      boolean isSensitive = expr.involveEncrytedCol() && aggregation.functions.get
+              (i) != Function.COUNT;
+      boolean deterministic = isSensitive && expr.getEncrytionScheme() ==
+              EncryptionScheme.DET;
+
+      ColumnDesc remoteColDesc = new ColumnDesc(outputColDesc.getName(),
+              outputColDesc.getAlias(), expr.getType(), isSensitive, expr
+              .getSdbColKey());
+      remoteColDesc.setDeterministic(deterministic);
+      remoteColDescList.add(remoteColDesc);
+
+      ColumnDesc localColDesc = new ColumnDesc(outputColDesc.getName(),
+              outputColDesc.getAlias(), expr.getType(), isSensitive, expr
+              .getSdbColKey());
+      localColDesc.setDeterministic(deterministic);
+      localColDescList.add(localColDesc);
+    }
+
+    remoteColDescList.add(new ColumnDesc(ColumnDefinition.ROW_ID_COLUMN_NAME,
+            ColumnDefinition.ROW_ID_COLUMN_NAME, Type.INT, true, aggregation.rowID
+            .getSdbColKey()));
+
+    SelectionList rowList = new SelectionList();
+    rowList.setItemList(rowItems);
+    rowList.setRowID(new SelectionItem(aggregation.rowID, ColumnDefinition
+            .ROW_ID_COLUMN_NAME));
+
+    SelectStmt rowStmt = new SelectStmt();
+    rowStmt.setSelectList(rowList);
+    rowStmt.setTableRefs(selStmt.getTableRefs());
+    rowStmt.setWhereClause(selStmt.getWhereClause());
+
+    RowDesc remoteRowDesc = new RowDesc();
+    remoteRowDesc.setSignature(remoteColDescList);
+    RemoteQuery remoteQuery = new RemoteQuery(rowStmt.toSql(), connection,
+            remoteRowDesc);
+
+    RowDesc localDecryptRowDesc = new RowDesc();
+    localDecryptRowDesc.setSignature(localColDescList);
+    LocalDecrypt localDecrypt = new LocalDecrypt(localDecryptRowDesc);
+    localDecrypt.setChild(remoteQuery);
+    localDecrypt.setCredential(new BigInteger(dbMeta.getPrime1()), new BigInteger
+            (dbMeta.getPrime2()), new BigInteger(dbMeta.getN()), new BigInteger
+            (dbMeta.getG()));
+
+    LocalAggregate localAggregate = new LocalAggregate(remotePlan.getNodeDesc()
+            .getRowDesc(), aggregation.functions);
+    localAggregate.setChild(localDecrypt);
+    return localAggregate;
+  }
+
+  /**
+   * @param pred
+   * @param tblName
+   * @return the estimated fraction of rows satisfying a predicate
+   */
+  private double estimateSelectivity(Expr pred, String tblName) {
+    if (pred == null)
+      return 1;
+
+    if (pred instanceof CompoundPredicate) {
+      CompoundPredicate compoundPred = (CompoundPredicate) pred;
+      double left = estimateSelectivity(compoundPred.getLeftPred(), tblName);
+      double right = estimateSelectivity(compoundPred.getRightPred(), tblName);
+      if (compoundPred.getOp() == CompoundPredicate.CompoundOperator.AND)
+        return left * right;
+      else
+        return left + right - left * right;
+    }
+
+    if (pred instanceof NormalBinPredicate && ((NormalBinPredicate) pred).getOp()
+            == BinaryPredicate.BinOperator.EQ) {
+      for (Expr expr : pred.getChildren()) {
+        if (expr instanceof FieldLiteral) {
+          long distinct = statistics.getDistinctCount(tblName, ((FieldLiteral)
+                  expr).getName());
+          if (distinct > 0)
+            return 1.0 / distinct;
+        }
+      }
+      return EQ_SELECTIVITY;
+    }
+
+    return DEFAULT_SELECTIVITY;
+  }
+
+  private double estimateGroups(Aggregation aggregation, String tblName, double
+          rows) {
+    double groups = 1;
+    for (FieldLiteral col : aggregation.groupCols) {
+      long distinct = statistics.getDistinctCount(tblName, col.getName());
+      groups *= distinct > 0 ? distinct : Math.max(1, rows * DEFAULT_GROUP_RATIO);
+    }
+    return Math.max(1, Math.min(groups, rows));
+  }
+
+  private int estimatePlainValueSize(String tblName, DBMeta dbMeta) {
+    long rowSize = statistics.getAvgRowSize(tblName);
+    TableMeta tblMeta = dbMeta.getTbl(tblName);
+    if (rowSize == Statistics.UNKNOWN || tblMeta == null || tblMeta.getCols()
+            .isEmpty())
+      return PLAIN_VALUE_SIZE;
+
+    return (int) Math.max(1, rowSize / tblMeta.getCols().size());
+  }
+
+  /**
+   * The output columns of an aggregation, and the expressions evaluated by the
+   * server for each row to compute them.
+   */
+  private static class Aggregation {
+    private final List<Function> functions = new ArrayList<>();
+    private final List<Expr> rowExprs = new ArrayList<>();
+    private final List<FieldLiteral> groupCols = new ArrayList<>();
+    private Expr rowID;
+    private int sdbSums = 0;
+
+    void add(Function function, Expr rowExpr) {
+      functions.add(function);
+      rowExprs.add(rowExpr);
+    }
+  }
+}
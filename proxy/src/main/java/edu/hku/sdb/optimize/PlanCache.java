@@ -0,0 +1,186 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.optimize;
+
+import edu.hku.sdb.connect.ServerConnection;
+import edu.hku.sdb.exec.PlanNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A LRU cache of the rewritten select plans, keyed by the database, the
+ * catalog version of the database and the normalized query. A repeated query
+ * skips parsing, analysing, rewriting and optimizing.
+ *
+ * Only the {@link PlanTemplate} is kept, since the plan nodes hold the state
+ * of an execution. Creating or dropping a table
+ * bumps the catalog version of its database.
+ */
+public class PlanCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PlanCache.class);
+
+  public static final int DEFAULT_CAPACITY = 512;
+
+  private static PlanCache instance = null;
+
+  private final Map<String, PlanTemplate> plans;
+  private final Map<String, AtomicLong> catalogVersions = new ConcurrentHashMap<>();
+
+  public static synchronized PlanCache getInstance() {
+    if (instance == null) {
+      instance = new PlanCache(DEFAULT_CAPACITY);
+    }
+    return instance;
+  }
+
+  public PlanCache(final int capacity) {
+    plans = new LinkedHashMap<String, PlanTemplate>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, PlanTemplate> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * @param dbName
+   * @return the version of the catalog of a database, it is increased whenever
+   * a table is created or dropped.
+   */
+  public long getCatalogVersion(String dbName) {
+    return getVersionCounter(dbName).get();
+  }
+
+  private AtomicLong getVersionCounter(String dbName) {
+    return catalogVersions.computeIfAbsent(dbName.toLowerCase(), k -> new
+            AtomicLong());
+  }
+
+  /**
+   * Invalidate all plans of a database. A plan being built with the old
+   * version may still be put, but it is never looked up again.
+   *
+   * @param dbName
+   */
+  public synchronized void invalidate(String dbName) {
+    getVersionCounter(dbName).incrementAndGet();
+
+    String prefix = dbName.toLowerCase() + "@";
+    Iterator<String> keys = plans.keySet().iterator();
+    while (keys.hasNext()) {
+      if (keys.next().startsWith(prefix))
+        keys.remove();
+    }
+    LOG.debug("Invalidated cached plans of database " + dbName);
+  }
+
+  /**
+   * @param dbName
+   * @param catalogVersion
+   * @param query
+   * @return the cache key of a query
+   */
+  public static String getKey(String dbName, long catalogVersion, String query) {
+    return dbName.toLowerCase() + "@" + catalogVersion + ":" + normalize(query);
+  }
+
+  /**
+   * Build a new plan from the cached one.
+   *
+   * @param key
+   * @param connection
+   * @return null if there is no cached plan
+   */
+  public PlanNode get(String key, ServerConnection connection) {
+    PlanTemplate plan;
+    synchronized (this) {
+      plan = plans.get(key);
+    }
+
+    if (plan == null)
+      return null;
+
+    return plan.instantiate(connection);
+  }
+
+  /**
+   * Cache a plan. Only the plans produced by the optimizer for select
+   * statements are cached.
+   *
+   * @param key
+   * @param planNode
+   */
+  public void put(String key, PlanNode planNode) {
+    PlanTemplate plan = PlanTemplate.of(planNode);
+    if (plan == null)
+      return;
+
+    synchronized (this) {
+      plans.put(key, plan);
+    }
+  }
+
+  public synchronized int size() {
+    return plans.size();
+  }
+
+  /**
+   * Collapse the white spaces and lower the case outside the quoted strings,
+   * and remove the trailing semicolon.
+   *
+   * @param query
+   * @return
+   */
+  public static String normalize(String query) {
+    StringBuilder sb = new StringBuilder(query.length());
+    char quote = 0;
+    boolean space = false;
+
+    for (int i = 0; i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (quote != 0) {
+        sb.append(c);
+        if (c == '\\' && i + 1 < query.length())
+          sb.append(query.charAt(++i));
+        else if (c == quote)
+          quote = 0;
+      } else if (Character.isWhitespace(c)) {
+        space = true;
+      } else {
+        if (space && sb.length() > 0)
+          sb.append(' ');
+        space = false;
+        if (c == '\'' || c == '"' || c == '`')
+          quote = c;
+        sb.append(Character.toLowerCase(c));
+      }
+    }
+
+    while (sb.length() > 0 && sb.charAt(sb.length() - 1) == ';') {
+      sb.setLength(sb.length() - 1);
+    }
+    return sb.toString().trim();
+  }
+}
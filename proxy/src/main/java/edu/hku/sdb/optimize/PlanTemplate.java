@@ -0,0 +1,106 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.optimize;
+
+import edu.hku.sdb.connect.ServerConnection;
+import edu.hku.sdb.exec.LocalDecrypt;
+import edu.hku.sdb.exec.PlanNode;
+import edu.hku.sdb.exec.RemoteQuery;
+import edu.hku.sdb.exec.RowDesc;
+import edu.hku.sdb.plan.LocalDecryptDesc;
+
+import java.math.BigInteger;
+
+/**
+ * What is needed to rebuild a select plan produced by the optimizer: the
+ * rewritten remote query, the row descriptions and the credentials of the
+ * local decryption. The plan nodes hold the state of an execution, so a new
+ * plan is built for each execution.
+ */
+public class PlanTemplate {
+
+  private final String remoteQuery;
+  private final RowDesc remoteRowDesc;
+  private final RowDesc localRowDesc;
+  private final BigInteger prime1;
+  private final BigInteger prime2;
+  private final BigInteger n;
+  private final BigInteger g;
+
+  private PlanTemplate(String remoteQuery, RowDesc remoteRowDesc, RowDesc
+          localRowDesc, BigInteger prime1, BigInteger prime2, BigInteger n,
+                       BigInteger g) {
+    this.remoteQuery = remoteQuery;
+    this.remoteRowDesc = remoteRowDesc;
+    this.localRowDesc = localRowDesc;
+    this.prime1 = prime1;
+    this.prime2 = prime2;
+    this.n = n;
+    this.g = g;
+  }
+
+  /**
+   * @param planNode
+   * @return null if the plan is not a local decryption of a remote query.
+   */
+  public static PlanTemplate of(PlanNode planNode) {
+    if (!(planNode instanceof LocalDecrypt) || !(((LocalDecrypt) planNode)
+            .getChild() instanceof RemoteQuery))
+      return null;
+
+    LocalDecrypt localDecrypt = (LocalDecrypt) planNode;
+    RemoteQuery remoteQuery = (RemoteQuery) localDecrypt.getChild();
+    LocalDecryptDesc localDesc = localDecrypt.getNodeDesc();
+
+    return new PlanTemplate(remoteQuery.getNodeDesc().getQuery(), remoteQuery
+            .getNodeDesc().getRowDesc(), localDesc.getRowDesc(), localDesc
+            .getPrime1(), localDesc.getPrime2(), localDesc.getN(), localDesc
+            .getG());
+  }
+
+  public PlanNode instantiate(ServerConnection connection) {
+    return instantiate(connection, remoteQuery);
+  }
+
+  /**
+   * Build a plan with another remote query, e.g. with the parameters bound.
+   *
+   * @param connection
+   * @param query
+   * @return
+   */
+  public PlanNode instantiate(ServerConnection connection, String query) {
+    RemoteQuery remote = new RemoteQuery(query, connection, remoteRowDesc);
+    LocalDecrypt localDecrypt = new LocalDecrypt(localRowDesc);
+    localDecrypt.setChild(remote);
+    localDecrypt.setCredential(prime1, prime2, n, g);
+    return localDecrypt;
+  }
+
+  public String getRemoteQuery() {
+    return remoteQuery;
+  }
+
+  public BigInteger getPrime1() {
+    return prime1;
+  }
+
+  public BigInteger getPrime2() {
+    return prime2;
+  }
+}
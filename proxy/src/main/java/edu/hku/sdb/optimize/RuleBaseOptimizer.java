@@ -100,15 +100,18 @@ public class RuleBaseOptimizer extends Optimizer {
       // get column keys for sensitive columns
       SdbColumnKey colKey = expr.getSdbColKey();
       boolean isSensitive = expr.involveEncrytedCol();
+      boolean deterministic = expr.getEncrytionScheme() == EncryptionScheme.DET;
 
       // create column desc for remoteSQL
       ColumnDesc remoteColDesc = new ColumnDesc(colName, alias, type, isSensitive,
               colKey);
+      remoteColDesc.setDeterministic(deterministic);
       remoteColDescList.add(remoteColDesc);
 
       // create column desc for local decryption
       ColumnDesc localColDesc = new ColumnDesc(colName, alias, type, isSensitive,
               colKey);
+      localColDesc.setDeterministic(deterministic);
       localColDescList.add(localColDesc);
     }
 
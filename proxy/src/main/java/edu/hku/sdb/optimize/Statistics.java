@@ -0,0 +1,44 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.hku.sdb.optimize;
+
+/**
+ * The statistics of the tables used by the {@link CostBasedOptimizer}.
+ */
+public interface Statistics {
+
+  long UNKNOWN = -1;
+
+  /**
+   * @param tblName
+   * @return the number of rows, or UNKNOWN
+   */
+  long getRowCount(String tblName);
+
+  /**
+   * @param tblName
+   * @param colName
+   * @return the number of distinct values of a column, or UNKNOWN
+   */
+  long getDistinctCount(String tblName, String colName);
+
+  /**
+   * @param tblName
+   * @return the average size in bytes of a plaintext row, or UNKNOWN
+   */
+  long getAvgRowSize(String tblName);
+}
@@ -28,6 +28,16 @@ public class ColumnDefinition implements ParseNode {
   public static final String S_COLUMN_NAME = "s";
   public static final String R_COLUMN_NAME = "r";
 
+  // The option in ENC(...) to build a keyword index for a searchable column.
+  public static final String KEYWORD_INDEX_OPTION = "index";
+  public static final String KEYWORD_INDEX_TBL_SUFFIX = "_kwidx";
+  public static final String TRAPDOOR_COLUMN_NAME = "trapdoor";
+  // The option in ENC(...) to encrypt a column deterministically.
+  public static final String DETERMINISTIC_OPTION = "det";
+  // The option in ENC(...) to maintain an order-preserving column for ranges.
+  public static final String ORDER_PRESERVING_OPTION = "ope";
+  public static final String ORDER_COLUMN_SUFFIX = "_ope";
+
   // The original data type
   private final Type originType;
   // Type after being rewritten
@@ -38,6 +48,12 @@ public class ColumnDefinition implements ParseNode {
   private SdbColumnKey sdbColKey;
   // Column Key for Search ecnvryption scheme.
   private SearchColumnKey searchColKey;
+  // Whether a keyword index table is maintained for this column.
+  private boolean keywordIndexed = false;
+  // Whether the column is encrypted by the deterministic scheme.
+  private boolean deterministic = false;
+  // Whether an order-preserving auxiliary column is maintained for this column.
+  private boolean orderPreserving = false;
 
   public SdbColumnKey getSDBColumnKey() {
     return sdbColKey;
@@ -167,5 +183,53 @@ public class ColumnDefinition implements ParseNode {
   public void setSearchColKey(SearchColumnKey searchColKey) {
     this.searchColKey = searchColKey;
   }
+
+  public boolean isKeywordIndexed() {
+    return keywordIndexed;
+  }
+
+  public void setKeywordIndexed(boolean keywordIndexed) {
+    this.keywordIndexed = keywordIndexed;
+  }
+
+  public boolean isDeterministic() {
+    return deterministic;
+  }
+
+  public void setDeterministic(boolean deterministic) {
+    this.deterministic = deterministic;
+  }
+
+  public boolean isOrderPreserving() {
+    return orderPreserving;
+  }
+
+  public void setOrderPreserving(boolean orderPreserving) {
+    this.orderPreserving = orderPreserving;
+  }
+
+  /**
+   * The name of the server column which keeps the order-preserving encoding of
+   * a column.
+   *
+   * @param colName
+   * @return
+   */
+  public static String getOrderColumnName(String colName) {
+    return colName.toLowerCase() + ORDER_COLUMN_SUFFIX;
+  }
+
+  /**
+   * The name of the server table which maps the keyword trapdoors of a column
+   * to the row ids.
+   *
+   * @param tblName
+   * @param colName
+   * @return
+   */
+  public static String getKeywordIndexTblName(String tblName, String colName) {
+    return tblName.toLowerCase() + "_" + colName.toLowerCase() +
+            KEYWORD_INDEX_TBL_SUFFIX;
+  }
 }
 
@@ -21,5 +21,6 @@ public enum EncryptionScheme {
   SDB,
   PILLIAR,
   SIES,
-  SEARCH
+  SEARCH,
+  DET
 }
@@ -39,6 +39,16 @@ public class FieldLiteral extends LiteralExpr {
 
   private SearchColumnKey searchColKey;
 
+  // The keyword index table of a searchable column, null if there is none.
+  private String keywordIndexTbl;
+
+  // Whether it is encrypted by the deterministic scheme, which has no key.
+  private boolean deterministic = false;
+
+  // The table which keeps the order-preserving column of this field, null if
+  // there is none.
+  private String orderTbl;
+
   // It will be set after the analyze function is called.
   // It is used for query rewriting.
   private Expr referExpr;
@@ -76,6 +86,8 @@ public class FieldLiteral extends LiteralExpr {
     this.type = fieldLiteral.type;
     this.sdbColKey = new SdbColumnKey(fieldLiteral.getSdbColKey());
     this.isSDBEncrypted = fieldLiteral.isSDBEncrypted;
+    this.deterministic = fieldLiteral.deterministic;
+    this.orderTbl = fieldLiteral.orderTbl;
     this.referredByList = fieldLiteral.referredByList;
   }
 
@@ -185,42 +197,46 @@ public class FieldLiteral extends LiteralExpr {
   private int resolve(DBMeta dbMeta, String tblName, String alias) {
     int count = 0;
 
-    TableMeta tblMeta = dbMeta.getTbl(tblName);
+    CatalogSnapshot catalog = dbMeta.getSnapshot();
+    ColumnMeta colMeta = catalog.getCol(tblName, name);
 
-    if(tblMeta != null) {
-      ColumnMeta colMeta = tblMeta.getCol(name);
-      if (colMeta != null) {
-        this.tblName = tblName;
-        // if these is alias, the output table name should be the alias.
-        // We also record the true table name this field refers to.
-        if (!alias.equals("")) {
-          this.tblName = alias;
-        }
-        type = colMeta.getType();
-        isSDBEncrypted = colMeta.isSensitive();
-        if (type instanceof ScalarType) {
-
-          switch (((ScalarType) type).getType()) {
-            case INT:
-            case BIGINT:
-            case TINYINT:
-            case SMALLINT:
-            case DECIMAL:
-              if (isSDBEncrypted) {
-                sdbColKey = new SdbColumnKey(colMeta.getM(), colMeta.getX());
-              }
-              break;
-            case CHAR:
-            case VARCHAR:
-            case STRING:
-              if (isSDBEncrypted) {
-                searchColKey = new SearchColumnKey(colMeta.getM(), colMeta.getX());
-              }
-              break;
-          }
+    if (colMeta != null) {
+      this.tblName = tblName;
+      // if these is alias, the output table name should be the alias.
+      // We also record the true table name this field refers to.
+      if (!alias.equals("")) {
+        this.tblName = alias;
+      }
+      type = colMeta.getType();
+      isSDBEncrypted = colMeta.isSensitive();
+      deterministic = colMeta.isDeterministic();
+      if (colMeta.isOrderPreserving())
+        orderTbl = tblName;
+      if (type instanceof ScalarType && !deterministic) {
+
+        switch (((ScalarType) type).getType()) {
+          case INT:
+          case BIGINT:
+          case TINYINT:
+          case SMALLINT:
+          case DECIMAL:
+            if (isSDBEncrypted) {
+              sdbColKey = catalog.getColumnKey(tblName, name);
+            }
+            break;
+          case CHAR:
+          case VARCHAR:
+          case STRING:
+            if (isSDBEncrypted) {
+              searchColKey = new SearchColumnKey(colMeta.getM(), colMeta.getX());
+              if (colMeta.isKeywordIndexed())
+                keywordIndexTbl = ColumnDefinition.getKeywordIndexTblName
+                        (tblName, name);
+            }
+            break;
         }
-        count++;
       }
+      count++;
     }
 
     return count;
@@ -239,9 +255,12 @@ public class FieldLiteral extends LiteralExpr {
       count += resolve(item);
     }
 
-    // This field is referring to a selection item of the inline view.
-    if (count > 0)
+    // This field is referring to a selection item of the inline view, whose
+    // order-preserving column is not visible outside.
+    if (count > 0) {
       tblName = viewAlias;
+      orderTbl = null;
+    }
 
     return count;
   }
@@ -264,6 +283,8 @@ public class FieldLiteral extends LiteralExpr {
           tblName = field.tblName;
           type = field.type;
           isSDBEncrypted = field.isSDBEncrypted;
+          deterministic = field.deterministic;
+          orderTbl = field.orderTbl;
           sdbColKey = field.sdbColKey;
           searchColKey = field.searchColKey;
           // remember the refer-relationship, it is used for query rewrite
@@ -281,6 +302,8 @@ public class FieldLiteral extends LiteralExpr {
           tblName = field.tblName;
           type = field.type;
           isSDBEncrypted = field.isSDBEncrypted;
+          deterministic = field.deterministic;
+          orderTbl = field.orderTbl;
           sdbColKey = field.sdbColKey;
           searchColKey = field.searchColKey;
           // remember the refer-relationship, it is used for query rewrite
@@ -413,6 +436,28 @@ public class FieldLiteral extends LiteralExpr {
     this.searchColKey = searchColKey;
   }
 
+  public String getKeywordIndexTbl() {
+    return keywordIndexTbl;
+  }
+
+  public boolean isDeterministic() {
+    return deterministic;
+  }
+
+  public String getOrderTbl() {
+    return orderTbl;
+  }
+
+  /**
+   * @return the order-preserving column of this field, or null if there is none
+   */
+  public FieldLiteral getOrderColumn() {
+    if (orderTbl == null)
+      return null;
+    return new FieldLiteral(tblName, ColumnDefinition.getOrderColumnName(name),
+            Type.STRING);
+  }
+
   /**
    * @return the referedExpr
    */
@@ -467,7 +512,7 @@ public class FieldLiteral extends LiteralExpr {
 
   @Override
   public EncryptionScheme getEncrytionScheme() {
-    return null;
+    return deterministic ? EncryptionScheme.DET : null;
   }
 
   public void updateColKey() {
@@ -1964,11 +1964,18 @@ columnRefOrder
 columnNameType
 @init { pushMsg("column specification", state); }
 @after { popMsg(state); }
-    : colName=identifier colType (enc=KW_ENC)? (KW_COMMENT comment=StringLiteral)?
+    : colName=identifier colType (enc=KW_ENC encOpts=columnEncOptions?)? (KW_COMMENT comment=StringLiteral)?
     -> {$comment == null && $enc == null}? ^(TOK_TABCOL $colName colType)
-    -> {$comment == null && $enc != null}? ^(TOK_TABCOL $colName colType TOK_ENC)
+    -> {$comment == null && $enc != null}? ^(TOK_TABCOL $colName colType ^(TOK_ENC $encOpts?))
     -> {$comment != null && $enc == null}? ^(TOK_TABCOL $colName colType $comment)
-    -> 									  ^(TOK_TABCOL $colName colType TOK_ENC $comment)
+    -> 									  ^(TOK_TABCOL $colName colType ^(TOK_ENC $encOpts?) $comment)
+    ;
+
+// Options of an encrypted column in SecureDB, e.g. "name STRING ENC(INDEX)"
+columnEncOptions
+@init { pushMsg("column encryption options", state); }
+@after { popMsg(state); }
+    : LPAREN identifier (COMMA identifier)* RPAREN -> identifier+
     ;
 
 columnNameColonType
@@ -44,7 +44,8 @@ public class LikePredicate extends Predicate {
       Expr pattern = getPattern();
       if (pattern instanceof StringLiteral) {
         String value = ((StringLiteral) pattern).getValue();
-        if (!value.matches("[a-zA-Z0-9]+")) {
+        // The value of a parameter is checked when it is bound.
+        if (ParameterLiteral.getIndex(value) < 0 && !isKeyword(value)) {
           SemanticException e = new SemanticException("The pattern can only " +
                   "contains letter and digit.");
           throw e;
@@ -58,6 +59,14 @@ public class LikePredicate extends Predicate {
   }
 
 
+  /**
+   * @param value
+   * @return whether the value can be the pattern on an encrypted column
+   */
+  public static boolean isKeyword(String value) {
+    return value.matches("[a-zA-Z0-9]+");
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -0,0 +1,165 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.parse;
+
+import edu.hku.sdb.catalog.PrimitiveType;
+import edu.hku.sdb.catalog.ScalarType;
+import edu.hku.sdb.catalog.SearchColumnKey;
+import edu.hku.sdb.catalog.Type;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.regex.Pattern;
+
+/**
+ * A ? placeholder of a prepared statement. The query is parsed with a quoted
+ * marker in place of each placeholder, and the marker is kept unquoted in the
+ * rewritten query, so that it can be replaced by the bound value.
+ */
+public class ParameterLiteral extends StringLiteral {
+
+  private static final String MARKER_PREFIX = "__sdb_param_";
+  private static final String MARKER_SUFFIX = "__";
+
+  // The marker of any parameter, with its index as the group 1.
+  public static final Pattern MARKER_PATTERN = Pattern.compile(Pattern.quote
+          (MARKER_PREFIX) + "(\\d{1,9})" + Pattern.quote(MARKER_SUFFIX));
+
+  private final int index;
+
+  // The type of the deterministic column compared with, if any.
+  private ScalarType detType;
+
+  // The type of the encrypted expression compared with, if any. The value is
+  // then a plain operand of the SDB scheme.
+  private ScalarType plainType;
+
+  // Whether the value is the pattern of a like predicate on an encrypted column.
+  private boolean keyword;
+
+  // The key of the searchable column whose keyword index is looked up, if any.
+  private SearchColumnKey searchColKey;
+
+  public ParameterLiteral(int index) {
+    super(getMarker(index));
+    this.index = index;
+  }
+
+  /**
+   * @param index the 0-based index of the parameter
+   * @return the marker of a parameter
+   */
+  public static String getMarker(int index) {
+    return MARKER_PREFIX + index + MARKER_SUFFIX;
+  }
+
+  /**
+   * @param value
+   * @return the 0-based index of the parameter, or -1 if the value is not a
+   * marker.
+   */
+  public static int getIndex(String value) {
+    if (!value.startsWith(MARKER_PREFIX) || !value.endsWith(MARKER_SUFFIX))
+      return -1;
+
+    try {
+      return Integer.parseInt(value.substring(MARKER_PREFIX.length(), value
+              .length() - MARKER_SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public ScalarType getDetType() {
+    return detType;
+  }
+
+  public void setDetType(ScalarType detType) {
+    this.detType = detType;
+  }
+
+  public ScalarType getPlainType() {
+    return plainType;
+  }
+
+  public void setPlainType(ScalarType plainType) {
+    this.plainType = plainType;
+  }
+
+  /**
+   * @param value
+   * @return the value scaled to an integer like the encrypted values of the
+   * plain type, or null if it is not exactly one of them.
+   */
+  public BigInteger toPlainValue(String value) {
+    int scale = plainType.getType() == PrimitiveType.DECIMAL ? plainType
+            .getScale() : 0;
+    try {
+      BigInteger plain = new BigDecimal(value.trim()).movePointRight(scale)
+              .toBigIntegerExact();
+      // The server takes a plain operand as a long.
+      return plain.bitLength() < Long.SIZE ? plain : null;
+    } catch (NumberFormatException | ArithmeticException e) {
+      return null;
+    }
+  }
+
+  public boolean isKeyword() {
+    return keyword;
+  }
+
+  public void setKeyword(boolean keyword) {
+    this.keyword = keyword;
+  }
+
+  @Override
+  public Type getType() {
+    return plainType;
+  }
+
+  @Override
+  public SearchColumnKey getSearchColKey() {
+    return searchColKey;
+  }
+
+  @Override
+  public void setSearchColKey(SearchColumnKey searchColKey) {
+    this.searchColKey = searchColKey;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof ParameterLiteral))
+      return false;
+
+    return index == ((ParameterLiteral) obj).index;
+  }
+
+  /* (non-Javadoc)
+   * @see edu.hku.sdb.parse.ParseNode#toSql()
+   */
+  @Override
+  public String toSql() {
+    return getMarker(index);
+  }
+
+}
@@ -90,7 +90,7 @@ public class ParseDriver {
    */
   public class HiveLexerX extends HiveLexer {
 
-    private final ArrayList<ParseError> errors;
+    private ArrayList<ParseError> errors;
 
     public HiveLexerX() {
       super();
@@ -132,6 +132,12 @@ public class ParseDriver {
       return errors;
     }
 
+    // A ParseException keeps the errors of the command that raised it.
+    @Override
+    public void reset() {
+      super.reset();
+      errors = new ArrayList<ParseError>();
+    }
   }
 
   /**
@@ -170,6 +176,36 @@ public class ParseDriver {
     ;
   };
 
+  // The lexer, the token stream and the parser are created once and reset for
+  // each command, which saves building the DFAs and the delegate parsers of
+  // the grammar. A driver must therefore be confined to one thread.
+  private HiveLexerX lexer;
+  private TokenRewriteStream tokens;
+  private HiveParser parser;
+
+  /**
+   * Reset the lexer, the token stream and the parser for a new command.
+   *
+   * @param command
+   */
+  private void prepare(String command) {
+    if (parser == null) {
+      lexer = new HiveLexerX(new ANTLRNoCaseStringStream(command));
+      tokens = new TokenRewriteStream(lexer);
+      parser = new HiveParser(tokens);
+      parser.setTreeAdaptor(adaptor);
+      return;
+    }
+
+    lexer.setCharStream(new ANTLRNoCaseStringStream(command));
+    tokens.setTokenSource(lexer);
+    tokens.deleteProgram();
+    // The delegate parsers share the token stream and the state with it.
+    parser.setTokenStream(tokens);
+    parser.errors = new ArrayList<ParseError>();
+    parser.msgs.clear();
+  }
+
   /**
    * Parses a command, optionally assigning the parser's token stream to the
    * given context.
@@ -183,10 +219,7 @@ public class ParseDriver {
   public ASTNode parse(String command) throws ParseException {
     LOG.info("Parsing command: " + command);
 
-    HiveLexerX lexer = new HiveLexerX(new ANTLRNoCaseStringStream(command));
-    TokenRewriteStream tokens = new TokenRewriteStream(lexer);
-    HiveParser parser = new HiveParser(tokens);
-    parser.setTreeAdaptor(adaptor);
+    prepare(command);
     HiveParser.statement_return r = null;
     try {
       r = parser.statement();
@@ -218,10 +251,7 @@ public class ParseDriver {
   public ASTNode parseSelect(String command) throws ParseException {
     LOG.info("Parsing command: " + command);
 
-    HiveLexerX lexer = new HiveLexerX(new ANTLRNoCaseStringStream(command));
-    TokenRewriteStream tokens = new TokenRewriteStream(lexer);
-    HiveParser parser = new HiveParser(tokens);
-    parser.setTreeAdaptor(adaptor);
+    prepare(command);
     HiveParser_SelectClauseParser.selectClause_return r = null;
     try {
       r = parser.selectClause();
@@ -0,0 +1,115 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.parse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.regex.Pattern;
+
+/**
+ * The entry of parsing. Each thread keeps its own {@link ParseDriver}, whose
+ * lexer and parser are reused across the commands, and the trivial statements,
+ * e.g. SHOW TABLES or DROP TABLE t, are recognized by hand without the Hive
+ * grammar.
+ */
+public class ParseService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParseService.class);
+
+  private static final ParseService instance = new ParseService();
+
+  private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+  private final ThreadLocal<ParseDriver> drivers = new ThreadLocal<ParseDriver>() {
+    @Override
+    protected ParseDriver initialValue() {
+      return new ParseDriver();
+    }
+  };
+
+  public static ParseService getInstance() {
+    return instance;
+  }
+
+  /**
+   * Parse a command with the driver of the current thread.
+   *
+   * @param command
+   * @return
+   * @throws ParseException
+   */
+  public ASTNode parse(String command) throws ParseException {
+    return drivers.get().parse(command);
+  }
+
+  /**
+   * Build the statement of a trivial command directly. The statement still
+   * needs to be analyzed.
+   *
+   * @param command
+   * @return null if it is not a trivial command, it must be parsed then.
+   */
+  public StatementBase parseTrivial(String command) {
+    String trimmed = command.trim();
+    while (trimmed.endsWith(";")) {
+      trimmed = trimmed.substring(0, trimmed.length() - 1).trim();
+    }
+
+    String[] words = trimmed.split("\\s+");
+    StatementBase stmt = null;
+
+    switch (words.length) {
+      case 2:
+        if (matches(words, "SHOW", "TABLES"))
+          stmt = new ShowTBLsStmt();
+        else if (matches(words, "SHOW", "DATABASES"))
+          stmt = new ShowDBsStmt();
+        else if ((matches(words, "DESCRIBE") || matches(words, "DESC")) &&
+                isIdentifier(words[1]))
+          stmt = new DescribeStmt(words[1]);
+        break;
+      case 3:
+        if (matches(words, "DROP", "TABLE") && isIdentifier(words[2]))
+          stmt = new DropTblStmt(words[2]);
+        break;
+      case 5:
+        if (matches(words, "ANALYZE", "TABLE") && isIdentifier(words[2]) &&
+                words[3].equalsIgnoreCase("COMPUTE") && words[4]
+                .equalsIgnoreCase("STATISTICS"))
+          stmt = new AnalyzeStmt(words[2]);
+        break;
+    }
+
+    if (stmt != null)
+      LOG.debug("Parsed trivial command: " + command);
+    return stmt;
+  }
+
+  private boolean matches(String[] words, String... keywords) {
+    for (int i = 0; i < keywords.length; i++) {
+      if (!words[i].equalsIgnoreCase(keywords[i]))
+        return false;
+    }
+    return true;
+  }
+
+  private boolean isIdentifier(String word) {
+    return IDENTIFIER.matcher(word).matches();
+  }
+}
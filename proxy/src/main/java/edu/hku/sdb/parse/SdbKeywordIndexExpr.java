@@ -0,0 +1,75 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.parse;
+
+/**
+ * A keyword search answered by the keyword index table of a column, i.e.
+ * row_id IN (SELECT row_id FROM index WHERE trapdoor = ...). The server runs
+ * it as a semi join, so only the matching rows are touched.
+ */
+public class SdbKeywordIndexExpr extends Expr {
+
+  private final String indexTbl;
+
+  // Only one constructor is allowed.
+  public SdbKeywordIndexExpr(FieldLiteral rowID, String indexTbl, StringLiteral
+          trapdoor) {
+    this.indexTbl = indexTbl;
+    children.add(rowID);
+    children.add(trapdoor);
+  }
+
+  public String getIndexTbl() {
+    return indexTbl;
+  }
+
+  public Expr getRowID() {
+    return getChild(0);
+  }
+
+  public Expr getTrapdoor() {
+    return getChild(1);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.hku.sdb.parse.ParseNode#toSql()
+   */
+  @Override
+  public String toSql() {
+    return getRowID().toSql() + " IN (SELECT " + ColumnDefinition
+            .ROW_ID_COLUMN_NAME + " FROM " + indexTbl + " WHERE " +
+            ColumnDefinition.TRAPDOOR_COLUMN_NAME + " = " + getTrapdoor().toSql() +
+            ")";
+  }
+
+  /* (non-Javadoc)
+   * @see edu.hku.sdb.parse.Expr#involveSdbCol()
+   */
+  @Override
+  public boolean involveEncrytedCol() {
+    return true;
+  }
+
+  @Override
+  public EncryptionScheme getEncrytionScheme() {
+    return EncryptionScheme.SEARCH;
+  }
+
+}
@@ -37,6 +37,9 @@ public class SelectionList implements ParseNode {
   protected SelectionItem auxiliaryR;
   protected SelectionItem auxiliaryS;
 
+  // Hidden items that are only selected for the order by clause.
+  protected List<SelectionItem> orderItems = new ArrayList<SelectionItem>();
+
   public SelectionList() {
     itemList = new ArrayList<SelectionItem>();
   }
@@ -65,6 +68,14 @@ public class SelectionList implements ParseNode {
     this.auxiliaryS = auxiliaryS;
   }
 
+  public List<SelectionItem> getOrderItems() {
+    return orderItems;
+  }
+
+  public void addOrderItem(SelectionItem orderItem) {
+    orderItems.add(orderItem);
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (!(obj instanceof SelectionList))
@@ -125,6 +136,9 @@ public class SelectionList implements ParseNode {
       items.add(auxiliaryR.toSql());
     if(auxiliaryS != null)
       items.add(auxiliaryS.toSql());
+    for (SelectionItem item : orderItems) {
+      items.add(item.toSql());
+    }
 
     return Joiner.on(", ").join(items);
 
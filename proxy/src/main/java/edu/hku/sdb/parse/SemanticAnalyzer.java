@@ -75,6 +75,9 @@ public class SemanticAnalyzer extends BasicSemanticAnalyzer {
       case HiveParser.TOK_DESCTABLE:
         parseTree = buildDescTBLStmt(tree);
         break;
+      case HiveParser.TOK_ANALYZE:
+        parseTree = buildAnalyzeStmt(tree);
+        break;
     }
 
     if (parseTree != null)
@@ -123,6 +126,23 @@ public class SemanticAnalyzer extends BasicSemanticAnalyzer {
     return describeStmt;
   }
 
+  /**
+   * Construct an analyze statement. Only the statistics of a whole table can
+   * be computed.
+   *
+   * @param tree
+   * @return
+   * @throws SemanticException
+   */
+  private ParseNode buildAnalyzeStmt(ASTNode tree) throws SemanticException {
+    ASTNode tabNode = (ASTNode) tree.getChild(0);
+    if (tabNode.getChildCount() > 1)
+      throw new SemanticException("Can not compute statistics of partitions!");
+
+    ASTNode tabNameNode = (ASTNode) tabNode.getChild(0);
+    return new AnalyzeStmt(tabNameNode.getChild(0).getText());
+  }
+
   private ParseNode buildDropTBLStmt(ASTNode tree) {
     String tblName = null;
     for (int i = 0; i < tree.getChildCount(); i++) {
@@ -405,11 +425,63 @@ public class SemanticAnalyzer extends BasicSemanticAnalyzer {
     ColumnDefinition fieldLiteral = new ColumnDefinition(fieldName, type);
     if (isSensitive) {
       fieldLiteral.setSDBEncrypted(true);
+      buildColEncOptions((ASTNode) tree.getChild(2), fieldLiteral);
     }
 
     return fieldLiteral;
   }
 
+  /**
+   * Apply the options of an encrypted column, e.g. ENC(INDEX).
+   *
+   * @param tree
+   * @param colDefinition
+   * @throws SemanticException
+   */
+  private void buildColEncOptions(ASTNode tree, ColumnDefinition colDefinition)
+          throws SemanticException {
+    PrimitiveType priType = ((ScalarType) colDefinition.getOriginType()).getType();
+
+    for (int i = 0; i < tree.getChildCount(); i++) {
+      String option = tree.getChild(i).getText().toLowerCase();
+
+      if (option.equals(ColumnDefinition.KEYWORD_INDEX_OPTION)) {
+        switch (priType) {
+          case CHAR:
+          case VARCHAR:
+          case STRING:
+            colDefinition.setKeywordIndexed(true);
+            break;
+          default:
+            throw new SemanticException("Keyword index cannot support data type " +
+                    priType);
+        }
+      } else if (option.equals(ColumnDefinition.DETERMINISTIC_OPTION)) {
+        // Any type that can be encrypted can be encrypted deterministically.
+        colDefinition.setDeterministic(true);
+      } else if (option.equals(ColumnDefinition.ORDER_PRESERVING_OPTION)) {
+        switch (priType) {
+          case INT:
+          case TINYINT:
+          case SMALLINT:
+          case BIGINT:
+          case DECIMAL:
+            colDefinition.setOrderPreserving(true);
+            break;
+          default:
+            throw new SemanticException("Order-preserving encoding cannot support" +
+                    " data type " + priType);
+        }
+      } else {
+        throw new SemanticException("Unsupported encryption option " + option);
+      }
+    }
+
+    if (colDefinition.isDeterministic() && colDefinition.isKeywordIndexed())
+      throw new SemanticException("Keyword index cannot be built on a " +
+              "deterministic column " + colDefinition.getName());
+  }
+
 
   /**
    * Get the query statement without the "insert into".
@@ -811,7 +883,7 @@ public class SemanticAnalyzer extends BasicSemanticAnalyzer {
                   new UnKnownType()));
           continue;
         case HiveParser.StringLiteral:
-          likePredicate.setPattern(new StringLiteral(child.getText().substring(1, child.getText().length()-1)));
+          likePredicate.setPattern(new StringLiteral(unquote(child.getText())));
           continue;
         default:
           throw new SemanticException("Unsupported like expression!");
@@ -863,7 +935,8 @@ public class SemanticAnalyzer extends BasicSemanticAnalyzer {
           binPred.addChild(new FloatLiteral(child.getText()));
           continue;
         case HiveParser.StringLiteral:
-          binPred.addChild(new StringLiteral(child.getText()));
+          // The value of a deterministic column is encrypted without quotes.
+          binPred.addChild(new StringLiteral(unquote(child.getText())));
           continue;
         default:
           throw new SemanticException("Unsupported binary predicate element!");
@@ -1052,6 +1125,16 @@ public class SemanticAnalyzer extends BasicSemanticAnalyzer {
     return onClause;
   }
 
+  /**
+   * Strip the quotes of a string literal.
+   *
+   * @param text
+   * @return
+   */
+  private static String unquote(String text) {
+    return text.substring(1, text.length() - 1);
+  }
+
   /**
    * Construct a number literal.
    *
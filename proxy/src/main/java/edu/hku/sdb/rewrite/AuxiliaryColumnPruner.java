@@ -0,0 +1,172 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.rewrite;
+
+import edu.hku.sdb.parse.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Drop the auxiliary columns row_id, R and S from the selection lists of the
+ * inline views when the enclosing query does not refer to them. The rewriter
+ * selects all of them in every view, since it does not know yet whether the
+ * joins and predicates above need them, but each of them is a long ciphertext
+ * that is shuffled through every stage of the server query.
+ *
+ * It is applied to the rewritten statement from the top down, so the columns
+ * of a view which are only used by an auxiliary column pruned above are
+ * pruned as well.
+ */
+public class AuxiliaryColumnPruner {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AuxiliaryColumnPruner
+          .class);
+
+  private int prunedColumns = 0;
+
+  public int getPrunedColumns() {
+    return prunedColumns;
+  }
+
+  /**
+   * Prune the auxiliary columns of the inline views of a rewritten statement.
+   *
+   * @param selStmt
+   */
+  public void prune(SelectStmt selStmt) {
+    if (selStmt.getTableRefs() == null)
+      return;
+
+    Map<String, Set<String>> usedColumns = new HashMap<>();
+    collect(selStmt, usedColumns);
+
+    for (TableRef tblRef : selStmt.getTableRefs()) {
+      if (!(tblRef instanceof InLineViewRef) || !(((InLineViewRef) tblRef)
+              .getQueryStmt() instanceof SelectStmt))
+        continue;
+
+      SelectStmt viewStmt = (SelectStmt) ((InLineViewRef) tblRef).getQueryStmt();
+      Set<String> used = usedColumns.get(tblRef.getAlias());
+      if (used == null)
+        used = new HashSet<>();
+
+      SelectionList viewSelList = viewStmt.getSelectList();
+      if (viewSelList.getRowID() != null && !used.contains(ColumnDefinition
+              .ROW_ID_COLUMN_NAME)) {
+        viewSelList.setRowID(null);
+        prunedColumns++;
+      }
+      if (viewSelList.getAuxiliaryR() != null && !used.contains(ColumnDefinition
+              .R_COLUMN_NAME)) {
+        viewSelList.setAuxiliaryR(null);
+        prunedColumns++;
+      }
+      if (viewSelList.getAuxiliaryS() != null && !used.contains(ColumnDefinition
+              .S_COLUMN_NAME)) {
+        viewSelList.setAuxiliaryS(null);
+        prunedColumns++;
+      }
+
+      prune(viewStmt);
+    }
+
+    LOG.debug("Pruned " + prunedColumns + " auxiliary columns");
+  }
+
+  /**
+   * Collect the auxiliary columns of the inline views that a statement refers
+   * to, keyed by the alias of the view.
+   *
+   * @param selStmt
+   * @param usedColumns
+   */
+  private void collect(SelectStmt selStmt, Map<String, Set<String>> usedColumns) {
+    SelectionList selList = selStmt.getSelectList();
+    for (SelectionItem selItem : selList.getItemList()) {
+      collect(selItem.getExpr(), usedColumns);
+    }
+    collect(selList.getRowID(), usedColumns);
+    collect(selList.getAuxiliaryR(), usedColumns);
+    collect(selList.getAuxiliaryS(), usedColumns);
+    for (SelectionItem selItem : selList.getOrderItems()) {
+      collect(selItem.getExpr(), usedColumns);
+    }
+
+    for (TableRef tblRef : selStmt.getTableRefs()) {
+      collect(tblRef.getOnClause(), usedColumns);
+    }
+
+    collect(selStmt.getWhereClause(), usedColumns);
+    if (selStmt.getGroupingExprs() != null) {
+      for (Expr expr : selStmt.getGroupingExprs()) {
+        collect(expr, usedColumns);
+      }
+    }
+    collect(selStmt.getHavingExpr(), usedColumns);
+  }
+
+  private void collect(SelectionItem selItem, Map<String, Set<String>>
+          usedColumns) {
+    if (selItem != null)
+      collect(selItem.getExpr(), usedColumns);
+  }
+
+  private void collect(Expr expr, Map<String, Set<String>> usedColumns) {
+    if (expr == null)
+      return;
+
+    if (expr instanceof FieldLiteral) {
+      FieldLiteral field = (FieldLiteral) expr;
+      if (isAuxiliaryColumn(field.getName()) && field.getTblName() != null) {
+        Set<String> used = usedColumns.get(field.getTblName());
+        if (used == null) {
+          used = new HashSet<>();
+          usedColumns.put(field.getTblName(), used);
+        }
+        used.add(field.getName());
+      }
+      return;
+    }
+
+    if (expr instanceof FunctionCallExpr) {
+      FunctionParams params = ((FunctionCallExpr) expr).getFunctionParams();
+      if (params != null && !params.isStar()) {
+        for (Expr param : params.getExprs()) {
+          collect(param, usedColumns);
+        }
+      }
+    }
+
+    List<Expr> children = expr.getChildren();
+    for (Expr child : children) {
+      collect(child, usedColumns);
+    }
+  }
+
+  private boolean isAuxiliaryColumn(String name) {
+    return name.equals(ColumnDefinition.ROW_ID_COLUMN_NAME) || name.equals
+            (ColumnDefinition.R_COLUMN_NAME) || name.equals(ColumnDefinition
+            .S_COLUMN_NAME);
+  }
+}
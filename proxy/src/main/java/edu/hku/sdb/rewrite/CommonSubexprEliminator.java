@@ -0,0 +1,254 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.rewrite;
+
+import edu.hku.sdb.parse.*;
+import edu.hku.sdb.parse.SdbArithmeticExpr.SdbOperator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Common sub-expression elimination for rewritten select statements. The key
+ * updates and SDB arithmetic of a query over a single table are often repeated
+ * in the selection list, the where clause and the group by clause, and the
+ * server evaluates every copy of the modPow chain for each row.
+ *
+ * The repeated sub-expressions are computed once in an inline view, which
+ * selects all columns of the table plus one column per sub-expression. The
+ * view takes the name of the table, so the other field references are kept,
+ * and every occurrence becomes a reference to the computed column. Two
+ * sub-expressions are identical if their SQL is, since the constants of the
+ * key updates are part of it. Each reference keeps the column key of the
+ * occurrence it replaces.
+ */
+public class CommonSubexprEliminator {
+
+  private static final Logger LOG = LoggerFactory.getLogger
+          (CommonSubexprEliminator.class);
+
+  public static final String CSE_COLUMN_PREFIX = "sdb_cse_";
+
+  // The definitions of the computed columns, keyed by the SQL of the
+  // sub-expression.
+  private final Map<String, SelectionItem> definitions = new LinkedHashMap<>();
+  private final Map<String, Integer> counts = new HashMap<>();
+  private String viewName;
+  private int eliminatedUdfCalls = 0;
+  private int eliminatedKeyUpdates = 0;
+
+  /**
+   * Eliminate the common sub-expressions of a rewritten select statement.
+   *
+   * @param selStmt
+   * @return whether the statement has been changed
+   */
+  public boolean eliminate(SelectStmt selStmt) {
+    List<TableRef> tblRefs = selStmt.getTableRefs();
+    if (tblRefs == null || tblRefs.size() != 1 || !(tblRefs.get(0) instanceof
+            BaseTableRef))
+      return false;
+
+    TableRef tblRef = tblRefs.get(0);
+    viewName = (tblRef.getAlias().equals("") ? tblRef.getTblName() : tblRef
+            .getAlias()).toLowerCase();
+    definitions.clear();
+    counts.clear();
+    eliminatedUdfCalls = 0;
+    eliminatedKeyUpdates = 0;
+
+    SelectionList selList = selStmt.getSelectList();
+    for (SelectionItem selItem : selList.getItemList()) {
+      count(selItem.getExpr());
+    }
+    count(selStmt.getWhereClause());
+    if (selStmt.getGroupingExprs() != null) {
+      for (Expr expr : selStmt.getGroupingExprs()) {
+        count(expr);
+      }
+    }
+
+    if (!hasRepeated())
+      return false;
+
+    for (SelectionItem selItem : selList.getItemList()) {
+      Expr expr = selItem.getExpr();
+      Expr replaced = replace(expr);
+      if (replaced != expr) {
+        replaced.setReferredByList(expr.getReferredByList());
+        selItem.setExpr(replaced);
+      }
+    }
+    selStmt.setWhereClause(replace(selStmt.getWhereClause()));
+    if (selStmt.getGroupingExprs() != null) {
+      List<Expr> groupExprs = selStmt.getGroupingExprs();
+      for (int i = 0; i < groupExprs.size(); i++) {
+        groupExprs.set(i, replace(groupExprs.get(i)));
+      }
+    }
+
+    SelectionList viewSelList = new SelectionList();
+    viewSelList.getItemList().add(new SelectionItem(new FieldLiteral(viewName,
+            "*"), ""));
+    viewSelList.getItemList().addAll(definitions.values());
+
+    SelectStmt viewStmt = new SelectStmt();
+    viewStmt.setSelectList(viewSelList);
+    viewStmt.setTableRefs(new ArrayList<>(tblRefs));
+
+    InLineViewRef inlineView = new InLineViewRef(viewName, viewStmt);
+    inlineView.setJoinOp(tblRef.getJoinOp());
+
+    List<TableRef> viewRefs = new ArrayList<>();
+    viewRefs.add(inlineView);
+    selStmt.setTableRefs(viewRefs);
+
+    LOG.debug("Hoisted " + definitions.size() + " common sub-expressions of " +
+            viewName + " into an inline view");
+    return true;
+  }
+
+  /**
+   * @return the UDF calls per row saved by the last elimination
+   */
+  public int getEliminatedUdfCalls() {
+    return eliminatedUdfCalls;
+  }
+
+  /**
+   * @return the key updates per row saved by the last elimination
+   */
+  public int getEliminatedKeyUpdates() {
+    return eliminatedKeyUpdates;
+  }
+
+  private boolean hasRepeated() {
+    for (int count : counts.values()) {
+      if (count > 1)
+        return true;
+    }
+    return false;
+  }
+
+  private void count(Expr expr) {
+    if (expr == null)
+      return;
+
+    if (isCandidate(expr)) {
+      String sql = expr.toSql();
+      Integer count = counts.get(sql);
+      counts.put(sql, count == null ? 1 : count + 1);
+    }
+
+    for (Expr child : getChildren(expr)) {
+      count(child);
+    }
+  }
+
+  /**
+   * Replace the outermost repeated sub-expressions by the computed columns.
+   *
+   * @param expr
+   * @return the replacement of the expression, or itself
+   */
+  private Expr replace(Expr expr) {
+    if (expr == null)
+      return null;
+
+    if (isCandidate(expr)) {
+      String sql = expr.toSql();
+      Integer count = counts.get(sql);
+      if (count != null && count > 1) {
+        SelectionItem definition = definitions.get(sql);
+        if (definition == null) {
+          definition = new SelectionItem(expr, CSE_COLUMN_PREFIX + definitions
+                  .size());
+          definitions.put(sql, definition);
+        } else {
+          UdfCounter udfCounter = new UdfCounter(expr);
+          eliminatedUdfCalls += udfCounter.getUdfCalls();
+          eliminatedKeyUpdates += udfCounter.getKeyUpdates();
+        }
+        return new FieldLiteral(viewName, definition.getAlias(), expr.getType(),
+                true, expr.getSdbColKey());
+      }
+    }
+
+    if (expr instanceof FunctionCallExpr) {
+      FunctionParams params = ((FunctionCallExpr) expr).getFunctionParams();
+      if (params != null && params.getExprs() != null) {
+        List<Expr> exprs = params.getExprs();
+        for (int i = 0; i < exprs.size(); i++) {
+          exprs.set(i, replace(exprs.get(i)));
+        }
+      }
+    } else {
+      for (int i = 0; i < expr.getChildren().size(); i++) {
+        expr.setChild(i, replace(expr.getChild(i)));
+      }
+    }
+    return expr;
+  }
+
+  /**
+   * Only the UDF calls evaluated per row on the columns of the table are
+   * hoisted.
+   *
+   * @param expr
+   * @return
+   */
+  private boolean isCandidate(Expr expr) {
+    return (expr instanceof SdbKeyUpdateExpr || expr instanceof
+            SdbArithmeticExpr) && isRowLevel(expr);
+  }
+
+  private boolean isRowLevel(Expr expr) {
+    if (expr instanceof FunctionCallExpr)
+      return false;
+    if (expr instanceof SdbArithmeticExpr) {
+      SdbOperator op = ((SdbArithmeticExpr) expr).getOp();
+      if (op == SdbOperator.SDB_SUM || op == SdbOperator.SDB_FIRST)
+        return false;
+    }
+    if (expr instanceof FieldLiteral) {
+      String tblName = ((FieldLiteral) expr).getTblName();
+      return tblName == null || tblName.equals("") || tblName.equals(viewName);
+    }
+
+    for (Expr child : expr.getChildren()) {
+      if (child != null && !isRowLevel(child))
+        return false;
+    }
+    return true;
+  }
+
+  private static List<Expr> getChildren(Expr expr) {
+    if (expr instanceof FunctionCallExpr) {
+      FunctionParams params = ((FunctionCallExpr) expr).getFunctionParams();
+      if (params == null || params.getExprs() == null)
+        return new ArrayList<>();
+      return params.getExprs();
+    }
+    return expr.getChildren();
+  }
+}
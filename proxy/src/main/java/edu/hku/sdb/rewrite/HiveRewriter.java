@@ -63,6 +63,12 @@ public class HiveRewriter extends AbstractRewriter {
           UnSupportedException {
 
     for (ColumnDefinition colDefinition : fieldList) {
+      // Deterministic ciphertext is a Base64 string for any data type.
+      if (colDefinition.isDeterministic()) {
+        colDefinition.setRewrittenType(Type.STRING);
+        continue;
+      }
+
       if (colDefinition.involveEncrytedCol()) {
         Type originType = colDefinition.getOriginType();
 
@@ -57,6 +57,12 @@ public class ODPSRewriter extends AbstractRewriter {
 
       Type originType = colDefinition.getOriginType();
 
+      // Deterministic ciphertext is a Base64 string for any data type.
+      if (colDefinition.isDeterministic()) {
+        colDefinition.setRewrittenType(ScalarType.STRING);
+        continue;
+      }
+
       if (originType instanceof ScalarType) {
         int index = fieldList.indexOf(colDefinition);
         Type type;
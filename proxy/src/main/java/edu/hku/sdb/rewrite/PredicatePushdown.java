@@ -0,0 +1,287 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.rewrite;
+
+import edu.hku.sdb.catalog.DBMeta;
+import edu.hku.sdb.parse.*;
+import edu.hku.sdb.parse.CompoundPredicate.CompoundOperator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Push the conjuncts of a where clause that refer to a single inline view
+ * into the where clause of the view, before the statement is rewritten. Once
+ * pushed, a predicate refers to the columns of the tables inside the view, so
+ * it is rewritten with the auxiliary columns R and S of those tables and the
+ * rows are filtered before the cartesian transformations and key updates of
+ * the joins above the view. The pass is applied again when the view is
+ * rewritten, so a predicate sinks as deep as it can.
+ *
+ * A conjunct is pushed only if the view has no aggregation, group by or
+ * limit, it is not on the null-supplying side of an outer join, and the view
+ * columns it uses are plain columns of a single table in the view.
+ *
+ * Conjuncts on base tables are left in place, they are already evaluated with
+ * the auxiliary columns of their own table, before any cartesian
+ * transformation.
+ */
+public class PredicatePushdown {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PredicatePushdown
+          .class);
+
+  private final DBMeta dbMeta;
+  private int pushedPredicates = 0;
+
+  public PredicatePushdown(DBMeta dbMeta) {
+    this.dbMeta = dbMeta;
+  }
+
+  public int getPushedPredicates() {
+    return pushedPredicates;
+  }
+
+  /**
+   * Push down the predicates of an analyzed select statement.
+   *
+   * @param selStmt
+   * @return whether the statement has been changed
+   */
+  public boolean push(SelectStmt selStmt) {
+    List<TableRef> tblRefs = selStmt.getTableRefs();
+    if (selStmt.getWhereClause() == null || tblRefs == null)
+      return false;
+
+    Set<String> nullSupplying = getNullSupplyingRefs(tblRefs);
+
+    List<Expr> conjuncts = new ArrayList<>();
+    splitConjuncts(selStmt.getWhereClause(), conjuncts);
+
+    List<Expr> remaining = new ArrayList<>();
+    int pushed = 0;
+    for (Expr conjunct : conjuncts) {
+      InLineViewRef view = findTargetView(conjunct, tblRefs, nullSupplying);
+      if (view != null && pushInto(conjunct, view)) {
+        pushed++;
+      } else {
+        remaining.add(conjunct);
+      }
+    }
+
+    if (pushed == 0)
+      return false;
+
+    selStmt.setWhereClause(combineConjuncts(remaining));
+    pushedPredicates += pushed;
+    LOG.debug("Pushed " + pushed + " predicates into inline views");
+    return true;
+  }
+
+  private void splitConjuncts(Expr expr, List<Expr> conjuncts) {
+    if (expr instanceof CompoundPredicate && ((CompoundPredicate) expr).getOp()
+            == CompoundOperator.AND) {
+      splitConjuncts(((CompoundPredicate) expr).getLeftPred(), conjuncts);
+      splitConjuncts(((CompoundPredicate) expr).getRightPred(), conjuncts);
+    } else {
+      conjuncts.add(expr);
+    }
+  }
+
+  private Expr combineConjuncts(List<Expr> conjuncts) {
+    Expr result = null;
+    for (Expr conjunct : conjuncts) {
+      result = and(result, conjunct);
+    }
+    return result;
+  }
+
+  private Expr and(Expr left, Expr right) {
+    if (left == null)
+      return right;
+
+    CompoundPredicate compoundPred = new CompoundPredicate(CompoundOperator.AND);
+    compoundPred.setLeftPred(left);
+    compoundPred.setRightPred(right);
+    return compoundPred;
+  }
+
+  /**
+   * The names of the table references whose columns can be null because of an
+   * outer join. A predicate on them must be evaluated after the join.
+   *
+   * @param tblRefs
+   * @return
+   */
+  private Set<String> getNullSupplyingRefs(List<TableRef> tblRefs) {
+    Set<String> names = new HashSet<>();
+    for (int i = 1; i < tblRefs.size(); i++) {
+      JoinOperator joinOp = tblRefs.get(i).getJoinOp();
+      if (joinOp == JoinOperator.LEFT_OUTER_JOIN || joinOp == JoinOperator
+              .FULL_OUTER_JOIN)
+        names.add(getRefName(tblRefs.get(i)));
+      if (joinOp == JoinOperator.RIGHT_OUTER_JOIN || joinOp == JoinOperator
+              .FULL_OUTER_JOIN) {
+        for (int j = 0; j < i; j++) {
+          names.add(getRefName(tblRefs.get(j)));
+        }
+      }
+    }
+    return names;
+  }
+
+  private String getRefName(TableRef tblRef) {
+    if (tblRef.getAlias() == null || tblRef.getAlias().equals(""))
+      return tblRef.getTblName();
+    return tblRef.getAlias();
+  }
+
+  /**
+   * @param conjunct
+   * @param tblRefs
+   * @param nullSupplying
+   * @return the inline view that all fields of the conjunct refer to, or null
+   */
+  private InLineViewRef findTargetView(Expr conjunct, List<TableRef> tblRefs,
+                                       Set<String> nullSupplying) {
+    List<FieldLiteral> fields = new ArrayList<>();
+    if (!collectFields(conjunct, fields) || fields.isEmpty())
+      return null;
+
+    String viewName = fields.get(0).getTblName();
+    for (FieldLiteral field : fields) {
+      if (viewName == null || !viewName.equals(field.getTblName()))
+        return null;
+    }
+    if (nullSupplying.contains(viewName))
+      return null;
+
+    for (TableRef tblRef : tblRefs) {
+      if (tblRef instanceof InLineViewRef && viewName.equals(tblRef.getAlias())) {
+        return isPushable((InLineViewRef) tblRef) ? (InLineViewRef) tblRef : null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param expr
+   * @param fields
+   * @return false if the expression cannot be moved, e.g. it has a function call
+   */
+  private boolean collectFields(Expr expr, List<FieldLiteral> fields) {
+    if (expr == null)
+      return true;
+    if (expr instanceof FunctionCallExpr)
+      return false;
+    if (expr instanceof FieldLiteral) {
+      fields.add((FieldLiteral) expr);
+      return true;
+    }
+
+    for (Expr child : expr.getChildren()) {
+      if (!collectFields(child, fields))
+        return false;
+    }
+    return true;
+  }
+
+  private boolean isPushable(InLineViewRef view) {
+    if (!(view.getQueryStmt() instanceof SelectStmt))
+      return false;
+
+    SelectStmt viewStmt = (SelectStmt) view.getQueryStmt();
+    if (viewStmt.getLimitElement() != null || (viewStmt.getGroupingExprs() !=
+            null && !viewStmt.getGroupingExprs().isEmpty()) || viewStmt
+            .getHavingExpr() != null)
+      return false;
+
+    for (SelectionItem selItem : viewStmt.getSelectList().getItemList()) {
+      List<FieldLiteral> fields = new ArrayList<>();
+      if (!collectFields(selItem.getExpr(), fields))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Replace the view columns of a conjunct by the columns they select, and add
+   * it to the where clause of the view.
+   *
+   * @param conjunct
+   * @param view
+   * @return false if the conjunct is not moved
+   */
+  private boolean pushInto(Expr conjunct, InLineViewRef view) {
+    SelectStmt viewStmt = (SelectStmt) view.getQueryStmt();
+    List<TableRef> viewRefs = viewStmt.getTableRefs();
+    ParseNode[] fieldSources = viewRefs.toArray(new ParseNode[viewRefs.size()]);
+
+    // Resolve all columns first, the conjunct is left untouched if any of them
+    // can not be pushed.
+    List<FieldLiteral> viewFields = new ArrayList<>();
+    collectFields(conjunct, viewFields);
+    Map<FieldLiteral, FieldLiteral> replacements = new IdentityHashMap<>();
+    Set<String> tbls = new HashSet<>();
+    for (FieldLiteral viewField : viewFields) {
+      Expr referExpr = viewField.getReferedExpr();
+      if (!(referExpr instanceof FieldLiteral))
+        return false;
+
+      FieldLiteral column = (FieldLiteral) referExpr;
+      FieldLiteral field = new FieldLiteral(column.getTblName(), column.getName());
+      try {
+        field.analyze(dbMeta, fieldSources);
+      } catch (SemanticException e) {
+        LOG.debug("Can not push predicate " + conjunct.toSql() + " into view "
+                + view.getAlias() + ": " + e.getMessage());
+        return false;
+      }
+      replacements.put(viewField, field);
+      tbls.add(field.getTblName());
+    }
+
+    // The pushed predicate must still refer to a single table.
+    if (tbls.size() != 1)
+      return false;
+
+    LOG.debug("Pushing predicate " + conjunct.toSql() + " into view " + view
+            .getAlias());
+    viewStmt.setWhereClause(and(viewStmt.getWhereClause(), replace(conjunct,
+            replacements)));
+    return true;
+  }
+
+  private Expr replace(Expr expr, Map<FieldLiteral, FieldLiteral> replacements) {
+    if (expr == null)
+      return null;
+    if (expr instanceof FieldLiteral)
+      return replacements.get(expr);
+
+    for (int i = 0; i < expr.getChildren().size(); i++) {
+      expr.setChild(i, replace(expr.getChild(i), replacements));
+    }
+    return expr;
+  }
+}
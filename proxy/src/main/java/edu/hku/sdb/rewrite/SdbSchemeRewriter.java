@@ -17,13 +17,18 @@
 
 package edu.hku.sdb.rewrite;
 
+import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.math.RoundingMode;
 import java.util.*;
 
 import edu.hku.sdb.catalog.*;
+import edu.hku.sdb.crypto.DetEncryptor;
+import edu.hku.sdb.crypto.OpeEncryptor;
 import edu.hku.sdb.crypto.SDBEncrypt;
 import edu.hku.sdb.crypto.SEException;
 import edu.hku.sdb.crypto.SEKey;
+import edu.hku.sdb.crypto.SearchColumnEncryptor;
 import edu.hku.sdb.crypto.SearchEncrypt;
 import edu.hku.sdb.parse.*;
 import edu.hku.sdb.parse.SdbArithmeticExpr.SdbOperator;
@@ -56,10 +61,24 @@ public class SdbSchemeRewriter extends SchemeDecorator {
   BigInteger K;
   BigInteger totient;
 
+  private DetEncryptor detEncryptor;
+
   // TODO: we assume the names for all tables and inlineView are unique.
   private Map<String, SdbColumnKey> colKeyMap = new HashMap<>();
   private Map<String, String> aliasTblMap = new HashMap<>();
 
+  // The rewritten arithmetic expressions of the select statement being
+  // rewritten. An expression referenced more than once reuses the same key
+  // updates, so that the copies can be eliminated.
+  private Map<String, Expr> rewrittenArithExprs = new HashMap<>();
+  private Map<String, Integer> savedByArithExprs = new HashMap<>();
+
+  // The UDF calls and key updates saved by sharing column keys and eliminating
+  // common sub-expressions.
+  private int savedUdfCalls = 0;
+  private int savedKeyUpdates = 0;
+  private UdfCounter udfCounter;
+
   /**
    * @param dbMeta
    */
@@ -72,17 +91,81 @@ public class SdbSchemeRewriter extends SchemeDecorator {
     g = new BigInteger(dbMeta.getG());
     K = new BigInteger(dbMeta.getK());
     totient = SDBEncrypt.evaluateTotient(prime1, prime2);
+    detEncryptor = new DetEncryptor(prime1, prime2);
   }
 
   @Override
   public void rewrite(ParseNode parseTree) throws RewriteException {
     LOG.info("Begin the rewrite process");
+    savedUdfCalls = 0;
+    savedKeyUpdates = 0;
     rewriteInternal(parseTree);
     if(rewriter != null)
       rewriter.rewrite(parseTree);
+
+    udfCounter = new UdfCounter(parseTree);
+    LOG.info("SDB UDF calls per row: " + getUdfCallsBefore() + " before and "
+            + udfCounter.getUdfCalls() + " after minimizing key updates, of which "
+            + "key updates: " + getKeyUpdatesBefore() + " before and " +
+            udfCounter.getKeyUpdates() + " after");
     LOG.info("End the rewrite process");
   }
 
+  public SecurityLevel getSecurityLevel() {
+    return securityLevel;
+  }
+
+  /**
+   * @param securityLevel HIGH to update every operand to a fresh column key,
+   *                      MEDIUM to reuse the column key of an operand.
+   */
+  public void setSecurityLevel(SecurityLevel securityLevel) {
+    this.securityLevel = securityLevel;
+  }
+
+  /**
+   * @return the UDF calls of the last rewritten statement if no key update
+   * were saved
+   */
+  public int getUdfCallsBefore() {
+    return udfCounter == null ? 0 : udfCounter.getUdfCalls() + savedUdfCalls;
+  }
+
+  public int getUdfCallsAfter() {
+    return udfCounter == null ? 0 : udfCounter.getUdfCalls();
+  }
+
+  public int getKeyUpdatesBefore() {
+    return udfCounter == null ? 0 : udfCounter.getKeyUpdates() + savedKeyUpdates;
+  }
+
+  public int getKeyUpdatesAfter() {
+    return udfCounter == null ? 0 : udfCounter.getKeyUpdates();
+  }
+
+  private void saveKeyUpdates(int count) {
+    savedUdfCalls += count;
+    savedKeyUpdates += count;
+  }
+
+  /**
+   * An operand can be updated to the column key of the other one, instead of
+   * updating both to a fresh key. The m of the key must be invertible, e.g. it
+   * is not if the operand has been multiplied by zero.
+   *
+   * The target key is chosen per binary node, from its two operands only. A
+   * chain of three or more operands is rewritten from the left, so the key
+   * shared by most operands may not be chosen. A SUM over an expression
+   * skips its key update only if the expression already has x = 0.
+   *
+   * @param colKey the key of the other operand
+   * @return
+   */
+  private boolean canShareColumnKey(SdbColumnKey colKey) {
+    return securityLevel == SecurityLevel.MEDIUM && colKey.getM().gcd(n).equals
+            (BigInteger.ONE);
+  }
+
   /**
    * Internal rewrite function. All rewriting should be involved by this
    * function.
@@ -98,6 +181,8 @@ public class SdbSchemeRewriter extends SchemeDecorator {
       // No need to get the auxiliary columns at the final step.
       ((SelectStmt) parseTree).getSelectList().setAuxiliaryR(null);
       ((SelectStmt) parseTree).getSelectList().setAuxiliaryS(null);
+      // Neither for the inline views if the outer query does not refer to them.
+      new AuxiliaryColumnPruner().prune((SelectStmt) parseTree);
     } else if (parseTree instanceof CreateStmt) {
       rewriteCreateStmt((CreateStmt) parseTree);
     } else if (parseTree instanceof LoadStmt) {
@@ -110,7 +195,10 @@ public class SdbSchemeRewriter extends SchemeDecorator {
           RewriteException {
 
     /********************************************************************************
-     * The rewrite steps are: 1. Rewrite sub-queries if any, also propagate the
+     * The rewrite steps are: 0. Push the predicates on inline views into the
+     * views, so that they filter the rows before the joins.
+     *
+     * 1. Rewrite sub-queries if any, also propagate the
      * key updates to all fields in the outer query that refers to selection
      * items in the sub queries.
      *
@@ -128,25 +216,80 @@ public class SdbSchemeRewriter extends SchemeDecorator {
      *
      * 5. Do rewrite for all group by exprs.
      *
-     * 6. Not support having clause, orderby clause at this moment.
+     * 6. Do rewrite for order by fields that have order-preserving columns.
+     * Not support having clause at this moment.
+     *
+     * 7. Compute the repeated key updates once in an inline view.
      *
      *******************************************************************************/
 
+    new PredicatePushdown(dbMeta).push(selStmt);
+
     // Rewrite sub-query and join clause first, and also propagate the keyUpdate
     // to the selection items and fields in where predicates.
     rewriteTableRefs(selStmt.getTableRefs(), selStmt.getSelectList(),
             selStmt.getWhereClause());
 
-    // Rewrite the where predicates.
+    Map<String, Expr> outerArithExprs = rewrittenArithExprs;
+    Map<String, Integer> outerSavedByArithExprs = savedByArithExprs;
+    rewrittenArithExprs = new HashMap<>();
+    savedByArithExprs = new HashMap<>();
+    try {
+      // Rewrite the where predicates.
+      selStmt.setWhereClause(rewriteWhereClause(selStmt.getWhereClause()));
+
+      // Rewrite the selection items.
+      rewriteSelList(selStmt.getSelectList());
+
+      // Rewrite the group by clause.
+      rewriteGroupByExprs(selStmt.getGroupingExprs());
+    } finally {
+      rewrittenArithExprs = outerArithExprs;
+      savedByArithExprs = outerSavedByArithExprs;
+    }
 
+    // Rewrite the order by clause.
+    rewriteOrderByElements(selStmt);
+
+    // Eliminate the common sub-expressions.
+    CommonSubexprEliminator eliminator = new CommonSubexprEliminator();
+    if (eliminator.eliminate(selStmt)) {
+      savedUdfCalls += eliminator.getEliminatedUdfCalls();
+      savedKeyUpdates += eliminator.getEliminatedKeyUpdates();
+    }
+  }
+
+  /**
+   * Sort the encrypted fields by their order-preserving columns. The columns
+   * are selected as hidden items, since the order by clause can only refer to
+   * the selection items.
+   *
+   * @param selStmt
+   */
+  protected void rewriteOrderByElements(SelectStmt selStmt) {
+    if (selStmt.getOrderByElements() == null)
+      return;
 
-    selStmt.setWhereClause(rewriteWhereClause(selStmt.getWhereClause()));
+    for (OrderByElement element : selStmt.getOrderByElements()) {
+      if (!(element.getExpr() instanceof FieldLiteral) || !element.getExpr()
+              .involveEncrytedCol())
+        continue;
 
-    // Rewrite the selection items.
-    rewriteSelList(selStmt.getSelectList());
+      FieldLiteral orderColumn = ((FieldLiteral) element.getExpr()).getOrderColumn();
+      if (orderColumn == null) {
+        LOG.warn("There is no order-preserving column for " + element.getExpr()
+                .toSql() + ", the result is not sorted!");
+        continue;
+      }
 
-    // Rewrite the group by clause.
-    rewriteGroupByExprs(selStmt.getGroupingExprs());
+      selStmt.getSelectList().addOrderItem(new SelectionItem(orderColumn,
+              orderColumn.getName()));
+      // The order-preserving column is determined by the field, so it does not
+      // change the groups.
+      if (selStmt.getGroupingExprs() != null)
+        selStmt.getGroupingExprs().add(orderColumn);
+      element.setExpr(new FieldLiteral("", orderColumn.getName(), Type.STRING));
+    }
   }
 
   /**
@@ -172,6 +315,10 @@ public class SdbSchemeRewriter extends SchemeDecorator {
   private void rewriteCreateFieldLists(List<ColumnDefinition> fieldList) throws UnSupportedException {
 
     for (ColumnDefinition colDefinition : fieldList) {
+      // The keys of deterministic columns are derived from the database.
+      if (colDefinition.isDeterministic())
+        continue;
+
       if (colDefinition.involveEncrytedCol()) {
         Type originType = colDefinition.getOriginType();
 
@@ -224,6 +371,15 @@ public class SdbSchemeRewriter extends SchemeDecorator {
     ColumnDefinition sField = buildAuxiliaryColumn(ColumnDefinition
             .S_COLUMN_NAME, prime1, prime2);
     fieldList.add(sField);
+
+    // The order-preserving columns follow the auxiliary columns.
+    List<ColumnDefinition> orderFields = new ArrayList<>();
+    for (ColumnDefinition colDefinition : fieldList) {
+      if (colDefinition.isOrderPreserving())
+        orderFields.add(new ColumnDefinition(ColumnDefinition.getOrderColumnName
+                (colDefinition.getName()), Type.STRING));
+    }
+    fieldList.addAll(orderFields);
   }
 
   private ColumnDefinition buildAuxiliaryColumn(String fieldName,
@@ -567,6 +723,17 @@ public class SdbSchemeRewriter extends SchemeDecorator {
     FieldLiteral leftField = (FieldLiteral) leftExpr;
     FieldLiteral rightField = (FieldLiteral) rightExpr;
 
+    // Deterministic ciphertexts are joined as they are, i.e. by a hash join.
+    if (leftField.isDeterministic() && rightField.isDeterministic())
+      return;
+
+    if (leftField.isDeterministic() || rightField.isDeterministic()) {
+      UnSupportedException e = new UnSupportedException("Can not join a " +
+              "deterministic column with a non-deterministic column!");
+      LOG.error("There is unsupported join condition!", e);
+      throw e;
+    }
+
     if (!leftField.getType().equals(Type.INT) || !rightField.getType().equals(Type.INT)) {
       UnSupportedException e = new UnSupportedException("Can not support " +
               "non-integer join attributes!");
@@ -681,7 +848,8 @@ public class SdbSchemeRewriter extends SchemeDecorator {
           rightS, Set<String> visitedTbl) throws UnSupportedException {
     LOG.debug("Building cartesian expression for " + expr.toSql());
     if (expr instanceof FieldLiteral) {
-      if (expr.involveEncrytedCol()) {
+      // Deterministic columns are independent of the row, no update is needed.
+      if (expr.involveEncrytedCol() && !((FieldLiteral) expr).isDeterministic()) {
         FieldLiteral column = (FieldLiteral) expr;
         FieldLiteral rightSExpr = (FieldLiteral) rightS.getExpr();
         SdbCartesianExpr transformedCol = new SdbCartesianExpr();
@@ -812,7 +980,7 @@ public class SdbSchemeRewriter extends SchemeDecorator {
 
     LOG.debug("Rewriting where clause " + whereClause.toSql());
     if (whereClause instanceof CompoundPredicate) {
-      rewriteCompoundPredicate((CompoundPredicate) whereClause);
+      rewriteCompoundPredicate((CompoundPredicate) whereClause, true);
       return whereClause;
     } else if (whereClause instanceof NormalBinPredicate) {
       LOG.info("Rewriting NormalBinPredicate during rewriteWhereClause");
@@ -841,7 +1009,7 @@ public class SdbSchemeRewriter extends SchemeDecorator {
       }
     } else if (whereClause instanceof LikePredicate) {
       LOG.info("Rewriting like predicate during rewriteWhereClause");
-      return rewriteLikePredicate((LikePredicate) whereClause);
+      return rewriteLikePredicate((LikePredicate) whereClause, true);
     }
     else {
       UnSupportedException e = new UnSupportedException("Can not support " +
@@ -988,7 +1156,9 @@ public class SdbSchemeRewriter extends SchemeDecorator {
     Set<String> tbls = new HashSet<>();
 
     for (Expr expr : groupExprs) {
-      tbls.addAll(findAllTbls(expr));
+      // Deterministic columns are grouped by the ciphertexts directly.
+      if (!isDeterministic(expr))
+        tbls.addAll(findAllTbls(expr));
     }
 
     if (tbls.size() < 1) {
@@ -1002,7 +1172,8 @@ public class SdbSchemeRewriter extends SchemeDecorator {
       S.setSdbColKey(getTableColumnKey(tblName, ColumnDefinition.S_COLUMN_NAME));
 
       for (int i = 0; i < groupExprs.size(); i++) {
-        if (groupExprs.get(i).involveEncrytedCol()) {
+        if (groupExprs.get(i).involveEncrytedCol() && !isDeterministic
+                (groupExprs.get(i))) {
           if (groupExprs.get(i) instanceof FieldLiteral) {
             BigInteger targetM = SDBEncrypt.generatePositiveRand(prime1, prime2);
             BigInteger targetX = BigInteger.ZERO;
@@ -1054,9 +1225,11 @@ public class SdbSchemeRewriter extends SchemeDecorator {
    * Rewrite the compound predicate.
    *
    * @param compoundPred
+   * @param conjunct whether the predicate is a conjunct of the where clause
    * @throws UnSupportedException
    */
-  protected void rewriteCompoundPredicate(CompoundPredicate compoundPred) throws
+  protected void rewriteCompoundPredicate(CompoundPredicate compoundPred,
+                                          boolean conjunct) throws
           UnSupportedException {
     // No SDB encrypted column
     if (!compoundPred.involveEncrytedCol())
@@ -1067,9 +1240,15 @@ public class SdbSchemeRewriter extends SchemeDecorator {
     Expr leftPred = compoundPred.getLeftPred();
     Expr rightPred = compoundPred.getRightPred();
 
+    // The operands of a conjunct AND are conjuncts as well.
+    conjunct = conjunct && compoundPred.getOp() == CompoundPredicate
+            .CompoundOperator.AND;
 
     if (leftPred instanceof CompoundPredicate) {
-      rewriteCompoundPredicate((CompoundPredicate) leftPred);
+      rewriteCompoundPredicate((CompoundPredicate) leftPred, conjunct);
+    } else if (leftPred instanceof LikePredicate) {
+      compoundPred.setLeftPred(rewriteLikePredicate((LikePredicate) leftPred,
+              conjunct));
     } else if (leftPred instanceof NormalBinPredicate) {
 
       Set<String> tbls = findAllTbls((NormalBinPredicate) leftPred);
@@ -1098,7 +1277,10 @@ public class SdbSchemeRewriter extends SchemeDecorator {
     }
 
     if (rightPred instanceof CompoundPredicate) {
-      rewriteCompoundPredicate((CompoundPredicate) rightPred);
+      rewriteCompoundPredicate((CompoundPredicate) rightPred, conjunct);
+    } else if (rightPred instanceof LikePredicate) {
+      compoundPred.setRightPred(rewriteLikePredicate((LikePredicate) rightPred,
+              conjunct));
     } else if (rightPred instanceof NormalBinPredicate) {
       Set<String> tbls = findAllTbls((NormalBinPredicate) rightPred);
       assert (tbls != null);
@@ -1256,19 +1438,39 @@ public class SdbSchemeRewriter extends SchemeDecorator {
       assert (functionParams.getExprs().size() == 1);
 
       Expr expr = functionParams.getExprs().get(0);
+      if (expr instanceof NormalArithmeticExpr && expr.involveEncrytedCol()) {
+        expr = rewriteNorArithExpr((NormalArithmeticExpr) expr, S);
+        functionParams.getExprs().set(0, expr);
+      }
 
-      BigInteger targetM = SDBEncrypt.generatePositiveRand(prime1, prime2);
+      if (isDeterministic(expr)) {
+        UnSupportedException e = new UnSupportedException("Can not support sum" +
+                " on deterministic column " + expr.toSql());
+        LOG.error("There is unsupported function call!", e);
+        throw e;
+      }
+
+      BigInteger targetM;
       BigInteger targetX = BigInteger.ZERO;
 
-      BigInteger[] pqLeft = SDBEncrypt.keyUpdateClient(expr.getSdbColKey().getM(),
-              targetM,
-              S.getSdbColKey().getM(), expr.getSdbColKey().getX(), targetX, S.getSdbColKey
-                      ().getX(), prime1, prime2);
+      // The values are summed up directly if the item key does not depend on
+      // the row.
+      if (expr.getSdbColKey().getX().signum() == 0) {
+        targetM = expr.getSdbColKey().getM();
+        saveKeyUpdates(1);
+      } else {
+        targetM = SDBEncrypt.generatePositiveRand(prime1, prime2);
 
-      functionParams.getExprs().set(0, buildSdbKeyUpdateExpr(expr, S, new
-                      BigIntLiteral(pqLeft[0]),
-              new BigIntLiteral(pqLeft[1]), new BigIntLiteral(n), targetM, targetX));
-      functionParams.getExprs().get(0).setSdbColKey(new SdbColumnKey(targetM, targetX));
+        BigInteger[] pqLeft = SDBEncrypt.keyUpdateClient(expr.getSdbColKey().getM(),
+                targetM,
+                S.getSdbColKey().getM(), expr.getSdbColKey().getX(), targetX, S.getSdbColKey
+                        ().getX(), prime1, prime2);
+
+        functionParams.getExprs().set(0, buildSdbKeyUpdateExpr(expr, S, new
+                        BigIntLiteral(pqLeft[0]),
+                new BigIntLiteral(pqLeft[1]), new BigIntLiteral(n), targetM, targetX));
+        functionParams.getExprs().get(0).setSdbColKey(new SdbColumnKey(targetM, targetX));
+      }
       functionParams.getExprs().add(new BigIntLiteral(n));
 
       funName.setName(SdbOperator.SDB_SUM.toString());
@@ -1297,11 +1499,87 @@ public class SdbSchemeRewriter extends SchemeDecorator {
    */
   protected Expr rewriteNorArithExpr(NormalArithmeticExpr arithExpr, Expr S)
           throws UnSupportedException {
+    String key = getRewriteKey(arithExpr, S);
+    Expr rewrittenExpr = rewrittenArithExprs.get(key);
+    if (rewrittenExpr != null) {
+      LOG.debug("Reusing rewritten arithmetic expression " + arithExpr.toSql());
+      saveKeyUpdates(savedByArithExprs.get(key));
+      return copyRewrittenExpr(rewrittenExpr);
+    }
+
+    int saved = savedKeyUpdates;
+    rewrittenExpr = rewriteNorArithExprInternal(arithExpr, S);
+    if (rewrittenExpr.involveEncrytedCol()) {
+      Expr copy = copyRewrittenExpr(rewrittenExpr);
+      if (copy != null) {
+        rewrittenArithExprs.put(key, copy);
+        savedByArithExprs.put(key, savedKeyUpdates - saved);
+      }
+    }
+    return rewrittenExpr;
+  }
+
+  /**
+   * The key of an arithmetic expression to be rewritten. The same SQL may
+   * refer to fields with different column keys, e.g. after a key update is
+   * propagated from a sub-query.
+   *
+   * @param expr
+   * @param S
+   * @return
+   */
+  private String getRewriteKey(Expr expr, Expr S) {
+    StringBuilder sb = new StringBuilder(expr.toSql());
+    sb.append("|").append(S.toSql()).append("|").append(S.getSdbColKey());
+    appendColKeys(expr, sb);
+    return sb.toString();
+  }
+
+  private void appendColKeys(Expr expr, StringBuilder sb) {
+    if (expr instanceof FieldLiteral) {
+      sb.append("|").append(expr.getSdbColKey());
+      return;
+    }
+    for (Expr child : expr.getChildren()) {
+      if (child != null)
+        appendColKeys(child, sb);
+    }
+  }
+
+  /**
+   * @param expr
+   * @return a copy of a rewritten expression sharing its children, or null if
+   * it can not be copied
+   */
+  private Expr copyRewrittenExpr(Expr expr) {
+    Expr copy;
+    if (expr instanceof SdbArithmeticExpr)
+      copy = new SdbArithmeticExpr((SdbArithmeticExpr) expr);
+    else if (expr instanceof SdbKeyUpdateExpr)
+      copy = new SdbKeyUpdateExpr((SdbKeyUpdateExpr) expr);
+    else if (expr instanceof FieldLiteral)
+      copy = new FieldLiteral((FieldLiteral) expr);
+    else
+      return null;
+
+    copy.setReferredByList(new ArrayList<FieldLiteral>());
+    return copy;
+  }
+
+  private Expr rewriteNorArithExprInternal(NormalArithmeticExpr arithExpr, Expr
+          S) throws UnSupportedException {
     LOG.debug("Rewriting normal arithmetic expression " + arithExpr.toSql());
 
     Expr leftExpr = arithExpr.getLeftExpr();
     Expr rightExpr = arithExpr.getRightExpr();
 
+    if (isDeterministic(leftExpr) || isDeterministic(rightExpr)) {
+      UnSupportedException e = new UnSupportedException("Can not support " +
+              "arithmetic on deterministic columns!");
+      LOG.error("There is unsupported arithmetic expression!", e);
+      throw e;
+    }
+
     if (leftExpr instanceof NormalArithmeticExpr) {
       arithExpr.setLeftExpr(rewriteNorArithExpr((NormalArithmeticExpr) leftExpr, S));
       leftExpr = arithExpr.getLeftExpr();
@@ -1451,7 +1729,30 @@ public class SdbSchemeRewriter extends SchemeDecorator {
       BigInteger targetX;
 
       // If not equal, update to the same column key.
-      if (!leftExpr.getSdbColKey().equals(rightExpr.getSdbColKey())) {
+      if (!leftExpr.getSdbColKey().equals(rightExpr.getSdbColKey()) &&
+              (canShareColumnKey(leftExpr.getSdbColKey()) || canShareColumnKey
+                      (rightExpr.getSdbColKey()))) {
+        // Only one side is updated. Keep the key that does not depend on the
+        // row if any, so that the sum needs no more key update.
+        boolean keepLeft = !canShareColumnKey(rightExpr.getSdbColKey()) ||
+                (canShareColumnKey(leftExpr.getSdbColKey()) && leftExpr
+                        .getSdbColKey().getX().signum() == 0);
+        Expr source = keepLeft ? rightExpr : leftExpr;
+        SdbColumnKey targetKey = keepLeft ? leftExpr.getSdbColKey() : rightExpr
+                .getSdbColKey();
+        targetM = targetKey.getM();
+        targetX = targetKey.getX();
+
+        BigInteger[] pq = SDBEncrypt.keyUpdateClient(source.getSdbColKey().getM(),
+                targetM, S.getSdbColKey().getM(), source.getSdbColKey().getX(),
+                targetX, S.getSdbColKey().getX(), prime1, prime2);
+        Expr keyUp = buildSdbKeyUpdateExpr(source, S, new BigIntLiteral(pq[0]), new
+                BigIntLiteral(pq[1]), new BigIntLiteral(n), targetM, targetX);
+
+        leftKeyUp = keepLeft ? leftExpr : keyUp;
+        rightKeyUp = keepLeft ? keyUp : rightExpr;
+        saveKeyUpdates(1);
+      } else if (!leftExpr.getSdbColKey().equals(rightExpr.getSdbColKey())) {
         targetM = SDBEncrypt.generatePositiveRand(prime1, prime2);
         targetX = SDBEncrypt.generatePositiveRand(prime1, prime2);
 
@@ -1522,8 +1823,17 @@ public class SdbSchemeRewriter extends SchemeDecorator {
       P = leftExpr;
     }
 
-    BigInteger targetM = SDBEncrypt.generatePositiveRand(prime1, prime2);
-    BigInteger targetX = SDBEncrypt.generatePositiveRand(prime1, prime2);
+    BigInteger targetM;
+    BigInteger targetX;
+    if (canShareColumnKey(E.getSdbColKey())) {
+      // Encrypt the plain column with the column key of E directly.
+      targetM = E.getSdbColKey().getM();
+      targetX = E.getSdbColKey().getX();
+      saveKeyUpdates(2);
+    } else {
+      targetM = SDBEncrypt.generatePositiveRand(prime1, prime2);
+      targetX = SDBEncrypt.generatePositiveRand(prime1, prime2);
+    }
 
     Expr pKeyUp = keyUpdatePlainCol(P, S, targetM, targetX);
 
@@ -1600,6 +1910,24 @@ public class SdbSchemeRewriter extends SchemeDecorator {
     // only one involves encrypted column
     assert (leftExpr.involveEncrytedCol() ^ rightExpr.involveEncrytedCol());
 
+    Expr E = leftExpr.involveEncrytedCol() ? leftExpr : rightExpr;
+    if (canShareColumnKey(E.getSdbColKey())) {
+      // Encrypt the plain column with the column key of E directly.
+      saveKeyUpdates(1);
+      if (leftExpr.involveEncrytedCol()) {
+        rightExpr = keyUpdateInversedPlainCol(rightExpr, S, leftExpr.getSdbColKey()
+                .getM(), leftExpr.getSdbColKey().getX());
+      } else {
+        // Inverse E by its column key.
+        BigInteger inverseM = rightExpr.getSdbColKey().getM().multiply(n.subtract
+                (BigInteger.ONE)).mod(n);
+        rightExpr.setSdbColKey(new SdbColumnKey(inverseM, rightExpr.getSdbColKey()
+                .getX()));
+        leftExpr = keyUpdatePlainCol(leftExpr, S, inverseM, rightExpr.getSdbColKey()
+                .getX());
+      }
+      return rewriteAddEE(leftExpr, rightExpr, S);
+    }
 
     BigInteger targetM = SDBEncrypt.generatePositiveRand(prime1, prime2);
     BigInteger targetX = SDBEncrypt.generatePositiveRand(prime1, prime2);
@@ -1927,6 +2255,13 @@ public class SdbSchemeRewriter extends SchemeDecorator {
     Expr leftExpr = normalBinPred.getLeftExpr();
     Expr rightExpr = normalBinPred.getRightExpr();
 
+    if (isDeterministic(leftExpr) || isDeterministic(rightExpr))
+      return rewriteDetPredicate(normalBinPred);
+
+    Expr orderPred = rewriteOrderPredicate(normalBinPred);
+    if (orderPred != null)
+      return orderPred;
+
     Expr subtractExpr;
     Expr multiplyExpr;
 
@@ -1983,9 +2318,11 @@ public class SdbSchemeRewriter extends SchemeDecorator {
                 BigIntLiteral(n), targetM, targetX);
       }
 
-      // EP mode
+      // EP mode. A parameter is a plain operand too, so the key updates do not
+      // depend on its value and it can be bound after rewriting.
       else if (leftExpr instanceof FieldLiteral || rightExpr instanceof
-              FieldLiteral) {
+              FieldLiteral || leftExpr instanceof ParameterLiteral || rightExpr
+              instanceof ParameterLiteral) {
         if (leftExpr instanceof NormalArithmeticExpr) {
           leftExpr = rewriteNorArithExpr((NormalArithmeticExpr) leftExpr, S);
         }
@@ -1994,6 +2331,13 @@ public class SdbSchemeRewriter extends SchemeDecorator {
           rightExpr = rewriteNorArithExpr((NormalArithmeticExpr) rightExpr, S);
         }
 
+        if (leftExpr instanceof ParameterLiteral)
+          ((ParameterLiteral) leftExpr).setPlainType((ScalarType) rightExpr
+                  .getType());
+        else if (rightExpr instanceof ParameterLiteral)
+          ((ParameterLiteral) rightExpr).setPlainType((ScalarType) leftExpr
+                  .getType());
+
         subtractExpr = rewriteSubtractEP(leftExpr, rightExpr, S);
         multiplyExpr = rewriteMultiplyEE(R, subtractExpr);
 
@@ -2018,17 +2362,188 @@ public class SdbSchemeRewriter extends SchemeDecorator {
     return compareExpr;
   }
 
-  private Expr rewriteLikePredicate(LikePredicate likePred) {
+  /**
+   * Rewrite an equality predicate on deterministic columns. The server compares
+   * the ciphertexts directly, so only the constant needs to be encrypted.
+   *
+   * @param normalBinPred
+   * @return
+   * @throws UnSupportedException
+   */
+  private Expr rewriteDetPredicate(NormalBinPredicate normalBinPred) throws
+          UnSupportedException {
+    BinaryPredicate.BinOperator op = normalBinPred.getOp();
+    if (op != BinaryPredicate.BinOperator.EQ && op != BinaryPredicate.BinOperator
+            .NE) {
+      UnSupportedException e = new UnSupportedException("Can not support " +
+              "condition " + op + " on deterministic columns!");
+      LOG.error("There is unsupported predicate!", e);
+      throw e;
+    }
+
+    Expr leftExpr = normalBinPred.getLeftExpr();
+    Expr rightExpr = normalBinPred.getRightExpr();
+
+    if (isDeterministic(leftExpr) && isDeterministic(rightExpr))
+      return normalBinPred;
+
+    if (isDeterministic(leftExpr) && isConstant(rightExpr)) {
+      normalBinPred.setRightExpr(encryptDetConstant((FieldLiteral) leftExpr,
+              rightExpr));
+      return normalBinPred;
+    }
+
+    if (isDeterministic(rightExpr) && isConstant(leftExpr)) {
+      normalBinPred.setLeftExpr(encryptDetConstant((FieldLiteral) rightExpr,
+              leftExpr));
+      return normalBinPred;
+    }
+
+    UnSupportedException e = new UnSupportedException("Can not support " +
+            "predicate " + normalBinPred.toSql() + " on deterministic columns!");
+    LOG.error("There is unsupported predicate!", e);
+    throw e;
+  }
+
+  /**
+   * Rewrite a range predicate between a column and a constant to a native
+   * comparison on the order-preserving column.
+   *
+   * @param normalBinPred
+   * @return null if the column has no order-preserving column
+   */
+  private Expr rewriteOrderPredicate(NormalBinPredicate normalBinPred) {
+    BinaryPredicate.BinOperator op = normalBinPred.getOp();
+    Expr leftExpr = normalBinPred.getLeftExpr();
+    Expr rightExpr = normalBinPred.getRightExpr();
+
+    if (op == BinaryPredicate.BinOperator.EQ || op == BinaryPredicate.BinOperator.NE)
+      return null;
+
+    // Make the column at the left side.
+    if (leftExpr instanceof IntLiteral || leftExpr instanceof FloatLiteral) {
+      Expr tmp = leftExpr;
+      leftExpr = rightExpr;
+      rightExpr = tmp;
+      op = reverse(op);
+    }
+
+    if (!(leftExpr instanceof FieldLiteral) || ((FieldLiteral) leftExpr)
+            .getOrderColumn() == null)
+      return null;
+    if (!(rightExpr instanceof IntLiteral || rightExpr instanceof FloatLiteral))
+      return null;
+
+    FieldLiteral column = (FieldLiteral) leftExpr;
+    ScalarType type = (ScalarType) column.getType();
+
+    BigDecimal value;
+    if (rightExpr instanceof IntLiteral)
+      value = BigDecimal.valueOf(((IntLiteral) rightExpr).getValue());
+    else
+      value = new BigDecimal(String.valueOf(((FloatLiteral) rightExpr).getValue()));
+    value = value.movePointRight(OpeEncryptor.getScale(type));
+
+    // If the constant cannot be a value of the column, e.g. col > 3.5 for an
+    // integer column, compare with the nearest value in range, i.e. col >= 4.
+    BigDecimal floor = value.setScale(0, RoundingMode.FLOOR);
+    BigInteger bound = floor.toBigInteger();
+    if (floor.compareTo(value) != 0) {
+      if (op == BinaryPredicate.BinOperator.GT || op == BinaryPredicate.BinOperator
+              .GE) {
+        op = BinaryPredicate.BinOperator.GE;
+        bound = bound.add(BigInteger.ONE);
+      } else {
+        op = BinaryPredicate.BinOperator.LE;
+      }
+    }
+
+    OpeEncryptor encryptor = new OpeEncryptor(prime1, prime2, column.getOrderTbl(),
+            column.getName());
+    return new NormalBinPredicate(op, column.getOrderColumn(), new StringLiteral
+            (encryptor.encrypt(bound)));
+  }
+
+  private BinaryPredicate.BinOperator reverse(BinaryPredicate.BinOperator op) {
+    switch (op) {
+      case LT:
+        return BinaryPredicate.BinOperator.GT;
+      case LE:
+        return BinaryPredicate.BinOperator.GE;
+      case GT:
+        return BinaryPredicate.BinOperator.LT;
+      case GE:
+        return BinaryPredicate.BinOperator.LE;
+      default:
+        return op;
+    }
+  }
+
+  private boolean isDeterministic(Expr expr) {
+    return expr instanceof FieldLiteral && ((FieldLiteral) expr).isDeterministic();
+  }
+
+  private boolean isConstant(Expr expr) {
+    return expr instanceof IntLiteral || expr instanceof FloatLiteral || expr
+            instanceof StringLiteral;
+  }
+
+  private Expr encryptDetConstant(FieldLiteral column, Expr constant) throws
+          UnSupportedException {
+    // A parameter is encrypted when it is bound.
+    if (constant instanceof ParameterLiteral) {
+      ((ParameterLiteral) constant).setDetType((ScalarType) column.getType());
+      return constant;
+    }
+
+    String value;
+    if (constant instanceof IntLiteral)
+      value = String.valueOf(((IntLiteral) constant).getValue());
+    else if (constant instanceof FloatLiteral)
+      value = String.valueOf(((FloatLiteral) constant).getValue());
+    else
+      value = ((StringLiteral) constant).getValue();
+
+    ScalarType type = (ScalarType) column.getType();
+    if (!DetEncryptor.isExact(value, type)) {
+      UnSupportedException e = new UnSupportedException("Can not compare " +
+              "deterministic column " + column.getName() + " of type " + type +
+              " with " + constant.toSql() + "!");
+      LOG.error("There is unsupported predicate!", e);
+      throw e;
+    }
+    return new StringLiteral(detEncryptor.encrypt(value, type));
+  }
+
+  /**
+   * Rewrite a like predicate on a searchable column. A conjunct of the where
+   * clause is answered by the keyword index table of the column if there is
+   * one. The server supports the semi join only there, so any other like
+   * predicate, e.g. an operand of OR, scans the column with sdb_search.
+   *
+   * @param likePred
+   * @param conjunct whether the predicate is a conjunct of the where clause
+   * @return
+   * @throws UnSupportedException
+   */
+  private Expr rewriteLikePredicate(LikePredicate likePred, boolean conjunct)
+          throws UnSupportedException {
     if(!likePred.involveEncrytedCol())
       return likePred;
 
-    SdbLikeExpr expr = new SdbLikeExpr();
-
     assert(likePred.getColumn() instanceof FieldLiteral);
     assert(likePred.getPattern() instanceof StringLiteral);
 
     FieldLiteral column = (FieldLiteral) likePred.getColumn();
     StringLiteral keyword = (StringLiteral) likePred.getPattern();
+    if (keyword instanceof ParameterLiteral)
+      ((ParameterLiteral) keyword).setKeyword(true);
+
+    if (conjunct && column.getKeywordIndexTbl() != null) {
+      return rewriteLikeByIndex(column, keyword);
+    }
+
+    SdbLikeExpr expr = new SdbLikeExpr();
 
     expr.addChild(column);
     expr.addChild(keyword);
@@ -2042,40 +2557,59 @@ public class SdbSchemeRewriter extends SchemeDecorator {
     return expr;
   }
 
+  /**
+   * Rewrite a like predicate into a semi join with the keyword index table.
+   *
+   * @param column
+   * @param keyword
+   * @return
+   * @throws UnSupportedException
+   */
+  private Expr rewriteLikeByIndex(FieldLiteral column, StringLiteral keyword)
+          throws UnSupportedException {
+    LOG.debug("Rewriting like predicate with keyword index " + column
+            .getKeywordIndexTbl());
+
+    FieldLiteral rowID = new FieldLiteral(column.getTblName(), ColumnDefinition
+            .ROW_ID_COLUMN_NAME, Type.INT);
+
+    // The trapdoor of a parameter is computed when it is bound.
+    if (keyword instanceof ParameterLiteral) {
+      keyword.setSearchColKey(column.getSearchColKey());
+      return new SdbKeywordIndexExpr(rowID, column.getKeywordIndexTbl(), keyword);
+    }
+
+    SearchColumnEncryptor encryptor;
+    try {
+      encryptor = new SearchColumnEncryptor(column.getSearchColKey());
+    } catch (SEException e) {
+      UnSupportedException ue = new UnSupportedException("Invalid search column " +
+              "key for column " + column.getName());
+      LOG.error("There is invalid column key!", e);
+      throw ue;
+    }
+
+    StringLiteral trapdoor = new StringLiteral(encryptor.trapdoor(keyword
+            .getValue()));
+
+    return new SdbKeywordIndexExpr(rowID, column.getKeywordIndexTbl(), trapdoor);
+  }
+
   private SdbColumnKey getTableColumnKey(String tblName, String colName) {
     LOG.debug("Getting column key for column " + tblName + "." + colName);
 
-    SdbColumnKey colKey = null;
     String key = tblName + colName;
+    SdbColumnKey colKey = colKeyMap.get(key);
 
-    if (colKeyMap.containsKey(key)) {
-      colKey = colKeyMap.get(key);
-    } else {
-      for (TableMeta tableMeta : dbMeta.getTbls()) {
-        if (tableMeta.getTblName().equals(tblName)) {
-          for (ColumnMeta columnMeta : tableMeta.getCols()) {
-            if (columnMeta.getColName().equals(colName)) {
-              BigInteger m = new BigInteger(columnMeta.getM());
-              BigInteger x = new BigInteger(columnMeta.getX());
-              colKey = new SdbColumnKey(m, x);
-              colKeyMap.put(tblName + colName, colKey);
-              return colKey;
-            }
-          }
-        }
-        // Resolve an alias to its real table name.
-        else if (tableMeta.getTblName().equals(aliasTblMap.get(tblName))) {
-          for (ColumnMeta columnMeta : tableMeta.getCols()) {
-            if (columnMeta.getColName().equals(colName)) {
-              BigInteger m = new BigInteger(columnMeta.getM());
-              BigInteger x = new BigInteger(columnMeta.getX());
-              colKey = new SdbColumnKey(m, x);
-              colKeyMap.put(tblName + colName, colKey);
-              return colKey;
-            }
-          }
-        }
-      }
+    if (colKey == null) {
+      CatalogSnapshot catalog = dbMeta.getSnapshot();
+      colKey = catalog.getColumnKey(tblName, colName);
+      // Resolve an alias to its real table name.
+      if (colKey == null && aliasTblMap.containsKey(tblName))
+        colKey = catalog.getColumnKey(aliasTblMap.get(tblName), colName);
+
+      if (colKey != null)
+        colKeyMap.put(key, colKey);
     }
 
     if (colKey == null) {
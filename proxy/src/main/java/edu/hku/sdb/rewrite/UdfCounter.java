@@ -0,0 +1,115 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.rewrite;
+
+import edu.hku.sdb.parse.*;
+
+import java.util.List;
+
+/**
+ * Count the SDB UDF calls of a rewritten statement, which the server evaluates
+ * for each row. Key updates are counted separately, since each of them is a
+ * modular exponentiation of the size of the modulus.
+ */
+public class UdfCounter {
+
+  private int udfCalls = 0;
+  private int keyUpdates = 0;
+
+  public UdfCounter(ParseNode parseNode) {
+    count(parseNode);
+  }
+
+  public UdfCounter(Expr expr) {
+    count(expr);
+  }
+
+  public int getUdfCalls() {
+    return udfCalls;
+  }
+
+  public int getKeyUpdates() {
+    return keyUpdates;
+  }
+
+  private void count(ParseNode parseNode) {
+    if (parseNode instanceof SelectStmt) {
+      SelectStmt selStmt = (SelectStmt) parseNode;
+      SelectionList selList = selStmt.getSelectList();
+      for (SelectionItem selItem : selList.getItemList()) {
+        count(selItem.getExpr());
+      }
+      count(selList.getRowID());
+      count(selList.getAuxiliaryR());
+      count(selList.getAuxiliaryS());
+      for (SelectionItem selItem : selList.getOrderItems()) {
+        count(selItem.getExpr());
+      }
+
+      for (TableRef tblRef : selStmt.getTableRefs()) {
+        if (tblRef instanceof InLineViewRef)
+          count(((InLineViewRef) tblRef).getQueryStmt());
+        count(tblRef.getOnClause());
+      }
+
+      count(selStmt.getWhereClause());
+      count(selStmt.getGroupingExprs());
+      count(selStmt.getHavingExpr());
+    } else if (parseNode instanceof Expr) {
+      count((Expr) parseNode);
+    }
+  }
+
+  private void count(SelectionItem selItem) {
+    if (selItem != null)
+      count(selItem.getExpr());
+  }
+
+  private void count(List<Expr> exprs) {
+    if (exprs == null)
+      return;
+    for (Expr expr : exprs) {
+      count(expr);
+    }
+  }
+
+  private void count(Expr expr) {
+    if (expr == null)
+      return;
+
+    if (expr instanceof SdbKeyUpdateExpr) {
+      keyUpdates++;
+      udfCalls++;
+    } else if (expr instanceof SdbArithmeticExpr || expr instanceof
+            SdbComparisonExpr) {
+      udfCalls++;
+    } else if (expr instanceof FunctionCallExpr) {
+      FunctionCallExpr funCallExpr = (FunctionCallExpr) expr;
+      if (funCallExpr.getFunctionName().getName().startsWith("sdb_"))
+        udfCalls++;
+      FunctionParams params = funCallExpr.getFunctionParams();
+      if (params != null)
+        count(params.getExprs());
+      return;
+    }
+
+    for (Expr child : expr.getChildren()) {
+      count(child);
+    }
+  }
+}
@@ -0,0 +1,489 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.transport;
+
+import edu.hku.sdb.connect.Connection;
+import edu.hku.sdb.connect.ConnectionService;
+import edu.hku.sdb.connect.PreparedStatement;
+import edu.hku.sdb.connect.ResultSetMetaData;
+import edu.hku.sdb.connect.SdbResultSet;
+import edu.hku.sdb.connect.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.NoSuchObjectException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The proxy side of the framed protocol. A single selector thread accepts the
+ * clients and reads the frames, and the requests are executed by the worker
+ * threads, so a long query does not hold up the other clients. Cancel is
+ * executed by its own threads, so it neither waits for a worker nor blocks
+ * the selector while the statement stops the remote query.
+ *
+ * The connections, statements and cursors opened by a client are kept by id
+ * with its channel, and are released when the channel is closed.
+ */
+public class NioServer implements Runnable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(NioServer.class);
+
+  private final ConnectionService connectionService;
+  private final int port;
+
+  private final AtomicLong nextId = new AtomicLong();
+  private final Queue<SelectionKey> pendingWrites = new
+          ConcurrentLinkedQueue<>();
+
+  private Selector selector;
+  private ServerSocketChannel serverChannel;
+  private ExecutorService workers;
+  private ExecutorService cancellers;
+  private Thread selectorThread;
+
+  public NioServer(ConnectionService connectionService, int port) {
+    this.connectionService = connectionService;
+    this.port = port;
+  }
+
+  /**
+   * The state of a client channel.
+   */
+  private static class ChannelState {
+    private final ByteBuffer header = ByteBuffer.allocate(4);
+    private ByteBuffer body;
+    private final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+    private final Map<Long, Object> objects = new ConcurrentHashMap<>();
+  }
+
+  public void start() throws IOException {
+    selector = Selector.open();
+    serverChannel = ServerSocketChannel.open();
+    serverChannel.configureBlocking(false);
+    serverChannel.socket().bind(new InetSocketAddress(port));
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+    workers = Executors.newCachedThreadPool(daemonThreads("sdb-nio-worker-"));
+    cancellers = Executors.newCachedThreadPool(daemonThreads
+            ("sdb-nio-cancel-"));
+
+    selectorThread = new Thread(this, "sdb-nio-selector");
+    selectorThread.start();
+    LOG.info("Listening to the framed protocol on port " + port);
+  }
+
+  private static ThreadFactory daemonThreads(final String prefix) {
+    return new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, prefix + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+
+  /**
+   * @return the port listened to, which is chosen by the system if 0 is given
+   */
+  public int getPort() {
+    return serverChannel.socket().getLocalPort();
+  }
+
+  public void stop() {
+    try {
+      selector.close();
+      serverChannel.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    workers.shutdownNow();
+    cancellers.shutdownNow();
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (selector.isOpen()) {
+        selector.select();
+
+        SelectionKey pending;
+        while ((pending = pendingWrites.poll()) != null) {
+          if (pending.isValid())
+            pending.interestOps(pending.interestOps() | SelectionKey.OP_WRITE);
+        }
+
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+
+          if (key.isAcceptable()) {
+            accept();
+            continue;
+          }
+
+          try {
+            if (key.isReadable())
+              read(key);
+            if (key.isValid() && key.isWritable())
+              write(key);
+          } catch (IOException | CancelledKeyException e) {
+            LOG.debug("Closing client channel: " + e.getMessage());
+            close(key);
+          }
+        }
+      }
+    } catch (IOException | ClosedSelectorException e) {
+      if (selector.isOpen())
+        e.printStackTrace();
+    }
+  }
+
+  private void accept() {
+    try {
+      SocketChannel channel = serverChannel.accept();
+      if (channel == null)
+        return;
+
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      channel.register(selector, SelectionKey.OP_READ, new ChannelState());
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  private void read(SelectionKey key) throws IOException {
+    SocketChannel channel = (SocketChannel) key.channel();
+    ChannelState state = (ChannelState) key.attachment();
+
+    while (true) {
+      if (state.body == null) {
+        if (channel.read(state.header) < 0)
+          throw new IOException("Connection is closed by the client");
+        if (state.header.hasRemaining())
+          return;
+
+        state.header.flip();
+        int length = state.header.getInt();
+        state.header.clear();
+        Protocol.checkLength(length);
+        state.body = ByteBuffer.allocate(length);
+      }
+
+      if (channel.read(state.body) < 0)
+        throw new IOException("Connection is closed by the client");
+      if (state.body.hasRemaining())
+        return;
+
+      ByteBuffer frame = state.body;
+      state.body = null;
+      dispatch(key, state, frame.array());
+    }
+  }
+
+  private void dispatch(final SelectionKey key, final ChannelState state,
+                        byte[] frame) {
+    final byte op = frame[0];
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream
+            (frame, 1, frame.length - 1));
+
+    if (op == Protocol.CANCEL) {
+      // The statement stops the remote query over the network.
+      cancellers.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            Object statement = state.objects.get(in.readLong());
+            if (statement instanceof Statement)
+              ((Statement) statement).cancel();
+          } catch (IOException e) {
+            e.printStackTrace();
+          }
+        }
+      });
+      return;
+    }
+
+    workers.execute(new Runnable() {
+      @Override
+      public void run() {
+        Protocol.Payload result = new Protocol.Payload();
+        byte status = Protocol.OK;
+        try {
+          handle(state, op, in, result);
+        } catch (Exception e) {
+          LOG.error("Request " + op + " failed: " + e.getMessage());
+          status = Protocol.ERROR;
+          result = new Protocol.Payload();
+          try {
+            String message = e.getMessage();
+            Protocol.writeString(result, message == null ? e.toString() :
+                    message);
+          } catch (IOException ignored) {
+            // Never thrown by an in-memory stream.
+          }
+        }
+
+        state.responses.add(Protocol.frame(status, result.toByteArray()));
+        pendingWrites.add(key);
+        selector.wakeup();
+      }
+    });
+  }
+
+  private void handle(ChannelState state, byte op, DataInputStream in,
+                      Protocol.Payload out) throws IOException {
+    switch (op) {
+      case Protocol.OPEN_SESSION: {
+        Connection connection = connectionService.getConnection();
+        out.writeLong(connection == null ? -1 : register(state, connection));
+        break;
+      }
+      case Protocol.CREATE_STATEMENT: {
+        Connection connection = get(state, in.readLong(), Connection.class);
+        out.writeLong(register(state, connection.createStatement()));
+        break;
+      }
+      case Protocol.PREPARE: {
+        Connection connection = get(state, in.readLong(), Connection.class);
+        String query = Protocol.readString(in);
+        out.writeLong(register(state, connection.prepareStatement(query)));
+        break;
+      }
+      case Protocol.EXECUTE: {
+        Statement statement = get(state, in.readLong(), Statement.class);
+        int pageSize = Protocol.getPageSize(in.readInt());
+        String query = Protocol.readString(in);
+        writeResult(state, (SdbResultSet) statement.executeQuery(query),
+                pageSize, out);
+        break;
+      }
+      case Protocol.EXECUTE_PREPARED: {
+        PreparedStatement statement = get(state, in.readLong(),
+                PreparedStatement.class);
+        int pageSize = Protocol.getPageSize(in.readInt());
+        bind(statement, in);
+        writeResult(state, (SdbResultSet) statement.executeQuery(), pageSize,
+                out);
+        break;
+      }
+      case Protocol.FETCH: {
+        long cursorId = in.readLong();
+        SdbResultSet resultSet = get(state, cursorId, SdbResultSet.class);
+        int pageSize = Protocol.getPageSize(in.readInt());
+        writePage(state, cursorId, resultSet, pageSize, out);
+        break;
+      }
+      case Protocol.CLOSE: {
+        long id = in.readLong();
+        Object object = state.objects.get(id);
+        // Closing a session releases all objects of the channel.
+        if (object instanceof Connection) {
+          releaseAll(state);
+        } else {
+          state.objects.remove(id);
+          release(object);
+        }
+        break;
+      }
+      case Protocol.LOAD:
+        out.writeInt(connectionService.getLoad());
+        break;
+      default:
+        throw new IOException("Unknown request " + op);
+    }
+  }
+
+  private void bind(PreparedStatement statement, DataInputStream in) throws
+          IOException {
+    statement.clearParameters();
+    int count = in.readInt();
+    for (int i = 1; i <= count; i++) {
+      Object value = Protocol.readValue(in);
+      if (value == null)
+        continue;
+
+      if (value instanceof Integer)
+        statement.setInt(i, (Integer) value);
+      else if (value instanceof Long)
+        statement.setLong(i, (Long) value);
+      else if (value instanceof Double)
+        statement.setDouble(i, (Double) value);
+      else
+        statement.setString(i, value.toString());
+    }
+  }
+
+  private void writeResult(ChannelState state, SdbResultSet resultSet, int
+          pageSize, Protocol.Payload out) throws IOException {
+    long cursorId = register(state, resultSet);
+
+    String[] columnNames = null;
+    ResultSetMetaData metaData = resultSet.getResultSetMetaData();
+    if (metaData != null) {
+      columnNames = new String[metaData.getColumnCount()];
+      for (int i = 0; i < columnNames.length; i++) {
+        columnNames[i] = metaData.getColumnName(i);
+      }
+    }
+
+    long[] times = {resultSet.getTotalTime(), resultSet.getClientTotalTime(),
+            resultSet.getClientParseTime(), resultSet.getClientAnalyseTime(),
+            resultSet.getClientRewriteTime(), resultSet.getClientExecutionTime(),
+            resultSet.getServerTotalTime()};
+
+    NioResultSet.writeHeader(out, cursorId, resultSet.getRemoteSQLQuery(),
+            columnNames, times);
+    writePage(state, cursorId, resultSet, pageSize, out);
+  }
+
+  private void writePage(ChannelState state, long cursorId, SdbResultSet
+          resultSet, int pageSize, Protocol.Payload out) throws IOException {
+    List<Object[]> rows = new ArrayList<>();
+    boolean last = resultSet.isClosed();
+    while (!last && rows.size() < pageSize) {
+      if (resultSet.next())
+        rows.add(resultSet.getRow());
+      else
+        last = true;
+    }
+
+    if (last) {
+      state.objects.remove(cursorId);
+      release(resultSet);
+    }
+    Page.write(out, rows, last);
+  }
+
+  private void write(SelectionKey key) throws IOException {
+    SocketChannel channel = (SocketChannel) key.channel();
+    ChannelState state = (ChannelState) key.attachment();
+
+    ByteBuffer response;
+    while ((response = state.responses.peek()) != null) {
+      channel.write(response);
+      if (response.hasRemaining())
+        return;
+      state.responses.poll();
+    }
+    key.interestOps(SelectionKey.OP_READ);
+
+    // A response may have been queued after the loop.
+    if (!state.responses.isEmpty())
+      key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+  }
+
+  private long register(ChannelState state, Object object) {
+    // The objects are reached by id, not by RMI.
+    if (object instanceof Remote && !(object instanceof Connection))
+      unexport((Remote) object);
+
+    long id = nextId.incrementAndGet();
+    state.objects.put(id, object);
+    return id;
+  }
+
+  private <T> T get(ChannelState state, long id, Class<T> type) throws
+          IOException {
+    Object object = state.objects.get(id);
+    if (!type.isInstance(object))
+      throw new IOException("No " + type.getSimpleName() + " with id " + id);
+    return type.cast(object);
+  }
+
+  private void close(final SelectionKey key) {
+    key.cancel();
+    try {
+      key.channel().close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+
+    final ChannelState state = (ChannelState) key.attachment();
+    if (state == null)
+      return;
+
+    // Closing a connection may block on the server, so it is not done by the
+    // selector thread.
+    workers.execute(new Runnable() {
+      @Override
+      public void run() {
+        releaseAll(state);
+      }
+    });
+  }
+
+  private void releaseAll(ChannelState state) {
+    for (Long id : new ArrayList<>(state.objects.keySet())) {
+      release(state.objects.remove(id));
+    }
+  }
+
+  private void release(Object object) {
+    try {
+      if (object instanceof Statement) {
+        // The client may have gone while a query is running.
+        ((Statement) object).cancel();
+        ((Statement) object).close();
+      } else if (object instanceof SdbResultSet)
+        ((SdbResultSet) object).close();
+      else if (object instanceof Connection)
+        ((Connection) object).close();
+    } catch (RemoteException e) {
+      e.printStackTrace();
+    }
+  }
+
+  private static void unexport(Remote object) {
+    try {
+      UnicastRemoteObject.unexportObject(object, true);
+    } catch (NoSuchObjectException e) {
+      // Not exported.
+    }
+  }
+}
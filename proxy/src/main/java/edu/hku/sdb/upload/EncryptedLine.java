@@ -0,0 +1,45 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.upload;
+
+import java.util.List;
+
+/**
+ * An encrypted line of the base table, together with the lines it adds to
+ * each keyword index table.
+ */
+public class EncryptedLine {
+
+  private final String line;
+
+  // Indexed by the position in UploadHandler#getKeywordIndexTbls()
+  private final List<List<String>> indexLines;
+
+  public EncryptedLine(String line, List<List<String>> indexLines) {
+    this.line = line;
+    this.indexLines = indexLines;
+  }
+
+  public String getLine() {
+    return line;
+  }
+
+  public List<String> getIndexLines(int index) {
+    return indexLines.get(index);
+  }
+}
@@ -14,6 +14,8 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -56,28 +58,61 @@ public class HDFSUploader extends Uploader {
     ProfileUtil profileUtil = new ProfileUtil();
     LOG.info("Upload time: " + profileUtil.getDuration());
 
-    BufferedWriter bufferedWriter = getHDFSBufferedWriter();
+    BufferedWriter bufferedWriter = getHDFSBufferedWriter(HDFS_FILE_PATH);
     BufferedReader bufferedReader;
 
     UploadHandler uploadHandler = new UploadHandler(metaStore,tblName,serverConf);
 
+    // One more file for each keyword index table
+    List<String> indexTbls = uploadHandler.getKeywordIndexTbls();
+    List<BufferedWriter> indexWriters = new ArrayList<>(indexTbls.size());
+    for (String indexTbl : indexTbls) {
+      String indexFilePath = hdfsURL + userDIR + "/" + indexTbl + new Random()
+              .nextInt(60000) + ".txt";
+      indexServerFilePaths.put(indexTbl, indexFilePath);
+      indexWriters.add(getHDFSBufferedWriter(indexFilePath));
+    }
+
     try {
       bufferedReader = new BufferedReader(new FileReader(sourceFilePath), 32768);
       String line;
-      //Read and process plaintext line by line
+      List<String> batch = new ArrayList<>(BATCH_SIZE);
+      //Read plaintext line by line, and process them batch by batch
       while ((line = bufferedReader.readLine()) != null) {
-        String newLine = uploadHandler.processLine(line);
-        bufferedWriter.write(newLine + "\n");
+        batch.add(line);
+        if (batch.size() == BATCH_SIZE) {
+          writeLines(bufferedWriter, indexWriters, uploadHandler.processLines
+                  (batch));
+          batch.clear();
+        }
       }
+      writeLines(bufferedWriter, indexWriters, uploadHandler.processLines(batch));
 
       //close resources
       bufferedReader.close();
       bufferedWriter.close();
+      for (BufferedWriter indexWriter : indexWriters) {
+        indexWriter.close();
+      }
       hdfs.close();
     } catch (IOException e) {
       e.printStackTrace();
     }
 
+    uploadHandler.updateStatistics();
+
+  }
+
+  private void writeLines(BufferedWriter bufferedWriter, List<BufferedWriter>
+          indexWriters, List<EncryptedLine> lines) throws IOException {
+    for (EncryptedLine newLine : lines) {
+      bufferedWriter.write(newLine.getLine() + "\n");
+      for (int i = 0; i < indexWriters.size(); i++) {
+        for (String indexLine : newLine.getIndexLines(i)) {
+          indexWriters.get(i).write(indexLine + "\n");
+        }
+      }
+    }
   }
 
   @Override
@@ -86,9 +121,10 @@ public class HDFSUploader extends Uploader {
   }
 
   /**
+   * @param filePath
    * @return a buffered writer for target file in HDFS
    */
-  private BufferedWriter getHDFSBufferedWriter() {
+  private BufferedWriter getHDFSBufferedWriter(String filePath) {
     BufferedWriter bufferedWriter = null;
     Configuration configuration = new Configuration();
 
@@ -101,7 +137,7 @@ public class HDFSUploader extends Uploader {
     }
     try {
       hdfs = FileSystem.get(new URI(HDFS_URL), configuration);
-      Path file = new Path(HDFS_FILE_PATH);
+      Path file = new Path(filePath);
       //Delete the file if it already exists
       if (hdfs.exists(file)) {
         hdfs.delete(file, true);
@@ -21,7 +21,9 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Created by andy on 10/7/15.
@@ -85,36 +87,18 @@ public class ODPSUploader extends Uploader {
       String line;
       int numCol = schema.getColumns().size();
       Record record = uploadSession.newRecord();
-      //Read and process plaintext line by line
+      List<String> batch = new ArrayList<>(BATCH_SIZE);
+      //Read plaintext line by line, and process them batch by batch
       while ((line = bufferedReader.readLine()) != null) {
-        String newLine = uploadHandler.processLine(line);
-        String[] columns = newLine.split(ParserConstant.DEFAULT_FIELD_DELIMETER);
-
-        for (int i = 0; i < numCol; i++) {
-          Column column = schema.getColumn(i);
-          switch (column.getType()) {
-            case BIGINT:
-              record.setBigint(i, Long.valueOf(columns[i]));
-              break;
-            case BOOLEAN:
-              record.setBoolean(i, Boolean.valueOf(columns[i]));
-              break;
-            case DATETIME:
-              record.setDatetime(i, new Date(columns[i]));
-              break;
-            case DOUBLE:
-              record.setDouble(i, Double.valueOf(columns[i]));
-              break;
-            case STRING:
-              record.setString(i, columns[i]);
-              break;
-            default:
-              throw new RuntimeException("Unknown column type: "
-                      + column.getType());
-          }
+        batch.add(line);
+        if (batch.size() == BATCH_SIZE) {
+          writeRecords(recordWriter, record, schema, numCol, uploadHandler
+                  .processLines(batch));
+          batch.clear();
         }
-        recordWriter.write(record);
       }
+      writeRecords(recordWriter, record, schema, numCol, uploadHandler
+              .processLines(batch));
 
       //close resources
       bufferedReader.close();
@@ -122,6 +106,8 @@ public class ODPSUploader extends Uploader {
 
       uploadSession.commit(new Long[]{0L});
       LOG.info("upload success!");
+
+      uploadHandler.updateStatistics();
     } catch (TunnelException e) {
       e.printStackTrace();
     } catch (IOException e) {
@@ -130,6 +116,40 @@ public class ODPSUploader extends Uploader {
 
   }
 
+  private void writeRecords(RecordWriter recordWriter, Record record,
+                            TableSchema schema, int numCol, List<EncryptedLine>
+                                    lines) throws IOException {
+    // ODPS cannot store searchable columns, so there is no keyword index.
+    for (EncryptedLine newLine : lines) {
+      String[] columns = newLine.getLine().split(ParserConstant
+              .DEFAULT_FIELD_DELIMETER);
+
+      for (int i = 0; i < numCol; i++) {
+        Column column = schema.getColumn(i);
+        switch (column.getType()) {
+          case BIGINT:
+            record.setBigint(i, Long.valueOf(columns[i]));
+            break;
+          case BOOLEAN:
+            record.setBoolean(i, Boolean.valueOf(columns[i]));
+            break;
+          case DATETIME:
+            record.setDatetime(i, new Date(columns[i]));
+            break;
+          case DOUBLE:
+            record.setDouble(i, Double.valueOf(columns[i]));
+            break;
+          case STRING:
+            record.setString(i, columns[i]);
+            break;
+          default:
+            throw new RuntimeException("Unknown column type: "
+                    + column.getType());
+        }
+      }
+      recordWriter.write(record);
+    }
+  }
 
   @Override
   public String getServerFilePath() {
@@ -0,0 +1,209 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.upload;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import edu.hku.sdb.catalog.ColumnMeta;
+import edu.hku.sdb.catalog.ScalarType;
+import edu.hku.sdb.catalog.TableMeta;
+import edu.hku.sdb.catalog.TableStatistics;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collect the statistics of the plaintext while it is encrypted, since the
+ * server can not compute them on the ciphertexts. The number of distinct
+ * values is estimated by a k minimum values sketch, so the memory is bounded
+ * for large uploads. It is thread safe.
+ */
+public class StatisticsCollector {
+
+  static final int SKETCH_SIZE = 1024;
+  static final String NULL_VALUE = "\\N";
+
+  private static final HashFunction HASH = Hashing.murmur3_128();
+
+  private final List<ColumnMeta> colMetas;
+  private final ColumnCollector[] collectors;
+  private final AtomicLong rowCount = new AtomicLong();
+  private final AtomicLong totalSize = new AtomicLong();
+
+  /**
+   * @param colMetas the columns in the order of the plaintext
+   */
+  public StatisticsCollector(List<ColumnMeta> colMetas) {
+    this.colMetas = colMetas;
+    collectors = new ColumnCollector[colMetas.size()];
+    for (int i = 0; i < collectors.length; i++) {
+      collectors[i] = new ColumnCollector(isNumeric(colMetas.get(i)));
+    }
+  }
+
+  public void addRow(String line) {
+    rowCount.incrementAndGet();
+    // One more byte for the line break.
+    totalSize.addAndGet(line.getBytes(StandardCharsets.UTF_8).length + 1);
+  }
+
+  public void addValue(int columnIndex, String value) {
+    collectors[columnIndex].add(value);
+  }
+
+  /**
+   * Merge the collected statistics with those saved for the data uploaded
+   * before. The distinct count of the whole table is at least the larger one
+   * of the two.
+   *
+   * @param saved the table meta, which may have no statistics yet
+   * @return
+   */
+  public TableStatistics getStatistics(TableMeta saved) {
+    TableStatistics stats = new TableStatistics();
+    long rows = rowCount.get();
+    long savedRows = saved == null ? -1 : saved.getRowCount();
+    long savedRowSize = saved == null ? -1 : saved.getAvgRowSize();
+
+    long totalRows = savedRows > 0 ? savedRows + rows : rows;
+    stats.setRowCount(totalRows);
+    if (savedRows > 0 && savedRowSize >= 0)
+      stats.setAvgRowSize(totalRows == 0 ? 0 : (savedRows * savedRowSize +
+              totalSize.get()) / totalRows);
+    else
+      stats.setAvgRowSize(rows == 0 ? 0 : totalSize.get() / rows);
+
+    for (int i = 0; i < collectors.length; i++) {
+      ColumnMeta colMeta = colMetas.get(i);
+      ColumnCollector collector = collectors[i];
+      TableStatistics.ColumnStatistics colStats = stats.getColStats(colMeta
+              .getColName());
+
+      synchronized (collector) {
+        long distinct = collector.estimateDistinct();
+        if (savedRows > 0)
+          distinct = Math.max(distinct, colMeta.getDistinctCount());
+        colStats.setDistinctCount(Math.min(distinct, totalRows));
+
+        colStats.setNullCount(savedRows > 0 && colMeta.getNullCount() >= 0 ?
+                colMeta.getNullCount() + collector.nullCount : collector
+                .nullCount);
+
+        BigDecimal min = collector.min;
+        BigDecimal max = collector.max;
+        if (savedRows > 0) {
+          min = min(min, toDecimal(colMeta.getMinValue()));
+          max = max(max, toDecimal(colMeta.getMaxValue()));
+        }
+        if (min != null)
+          colStats.setMinValue(min.toPlainString());
+        if (max != null)
+          colStats.setMaxValue(max.toPlainString());
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * @param colMeta
+   * @return whether the min and max values of a column are kept
+   */
+  public static boolean isNumeric(ColumnMeta colMeta) {
+    if (!(colMeta.getType() instanceof ScalarType))
+      return false;
+
+    switch (((ScalarType) colMeta.getType()).getType()) {
+      case INT:
+      case TINYINT:
+      case SMALLINT:
+      case BIGINT:
+      case DECIMAL:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static BigDecimal toDecimal(String value) {
+    return value == null ? null : new BigDecimal(value);
+  }
+
+  private static BigDecimal min(BigDecimal a, BigDecimal b) {
+    if (a == null || b == null)
+      return a == null ? b : a;
+    return a.min(b);
+  }
+
+  private static BigDecimal max(BigDecimal a, BigDecimal b) {
+    if (a == null || b == null)
+      return a == null ? b : a;
+    return a.max(b);
+  }
+
+  private static class ColumnCollector {
+    private final boolean numeric;
+    // The smallest hash values seen, as non-negative longs.
+    private final TreeSet<Long> sketch = new TreeSet<>();
+    private long nullCount = 0;
+    private BigDecimal min;
+    private BigDecimal max;
+
+    ColumnCollector(boolean numeric) {
+      this.numeric = numeric;
+    }
+
+    synchronized void add(String value) {
+      if (value == null || value.isEmpty() || value.equals(NULL_VALUE)) {
+        nullCount++;
+        return;
+      }
+
+      String key = value;
+      if (numeric) {
+        try {
+          BigDecimal number = new BigDecimal(value.trim());
+          min = min(min, number);
+          max = max(max, number);
+          // "007" and "7" are the same value.
+          key = number.stripTrailingZeros().toPlainString();
+        } catch (NumberFormatException e) {
+          // Not counted in the min and max.
+        }
+      }
+
+      long hash = HASH.hashString(key, StandardCharsets.UTF_8).asLong() >>> 1;
+      if (sketch.size() < SKETCH_SIZE) {
+        sketch.add(hash);
+      } else if (hash < sketch.last() && sketch.add(hash)) {
+        sketch.pollLast();
+      }
+    }
+
+    long estimateDistinct() {
+      if (sketch.size() < SKETCH_SIZE)
+        return sketch.size();
+
+      // The k-th smallest of n uniform hashes is about k / n of the range.
+      double fraction = sketch.last() / (double) Long.MAX_VALUE;
+      return (long) ((SKETCH_SIZE - 1) / fraction);
+    }
+  }
+}
@@ -23,8 +23,12 @@ import edu.hku.sdb.conf.JDBCServerConf;
 import edu.hku.sdb.conf.ODPSServerConf;
 import edu.hku.sdb.conf.ServerConf;
 import edu.hku.sdb.connect.JDBCResultSet;
+import edu.hku.sdb.crypto.DetEncryptor;
+import edu.hku.sdb.crypto.OpeEncryptor;
 import edu.hku.sdb.crypto.SDBEncrypt;
-import edu.hku.sdb.crypto.SearchEncrypt;
+import edu.hku.sdb.crypto.SEException;
+import edu.hku.sdb.crypto.SearchColumnEncryptor;
+import edu.hku.sdb.optimize.PlanCache;
 import edu.hku.sdb.parse.ColumnDefinition;
 import edu.hku.sdb.utility.ParserConstant;
 import org.apache.commons.codec.binary.Base64;
@@ -40,7 +44,11 @@ import java.math.BigInteger;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Major tasks:
@@ -60,18 +68,37 @@ public class UploadHandler {
   private BigInteger n;
   private BigInteger g;
   private BigInteger totient;
+  private DetEncryptor detEncryptor;
 
   // Original records are delimited
   private  String defaultRowFormat = "\\|";
   private String rowFormat = defaultRowFormat;
 
-  private SearchEncrypt searchEncrypt;
+  // Column keys and encryptors are parsed once, indexed by the position in
+  // trueValueColMetas and auxiliaryColMetas respectively.
+  private List<SdbColumnKey> trueValueColKeys = new ArrayList<>();
+  private List<SearchColumnEncryptor> searchEncryptors = new ArrayList<>();
+  private List<SdbColumnKey> auxiliaryColKeys = new ArrayList<>();
+
+  // The keyword index tables, and the positions of their columns in
+  // trueValueColMetas.
+  private List<String> keywordIndexTbls = new ArrayList<>();
+  private List<Integer> keywordIndexCols = new ArrayList<>();
+
+  // The encryptors of the order-preserving columns, and the positions of their
+  // source columns in trueValueColMetas.
+  private List<OpeEncryptor> orderEncryptors = new ArrayList<>();
+  private List<Integer> orderCols = new ArrayList<>();
+
+  private MetaStore metaStore;
+  private CatalogSnapshot catalog;
+  private String tableName;
+  private StatisticsCollector statsCollector;
 
   //List<ColumnMeta> allCols;
 
   public UploadHandler(MetaStore metaStore, String tableName, ServerConf
           serverConf) {
-    searchEncrypt = SearchEncrypt.getInstance();
 
     switch (serverConf.getType()) {
       case HIVE:
@@ -86,34 +113,161 @@ public class UploadHandler {
         break;
     }
 
-    DBMeta dbMeta = metaStore.getDB(dbName);
-    n = new BigInteger(dbMeta.getN());
-    prime1 = new BigInteger(dbMeta.getPrime1());
-    prime2 = new BigInteger(dbMeta.getPrime2());
-    g = new BigInteger(dbMeta.getG());
+    this.metaStore = metaStore;
+    this.tableName = tableName;
+
+    catalog = metaStore.getDB(dbName).getSnapshot();
+    n = catalog.getN();
+    prime1 = catalog.getPrime1();
+    prime2 = catalog.getPrime2();
+    g = catalog.getG();
     totient = SDBEncrypt.evaluateTotient(prime1, prime2);
+    detEncryptor = new DetEncryptor(prime1, prime2);
 
-    List<ColumnMeta> colMetas = metaStore.getTbl(dbName, tableName).getCols();
+    List<ColumnMeta> colMetas = catalog.getTbl(tableName).getCols();
+
+    // The order-preserving columns are generated from their source columns.
+    Set<String> orderColNames = new HashSet<>();
+    for (ColumnMeta colMeta : colMetas) {
+      if (colMeta.isOrderPreserving())
+        orderColNames.add(ColumnDefinition.getOrderColumnName(colMeta.getColName()));
+    }
 
     for (int columnIndex = 0; columnIndex < colMetas.size(); columnIndex++) {
       ColumnMeta colMeta = colMetas.get(columnIndex);
-      if (colMeta.getColName().equals(ColumnDefinition.ROW_ID_COLUMN_NAME) ||
+      if (orderColNames.contains(colMeta.getColName())) {
+        continue;
+      }
+      else if (colMeta.getColName().equals(ColumnDefinition.ROW_ID_COLUMN_NAME) ||
               colMeta.getColName().equals(ColumnDefinition.R_COLUMN_NAME) ||
               colMeta.getColName().equals(ColumnDefinition.S_COLUMN_NAME)) {
         auxiliaryColMetas.add(colMeta);
+        auxiliaryColKeys.add(getColumnKey(colMeta));
       }
-      else
+      else {
         trueValueColMetas.add(colMeta);
+        initColumnKey(colMeta);
+
+        if (colMeta.isKeywordIndexed() && searchEncryptors.get(trueValueColMetas
+                .size() - 1) != null) {
+          keywordIndexTbls.add(ColumnDefinition.getKeywordIndexTblName(tableName,
+                  colMeta.getColName()));
+          keywordIndexCols.add(trueValueColMetas.size() - 1);
+        }
+
+        if (colMeta.isOrderPreserving()) {
+          orderEncryptors.add(new OpeEncryptor(prime1, prime2, tableName, colMeta
+                  .getColName()));
+          orderCols.add(trueValueColMetas.size() - 1);
+        }
+      }
     }
+
+    statsCollector = new StatisticsCollector(trueValueColMetas);
+  }
+
+  /**
+   * @return the names of the keyword index tables to be loaded with this table
+   */
+  public List<String> getKeywordIndexTbls() {
+    return keywordIndexTbls;
+  }
+
+  /**
+   * Save the statistics of the uploaded plaintext in the catalog, merged with
+   * those of the data uploaded before.
+   */
+  public void updateStatistics() {
+    TableStatistics stats = statsCollector.getStatistics(metaStore.getTbl(dbName,
+            tableName));
+    metaStore.updateStats(dbName, tableName, stats);
+    PlanCache.getInstance().invalidate(dbName);
+    LOG.info("Table " + tableName + " has " + stats.getRowCount() + " rows after" +
+            " uploading");
+  }
+
+  /**
+   * @param colMeta
+   * @return the column key parsed by the catalog snapshot
+   */
+  private SdbColumnKey getColumnKey(ColumnMeta colMeta) {
+    SdbColumnKey colKey = catalog.getColumnKey(tableName, colMeta.getColName());
+    return colKey != null ? colKey : new SdbColumnKey(colMeta.getM(), colMeta
+            .getX());
+  }
+
+  private void initColumnKey(ColumnMeta colMeta) {
+    SdbColumnKey colKey = null;
+    SearchColumnEncryptor encryptor = null;
+
+    // Deterministic columns have no column key.
+    if (colMeta.isSensitive() && !colMeta.isDeterministic() && colMeta.getType()
+            instanceof ScalarType) {
+      switch (((ScalarType) colMeta.getType()).getType()) {
+        case INT:
+        case TINYINT:
+        case SMALLINT:
+        case BIGINT:
+        case DECIMAL:
+          colKey = getColumnKey(colMeta);
+          break;
+        case CHAR:
+        case VARCHAR:
+        case STRING:
+          try {
+            encryptor = new SearchColumnEncryptor(new SearchColumnKey(colMeta
+                    .getM(), colMeta.getX()));
+          } catch (SEException e) {
+            LOG.error("Can not initialize searchable encryption for column " +
+                    colMeta.getColName(), e);
+            throw new RuntimeException(e);
+          }
+          break;
+        default:
+          break;
+      }
+    }
+
+    trueValueColKeys.add(colKey);
+    searchEncryptors.add(encryptor);
+  }
+
+  /**
+   * Process a batch of lines in parallel. This is safe because the column
+   * encryptors keep thread confined ciphers. The output keeps the input order.
+   *
+   * @param lines
+   * @return
+   */
+  public List<EncryptedLine> processLines(List<String> lines) {
+    return lines.parallelStream().map(this::encryptLine).collect(Collectors
+            .toList());
   }
 
   public String processLine(String line) {
+    return encryptLine(line).getLine();
+  }
+
+  /**
+   * Encrypt a line, and generate its entries in the keyword index tables if
+   * any.
+   *
+   * @param line
+   * @return
+   */
+  public EncryptedLine encryptLine(String line) {
 
     StringBuffer newLine = new StringBuffer();
     String[] columnValues = line.split(rowFormat);
 
     //80 bit long rowId is sufficient
     BigInteger rowId = SDBEncrypt.generatePositiveRandShort(prime1, prime2);
+    String encryptedRowId = null;
+
+    // The keywords of every searchable column, only kept for indexed columns.
+    String[][] colKeywords = new String[trueValueColMetas.size()][];
+
+    statsCollector.addRow(line);
 
     // Each table has three extra column: row_id, r, s
     for (int columnIndex = 0; columnIndex < trueValueColMetas.size(); columnIndex++) {
@@ -122,6 +276,13 @@ public class UploadHandler {
       if (colMeta.getType() instanceof ScalarType) {
         String plaintext = columnValues[columnIndex];
         ScalarType type = (ScalarType) colMeta.getType();
+        statsCollector.addValue(columnIndex, plaintext);
+
+        if (colMeta.isDeterministic()) {
+          newLine = appendColumnString(newLine, columnIndex, detEncryptor.encrypt
+                  (plaintext, type));
+          continue;
+        }
 
         switch (type.getType()) {
           case INT:
@@ -129,7 +290,7 @@ public class UploadHandler {
           case SMALLINT:
           case BIGINT:
             if (colMeta.isSensitive()) {
-              SdbColumnKey colKey = new SdbColumnKey(colMeta.getM(), colMeta.getX());
+              SdbColumnKey colKey = trueValueColKeys.get(columnIndex);
               String encryptedValue = getSDBEncryptedValue(new BigInteger(plaintext),
                       rowId, colKey);
               newLine = appendColumnString(newLine, columnIndex, encryptedValue);
@@ -139,7 +300,7 @@ public class UploadHandler {
             break;
           case DECIMAL:
             if (colMeta.isSensitive()) {
-              SdbColumnKey colKey = new SdbColumnKey(colMeta.getM(), colMeta.getX());
+              SdbColumnKey colKey = trueValueColKeys.get(columnIndex);
               int scale = type.getScale();
               // TODO: overflow is not checked.
               float valueF = Float.valueOf(plaintext);
@@ -154,26 +315,18 @@ public class UploadHandler {
           case VARCHAR:
           case STRING:
             if (colMeta.isSensitive()) {
-              SearchColumnKey searchColKey = new SearchColumnKey(colMeta.getM(),
-                      colMeta.getX());
-              searchEncrypt.prkey = searchColKey.getPubKey();
-              // We only count letters and numbers as keyword.
-              String[] parts = plaintext.split("[^a-zA-Z0-9]+");
+              SearchColumnEncryptor encryptor = searchEncryptors.get(columnIndex);
+              String[] keywords = SearchColumnEncryptor.splitKeywords(plaintext);
+              byte[][] encrypted = encryptor.encryptKeywords(keywords);
+              if (colMeta.isKeywordIndexed())
+                colKeywords[columnIndex] = keywords;
               StringBuilder encryptedValues = new StringBuilder();
-              int count = 0;
-              for (int i = 0; i < parts.length; i++) {
-                if (parts[i].length() > 2) { // keyword with at least 3 chars
-                  if (count > 0) {
-                    encryptedValues.append(ParserConstant
-                            .DEFAULT_COLLETION_DELIMETER);
-                  }
-                  encryptedValues.append(Base64.encodeBase64String(searchEncrypt
-                          .encrypt(
-                                  searchColKey.getPriKey(), count, parts[i])).trim());
-                  count++;
-                } else {
-                  LOG.warn("There is sensitive string with length less than 3.");
+              for (int i = 0; i < encrypted.length; i++) {
+                if (i > 0) {
+                  encryptedValues.append(ParserConstant.DEFAULT_COLLETION_DELIMETER);
                 }
+                encryptedValues.append(Base64.encodeBase64String(encrypted[i])
+                        .trim());
               }
               newLine = appendColumnString(newLine, columnIndex, encryptedValues);
             } else {
@@ -192,24 +345,65 @@ public class UploadHandler {
 
     for (int columnIndex = 0; columnIndex < auxiliaryColMetas.size(); columnIndex++) {
       ColumnMeta colMeta = auxiliaryColMetas.get(columnIndex);
+      SdbColumnKey colKey = auxiliaryColKeys.get(columnIndex);
       if (colMeta.getColName().equals(ColumnDefinition.ROW_ID_COLUMN_NAME)) {
-        SdbColumnKey colKey = new SdbColumnKey(colMeta.getM(), colMeta.getX());
         BigInteger encryptedR = SDBEncrypt.SIESEncrypt(rowId, colKey.getM(),
                 colKey.getX(), n);
-        newLine = appendColumnString(newLine, columnValues.length, SDBEncrypt
-                .getSecureString(encryptedR));
+        encryptedRowId = SDBEncrypt.getSecureString(encryptedR);
+        newLine = appendColumnString(newLine, columnValues.length, encryptedRowId);
       } else if (colMeta.getColName().equals(ColumnDefinition.R_COLUMN_NAME)) {
         BigInteger randomInt = SDBEncrypt.generatePositiveRandShort(prime1, prime2);
-        SdbColumnKey colKey = new SdbColumnKey(colMeta.getM(), colMeta.getX());
         String encryptedR = getSDBEncryptedValue(randomInt, rowId, colKey);
         newLine = appendColumnString(newLine, columnIndex, encryptedR);
       } else if (colMeta.getColName().equals(ColumnDefinition.S_COLUMN_NAME)) {
-        SdbColumnKey colKey = new SdbColumnKey(colMeta.getM(), colMeta.getX());
         String encryptedS = getSDBEncryptedValue(new BigInteger("1"), rowId, colKey);
         newLine = appendColumnString(newLine, columnIndex, encryptedS);
       }
     }
-    return newLine.toString();
+
+    // The order-preserving columns are in the same order as their sources.
+    for (int i = 0; i < orderCols.size(); i++) {
+      int colIndex = orderCols.get(i);
+      String encryptedOrder = orderEncryptors.get(i).encrypt
+              (columnValues[colIndex], (ScalarType) trueValueColMetas.get(colIndex)
+                      .getType());
+      newLine = appendColumnString(newLine, columnValues.length, encryptedOrder);
+    }
+
+    List<List<String>> indexLines = new ArrayList<>(keywordIndexCols.size());
+    for (int colIndex : keywordIndexCols) {
+      indexLines.add(getIndexLines(searchEncryptors.get(colIndex),
+              colKeywords[colIndex], encryptedRowId));
+    }
+
+    return new EncryptedLine(newLine.toString(), indexLines);
+  }
+
+  /**
+   * Generate the keyword index entries (trapdoor, row_id) of a value. A
+   * keyword appears only once per row.
+   *
+   * @param encryptor
+   * @param keywords
+   * @param encryptedRowId
+   * @return
+   */
+  private List<String> getIndexLines(SearchColumnEncryptor encryptor, String[]
+          keywords, String encryptedRowId) {
+    List<String> indexLines = new ArrayList<>();
+    if (keywords == null)
+      return indexLines;
+
+    Set<String> distinctKeywords = new LinkedHashSet<>();
+    for (String keyword : keywords) {
+      distinctKeywords.add(keyword);
+    }
+
+    for (String keyword : distinctKeywords) {
+      indexLines.add(encryptor.trapdoor(keyword) + ParserConstant
+              .DEFAULT_FIELD_DELIMETER + encryptedRowId);
+    }
+    return indexLines;
   }
 
   /**
@@ -2,24 +2,29 @@ package edu.hku.sdb.upload;
 
 import edu.hku.sdb.catalog.MetaStore;
 import edu.hku.sdb.conf.ServerConf;
-import edu.hku.sdb.crypto.SearchEncrypt;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Created by andy on 10/7/15.
  */
 public abstract class Uploader {
 
+  // Number of lines encrypted in parallel at a time.
+  protected static final int BATCH_SIZE = 4096;
+
   protected MetaStore metaStore;
   protected String tblName;
   protected ServerConf serverConf;
-  protected SearchEncrypt searchEncrypt;
   protected String sourceFilePath;
+  // Keyword index table name -> file uploaded for it
+  protected Map<String, String> indexServerFilePaths = new LinkedHashMap<>();
 
   public Uploader(MetaStore metaStore, String tblName, ServerConf serverConf) {
     this.metaStore = metaStore;
     this.tblName = tblName;
     this.serverConf = serverConf;
-    searchEncrypt = SearchEncrypt.getInstance();
   }
 
   public abstract void upload();
@@ -29,4 +34,11 @@ public abstract class Uploader {
   }
 
   public abstract String getServerFilePath();
+
+  /**
+   * @return the file uploaded for every keyword index table of the table
+   */
+  public Map<String, String> getIndexServerFilePaths() {
+    return indexServerFilePaths;
+  }
 }
@@ -0,0 +1,46 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.catalog;
+
+import edu.hku.sdb.util.TestQuery;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CatalogCacheTest {
+
+  @Test
+  public void testPutAndRemove() {
+    CatalogCache cache = new CatalogCache();
+    DBMeta dbMeta = TestQuery.createDBMetaSimple();
+
+    cache.putDB(dbMeta);
+
+    assertSame(dbMeta, cache.getDB(TestQuery.dbName.toUpperCase()));
+    assertSame(dbMeta.getTbl("t1"), cache.getTbl(TestQuery.dbName, "T1"));
+    assertEquals("a", cache.getCol(TestQuery.dbName, "t1", "A").getColName());
+    assertEquals(dbMeta.getTbls().size(), cache.size());
+
+    cache.removeTbl(TestQuery.dbName, "t1");
+
+    assertNull(cache.getTbl(TestQuery.dbName, "t1"));
+    assertNull(cache.getCol(TestQuery.dbName, "t1", "a"));
+    assertNotNull(cache.getTbl(TestQuery.dbName, "t2"));
+    assertNotNull(cache.getCol(TestQuery.dbName, "t2", "id"));
+  }
+}
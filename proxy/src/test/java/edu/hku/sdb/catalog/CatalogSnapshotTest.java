@@ -0,0 +1,62 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.catalog;
+
+import edu.hku.sdb.parse.ColumnDefinition;
+import edu.hku.sdb.util.TestQuery;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.*;
+
+public class CatalogSnapshotTest {
+
+  @Test
+  public void testLookup() {
+    DBMeta dbMeta = TestQuery.createDBMetaSimple();
+    CatalogSnapshot catalog = dbMeta.getSnapshot();
+
+    assertNotNull(catalog.getTbl("t1"));
+    assertSame(catalog.getTbl("t1"), catalog.getTbl("T1"));
+    assertNull(catalog.getTbl("t4"));
+
+    assertEquals("a", catalog.getCol("t1", "A").getColName());
+    assertNull(catalog.getCol("t1", "b"));
+    assertNull(catalog.getCol("t4", "a"));
+
+    SdbColumnKey colKey = catalog.getColumnKey("t1", ColumnDefinition
+            .R_COLUMN_NAME);
+    assertEquals(new SdbColumnKey(new BigInteger("2"), new BigInteger("4")),
+            colKey);
+    assertSame(colKey, catalog.getColumnKey("T1", ColumnDefinition
+            .R_COLUMN_NAME));
+  }
+
+  @Test
+  public void testInvalidate() {
+    DBMeta dbMeta = TestQuery.createDBMetaSimple();
+    CatalogSnapshot catalog = dbMeta.getSnapshot();
+
+    assertSame(catalog, dbMeta.getSnapshot());
+
+    dbMeta.add(new TableMeta(dbMeta.getName(), "t4"));
+    assertNotSame(catalog, dbMeta.getSnapshot());
+    assertNotNull(dbMeta.getTbl("t4"));
+  }
+}
@@ -18,6 +18,10 @@
 package edu.hku.sdb.catalog;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.math.BigInteger;
 import java.sql.DriverManager;
@@ -39,6 +43,7 @@ import org.junit.Test;
 public class MetaStoreTest {
 
   private String driver = "org.apache.derby.jdbc.EmbeddedDriver";
+  private Properties properties;
   private PersistenceManagerFactory pmf;
   private PersistenceManager pm;
 
@@ -54,7 +59,7 @@ public class MetaStoreTest {
       e.printStackTrace();
     }
 
-    Properties properties = new Properties();
+    properties = new Properties();
     properties.setProperty("javax.jdo.option.ConnectionURL",
             "jdbc:derby:memory:test_db;create=true");
     properties.setProperty("javax.jdo.option.ConnectionDriverName",
@@ -162,4 +167,124 @@ public class MetaStoreTest {
     assertEquals(metaDB.getDB("dummy_db1").getTbls().get(0).getCols().size(), 1);
   }
 
+  @Test
+  public void testThreadPersistenceManager() throws InterruptedException {
+    // Like the proxy, the objects are shared by the threads detached.
+    Properties detachProperties = new Properties();
+    detachProperties.putAll(properties);
+    detachProperties.setProperty("javax.jdo.option.DetachAllOnCommit", "true");
+    PersistenceManagerFactory detachPmf = JDOHelper
+            .getPersistenceManagerFactory(detachProperties);
+    final MetaStore metaDB = new MetaStore(detachPmf);
+
+    final String dbName = "dummy_db";
+    final String tblName = "dummy_tbl";
+
+    metaDB.addDB(new DBMeta(dbName));
+    TableMeta tbl = new TableMeta(dbName, tblName);
+    tbl.getCols().add(new ColumnMeta(dbName, tblName, "dummy_col"));
+    metaDB.createTbl(tbl);
+
+    // A reader keeps its view of the catalog while the table is dropped.
+    DBMeta before = metaDB.getDB(dbName);
+    assertEquals(1, before.getTbls().size());
+
+    final Object[] result = new Object[2];
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        result[0] = metaDB.getTbl(dbName, tblName);
+        metaDB.delTbl(dbName, tblName);
+        result[1] = metaDB.getTbl(dbName, tblName);
+      }
+    });
+    thread.start();
+    thread.join();
+
+    assertEquals(tbl, result[0]);
+    assertNull(result[1]);
+    assertNull(metaDB.getCol(dbName, tblName, "dummy_col"));
+    assertEquals(0, metaDB.getDB(dbName).getTbls().size());
+    assertEquals(1, before.getTbls().size());
+
+    detachPmf.close();
+  }
+
+  @Test
+  public void testUpdateStats() {
+    Properties detachProperties = new Properties();
+    detachProperties.putAll(properties);
+    detachProperties.setProperty("javax.jdo.option.DetachAllOnCommit", "true");
+    PersistenceManagerFactory detachPmf = JDOHelper
+            .getPersistenceManagerFactory(detachProperties);
+    MetaStore proxy1 = new MetaStore(detachPmf);
+
+    String dbName = "dummy_db";
+    String tblName = "dummy_tbl";
+    proxy1.addDB(new DBMeta(dbName));
+    TableMeta tbl = new TableMeta(dbName, tblName);
+    tbl.getCols().add(new ColumnMeta(dbName, tblName, "dummy_col"));
+    proxy1.createTbl(tbl);
+
+    // A proxy started later caches the tables of the database.
+    MetaStore proxy2 = new MetaStore(detachPmf);
+    assertSame(proxy2.getDB(dbName).getTbl(tblName), proxy2.getTbl(dbName,
+            tblName));
+    proxy1.syncDB(dbName);
+    proxy2.syncDB(dbName);
+
+    DBMeta before = proxy1.getDB(dbName);
+    TableStatistics stats = new TableStatistics();
+    stats.setRowCount(42);
+    stats.getColStats("dummy_col").setDistinctCount(7);
+    proxy1.updateStats(dbName, tblName, stats);
+
+    // The optimizer reads the statistics through the database.
+    assertEquals(42, proxy1.getDB(dbName).getTbl(tblName).getRowCount());
+    assertEquals(7, proxy1.getCol(dbName, tblName, "dummy_col")
+            .getDistinctCount());
+    assertEquals(-1, before.getTbl(tblName).getRowCount());
+    assertFalse(proxy1.syncDB(dbName));
+
+    // Another proxy sees them after its next check.
+    assertTrue(proxy2.syncDB(dbName));
+    assertEquals(42, proxy2.getDB(dbName).getTbl(tblName).getRowCount());
+
+    detachPmf.close();
+  }
+
+  @Test
+  public void testSharedMetaStoreVersion() {
+    // Two proxies sharing one metastore.
+    Properties detachProperties = new Properties();
+    detachProperties.putAll(properties);
+    detachProperties.setProperty("javax.jdo.option.DetachAllOnCommit", "true");
+    PersistenceManagerFactory detachPmf = JDOHelper
+            .getPersistenceManagerFactory(detachProperties);
+    MetaStore proxy1 = new MetaStore(detachPmf);
+    MetaStore proxy2 = new MetaStore(detachPmf);
+
+    String dbName = "dummy_db";
+    String tblName = "dummy_tbl";
+    proxy1.addDBIfAbsent(new DBMeta(dbName));
+    proxy1.syncDB(dbName);
+    assertTrue(proxy2.syncDB(dbName));
+    assertFalse(proxy2.syncDB(dbName));
+
+    // A change of its own does not make the caches of a proxy stale.
+    proxy1.createTbl(new TableMeta(dbName, tblName));
+    assertFalse(proxy1.syncDB(dbName));
+    assertTrue(proxy2.syncDB(dbName));
+    assertEquals(1, proxy2.getDB(dbName).getTbls().size());
+
+    proxy2.delTbl(dbName, tblName);
+    assertFalse(proxy2.syncDB(dbName));
+    assertTrue(proxy1.syncDB(dbName));
+    assertNull(proxy1.getTbl(dbName, tblName));
+
+    proxy1.increaseVersion(dbName);
+    assertTrue(proxy2.syncDB(dbName));
+
+    detachPmf.close();
+  }
 }
@@ -0,0 +1,81 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.connect;
+
+import edu.hku.sdb.catalog.ScalarType;
+import edu.hku.sdb.catalog.Type;
+import edu.hku.sdb.parse.ParameterLiteral;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SdbPreparedStatementTest {
+
+  @Test
+  public void testSplit() {
+    assertEquals(Arrays.asList("SELECT a FROM t1 WHERE b = ", " AND c = ", ""),
+            SdbPreparedStatement.split("SELECT a FROM t1 WHERE b = ? AND c = ?"));
+    assertEquals(Arrays.asList("SELECT a FROM t1 WHERE b = '?' AND c = 'it\\'s?'"),
+            SdbPreparedStatement.split("SELECT a FROM t1 WHERE b = '?' AND c = " +
+                    "'it\\'s?'"));
+  }
+
+  @Test
+  public void testMarker() {
+    assertEquals(10, ParameterLiteral.getIndex(ParameterLiteral.getMarker(10)));
+    assertEquals(-1, ParameterLiteral.getIndex("__sdb_param_x__"));
+    assertEquals(-1, ParameterLiteral.getIndex("abc"));
+  }
+
+  @Test
+  public void testBindMarkerInValue() {
+    String query = "SELECT a FROM t1 WHERE b = " + ParameterLiteral.getMarker(0)
+            + " AND c = " + ParameterLiteral.getMarker(1);
+
+    // The marker in the first value is not replaced by the second value.
+    String[] literals = {"\"x" + ParameterLiteral.getMarker(1) + "\"", "\" " +
+            "OR 1=1 \""};
+    assertEquals("SELECT a FROM t1 WHERE b = \"x" + ParameterLiteral.getMarker
+            (1) + "\" AND c = \" OR 1=1 \"", SdbPreparedStatement.bind(query,
+            literals));
+
+    // A literal with $ is not a group reference.
+    literals = new String[]{"\"$1\"", "2"};
+    assertEquals("SELECT a FROM t1 WHERE b = \"$1\" AND c = 2",
+            SdbPreparedStatement.bind(query, literals));
+  }
+
+  @Test
+  public void testPlainValue() {
+    ParameterLiteral param = new ParameterLiteral(0);
+    param.setPlainType(ScalarType.createDecimalType(10, 2));
+    assertEquals(BigInteger.valueOf(525), param.toPlainValue("5.25"));
+    assertEquals(BigInteger.valueOf(-500), param.toPlainValue("-5"));
+    assertNull(param.toPlainValue("5.255"));
+    assertNull(param.toPlainValue("abc"));
+
+    param.setPlainType(Type.INT);
+    assertEquals(BigInteger.valueOf(5), param.toPlainValue("5.0"));
+    assertNull(param.toPlainValue("5.5"));
+    assertNull(param.toPlainValue("9223372036854775808"));
+  }
+}
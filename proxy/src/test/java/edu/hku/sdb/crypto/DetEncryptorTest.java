@@ -0,0 +1,79 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.crypto;
+
+import edu.hku.sdb.catalog.ScalarType;
+import edu.hku.sdb.catalog.Type;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DetEncryptorTest {
+
+  DetEncryptor testObj;
+
+  @Before
+  public void prepare() {
+    testObj = new DetEncryptor(new BigInteger("1000000007"), new BigInteger
+            ("998244353"));
+  }
+
+  @Test
+  public void testDeterministic() {
+    assertEquals(testObj.encrypt("HelloWorld", Type.STRING), testObj.encrypt
+            ("HelloWorld", Type.STRING));
+    assertEquals(testObj.encrypt("007", Type.INT), testObj.encrypt("7", Type.INT));
+    assertNotEquals(testObj.encrypt("7", Type.INT), testObj.encrypt("8", Type.INT));
+
+    DetEncryptor other = new DetEncryptor(new BigInteger("1000000009"), new
+            BigInteger("998244353"));
+    assertNotEquals(testObj.encrypt("7", Type.INT), other.encrypt("7", Type.INT));
+  }
+
+  @Test
+  public void testEncryptAndDecrypt() {
+    assertEquals("HelloWorld", testObj.decrypt(testObj.encrypt("HelloWorld", Type
+            .STRING), Type.STRING));
+    assertEquals(new BigInteger("-42"), testObj.decrypt(testObj.encrypt("-42",
+            Type.BIGINT), Type.BIGINT));
+
+    ScalarType decimal = ScalarType.createDecimalType(10, 2);
+    assertEquals(12.35, (Double) testObj.decrypt(testObj.encrypt("12.345",
+            decimal), decimal), 0.0001);
+  }
+
+  @Test
+  public void testIsExact() {
+    assertTrue(DetEncryptor.isExact("7", Type.INT));
+    assertTrue(DetEncryptor.isExact("5.0", Type.INT));
+    assertEquals(testObj.encrypt("5", Type.INT), testObj.encrypt("5.0", Type.INT));
+    assertFalse(DetEncryptor.isExact("5.5", Type.INT));
+    assertFalse(DetEncryptor.isExact("five", Type.INT));
+
+    ScalarType decimal = ScalarType.createDecimalType(10, 2);
+    assertTrue(DetEncryptor.isExact("12.3", decimal));
+    assertFalse(DetEncryptor.isExact("12.345", decimal));
+    assertTrue(DetEncryptor.isExact("5.5", Type.STRING));
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.crypto;
+
+import edu.hku.sdb.catalog.ScalarType;
+import edu.hku.sdb.catalog.Type;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OpeEncryptorTest {
+
+  OpeEncryptor testObj;
+
+  @Before
+  public void prepare() {
+    testObj = new OpeEncryptor(new BigInteger("1000000007"), new BigInteger
+            ("998244353"), "t1", "a");
+  }
+
+  @Test
+  public void testOrderPreserving() {
+    long[] values = {Long.MIN_VALUE, -1000, -1, 0, 1, 2, 1000, Long.MAX_VALUE};
+
+    for (int i = 1; i < values.length; i++) {
+      String smaller = testObj.encrypt(BigInteger.valueOf(values[i - 1]));
+      String larger = testObj.encrypt(BigInteger.valueOf(values[i]));
+
+      assertEquals(OpeEncryptor.WIDTH, larger.length());
+      assertTrue(smaller.compareTo(larger) < 0);
+    }
+  }
+
+  @Test
+  public void testDecimal() {
+    ScalarType decimal = ScalarType.createDecimalType(10, 2);
+
+    assertEquals(testObj.encrypt("12.3", decimal), testObj.encrypt(BigInteger
+            .valueOf(1230)));
+    assertTrue(testObj.encrypt("12.30", decimal).compareTo(testObj.encrypt
+            ("12.31", decimal)) < 0);
+    assertEquals(testObj.encrypt("7", Type.INT), testObj.encrypt(BigInteger
+            .valueOf(7)));
+  }
+}
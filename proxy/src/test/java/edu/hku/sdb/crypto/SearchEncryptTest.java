@@ -29,6 +29,7 @@ import java.nio.charset.Charset;
 
 import org.apache.commons.codec.binary.Base64;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -150,4 +151,42 @@ public class SearchEncryptTest {
     }
   }
 
+  @Test
+  public void testColumnEncryptor() throws SEException {
+    SEKey key = testObj.keyGen();
+    SearchColumnEncryptor encryptor = new SearchColumnEncryptor(key, testObj
+            .prkey);
+
+    String[] keywords = SearchColumnEncryptor.splitKeywords("Froome became " +
+            "the first Briton to win");
+    assertEquals(6, keywords.length);
+
+    byte[][] encrypts = encryptor.encryptKeywords(keywords);
+    for (int i = 0; i < keywords.length; i++) {
+      assertArrayEquals(testObj.encrypt(key, i, keywords[i]), encrypts[i]);
+      assertEquals(keywords[i], encryptor.decrypt(i, encrypts[i]));
+    }
+
+    assertTrue(encryptor.search(encrypts[4], "Briton"));
+    assertTrue(!encryptor.search(encrypts[4], "briton"));
+  }
+
+  @Test
+  public void testTrapdoor() throws SEException {
+    SEKey key = testObj.keyGen();
+    SearchColumnEncryptor encryptor = new SearchColumnEncryptor(key, testObj
+            .prkey);
+    SearchColumnEncryptor sameKeyEncryptor = new SearchColumnEncryptor(key,
+            testObj.prkey);
+    SearchColumnEncryptor otherEncryptor = new SearchColumnEncryptor(testObj
+            .keyGen(), testObj.prkey);
+
+    // Deterministic under the same column key only.
+    assertEquals(encryptor.trapdoor("Briton"), sameKeyEncryptor.trapdoor
+            ("Briton"));
+    assertTrue(!encryptor.trapdoor("Briton").equals(encryptor.trapdoor("briton")));
+    assertTrue(!encryptor.trapdoor("Briton").equals(otherEncryptor.trapdoor
+            ("Briton")));
+  }
+
 }
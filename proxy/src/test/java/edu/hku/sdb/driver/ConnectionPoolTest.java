@@ -0,0 +1,79 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.driver;
+
+import edu.hku.sdb.conf.MetadbConf;
+import edu.hku.sdb.conf.MetadbConfFactory;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ConnectionPoolTest {
+
+  @Test
+  public void testPersistProperties() {
+    Map<String, String> prop = new HashMap<>();
+    prop.put(MetadbConfFactory.SDB_METASTORE_JDBC_URL,
+            "jdbc:postgresql://localhost/metastore");
+    prop.put(MetadbConfFactory.SDB_METASTORE_USERNAME, "sdb");
+    prop.put(MetadbConfFactory.SDB_METASTORE_POOL_TYPE, "BoneCP");
+    prop.put(MetadbConfFactory.SDB_METASTORE_POOL_MIN, "3");
+    prop.put(MetadbConfFactory.SDB_METASTORE_POOL_MAX, "30");
+    MetadbConf metadbConf = MetadbConfFactory.getMetadbConf(prop);
+
+    Properties properties = ConnectionPool.getPersistProperties(metadbConf);
+
+    assertEquals("jdbc:postgresql://localhost/metastore", properties
+            .getProperty("javax.jdo.option.ConnectionURL"));
+    assertEquals("org.postgresql.Driver", properties.getProperty
+            ("javax.jdo.option.ConnectionDriverName"));
+    assertEquals("sdb", properties.getProperty
+            ("javax.jdo.option.ConnectionUserName"));
+    assertEquals("", properties.getProperty
+            ("javax.jdo.option.ConnectionPassword"));
+    assertEquals("BoneCP", properties.getProperty
+            ("datanucleus.connectionPoolingType"));
+    assertEquals("3", properties.getProperty
+            ("datanucleus.connectionPool.minIdle"));
+    assertEquals("30", properties.getProperty
+            ("datanucleus.connectionPool.maxActive"));
+    assertEquals("3", properties.getProperty
+            ("datanucleus.connectionPool.minPoolSize"));
+    assertEquals("30", properties.getProperty
+            ("datanucleus.connectionPool.maxPoolSize"));
+  }
+
+  @Test
+  public void testPersistPropertiesNoPool() {
+    Map<String, String> prop = new HashMap<>();
+    prop.put(MetadbConfFactory.SDB_METASTORE_POOL_TYPE, "none");
+    MetadbConf metadbConf = MetadbConfFactory.getMetadbConf(prop);
+
+    Properties properties = ConnectionPool.getPersistProperties(metadbConf);
+
+    assertEquals(MetadbConf.DEFAULT_JDBC_URL, properties.getProperty
+            ("javax.jdo.option.ConnectionURL"));
+    assertFalse(properties.containsKey("datanucleus.connectionPoolingType"));
+    assertFalse(properties.containsKey("datanucleus.connectionPool.maxActive"));
+  }
+}
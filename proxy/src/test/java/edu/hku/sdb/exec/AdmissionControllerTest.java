@@ -0,0 +1,106 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.exec;
+
+import org.junit.Test;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdmissionControllerTest {
+
+  @Test
+  public void testQueue() throws InterruptedException {
+    MemoryManager manager = new MemoryManager(2 * MemoryManager.MB,
+            MemoryManager.MB, null);
+    final AdmissionController controller = new AdmissionController(manager,
+            1, 10000);
+    assertEquals(2, controller.getConcurrency());
+
+    controller.admit();
+    controller.admit();
+
+    final AtomicBoolean admitted = new AtomicBoolean();
+    Thread waiting = new Thread() {
+      @Override
+      public void run() {
+        controller.admit();
+        admitted.set(true);
+      }
+    };
+    waiting.start();
+    while (controller.getQueued() == 0) {
+      Thread.sleep(10);
+    }
+    assertFalse(admitted.get());
+
+    // The queue is full.
+    try {
+      controller.admit();
+      fail();
+    } catch (RejectedExecutionException e) {
+      assertEquals(1, controller.getQueued());
+    }
+
+    controller.leave();
+    waiting.join(5000);
+    assertTrue(admitted.get());
+    assertEquals(2, controller.getRunning());
+  }
+
+  @Test
+  public void testTimeout() {
+    MemoryManager manager = new MemoryManager(MemoryManager.MB, MemoryManager
+            .MB, null);
+    AdmissionController controller = new AdmissionController(manager, 1, 50);
+    controller.admit();
+    try {
+      controller.admit();
+      fail();
+    } catch (RejectedExecutionException e) {
+      assertEquals(0, controller.getQueued());
+    }
+    controller.leave();
+    controller.admit();
+  }
+
+  @Test
+  public void testPool() {
+    MemoryManager manager = new MemoryManager(3 * MemoryManager.MB, 2 *
+            MemoryManager.MB, null);
+    MemoryPool first = manager.createPool();
+    MemoryPool second = manager.createPool();
+
+    assertTrue(first.tryReserve(MemoryManager.MB));
+    assertFalse(first.tryReserve(2 * MemoryManager.MB));
+    assertTrue(second.tryReserve(2 * MemoryManager.MB));
+    // The proxy has no memory left.
+    assertFalse(first.tryReserve(1));
+
+    second.close();
+    assertTrue(first.tryReserve(MemoryManager.MB));
+    assertEquals(2 * MemoryManager.MB, first.getPeak());
+    first.close();
+    assertEquals(0, manager.getReserved());
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.exec;
+
+import edu.hku.sdb.plan.LocalAggregateDesc.Function;
+import edu.hku.sdb.plan.PlanNodeDesc;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LocalAggregateTest {
+
+  private static class ListNode extends PlanNode<PlanNodeDesc> {
+    private final Iterator<List<Object>> rows;
+
+    ListNode(List<List<Object>> rows) {
+      this.rows = rows.iterator();
+    }
+
+    @Override
+    public void init() {
+    }
+
+    @Override
+    public List<Object> nextTuple() {
+      return rows.hasNext() ? rows.next() : null;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  @Test
+  public void testGroupBy() {
+    List<List<Object>> rows = new ArrayList<>();
+    rows.add(Arrays.<Object>asList("a", BigInteger.valueOf(1), "x"));
+    rows.add(Arrays.<Object>asList("b", BigInteger.valueOf(2), null));
+    rows.add(Arrays.<Object>asList("a", BigInteger.valueOf(3), "y"));
+
+    LocalAggregate aggregate = new LocalAggregate(new RowDesc(), Arrays.asList
+            (Function.GROUP, Function.SUM, Function.COUNT));
+    aggregate.setChild(new ListNode(rows));
+
+    assertEquals(Arrays.<Object>asList("a", BigInteger.valueOf(4), 2L), aggregate
+            .nextTuple());
+    assertEquals(Arrays.<Object>asList("b", BigInteger.valueOf(2), 0L), aggregate
+            .nextTuple());
+    assertNull(aggregate.nextTuple());
+  }
+
+  @Test
+  public void testEmptyInput() {
+    LocalAggregate aggregate = new LocalAggregate(new RowDesc(), Arrays.asList
+            (Function.SUM, Function.COUNT));
+    aggregate.setChild(new ListNode(new ArrayList<List<Object>>()));
+
+    assertEquals(Arrays.<Object>asList(null, 0L), aggregate.nextTuple());
+    assertNull(aggregate.nextTuple());
+  }
+}
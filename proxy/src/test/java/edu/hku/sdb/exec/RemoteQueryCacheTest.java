@@ -0,0 +1,110 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.exec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class RemoteQueryCacheTest {
+
+  File dir;
+  RemoteQueryCache testObj;
+
+  @Before
+  public void prepare() throws IOException {
+    dir = Files.createTempDirectory("sdb-remote-cache-test").toFile();
+    testObj = new RemoteQueryCache(true, 1024 * 1024, dir);
+  }
+
+  @After
+  public void cleanup() {
+    testObj.configure(false, 0, dir);
+    for (File file : dir.listFiles()) {
+      file.delete();
+    }
+    dir.delete();
+  }
+
+  private static List<Object> row(int i) {
+    return Arrays.<Object>asList(BigInteger.valueOf(i).shiftLeft(70), "c" + i,
+            i % 3 == 0 ? null : (long) i);
+  }
+
+  private File write(int rows) throws IOException {
+    File file = testObj.createFile();
+    ColumnarFile.Writer writer = new ColumnarFile.Writer(file, 3);
+    for (int i = 0; i < rows; i++) {
+      writer.write(row(i));
+    }
+    writer.close();
+    return file;
+  }
+
+  @Test
+  public void testColumnarFile() throws IOException {
+    int rows = ColumnarFile.BLOCK_ROWS * 2 + 5;
+    File file = write(rows);
+
+    ColumnarFile.Reader reader = new ColumnarFile.Reader(file);
+    assertEquals(3, reader.getColumnCount());
+    for (int i = 0; i < rows; i++) {
+      assertArrayEquals(row(i).toArray(), reader.next());
+    }
+    assertNull(reader.next());
+    reader.close();
+  }
+
+  @Test
+  public void testPutAndInvalidate() throws IOException {
+    String key = RemoteQueryCache.getKey("default", "select a, b, c from t1");
+    assertNull(testObj.open(key));
+
+    File file = write(10);
+    testObj.put(key, Collections.singleton("t1"), file, testObj.getVersion());
+    ColumnarFile.Reader reader = testObj.open(key);
+    assertNotNull(reader);
+    assertArrayEquals(row(0).toArray(), reader.next());
+    reader.close();
+
+    testObj.invalidate("default", "t1");
+    assertNull(testObj.open(key));
+    assertFalse(file.exists());
+
+    // Rows fetched before the invalidation are not cached.
+    file = write(10);
+    testObj.put(key, Collections.singleton("t1"), file, 0);
+    assertNull(testObj.open(key));
+    assertFalse(file.exists());
+    assertEquals(0, testObj.getBytes());
+  }
+}
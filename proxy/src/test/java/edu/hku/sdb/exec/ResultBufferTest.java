@@ -0,0 +1,117 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.exec;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResultBufferTest {
+
+  private static Object[] row(int i) {
+    return new Object[]{i, (long) i * 3, BigInteger.valueOf(i).shiftLeft(80),
+            i * 0.5, "row" + i, null};
+  }
+
+  @Test
+  public void testInMemory() {
+    MemoryManager manager = new MemoryManager(MemoryManager.MB, MemoryManager
+            .MB, null);
+    ResultBuffer buffer = new ResultBuffer(manager.createPool());
+    for (int i = 0; i < 10; i++) {
+      buffer.add(row(i));
+    }
+
+    assertFalse(buffer.isSpilled());
+    assertTrue(manager.getReserved() > 0);
+    for (int i = 0; i < 10; i++) {
+      assertArrayEquals(row(i), buffer.next());
+    }
+    assertNull(buffer.next());
+    assertEquals(0, manager.getReserved());
+  }
+
+  @Test
+  public void testSpill() {
+    long rowSize = RowCodec.estimateSize(row(0));
+    MemoryManager manager = new MemoryManager(MemoryManager.MB, rowSize * 5,
+            null);
+    MemoryPool pool = manager.createPool();
+    ResultBuffer buffer = new ResultBuffer(pool);
+    for (int i = 0; i < 1000; i++) {
+      buffer.add(row(i));
+    }
+
+    assertTrue(buffer.isSpilled());
+    assertEquals(1000, buffer.size());
+    assertTrue(pool.getReserved() <= pool.getLimit());
+    for (int i = 0; i < 500; i++) {
+      assertArrayEquals(row(i), buffer.next());
+    }
+
+    buffer.close();
+    assertNull(buffer.next());
+    assertEquals(0, manager.getReserved());
+  }
+
+  @Test
+  public void testProxyLimit() {
+    long rowSize = RowCodec.estimateSize(row(1));
+    MemoryManager manager = new MemoryManager(rowSize * 3, rowSize * 3, null);
+    ResultBuffer first = new ResultBuffer(manager.createPool());
+    ResultBuffer second = new ResultBuffer(manager.createPool());
+    for (int i = 1; i <= 3; i++) {
+      first.add(row(i));
+    }
+    second.add(row(4));
+
+    assertFalse(first.isSpilled());
+    assertTrue(second.isSpilled());
+    assertArrayEquals(row(4), second.next());
+
+    first.close();
+    second.close();
+    assertEquals(0, manager.getReserved());
+  }
+
+  @Test
+  public void testCleanSpillDir() throws IOException {
+    File spillDir = Files.createTempDirectory("sdb-spill-test").toFile();
+    File left = File.createTempFile(ResultBuffer.SPILL_PREFIX, ResultBuffer
+            .SPILL_SUFFIX, spillDir);
+    File other = new File(spillDir, "other.txt");
+    assertTrue(other.createNewFile());
+
+    // The rows spilled before a crash are deleted on start.
+    new MemoryManager(MemoryManager.MB, MemoryManager.MB, spillDir);
+    assertFalse(left.exists());
+    assertTrue(other.exists());
+
+    assertTrue(other.delete());
+    assertTrue(spillDir.delete());
+  }
+}
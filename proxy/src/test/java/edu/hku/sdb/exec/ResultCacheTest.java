@@ -0,0 +1,106 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.exec;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ResultCacheTest {
+
+  ResultCache testObj;
+
+  @Before
+  public void prepare() {
+    testObj = new ResultCache(true, 1024);
+  }
+
+  private static byte[] encode(Object[]... rows) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    for (Object[] row : rows) {
+      RowCodec.write(out, row);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Set<String> tables(String... names) {
+    return new HashSet<>(Arrays.asList(names));
+  }
+
+  @Test
+  public void testGetAndPut() throws IOException {
+    String key = ResultCache.getKey("Default", "select a from t1");
+    Object[] row1 = {BigInteger.TEN, "x", 1.5};
+    Object[] row2 = {null, "y", 2.5};
+
+    assertNull(testObj.get(key));
+    testObj.put(key, tables("t1"), encode(row1, row2), testObj.getVersion());
+
+    ResultCache.Rows rows = testObj.get(key);
+    assertArrayEquals(row1, rows.next());
+    assertArrayEquals(row2, rows.next());
+    assertNull(rows.next());
+    assertEquals(0.5, testObj.getHitRate(), 0.001);
+  }
+
+  @Test
+  public void testInvalidate() throws IOException {
+    String key1 = ResultCache.getKey("default", "select a from t1");
+    String key2 = ResultCache.getKey("default", "select b from t2");
+    testObj.put(key1, tables("t1"), encode(new Object[]{1}), 0);
+    testObj.put(key2, tables("t2"), encode(new Object[]{2}), 0);
+
+    testObj.invalidate("DEFAULT", "T1");
+    assertNull(testObj.get(key1));
+    assertNotNull(testObj.get(key2));
+
+    // Rows computed before the invalidation are not cached.
+    testObj.put(key1, tables("t1"), encode(new Object[]{1}), 0);
+    assertNull(testObj.get(key1));
+  }
+
+  @Test
+  public void testCapacity() throws IOException {
+    byte[] rows = encode(new Object[]{new String(new char[400])});
+    testObj.put("default:q1", tables(), rows, 0);
+    testObj.put("default:q2", tables(), rows, 0);
+    testObj.get("default:q1");
+    testObj.put("default:q3", tables(), rows, 0);
+
+    // The least recently used is evicted.
+    assertEquals(2, testObj.size());
+    assertNull(testObj.get("default:q2"));
+    assertEquals(2 * rows.length, testObj.getBytes());
+
+    testObj.put("default:q4", tables(), new byte[2048], 0);
+    assertNull(testObj.get("default:q4"));
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.optimize;
+
+import edu.hku.sdb.exec.LocalDecrypt;
+import edu.hku.sdb.exec.PlanNode;
+import edu.hku.sdb.exec.RemoteQuery;
+import edu.hku.sdb.exec.RowDesc;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class PlanCacheTest {
+
+  @Test
+  public void testNormalize() {
+    assertEquals("select a from t1 where b = 'Hello  World'", PlanCache.normalize
+            ("SELECT a\n  FROM   T1 WHERE b = 'Hello  World';"));
+    assertEquals(PlanCache.normalize("select a from t1"), PlanCache.normalize
+            (" select  a  from t1 "));
+  }
+
+  @Test
+  public void testInvalidate() {
+    PlanCache planCache = new PlanCache(10);
+    String query = "select a from t1";
+
+    LocalDecrypt plan = new LocalDecrypt(new RowDesc());
+    plan.setChild(new RemoteQuery("SELECT t1.a FROM t1", null, new RowDesc()));
+    plan.setCredential(BigInteger.ONE, BigInteger.ONE, BigInteger.ONE, BigInteger.ONE);
+
+    String key = PlanCache.getKey("db", planCache.getCatalogVersion("db"), query);
+    planCache.put(key, plan);
+
+    PlanNode cached = planCache.get(key, null);
+    assertNotNull(cached);
+    assertEquals("SELECT t1.a FROM t1", ((RemoteQuery) ((LocalDecrypt) cached)
+            .getChild()).getNodeDesc().getQuery());
+
+    planCache.invalidate("db");
+    assertNull(planCache.get(key, null));
+    assertNull(planCache.get(PlanCache.getKey("db", planCache.getCatalogVersion
+            ("db"), query), null));
+  }
+}
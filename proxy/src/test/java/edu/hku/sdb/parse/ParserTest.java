@@ -20,6 +20,12 @@ import edu.hku.sdb.util.TestUtility;
 import org.junit.Test;
 import org.junit.Before;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 /**
  * Unit test for parser.
  */
@@ -111,4 +117,35 @@ public class ParserTest
       e.printStackTrace();
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testReuseDriver() throws ParseException {
+    try {
+      parseDriver.parse("SELECT FROM WHERE");
+      fail("The command should not be parsed");
+    } catch (ParseException e) {
+      assertFalse(e.getMessage().isEmpty());
+    }
+
+    // The errors of the last command are not kept.
+    ASTNode tree = parseDriver.parse("SELECT a FROM test");
+    assertEquals(HiveParser.TOK_QUERY, ParseUtils.findRootNotNull(tree).getType());
+  }
+
+  @Test
+  public void testParseTrivial() {
+    ParseService parseService = ParseService.getInstance();
+
+    assertTrue(parseService.parseTrivial("show tables;") instanceof ShowTBLsStmt);
+    assertTrue(parseService.parseTrivial("SHOW DATABASES") instanceof ShowDBsStmt);
+    assertEquals("test", ((DescribeStmt) parseService.parseTrivial("DESCRIBE " +
+            "test")).getTblName());
+    assertEquals("test", ((DropTblStmt) parseService.parseTrivial("DROP TABLE " +
+            "test")).getTblName());
+    assertEquals("test", ((AnalyzeStmt) parseService.parseTrivial("ANALYZE TABLE " +
+            "test COMPUTE STATISTICS")).getTblName());
+
+    assertNull(parseService.parseTrivial("DROP TABLE IF EXISTS test"));
+    assertNull(parseService.parseTrivial("SELECT a FROM test"));
+  }
+}
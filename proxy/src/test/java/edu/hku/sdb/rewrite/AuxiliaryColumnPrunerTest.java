@@ -0,0 +1,97 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.rewrite;
+
+import edu.hku.sdb.catalog.Type;
+import edu.hku.sdb.parse.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class AuxiliaryColumnPrunerTest {
+
+  SelectStmt selStmt;
+  SelectStmt viewStmt;
+
+  @Before
+  public void prepare() {
+    // SELECT t1.a, t1.row_id, t1.r, t1.s FROM t1
+    viewStmt = new SelectStmt();
+    SelectionList viewSelList = new SelectionList();
+    viewSelList.getItemList().add(new SelectionItem(new FieldLiteral("t1", "a",
+            Type.INT), ""));
+    viewSelList.setRowID(auxiliaryItem("t1", ColumnDefinition.ROW_ID_COLUMN_NAME));
+    viewSelList.setAuxiliaryR(auxiliaryItem("t1", ColumnDefinition.R_COLUMN_NAME));
+    viewSelList.setAuxiliaryS(auxiliaryItem("t1", ColumnDefinition.S_COLUMN_NAME));
+    viewStmt.setSelectList(viewSelList);
+    List<TableRef> viewRefs = new ArrayList<>();
+    viewRefs.add(new BaseTableRef("t1", ""));
+    viewStmt.setTableRefs(viewRefs);
+
+    // SELECT v.a, v.row_id FROM (...) v
+    selStmt = new SelectStmt();
+    SelectionList selList = new SelectionList();
+    selList.getItemList().add(new SelectionItem(new FieldLiteral("v", "a", Type
+            .INT), ""));
+    selList.setRowID(auxiliaryItem("v", ColumnDefinition.ROW_ID_COLUMN_NAME));
+    selStmt.setSelectList(selList);
+    List<TableRef> tblRefs = new ArrayList<>();
+    tblRefs.add(new InLineViewRef("v", viewStmt));
+    selStmt.setTableRefs(tblRefs);
+  }
+
+  private SelectionItem auxiliaryItem(String tblName, String colName) {
+    return new SelectionItem(new FieldLiteral(tblName, colName, Type.INT),
+            colName);
+  }
+
+  @Test
+  public void testPruneUnused() {
+    AuxiliaryColumnPruner pruner = new AuxiliaryColumnPruner();
+    pruner.prune(selStmt);
+
+    assertEquals(2, pruner.getPrunedColumns());
+    assertNotNull(viewStmt.getSelectList().getRowID());
+    assertNull(viewStmt.getSelectList().getAuxiliaryR());
+    assertNull(viewStmt.getSelectList().getAuxiliaryS());
+  }
+
+  @Test
+  public void testKeepReferenced() {
+    // The S column of the view is used by a cartesian transformation.
+    SdbCartesianExpr cartesianExpr = new SdbCartesianExpr();
+    cartesianExpr.addChild(new FieldLiteral("t2", "b", Type.INT));
+    cartesianExpr.addChild(new FieldLiteral("v", ColumnDefinition.S_COLUMN_NAME,
+            Type.INT));
+    selStmt.getSelectList().getItemList().add(new SelectionItem(cartesianExpr,
+            "b"));
+
+    AuxiliaryColumnPruner pruner = new AuxiliaryColumnPruner();
+    pruner.prune(selStmt);
+
+    assertEquals(1, pruner.getPrunedColumns());
+    assertNull(viewStmt.getSelectList().getAuxiliaryR());
+    assertNotNull(viewStmt.getSelectList().getAuxiliaryS());
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.rewrite;
+
+import edu.hku.sdb.catalog.SdbColumnKey;
+import edu.hku.sdb.catalog.Type;
+import edu.hku.sdb.parse.*;
+import edu.hku.sdb.parse.SdbArithmeticExpr.SdbOperator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommonSubexprEliminatorTest {
+
+  SelectStmt selStmt;
+
+  @Before
+  public void prepare() {
+    selStmt = new SelectStmt();
+    SelectionList selList = new SelectionList();
+    selList.getItemList().add(new SelectionItem(buildMultiply(), "c"));
+    selStmt.setSelectList(selList);
+
+    BaseTableRef tblRef = new BaseTableRef("t1", "");
+    tblRef.setJoinOp(JoinOperator.NULL_JOIN);
+    List<TableRef> tblRefs = new ArrayList<>();
+    tblRefs.add(tblRef);
+    selStmt.setTableRefs(tblRefs);
+  }
+
+  private Expr buildMultiply() {
+    SdbArithmeticExpr multiply = new SdbArithmeticExpr(SdbOperator.SDB_MUL);
+    multiply.addChild(new FieldLiteral("t1", "a", Type.INT, true, new
+            SdbColumnKey(BigInteger.ONE, BigInteger.ONE)));
+    multiply.addChild(new FieldLiteral("t1", "b", Type.INT, true, new
+            SdbColumnKey(BigInteger.ONE, BigInteger.ONE)));
+    multiply.addChild(new BigIntLiteral(BigInteger.valueOf(35)));
+    multiply.setType(Type.INT);
+    multiply.setSdbColKey(new SdbColumnKey(BigInteger.ONE, BigInteger.valueOf(2)));
+    return multiply;
+  }
+
+  @Test
+  public void testNoCommonSubexpr() {
+    assertFalse(new CommonSubexprEliminator().eliminate(selStmt));
+    assertTrue(selStmt.getTableRefs().get(0) instanceof BaseTableRef);
+  }
+
+  @Test
+  public void testEliminate() {
+    SdbComparisonExpr compareExpr = new SdbComparisonExpr(BinaryPredicate
+            .BinOperator.GT);
+    compareExpr.addChild(buildMultiply());
+    compareExpr.addChild(new BigIntLiteral(BigInteger.valueOf(17)));
+    selStmt.setWhereClause(compareExpr);
+
+    assertTrue(new CommonSubexprEliminator().eliminate(selStmt));
+
+    Expr item = selStmt.getSelectList().getItemList().get(0).getExpr();
+    assertEquals("t1.sdb_cse_0", item.toSql());
+    assertEquals(new SdbColumnKey(BigInteger.ONE, BigInteger.valueOf(2)), item
+            .getSdbColKey());
+    assertEquals("t1.sdb_cse_0", selStmt.getWhereClause().getChild(0).toSql());
+
+    TableRef tblRef = selStmt.getTableRefs().get(0);
+    assertTrue(tblRef instanceof InLineViewRef);
+    assertEquals("SELECT t1.*, " + buildMultiply().toSql() + " AS sdb_cse_0\n" +
+            "FROM t1\n", ((InLineViewRef) tblRef).getQueryStmt().toSql());
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.rewrite;
+
+import edu.hku.sdb.catalog.DBMeta;
+import edu.hku.sdb.catalog.SdbColumnKey;
+import edu.hku.sdb.catalog.Type;
+import edu.hku.sdb.parse.*;
+import edu.hku.sdb.parse.BinaryPredicate.BinOperator;
+import edu.hku.sdb.util.TestQuery;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PredicatePushdownTest {
+
+  DBMeta dbMeta;
+  SelectStmt selStmt;
+  SelectStmt viewStmt;
+  FieldLiteral t1A;
+  TableRef tblT2;
+
+  @Before
+  public void prepare() {
+    dbMeta = TestQuery.createDBMetaSimple();
+
+    // SELECT t1.a FROM t1
+    viewStmt = new SelectStmt();
+    SelectionList viewSelList = new SelectionList();
+    t1A = new FieldLiteral("T1", "a", Type.INT, true, new SdbColumnKey("1", "3"));
+    viewSelList.getItemList().add(new SelectionItem(t1A, ""));
+    viewStmt.setSelectList(viewSelList);
+    List<TableRef> viewRefs = new ArrayList<>();
+    viewRefs.add(new BaseTableRef("T1", ""));
+    viewStmt.setTableRefs(viewRefs);
+
+    // SELECT v.a FROM (...) v JOIN t2 ON v.a = t2.b
+    selStmt = new SelectStmt();
+    SelectionList selList = new SelectionList();
+    selList.getItemList().add(new SelectionItem(viewField(), ""));
+    selStmt.setSelectList(selList);
+
+    InLineViewRef view = new InLineViewRef("v", viewStmt);
+    tblT2 = new BaseTableRef("T2", "");
+    tblT2.setJoinOp(JoinOperator.INNER_JOIN);
+    tblT2.setLeftTblRef(view);
+    tblT2.setOnClause(new NormalBinPredicate(BinOperator.EQ, viewField(), new
+            FieldLiteral("T2", "b", Type.INT, true, new SdbColumnKey("1", "3"))));
+
+    List<TableRef> tblRefs = new ArrayList<>();
+    tblRefs.add(view);
+    tblRefs.add(tblT2);
+    selStmt.setTableRefs(tblRefs);
+  }
+
+  private FieldLiteral viewField() {
+    FieldLiteral field = new FieldLiteral("v", "a", Type.INT, true, new
+            SdbColumnKey("1", "3"));
+    field.setReferedExpr(t1A);
+    return field;
+  }
+
+  private void setWhereClause() {
+    // WHERE v.a > 5 AND t2.c < 3
+    NormalBinPredicate viewPred = new NormalBinPredicate(BinOperator.GT,
+            viewField(), new IntLiteral(5));
+    NormalBinPredicate t2Pred = new NormalBinPredicate(BinOperator.LT, new
+            FieldLiteral("T2", "c", Type.INT), new IntLiteral(3));
+    CompoundPredicate whereClause = new CompoundPredicate(CompoundPredicate
+            .CompoundOperator.AND);
+    whereClause.addChild(viewPred);
+    whereClause.addChild(t2Pred);
+    selStmt.setWhereClause(whereClause);
+  }
+
+  @Test
+  public void testPushIntoView() {
+    setWhereClause();
+
+    PredicatePushdown pushdown = new PredicatePushdown(dbMeta);
+    assertTrue(pushdown.push(selStmt));
+    assertEquals(1, pushdown.getPushedPredicates());
+
+    assertEquals("t2.c < 3", selStmt.getWhereClause().toSql());
+    assertEquals("t1.a > 5", viewStmt.getWhereClause().toSql());
+
+    FieldLiteral pushedField = (FieldLiteral) viewStmt.getWhereClause().getChild(0);
+    assertEquals(new SdbColumnKey("1", "3"), pushedField.getSdbColKey());
+  }
+
+  @Test
+  public void testNullSupplyingView() {
+    setWhereClause();
+    tblT2.setJoinOp(JoinOperator.RIGHT_OUTER_JOIN);
+
+    assertFalse(new PredicatePushdown(dbMeta).push(selStmt));
+    assertNull(viewStmt.getWhereClause());
+  }
+}
@@ -18,8 +18,13 @@
 
 package edu.hku.sdb.rewrite;
 
+import java.math.BigInteger;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import javax.jdo.JDOHelper;
@@ -27,9 +32,21 @@ import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 
 import edu.hku.sdb.catalog.*;
+import edu.hku.sdb.crypto.DetEncryptor;
+import edu.hku.sdb.crypto.SDBEncrypt;
+import edu.hku.sdb.crypto.SearchEncrypt;
+import edu.hku.sdb.parse.BigIntLiteral;
+import edu.hku.sdb.parse.ColumnDefinition;
 import edu.hku.sdb.parse.ASTNode;
+import edu.hku.sdb.parse.Expr;
+import edu.hku.sdb.parse.FieldLiteral;
+import edu.hku.sdb.parse.ParameterLiteral;
 import edu.hku.sdb.parse.ParseDriver;
 import edu.hku.sdb.parse.ParseNode;
+import edu.hku.sdb.parse.SdbArithmeticExpr;
+import edu.hku.sdb.parse.SdbKeyUpdateExpr;
+import edu.hku.sdb.parse.SelectStmt;
+import edu.hku.sdb.parse.StringLiteral;
 
 import edu.hku.sdb.parse.SemanticAnalyzer;
 import edu.hku.sdb.util.TestQuery;
@@ -39,6 +56,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Unit test for the rewriter based on sdb encryption scheme.
@@ -154,4 +175,240 @@ public class SdbSchemeRewriterTest {
 
   }
 
-}
\ No newline at end of file
+  /**
+   * A table with the deterministic columns name and age.
+   */
+  private TableMeta createDetTable(BigInteger prime1, BigInteger prime2) {
+    String dbName = TestQuery.dbName;
+    List<ColumnMeta> cols = new ArrayList<>();
+
+    cols.add(new ColumnMeta(dbName, "T4", "id", Type.INT.toString(), false,
+            null, null));
+    ColumnMeta name = new ColumnMeta(dbName, "T4", "name", Type.STRING
+            .toString(), true, null, null);
+    name.setDeterministic(true);
+    cols.add(name);
+    ColumnMeta age = new ColumnMeta(dbName, "T4", "age", Type.INT.toString(),
+            true, null, null);
+    age.setDeterministic(true);
+    cols.add(age);
+
+    return createTable("T4", cols, prime1, prime2);
+  }
+
+  /**
+   * A table with the keyword indexed column title.
+   */
+  private TableMeta createIndexedTable(BigInteger prime1, BigInteger prime2)
+          throws Exception {
+    String dbName = TestQuery.dbName;
+    List<ColumnMeta> cols = new ArrayList<>();
+
+    cols.add(new ColumnMeta(dbName, "T5", "id", Type.INT.toString(), false,
+            null, null));
+    SearchEncrypt searchEncrypt = SearchEncrypt.getInstance();
+    SearchColumnKey searchColKey = new SearchColumnKey(searchEncrypt.keyGen(),
+            searchEncrypt.prkey);
+    ColumnMeta title = new ColumnMeta(dbName, "T5", "title", Type.STRING
+            .toString(), true, searchColKey.priKey2String(), searchColKey
+            .pubKey2String());
+    title.setKeywordIndexed(true);
+    cols.add(title);
+
+    return createTable("T5", cols, prime1, prime2);
+  }
+
+  private TableMeta createTable(String tblName, List<ColumnMeta> cols,
+                                BigInteger prime1, BigInteger prime2) {
+    for (String colName : new String[]{ColumnDefinition.ROW_ID_COLUMN_NAME,
+            ColumnDefinition.R_COLUMN_NAME, ColumnDefinition.S_COLUMN_NAME}) {
+      cols.add(new ColumnMeta(TestQuery.dbName, tblName, colName, Type.INT
+              .toString(), true, SDBEncrypt.generatePositiveRand(prime1, prime2)
+              .toString(), SDBEncrypt.generatePositiveRand(prime1, prime2)
+              .toString()));
+    }
+
+    TableMeta tbl = new TableMeta(TestQuery.dbName, tblName);
+    tbl.setCols(cols);
+    return tbl;
+  }
+
+  private String rewrite(DBMeta dbMeta, String command) throws Exception {
+    ParseNode candidate = new SemanticAnalyzer(dbMeta).analyze(parser.parse
+            (command));
+    new SdbSchemeRewriter(dbMeta, null).rewrite(candidate);
+    return candidate.toSql();
+  }
+
+  @Test
+  public void testRewriteDetPredicate() throws Exception {
+    DBMeta dbMeta = TestQuery.createDBMeta();
+    BigInteger prime1 = new BigInteger(dbMeta.getPrime1());
+    BigInteger prime2 = new BigInteger(dbMeta.getPrime2());
+    dbMeta.add(createDetTable(prime1, prime2));
+
+    // The constants are encrypted like the loaded values, i.e. the uploaded
+    // string has no quotes.
+    DetEncryptor detEncryptor = new DetEncryptor(prime1, prime2);
+    String rewritten = rewrite(dbMeta, "SELECT id FROM T4 WHERE name = 'bob'");
+    assertTrue(rewritten, rewritten.contains("\"" + detEncryptor.encrypt("bob",
+            Type.STRING) + "\""));
+
+    rewritten = rewrite(dbMeta, "SELECT id FROM T4 WHERE age = 7");
+    assertTrue(rewritten, rewritten.contains("\"" + detEncryptor.encrypt("7",
+            Type.INT) + "\""));
+  }
+
+  @Test(expected = UnSupportedException.class)
+  public void testRewriteDetPredicateNotInteger() throws Exception {
+    DBMeta dbMeta = TestQuery.createDBMeta();
+    dbMeta.add(createDetTable(new BigInteger(dbMeta.getPrime1()), new
+            BigInteger(dbMeta.getPrime2())));
+
+    rewrite(dbMeta, "SELECT id FROM T4 WHERE age = 5.5");
+  }
+
+  @Test
+  public void testRewriteLikeByIndex() throws Exception {
+    DBMeta dbMeta = TestQuery.createDBMeta();
+    dbMeta.add(createIndexedTable(new BigInteger(dbMeta.getPrime1()), new
+            BigInteger(dbMeta.getPrime2())));
+    String indexTbl = ColumnDefinition.getKeywordIndexTblName("T5", "title");
+
+    // A conjunct of the where clause is a semi join with the index table.
+    String rewritten = rewrite(dbMeta, "SELECT id FROM T5 WHERE title LIKE " +
+            "'sdb' AND id = 1");
+    assertTrue(rewritten, rewritten.contains(indexTbl));
+    assertFalse(rewritten, rewritten.contains("sdb_search"));
+
+    // The server does not support the semi join under OR.
+    rewritten = rewrite(dbMeta, "SELECT id FROM T5 WHERE title LIKE 'sdb' OR " +
+            "id = 1");
+    assertFalse(rewritten, rewritten.contains(indexTbl));
+    assertTrue(rewritten, rewritten.contains("sdb_search"));
+  }
+
+  /**
+   * Analyze a query with the marker of a parameter in its where clause, and
+   * rewrite it with the parameter in place of the marker.
+   */
+  private SelectStmt rewrite(DBMeta dbMeta, String command, ParameterLiteral
+          param) throws Exception {
+    SelectStmt selStmt = (SelectStmt) new SemanticAnalyzer(dbMeta).analyze
+            (parser.parse(command));
+    Expr pred = selStmt.getWhereClause();
+    for (int i = 0; i < pred.getChildren().size(); i++) {
+      if (pred.getChild(i) instanceof StringLiteral)
+        pred.setChild(i, param);
+    }
+
+    new SdbSchemeRewriter(dbMeta, null).rewrite(selStmt);
+    return selStmt;
+  }
+
+  private BigInteger encrypt(DBMeta dbMeta, String colName, BigInteger value,
+                             BigInteger rowID) {
+    BigInteger prime1 = new BigInteger(dbMeta.getPrime1());
+    BigInteger prime2 = new BigInteger(dbMeta.getPrime2());
+    BigInteger n = new BigInteger(dbMeta.getN());
+    ColumnMeta col = dbMeta.getTbl("T1").getCol(colName);
+
+    BigInteger itemKey = SDBEncrypt.generateItemKeyOp2(new BigInteger(col.getM
+            ()), new BigInteger(col.getX()), rowID, new BigInteger(dbMeta.getG
+            ()), n, SDBEncrypt.evaluateTotient(prime1, prime2), prime1, prime2);
+    return SDBEncrypt.encrypt(value, itemKey, n);
+  }
+
+  /**
+   * Evaluate an expression of the SDB scheme on a row like the UDFs do.
+   */
+  private BigInteger evaluate(Expr expr, Map<String, BigInteger> row,
+                              ParameterLiteral param, String value,
+                              BigInteger n) {
+    if (expr instanceof BigIntLiteral)
+      return ((BigIntLiteral) expr).getValue();
+    if (expr == param)
+      return param.toPlainValue(value);
+    if (expr instanceof FieldLiteral)
+      return row.get(((FieldLiteral) expr).getName());
+
+    List<BigInteger> args = new ArrayList<>();
+    for (Expr child : expr.getChildren()) {
+      args.add(evaluate(child, row, param, value, n));
+    }
+
+    if (expr instanceof SdbKeyUpdateExpr)
+      return args.get(3).multiply(args.get(0)).multiply(args.get(1).modPow(args
+              .get(2), n)).mod(n);
+    if (((SdbArithmeticExpr) expr).getOp() == SdbArithmeticExpr.SdbOperator
+            .SDB_MUL)
+      return args.get(0).multiply(args.get(1)).mod(n);
+    return args.get(0).add(args.get(1)).mod(n);
+  }
+
+  @Test
+  public void testRewriteParameter() throws Exception {
+    DBMeta dbMeta = TestQuery.createDBMeta();
+    BigInteger prime1 = new BigInteger(dbMeta.getPrime1());
+    BigInteger prime2 = new BigInteger(dbMeta.getPrime2());
+    BigInteger n = new BigInteger(dbMeta.getN());
+
+    // A row with a = 7.
+    BigInteger rowID = SDBEncrypt.generatePositiveRand(prime1, prime2);
+    Map<String, BigInteger> row = new HashMap<>();
+    row.put("a", encrypt(dbMeta, "a", BigInteger.valueOf(7), rowID));
+    row.put(ColumnDefinition.R_COLUMN_NAME, encrypt(dbMeta, ColumnDefinition
+            .R_COLUMN_NAME, SDBEncrypt.generatePositiveRandShort(prime1,
+            prime2), rowID));
+    row.put(ColumnDefinition.S_COLUMN_NAME, encrypt(dbMeta, ColumnDefinition
+            .S_COLUMN_NAME, BigInteger.ONE, rowID));
+
+    // The parameter is kept in the rewritten query, so it is a template.
+    ParameterLiteral param = new ParameterLiteral(0);
+    SelectStmt selStmt = rewrite(dbMeta, "SELECT id FROM T1 WHERE a = '" +
+            ParameterLiteral.getMarker(0) + "'", param);
+    assertTrue(selStmt.toSql(), selStmt.toSql().contains(param.toSql()));
+
+    Expr compare = selStmt.getWhereClause();
+    assertEquals(BigInteger.ZERO, evaluate(compare.getChild(0), row, param,
+            "7", n));
+    assertFalse(BigInteger.ZERO.equals(evaluate(compare.getChild(0), row,
+            param, "8", n)));
+    assertNull(param.toPlainValue("7.5"));
+
+    param = new ParameterLiteral(0);
+    selStmt = rewrite(dbMeta, "SELECT id FROM T1 WHERE a > '" + ParameterLiteral
+            .getMarker(0) + "'", param);
+    assertTrue(selStmt.toSql(), selStmt.toSql().contains(param.toSql()));
+
+    // sdb_gt holds if the value is in (0, n / 2).
+    compare = selStmt.getWhereClause();
+    BigInteger halfN = ((BigIntLiteral) compare.getChild(1)).getValue();
+    BigInteger value = evaluate(compare.getChild(0), row, param, "5", n);
+    assertTrue(value.signum() > 0 && value.compareTo(halfN) < 0);
+    value = evaluate(compare.getChild(0), row, param, "-3", n);
+    assertTrue(value.signum() > 0 && value.compareTo(halfN) < 0);
+    assertEquals(BigInteger.ZERO, evaluate(compare.getChild(0), row, param,
+            "7", n));
+    value = evaluate(compare.getChild(0), row, param, "9", n);
+    assertTrue(value.compareTo(halfN) >= 0);
+  }
+
+  @Test
+  public void testRewriteLikeParameter() throws Exception {
+    DBMeta dbMeta = TestQuery.createDBMeta();
+    dbMeta.add(createIndexedTable(new BigInteger(dbMeta.getPrime1()), new
+            BigInteger(dbMeta.getPrime2())));
+    String indexTbl = ColumnDefinition.getKeywordIndexTblName("T5", "title");
+
+    // The trapdoor of the keyword is computed when it is bound.
+    ParameterLiteral param = new ParameterLiteral(0);
+    SelectStmt selStmt = rewrite(dbMeta, "SELECT id FROM T5 WHERE title LIKE '"
+            + ParameterLiteral.getMarker(0) + "'", param);
+    String rewritten = selStmt.toSql();
+    assertTrue(rewritten, rewritten.contains(indexTbl));
+    assertTrue(rewritten, rewritten.contains(param.toSql()));
+    assertTrue(param.isKeyword());
+    assertNotNull(param.getSearchColKey());
+  }
+}
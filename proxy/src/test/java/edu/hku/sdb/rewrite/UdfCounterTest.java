@@ -0,0 +1,64 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.rewrite;
+
+import edu.hku.sdb.catalog.SdbColumnKey;
+import edu.hku.sdb.catalog.Type;
+import edu.hku.sdb.parse.*;
+import edu.hku.sdb.parse.SdbArithmeticExpr.SdbOperator;
+import edu.hku.sdb.parse.SdbKeyUpdateExpr.SdbKeyUpOperator;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class UdfCounterTest {
+
+  private Expr buildKeyUpdate() {
+    SdbKeyUpdateExpr keyUpdate = new SdbKeyUpdateExpr(SdbKeyUpOperator.SDB_KEYUP);
+    keyUpdate.addChild(new FieldLiteral("t1", "a", Type.INT, true, new
+            SdbColumnKey(BigInteger.ONE, BigInteger.ONE)));
+    keyUpdate.setType(Type.INT);
+    return keyUpdate;
+  }
+
+  @Test
+  public void testCount() {
+    SdbArithmeticExpr add = new SdbArithmeticExpr(SdbOperator.SDB_ADD);
+    add.addChild(buildKeyUpdate());
+    add.addChild(new FieldLiteral("t1", "b", Type.INT, true, new
+            SdbColumnKey(BigInteger.ONE, BigInteger.ONE)));
+
+    SdbComparisonExpr compareExpr = new SdbComparisonExpr(BinaryPredicate
+            .BinOperator.GT);
+    compareExpr.addChild(add);
+    compareExpr.addChild(buildKeyUpdate());
+
+    UdfCounter counter = new UdfCounter(compareExpr);
+    assertEquals(4, counter.getUdfCalls());
+    assertEquals(2, counter.getKeyUpdates());
+  }
+
+  @Test
+  public void testPlainExpr() {
+    UdfCounter counter = new UdfCounter(new FieldLiteral("t1", "c", Type.INT));
+    assertEquals(0, counter.getUdfCalls());
+    assertEquals(0, counter.getKeyUpdates());
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.transport;
+
+import edu.hku.sdb.catalog.Type;
+import edu.hku.sdb.connect.Connection;
+import edu.hku.sdb.connect.ConnectionService;
+import edu.hku.sdb.connect.PreparedStatement;
+import edu.hku.sdb.connect.Profiler;
+import edu.hku.sdb.connect.ResultSet;
+import edu.hku.sdb.connect.SDBResultSetMetaData;
+import edu.hku.sdb.connect.SdbResultSet;
+import edu.hku.sdb.connect.Statement;
+import edu.hku.sdb.exec.ColumnDesc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.rmi.RemoteException;
+import java.sql.DriverManager;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NioServerTest {
+
+  private static final int ROWS = Protocol.PAGE_SIZE * 2 + 3;
+
+  private DummyService service;
+  private NioServer server;
+  private String url;
+
+  @Before
+  public void prepare() throws Exception {
+    service = new DummyService();
+    server = new NioServer(service, 0);
+    server.start();
+    url = Protocol.URL_PREFIX + "localhost:" + server.getPort();
+  }
+
+  @After
+  public void cleanUp() {
+    server.stop();
+    DummyStatement.cancelled = null;
+    DummyStatement.released = null;
+  }
+
+  @Test
+  public void testExecuteAndFetch() throws RemoteException {
+    Connection connection = new NioConnectionService(url).getConnection();
+    Statement statement = connection.createStatement();
+    ResultSet resultSet = statement.executeQuery("select a, b from t");
+
+    assertEquals("remote: select a, b from t", resultSet.getRemoteSQLQuery());
+    assertEquals(2, resultSet.getResultSetMetaData().getColumnCount());
+    assertEquals("b", resultSet.getResultSetMetaData().getColumnName(1));
+
+    int count = 0;
+    while (resultSet.next()) {
+      assertEquals(Integer.valueOf(count), resultSet.getInteger(0));
+      assertEquals("row" + count, resultSet.getString(1));
+      count++;
+    }
+    assertEquals(ROWS, count);
+
+    Profiler profiler = statement.getProfiler();
+    assertNotNull(profiler);
+    assertEquals(42, profiler.getTotalTime());
+
+    resultSet.close();
+    connection.close();
+  }
+
+  @Test
+  public void testJdbc() throws Exception {
+    Class.forName("edu.hku.sdb.jdbc.SdbJdbcDriver");
+    java.sql.Connection connection = DriverManager.getConnection("jdbc:" +
+            url);
+    java.sql.Statement statement = connection.createStatement();
+    statement.setFetchSize(100);
+    java.sql.ResultSet resultSet = statement.executeQuery("select a, b from t");
+
+    assertEquals(Types.BIGINT, resultSet.getMetaData().getColumnType(1));
+    assertEquals("b", resultSet.getMetaData().getColumnName(2));
+
+    int count = 0;
+    while (resultSet.next()) {
+      assertEquals(count, resultSet.getLong(1));
+      assertEquals(count, resultSet.getInt("a"));
+      assertEquals("row" + count, resultSet.getString(2));
+      assertFalse(resultSet.wasNull());
+      count++;
+    }
+    assertEquals(ROWS, count);
+
+    statement.setMaxRows(10);
+    resultSet = statement.executeQuery("select a, b from t");
+    count = 0;
+    while (resultSet.next()) {
+      count++;
+    }
+    assertEquals(10, count);
+
+    connection.close();
+    assertTrue(connection.isClosed());
+  }
+
+  @Test
+  public void testError() throws RemoteException {
+    Connection connection = new NioConnectionService(url).getConnection();
+    Statement statement = connection.createStatement();
+    try {
+      statement.executeQuery("fail");
+      fail("The query should fail");
+    } catch (RemoteException e) {
+      assertTrue(e.getMessage().contains("Unsupported query"));
+    }
+
+    // The session is still usable.
+    assertTrue(statement.executeQuery("select a, b from t").next());
+    connection.close();
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    Connection connection = new NioConnectionService(url).getConnection();
+    Statement statement = connection.createStatement();
+
+    // The cancel is blocked as if the remote server did not answer.
+    DummyStatement.cancelled = new CountDownLatch(1);
+    DummyStatement.released = new CountDownLatch(1);
+    statement.cancel();
+    assertTrue(DummyStatement.cancelled.await(5, TimeUnit.SECONDS));
+
+    // The channel is still served meanwhile.
+    assertTrue(statement.executeQuery("select a, b from t").next());
+    DummyStatement.released.countDown();
+    connection.close();
+  }
+
+  @Test
+  public void testLoad() throws RemoteException {
+    NioConnectionService nioService = new NioConnectionService(url);
+    assertEquals(0, nioService.getLoad());
+
+    service.available = 0;
+    assertNull(nioService.getConnection());
+    assertEquals(DummyService.MAX, nioService.getLoad());
+  }
+
+  @Test
+  public void testUrl() {
+    NioConnectionService nioService = new NioConnectionService
+            ("sdb://host1:3030");
+    assertEquals("host1", nioService.getHost());
+    assertEquals(3030, nioService.getPort());
+    assertEquals(Protocol.DEFAULT_PORT, new NioConnectionService
+            ("sdb://host1/db").getPort());
+  }
+
+  private static class DummyService implements ConnectionService {
+
+    static final int MAX = 10;
+
+    volatile int available = MAX;
+
+    @Override
+    public Connection getConnection() {
+      return available > 0 ? new DummyConnection() : null;
+    }
+
+    @Override
+    public void closeConnection() {
+    }
+
+    @Override
+    public int getLoad() {
+      return MAX - available;
+    }
+  }
+
+  private static class DummyConnection implements Connection {
+
+    @Override
+    public Statement createStatement() {
+      return new DummyStatement();
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String query) {
+      return null;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  private static class DummyStatement implements Statement {
+
+    static volatile CountDownLatch cancelled;
+    static volatile CountDownLatch released;
+
+    @Override
+    public ResultSet executeQuery(String query) throws RemoteException {
+      if (query.equals("fail"))
+        throw new RemoteException("Unsupported query");
+
+      List<Object[]> rows = new ArrayList<>();
+      for (int i = 0; i < ROWS; i++) {
+        rows.add(new Object[]{BigInteger.valueOf(i), "row" + i});
+      }
+
+      SDBResultSetMetaData metaData = new SDBResultSetMetaData();
+      metaData.setColumnList(Arrays.asList(new ColumnDesc("a", "", Type.INT),
+              new ColumnDesc("b", "", Type.STRING)));
+
+      SdbResultSet resultSet = new SdbResultSet();
+      resultSet.setTuple(rows);
+      resultSet.setSdbResultSetMetaData(metaData);
+      resultSet.setRemoteSQLQuery("remote: " + query);
+      resultSet.setTotalTime(42);
+      return resultSet;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public Profiler getProfiler() {
+      return null;
+    }
+
+    @Override
+    public void cancel() {
+      // Closing a statement cancels it too.
+      if (cancelled == null)
+        return;
+
+      cancelled.countDown();
+      try {
+        released.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
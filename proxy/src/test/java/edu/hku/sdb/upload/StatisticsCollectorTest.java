@@ -0,0 +1,60 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.upload;
+
+import edu.hku.sdb.catalog.ColumnMeta;
+import edu.hku.sdb.catalog.TableStatistics;
+import edu.hku.sdb.catalog.Type;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StatisticsCollectorTest {
+
+  @Test
+  public void testGetStatistics() {
+    ColumnMeta id = new ColumnMeta("db", "t1", "id", Type.INT.toString(), true,
+            "1", "1");
+    ColumnMeta name = new ColumnMeta("db", "t1", "name", Type.STRING.toString(),
+            false, null, null);
+    StatisticsCollector testObj = new StatisticsCollector(Arrays.asList(id,
+            name));
+
+    for (int i = 0; i < 100; i++) {
+      testObj.addRow(i + "|a");
+      testObj.addValue(0, String.valueOf(i - 10));
+      testObj.addValue(1, i % 2 == 0 ? "a" : StatisticsCollector.NULL_VALUE);
+    }
+
+    TableStatistics stats = testObj.getStatistics(null);
+    assertEquals(100, stats.getRowCount());
+    assertTrue(stats.getAvgRowSize() > 0);
+
+    TableStatistics.ColumnStatistics idStats = stats.getColStats("id");
+    assertEquals(100, idStats.getDistinctCount());
+    assertEquals("-10", idStats.getMinValue());
+    assertEquals("89", idStats.getMaxValue());
+
+    TableStatistics.ColumnStatistics nameStats = stats.getColStats("NAME");
+    assertEquals(1, nameStats.getDistinctCount());
+    assertEquals(50, nameStats.getNullCount());
+  }
+}
@@ -248,9 +248,11 @@ public class TestQuery {
     BigInteger prime2 = SDBEncrypt.generateRandPrime();
     BigInteger n = prime1.multiply(prime2);
     BigInteger g = SDBEncrypt.generatePositiveRand(prime1, prime2);
+    BigInteger K = SDBEncrypt.generatePositiveRand(prime1, prime2);
 
     dbMeta.setN(n.toString());
     dbMeta.setG(g.toString());
+    dbMeta.setK(K.toString());
     dbMeta.setPrime1(prime1.toString());
     dbMeta.setPrime2(prime2.toString());
 
@@ -0,0 +1,192 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.hku.sdb.udf.util;
+
+import org.apache.commons.codec.binary.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.List;
+
+/**
+ * Matches a plaintext keyword against a list of searchable-encrypted tokens.
+ *
+ * The pseudo random cipher is initialized once per public key and the keyword
+ * bytes once per keyword, so that a query only pays the JCE provider lookup
+ * and the AES key expansion once. Tokens are Base64 decoded into reusable
+ * buffers. An instance is NOT thread safe, it is meant to be owned by one UDF
+ * instance (i.e. one task) or be thread confined.
+ */
+public class KeywordMatcher {
+
+  private static final String SCHEME = "AES/ECB/PKCS5Padding";
+
+  private static final int AES_BLOCK_SIZE = 16;
+
+  private static final byte[] DECODE_TABLE = new byte[128];
+
+  static {
+    for (int i = 0; i < DECODE_TABLE.length; i++) {
+      DECODE_TABLE[i] = -1;
+    }
+    String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    for (int i = 0; i < alphabet.length(); i++) {
+      DECODE_TABLE[alphabet.charAt(i)] = (byte) i;
+    }
+    // Accept both the standard and the URL safe alphabet, as commons-codec does.
+    DECODE_TABLE['+'] = 62;
+    DECODE_TABLE['-'] = 62;
+    DECODE_TABLE['/'] = 63;
+    DECODE_TABLE['_'] = 63;
+  }
+
+  private String publicKey;
+  private Cipher prCipher;
+
+  private String keyword;
+  private byte[] keywordBytes;
+
+  // Reusable buffers for the decoded token, the xor diff and the cipher output
+  private byte[] token = new byte[64];
+  private byte[] diff = new byte[64];
+  private byte[] fksi = new byte[80];
+
+  /**
+   * Returns true if any of the encrypted tokens in text matches the keyword.
+   *
+   * @param text      Base64 encoded searchable-encrypted tokens
+   * @param keyword   the plaintext keyword
+   * @param publicKey Base64 encoded pseudo random function key
+   * @return
+   */
+  public boolean match(List<String> text, String keyword, String publicKey) {
+    if (text == null || keyword == null || publicKey == null)
+      return false;
+
+    if (!prepare(keyword, publicKey))
+      return false;
+
+    for (int i = 0; i < text.size(); i++) {
+      if (search(text.get(i)))
+        return true;
+    }
+
+    return false;
+  }
+
+  private boolean prepare(String keyword, String publicKey) {
+    if (!publicKey.equals(this.publicKey)) {
+      try {
+        Cipher cipher = Cipher.getInstance(SCHEME);
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(Base64.decodeBase64
+                (publicKey), "AES"));
+        prCipher = cipher;
+        this.publicKey = publicKey;
+      } catch (GeneralSecurityException e) {
+        e.printStackTrace();
+        prCipher = null;
+        this.publicKey = null;
+        return false;
+      }
+    }
+
+    if (!keyword.equals(this.keyword)) {
+      keywordBytes = keyword.getBytes();
+      this.keyword = keyword;
+      ensureCapacity(keywordBytes.length);
+    }
+
+    return keywordBytes.length > 0;
+  }
+
+  private boolean search(String encoded) {
+    if (encoded == null)
+      return false;
+
+    int length = decode(encoded);
+    if (length != keywordBytes.length)
+      return false;
+
+    // get diff = word xor encrypted
+    // if it is a match, first part of diff generates second part of diff using
+    // pseudo random function
+    int diffLength = length - 1;
+    for (int i = 0; i < diffLength; i++) {
+      diff[i] = (byte) (token[i] ^ keywordBytes[i]);
+    }
+    byte diff2 = (byte) (token[diffLength] ^ keywordBytes[diffLength]);
+
+    try {
+      // fksi is F_k(S_i) in the searchable encryption
+      prCipher.doFinal(diff, 0, diffLength, fksi, 0);
+    } catch (GeneralSecurityException e) {
+      e.printStackTrace();
+      return false;
+    }
+
+    return fksi[0] == diff2;
+  }
+
+  /**
+   * Decodes a Base64 string into the reusable token buffer.
+   *
+   * @param encoded
+   * @return the number of decoded bytes, or -1 if it cannot fit the keyword.
+   */
+  private int decode(String encoded) {
+    int maxLength = (encoded.length() * 3) / 4;
+    // Padding can shorten the token by at most two bytes, so anything longer
+    // can never match.
+    if (maxLength - 2 > keywordBytes.length)
+      return -1;
+
+    if (token.length < maxLength)
+      token = new byte[maxLength];
+
+    int length = 0;
+    int bits = 0;
+    int bitCount = 0;
+    for (int i = 0; i < encoded.length(); i++) {
+      char c = encoded.charAt(i);
+      if (c == '=')
+        break;
+      if (c >= DECODE_TABLE.length || DECODE_TABLE[c] < 0)
+        continue;
+
+      bits = (bits << 6) | DECODE_TABLE[c];
+      bitCount += 6;
+      if (bitCount >= 8) {
+        bitCount -= 8;
+        token[length++] = (byte) (bits >> bitCount);
+      }
+    }
+
+    return length;
+  }
+
+  private void ensureCapacity(int length) {
+    if (diff.length < length)
+      diff = new byte[length];
+    // PKCS5 padding always adds at least one byte, up to a full block
+    int outLength = (length / AES_BLOCK_SIZE + 1) * AES_BLOCK_SIZE;
+    if (fksi.length < outLength)
+      fksi = new byte[outLength];
+  }
+
+}
@@ -17,21 +17,28 @@
 
 package edu.hku.sdb.udf.hive;
 
-import edu.hku.sdb.udf.util.TextArrayWritable;
-import edu.hku.sdb.udf.util.TypeCast;
-import edu.hku.sdb.udf.util.UDFHandler;
+import edu.hku.sdb.udf.util.KeywordMatcher;
 import org.apache.hadoop.hive.ql.exec.UDF;
 import org.apache.hadoop.io.BooleanWritable;
 import org.apache.hadoop.io.Text;
 
-import java.math.BigInteger;
 import java.util.ArrayList;
 
 public class SdbSearchUDF extends UDF {
 
+  // Hive creates one UDF instance per task, so the cached cipher is confined to
+  // the task thread.
+  private final KeywordMatcher matcher = new KeywordMatcher();
+
+  private final BooleanWritable result = new BooleanWritable();
+
   public BooleanWritable evaluate(ArrayList<String> a, Text b, Text n) {
+    if (a == null || b == null || n == null) {
+      return null;
+    }
 
-    return new BooleanWritable(UDFHandler.match(a, b.toString(), n.toString()));
+    result.set(matcher.match(a, b.toString(), n.toString()));
+    return result;
   }
 
 }
\ No newline at end of file
@@ -18,9 +18,14 @@
 package edu.hku.sdb.udf.util;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
 
 import edu.hku.sdb.udf.util.UDFHandler;
 import junit.framework.TestCase;
+import org.apache.commons.codec.binary.Base64;
 
 import static org.junit.Assert.assertTrue;
 
@@ -97,8 +102,53 @@ public class UDFHandlerTest extends TestCase {
     assertEquals(new BigInteger("496849390869414279802"), result);
   }
 
-  public void testSearchHandle() {
+  public void testSearchHandle() throws Exception {
+    byte[] key = new byte[16];
+    for (int i = 0; i < key.length; i++) {
+      key[i] = (byte) (i * 7 + 3);
+    }
+    String publicKey = Base64.encodeBase64String(key);
+
+    ArrayList<String> text = new ArrayList<String>();
+    text.add(searchEncrypt("Froome", key, (byte) 11));
+    text.add(searchEncrypt("Briton", key, (byte) 42));
+    text.add(searchEncrypt("Quintana", key, (byte) 5));
+
+    assertTrue(UDFHandler.match(text, "Briton", publicKey));
+    assertTrue(UDFHandler.match(text, "Quintana", publicKey));
+    assertFalse(UDFHandler.match(text, "briton", publicKey));
+    assertFalse(UDFHandler.match(text, "Paris", publicKey));
+
+    // The cached cipher must follow a key change.
+    byte[] otherKey = key.clone();
+    otherKey[0] ^= 1;
+    assertFalse(UDFHandler.match(text, "Briton", Base64.encodeBase64String
+            (otherKey)));
+    assertTrue(new KeywordMatcher().match(text, "Froome", publicKey));
+  }
 
+  /**
+   * Builds a searchable-encrypted token as (w1 xor si, w2 xor F_k(si)).
+   */
+  private String searchEncrypt(String word, byte[] key, byte seed) throws
+          Exception {
+    byte[] data = word.getBytes();
+    byte[] si = new byte[data.length - 1];
+    for (int i = 0; i < si.length; i++) {
+      si[i] = (byte) (seed * (i + 1));
+    }
+
+    Cipher prCipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+    prCipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"));
+    byte[] fksi = prCipher.doFinal(si);
+
+    byte[] result = new byte[data.length];
+    for (int i = 0; i < si.length; i++) {
+      result[i] = (byte) (data[i] ^ si[i]);
+    }
+    result[si.length] = (byte) (fksi[0] ^ data[si.length]);
+
+    return Base64.encodeBase64String(result);
   }
 
 }
@@ -17,16 +17,21 @@
 
 package edu.hku.sdb.udf.odps;
 
-import edu.hku.sdb.udf.util.UDFHandler;
+import edu.hku.sdb.udf.util.KeywordMatcher;
 import com.aliyun.odps.udf.UDF;
 
 import java.util.ArrayList;
 
 public class SdbSearchUDF extends UDF {
 
+  private final KeywordMatcher matcher = new KeywordMatcher();
+
   public Boolean evaluate(ArrayList<String> a, String b, String n) {
+    if (a == null || b == null || n == null) {
+      return null;
+    }
 
-    return new Boolean(UDFHandler.match(a, b, n));
+    return matcher.match(a, b, n);
   }
 
 }
\ No newline at end of file